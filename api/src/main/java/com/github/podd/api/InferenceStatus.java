@@ -0,0 +1,42 @@
+/**
+ * PODD is an OWL ontology database used for scientific project management
+ *
+ * Copyright (C) 2009-2013 The University Of Queensland
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.podd.api;
+
+/**
+ * The status of the inferred statements for a version of an artifact.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public enum InferenceStatus
+{
+    /**
+     * The concrete statements have been stored, and the inferred statements are being computed in
+     * the background.
+     */
+    PENDING,
+    
+    /**
+     * The inferred statements have been stored.
+     */
+    COMPLETE,
+    
+    /**
+     * The inferred statements could not be computed.
+     */
+    FAILED;
+    
+}
@@ -46,6 +46,16 @@ public interface DataReference
      */
     String getLabel();
     
+    /**
+     * Returns the location of the data that this reference points to, relative to the repository
+     * that is managing it. Unlike the other properties, the location does not depend on the
+     * artifact or object that this reference is attached to, so references with the same alias and
+     * location point to the same data.
+     *
+     * @return The location of the data inside of its repository.
+     */
+    String getDataLocation();
+    
     /**
      *
      * @return The {@link IRI} of this file reference.
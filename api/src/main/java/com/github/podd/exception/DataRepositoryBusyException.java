@@ -0,0 +1,45 @@
+/**
+ * PODD is an OWL ontology database used for scientific project management
+ *
+ * Copyright (C) 2009-2013 The University Of Queensland
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.podd.exception;
+
+/**
+ * An exception indicating that a data repository already has the maximum number of concurrent
+ * transfers in progress, and the request may be retried later.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class DataRepositoryBusyException extends DataRepositoryException
+{
+    private static final long serialVersionUID = -2917553104218736405L;
+    
+    private final String alias;
+    
+    public DataRepositoryBusyException(final String alias, final String msg)
+    {
+        super(msg);
+        this.alias = alias;
+    }
+    
+    /**
+     * @return The alias of the data repository that was busy.
+     */
+    public String getAlias()
+    {
+        return this.alias;
+    }
+    
+}
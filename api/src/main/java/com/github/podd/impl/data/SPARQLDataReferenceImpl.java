@@ -40,6 +40,12 @@ public class SPARQLDataReferenceImpl extends AbstractDataReferenceImpl implement
         super();
     }
     
+    @Override
+    public String getDataLocation()
+    {
+        return this.graph;
+    }
+    
     @Override
     public String getGraph()
     {
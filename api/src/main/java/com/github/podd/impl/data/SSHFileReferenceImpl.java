@@ -42,6 +42,16 @@ public class SSHFileReferenceImpl extends AbstractDataReferenceImpl implements S
         super();
     }
     
+    @Override
+    public String getDataLocation()
+    {
+        if(this.path != null && this.path.trim().length() > 0)
+        {
+            return this.path + "/" + this.filename;
+        }
+        return this.filename;
+    }
+    
     @Override
     public String getFilename()
     {
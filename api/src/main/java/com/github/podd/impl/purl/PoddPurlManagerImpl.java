@@ -16,12 +16,17 @@
  */
 package com.github.podd.impl.purl;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
 import org.openrdf.query.GraphQuery;
 import org.openrdf.query.GraphQueryResult;
 import org.openrdf.query.MalformedQueryException;
@@ -61,57 +66,53 @@ public class PoddPurlManagerImpl implements PoddPurlManager
     
     private PoddPurlProcessorFactoryRegistry purlProcessorFactoryRegistry;
     
-    private void convertTemporaryUri(final URI inputUri, final URI outputUri,
-            final RepositoryConnection repositoryConnection, final URI... contexts) throws RepositoryException
+    @Override
+    public void convertTemporaryUris(final Set<PoddPurlReference> purlResults,
+            final RepositoryConnection repositoryConnection, final URI... contexts) throws RepositoryException,
+        UpdateExecutionException
     {
-        // replace occurrences as Subject
-        final RepositoryResult<Statement> stmtsWithTempSubject =
-                repositoryConnection.getStatements(inputUri, null, null, false, contexts);
-        try
+        final Map<URI, URI> purlMappings = new HashMap<URI, URI>(purlResults.size() * 2);
+        for(final PoddPurlReference purl : purlResults)
         {
-            while(stmtsWithTempSubject.hasNext())
-            {
-                final Statement next = stmtsWithTempSubject.next();
-                repositoryConnection.add(outputUri, next.getPredicate(), next.getObject(), contexts);
-                repositoryConnection.remove(next, contexts);
-            }
+            this.log.debug("Converting: {} to {}", purl.getTemporaryURI(), purl.getPurlURI());
+            purlMappings.put(purl.getTemporaryURI(), purl.getPurlURI());
         }
-        finally
+        
+        if(purlMappings.isEmpty())
         {
-            stmtsWithTempSubject.close();
+            return;
         }
         
-        // replace occurrences as Object
-        final RepositoryResult<Statement> stmtsWithTempObject =
-                repositoryConnection.getStatements(null, null, inputUri, false, contexts);
+        // Scan the contexts once, rewriting temporary URIs in both the subject and object position
+        // of each statement, instead of scanning them twice for every temporary URI
+        final List<Statement> removals = new ArrayList<Statement>();
+        final List<Statement> additions = new ArrayList<Statement>();
+        final ValueFactory vf = repositoryConnection.getValueFactory();
+        final RepositoryResult<Statement> statements =
+                repositoryConnection.getStatements(null, null, null, false, contexts);
         try
         {
-            while(stmtsWithTempObject.hasNext())
+            while(statements.hasNext())
             {
-                final Statement next = stmtsWithTempObject.next();
-                repositoryConnection.add(next.getSubject(), next.getPredicate(), outputUri, contexts);
-                repositoryConnection.remove(next, contexts);
+                final Statement next = statements.next();
+                final URI subjectPurl = purlMappings.get(next.getSubject());
+                final URI objectPurl = purlMappings.get(next.getObject());
+                if(subjectPurl != null || objectPurl != null)
+                {
+                    removals.add(next);
+                    additions.add(vf.createStatement(subjectPurl != null ? subjectPurl : next.getSubject(),
+                            next.getPredicate(), objectPurl != null ? objectPurl : next.getObject()));
+                }
             }
         }
         finally
         {
-            stmtsWithTempObject.close();
-        }
-    }
-    
-    @Override
-    public void convertTemporaryUris(final Set<PoddPurlReference> purlResults,
-            final RepositoryConnection repositoryConnection, final URI... contexts) throws RepositoryException,
-        UpdateExecutionException
-    {
-        for(final PoddPurlReference purl : purlResults)
-        {
-            final URI inputUri = purl.getTemporaryURI();
-            final URI outputUri = purl.getPurlURI();
-            this.log.debug("Converting: {} to {}", inputUri, outputUri);
-            
-            this.convertTemporaryUri(inputUri, outputUri, repositoryConnection, contexts);
+            statements.close();
         }
+        
+        this.log.debug("Rewriting {} statements containing temporary URIs", removals.size());
+        repositoryConnection.remove(removals, contexts);
+        repositoryConnection.add(additions, contexts);
     }
     
     @Override
@@ -0,0 +1,173 @@
+/**
+ * PODD is an OWL ontology database used for scientific project management
+ *
+ * Copyright (C) 2009-2013 The University Of Queensland
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.podd.impl.purl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.ContextStatementImpl;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.helpers.RDFHandlerWrapper;
+
+import com.github.podd.api.PoddProcessorStage;
+import com.github.podd.api.purl.PoddPurlProcessor;
+import com.github.podd.api.purl.PoddPurlProcessorFactory;
+import com.github.podd.api.purl.PoddPurlProcessorFactoryRegistry;
+import com.github.podd.api.purl.PoddPurlReference;
+import com.github.podd.exception.PurlProcessorNotHandledException;
+
+/**
+ * An RDFHandler that replaces temporary URIs in the subject and object positions of statements
+ * with PURLs as the statements are streamed through to another RDFHandler.
+ *
+ * Each temporary URI is only translated once, using the first processor that can handle it, so
+ * the same PURL is used for every occurrence of a temporary URI.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class PurlRewritingRDFHandler extends RDFHandlerWrapper
+{
+    private final PoddPurlProcessorFactoryRegistry registry;
+    
+    private final URI parentUri;
+    
+    private final List<PoddPurlProcessor> processors = new ArrayList<PoddPurlProcessor>();
+    
+    private final Map<URI, URI> translations = new HashMap<URI, URI>();
+    
+    private final Set<PoddPurlReference> purlReferences = new LinkedHashSet<PoddPurlReference>();
+    
+    /**
+     *
+     * @param registry
+     *            The registry containing the PURL processor factories to use.
+     * @param parentUri
+     *            An optional parent URI to use when creating PURLs, or null if it is not known.
+     * @param handlers
+     *            The handlers to send the rewritten statements to.
+     */
+    public PurlRewritingRDFHandler(final PoddPurlProcessorFactoryRegistry registry, final URI parentUri,
+            final RDFHandler... handlers)
+    {
+        super(handlers);
+        this.registry = registry;
+        this.parentUri = parentUri;
+    }
+    
+    @Override
+    public void startRDF() throws RDFHandlerException
+    {
+        this.processors.clear();
+        this.translations.clear();
+        this.purlReferences.clear();
+        if(this.registry != null)
+        {
+            // NOTE: Processors are not required to be thread safe, but they are only used by the
+            // thread that is streaming statements into this handler
+            for(final PoddPurlProcessorFactory nextProcessorFactory : this.registry
+                    .getByStage(PoddProcessorStage.RDF_PARSING))
+            {
+                this.processors.add(nextProcessorFactory.getProcessor());
+            }
+        }
+        super.startRDF();
+    }
+    
+    @Override
+    public void handleStatement(final Statement st) throws RDFHandlerException
+    {
+        final Resource subject = (Resource)this.translate(st.getSubject());
+        final Value object = this.translate(st.getObject());
+        
+        if(subject == st.getSubject() && object == st.getObject())
+        {
+            super.handleStatement(st);
+        }
+        else if(st.getContext() == null)
+        {
+            super.handleStatement(new StatementImpl(subject, st.getPredicate(), object));
+        }
+        else
+        {
+            super.handleStatement(new ContextStatementImpl(subject, st.getPredicate(), object, st.getContext()));
+        }
+    }
+    
+    /**
+     * @return The PURL references that were generated for the temporary URIs that were found in
+     *         the statements seen by this handler.
+     */
+    public Set<PoddPurlReference> getPurlReferences()
+    {
+        return Collections.unmodifiableSet(this.purlReferences);
+    }
+    
+    /**
+     * @return The temporary URIs that were found in the statements seen by this handler.
+     */
+    public Collection<URI> getTemporaryURIs()
+    {
+        return Collections.unmodifiableSet(this.translations.keySet());
+    }
+    
+    private Value translate(final Value value) throws RDFHandlerException
+    {
+        if(!(value instanceof URI) || this.processors.isEmpty())
+        {
+            return value;
+        }
+        
+        final URI existing = this.translations.get(value);
+        if(existing != null)
+        {
+            return existing;
+        }
+        
+        for(final PoddPurlProcessor nextProcessor : this.processors)
+        {
+            if(nextProcessor.canHandle((URI)value))
+            {
+                try
+                {
+                    final PoddPurlReference nextReference =
+                            nextProcessor.handleTranslation((URI)value, this.parentUri);
+                    this.translations.put((URI)value, nextReference.getPurlURI());
+                    this.purlReferences.add(nextReference);
+                    return nextReference.getPurlURI();
+                }
+                catch(final PurlProcessorNotHandledException e)
+                {
+                    throw new RDFHandlerException("Could not generate a PURL for a temporary URI: " + value, e);
+                }
+            }
+        }
+        
+        return value;
+    }
+}
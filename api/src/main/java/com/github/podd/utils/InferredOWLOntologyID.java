@@ -32,6 +32,10 @@ import org.semanticweb.owlapi.model.OWLOntologyID;
  * Use getInferredOWLOntologyID to get a typical OWLOntologyID instance representing the inferred
  * portion of this object.
  *
+ * The inference pending flag indicates that the inferred ontology is still being computed in the
+ * background, so its context may be empty or incomplete. It does not take part in equality, as it
+ * describes the state of the ontology rather than its identity.
+ *
  * @author Peter Ansell p_ansell@yahoo.com
  *
  */
@@ -41,15 +45,28 @@ public class InferredOWLOntologyID extends OWLOntologyID
     
     private final IRI inferredOntologyIRI;
     
+    private final boolean inferencePending;
+    
     /**
      * Creates an {@link InferredOWLOntologyID} using three OWLAPI {@link IRI}s.
      */
     public InferredOWLOntologyID(final IRI baseOntologyIRI, final IRI baseOntologyVersionIRI,
             final IRI inferredOntologyIRI)
+    {
+        this(baseOntologyIRI, baseOntologyVersionIRI, inferredOntologyIRI, false);
+    }
+    
+    /**
+     * Creates an {@link InferredOWLOntologyID} using three OWLAPI {@link IRI}s, and a flag
+     * indicating whether the inferred ontology is still being computed.
+     */
+    public InferredOWLOntologyID(final IRI baseOntologyIRI, final IRI baseOntologyVersionIRI,
+            final IRI inferredOntologyIRI, final boolean inferencePending)
     {
         super(baseOntologyIRI, baseOntologyVersionIRI);
         
         this.inferredOntologyIRI = inferredOntologyIRI;
+        this.inferencePending = inferencePending;
         
         // Override hashcode if inferredOntologyIRI is not null, otherwise leave the hashcode to
         // match upstream
@@ -76,6 +93,7 @@ public class InferredOWLOntologyID extends OWLOntologyID
         {
             this.inferredOntologyIRI = null;
         }
+        this.inferencePending = false;
     }
     
     /**
@@ -110,6 +128,28 @@ public class InferredOWLOntologyID extends OWLOntologyID
         return new OWLOntologyID(this.getInferredOntologyIRI());
     }
     
+    /**
+     * @return True if the inferred ontology is still being computed, and false if it is complete.
+     */
+    public boolean isInferencePending()
+    {
+        return this.inferencePending;
+    }
+    
+    /**
+     * @return An {@link InferredOWLOntologyID} with the same IRIs as this object and the given
+     *         inference pending flag.
+     */
+    public InferredOWLOntologyID withInferencePending(final boolean inferencePending)
+    {
+        if(inferencePending == this.inferencePending)
+        {
+            return this;
+        }
+        return new InferredOWLOntologyID(this.getOntologyIRI(), this.getVersionIRI(), this.inferredOntologyIRI,
+                inferencePending);
+    }
+    
     public Model toRDF()
     {
         return this.toRDF(new LinkedHashModel());
@@ -22,8 +22,10 @@ import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
@@ -68,6 +70,18 @@ public class OntologyUtils
 {
     private static final Logger log = LoggerFactory.getLogger(OntologyUtils.class);
     
+    /**
+     * The maximum number of distinct sets of direct imports to keep transitive imports for.
+     */
+    private static final int IMPORTS_CLOSURE_CACHE_SIZE = 32;
+    
+    /**
+     * Transitive imports, keyed by the direct imports that they were computed from, so that each
+     * revision of the schema management graph is only resolved once.
+     */
+    private static final ConcurrentMap<Map<URI, Set<URI>>, Map<URI, Set<URI>>> IMPORTS_CLOSURE_CACHE =
+            new ConcurrentHashMap<>();
+    
     /**
      * Finds the schema imports for the given artifact.
      *
@@ -690,6 +704,11 @@ public class OntologyUtils
                                         .toOpenRDFURI()));
                     }
                 }
+                if(ontology instanceof InferredOWLOntologyID && ((InferredOWLOntologyID)ontology).isInferencePending())
+                {
+                    result.add(vf.createStatement(ontology.getVersionIRI().toOpenRDFURI(),
+                            PODD.PODD_BASE_INFERENCE_PENDING, vf.createLiteral(true)));
+                }
             }
         }
         
@@ -753,37 +772,118 @@ public class OntologyUtils
         return importOrder;
     }
     
+    /**
+     * Replaces the direct imports for each ontology in the given map with its transitive imports.
+     *
+     * The transitive imports are computed once for each distinct set of direct imports, and are
+     * then reused, as the same schema management graph is resolved for each artifact.
+     *
+     * @param importsMap
+     *            A map from ontology IRIs to their direct imports, which is updated to map to their
+     *            transitive imports.
+     * @throws SchemaManifestException
+     *             If any ontology directly or indirectly imports itself.
+     */
     public static final void recursiveFollowSchemaMap(final ConcurrentMap<URI, Set<URI>> importsMap)
         throws SchemaManifestException
     {
-        // Iterate through at least as many times as the size of the importsMap to get all
-        // dependencies
-        for(int i = 0; i < importsMap.size(); i++)
+        final Map<URI, Set<URI>> directImports = new HashMap<>((int)(importsMap.size() / 0.75f) + 1);
+        for(final Entry<URI, Set<URI>> nextImportsMapEntry : importsMap.entrySet())
+        {
+            directImports.put(nextImportsMapEntry.getKey(),
+                    Collections.unmodifiableSet(new LinkedHashSet<>(nextImportsMapEntry.getValue())));
+        }
+        
+        Map<URI, Set<URI>> closure = OntologyUtils.IMPORTS_CLOSURE_CACHE.get(directImports);
+        if(closure == null)
         {
-            for(final Entry<URI, Set<URI>> nextImportsMapEntry : importsMap.entrySet())
+            closure = OntologyUtils.computeImportsClosure(directImports);
+            if(OntologyUtils.IMPORTS_CLOSURE_CACHE.size() >= OntologyUtils.IMPORTS_CLOSURE_CACHE_SIZE)
             {
-                // Avoid ConcurrentModificationException by taking a copy and replacing it
-                // afterwards
-                final Set<URI> nextSet = new LinkedHashSet<>(nextImportsMapEntry.getValue());
-                OntologyUtils.recursiveFollowSchemaMap(importsMap, nextImportsMapEntry.getKey(), nextSet);
-                importsMap.put(nextImportsMapEntry.getKey(), nextSet);
+                OntologyUtils.IMPORTS_CLOSURE_CACHE.clear();
             }
+            OntologyUtils.IMPORTS_CLOSURE_CACHE.put(directImports, closure);
+        }
+        
+        for(final Entry<URI, Set<URI>> nextClosureEntry : closure.entrySet())
+        {
+            // Callers may modify the sets in the imports map, so they must not share the cached sets
+            importsMap.put(nextClosureEntry.getKey(), new LinkedHashSet<>(nextClosureEntry.getValue()));
         }
     }
     
     public static final void recursiveFollowSchemaMap(final ConcurrentMap<URI, Set<URI>> importsMap, final URI nextUri,
             final Set<URI> nextUriImports) throws SchemaManifestException
     {
-        for(final URI nextImportedUri : importsMap.get(nextUri))
+        nextUriImports.addAll(OntologyUtils.followImportsClosure(importsMap, nextUri, new HashMap<URI, Set<URI>>(),
+                new LinkedHashSet<URI>()));
+    }
+    
+    /**
+     * Computes the transitive imports for each ontology in the given map using a single depth first
+     * traversal, with the imports for each ontology computed once and reused for all of the
+     * ontologies that import it.
+     *
+     * @param directImports
+     *            A map from ontology IRIs to their direct imports.
+     * @return An unmodifiable map from each ontology IRI in the given map to its transitive imports,
+     *         with the direct imports of each ontology appearing before their own imports.
+     * @throws SchemaManifestException
+     *             If any ontology directly or indirectly imports itself.
+     */
+    public static Map<URI, Set<URI>> computeImportsClosure(final Map<URI, Set<URI>> directImports)
+        throws SchemaManifestException
+    {
+        final Map<URI, Set<URI>> closures = new HashMap<>((int)(directImports.size() / 0.75f) + 1);
+        final Set<URI> inProgress = new LinkedHashSet<>();
+        for(final URI nextUri : directImports.keySet())
+        {
+            OntologyUtils.followImportsClosure(directImports, nextUri, closures, inProgress);
+        }
+        
+        final Map<URI, Set<URI>> result = new HashMap<>((int)(directImports.size() / 0.75f) + 1);
+        for(final URI nextUri : directImports.keySet())
+        {
+            result.put(nextUri, closures.get(nextUri));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+    
+    /**
+     * @param inProgress
+     *            The ontologies on the current path through the imports, used to detect cycles.
+     */
+    private static Set<URI> followImportsClosure(final Map<URI, Set<URI>> directImports, final URI nextUri,
+            final Map<URI, Set<URI>> closures, final Set<URI> inProgress) throws SchemaManifestException
+    {
+        final Set<URI> existing = closures.get(nextUri);
+        if(existing != null)
         {
-            nextUriImports.add(nextImportedUri);
-            if(nextImportedUri.equals(nextUri))
+            return existing;
+        }
+        
+        if(!inProgress.add(nextUri))
+        {
+            throw new SchemaManifestException(IRI.create(nextUri), "Ontology recursively imported itself: "
+                    + inProgress);
+        }
+        
+        final Set<URI> result = new LinkedHashSet<>();
+        final Set<URI> nextImports = directImports.get(nextUri);
+        if(nextImports != null)
+        {
+            for(final URI nextImportedUri : nextImports)
             {
-                throw new SchemaManifestException(IRI.create(nextUri), "Ontology recursively imported itself: "
-                        + nextUriImports);
+                result.add(nextImportedUri);
+                result.addAll(OntologyUtils.followImportsClosure(directImports, nextImportedUri, closures,
+                        inProgress));
             }
-            OntologyUtils.recursiveFollowSchemaMap(importsMap, nextImportedUri, nextUriImports);
         }
+        
+        inProgress.remove(nextUri);
+        final Set<URI> unmodifiableResult = Collections.unmodifiableSet(result);
+        closures.put(nextUri, unmodifiableResult);
+        return unmodifiableResult;
     }
     
     private static void postSort(final List<URI> importOrder, final ConcurrentMap<URI, Set<URI>> importsMap)
@@ -100,6 +100,43 @@ public interface PODD
      */
     public static final String KEY_SCHEMAS = "podd.schemas.manifest";
     
+    /**
+     * The namespace for the vocabulary used to describe the query statistics recorded by
+     * {@link QueryMetrics}. The vocabulary is only used in responses from the query metrics
+     * service and is not stored in any repository.
+     */
+    public static final String METRICS = "http://purl.org/podd/ns/metrics#";
+    
+    /** http://purl.org/podd/ns/metrics#bucketCount */
+    public static final URI METRICS_BUCKET_COUNT = PODD.VF.createURI(PODD.METRICS, "bucketCount");
+    
+    /** http://purl.org/podd/ns/metrics#bucketUpperBoundMillis */
+    public static final URI METRICS_BUCKET_UPPER_BOUND = PODD.VF.createURI(PODD.METRICS, "bucketUpperBoundMillis");
+    
+    /** http://purl.org/podd/ns/metrics#executionCount */
+    public static final URI METRICS_EXECUTION_COUNT = PODD.VF.createURI(PODD.METRICS, "executionCount");
+    
+    /** http://purl.org/podd/ns/metrics#hasLatencyBucket */
+    public static final URI METRICS_HAS_LATENCY_BUCKET = PODD.VF.createURI(PODD.METRICS, "hasLatencyBucket");
+    
+    /** http://purl.org/podd/ns/metrics#maxTimeMillis */
+    public static final URI METRICS_MAX_TIME = PODD.VF.createURI(PODD.METRICS, "maxTimeMillis");
+    
+    /** http://purl.org/podd/ns/metrics#queryName */
+    public static final URI METRICS_QUERY_NAME = PODD.VF.createURI(PODD.METRICS, "queryName");
+    
+    /** http://purl.org/podd/ns/metrics#resultCount */
+    public static final URI METRICS_RESULT_COUNT = PODD.VF.createURI(PODD.METRICS, "resultCount");
+    
+    /** http://purl.org/podd/ns/metrics#slowQueryCount */
+    public static final URI METRICS_SLOW_QUERY_COUNT = PODD.VF.createURI(PODD.METRICS, "slowQueryCount");
+    
+    /** http://purl.org/podd/ns/metrics#totalTimeMillis */
+    public static final URI METRICS_TOTAL_TIME = PODD.VF.createURI(PODD.METRICS, "totalTimeMillis");
+    
+    /** Type to identify the metrics for a single query http://purl.org/podd/ns/metrics#QueryMetrics */
+    public static final URI METRICS_TYPE_QUERY_METRICS = PODD.VF.createURI(PODD.METRICS, "QueryMetrics");
+    
     /**
      * The OMV vocabulary defines a property for the current version of an ontology, so we are
      * reusing it here.
@@ -331,6 +368,19 @@ public interface PODD
      */
     public static final URI PODD_BASE_INFERRED_VERSION = PODD.VF.createURI(PODD.PODD_BASE, "inferredVersion");
     
+    /**
+     * Set to true on a versioned ontology while its inferred ontology is being computed in the
+     * background.
+     */
+    public static final URI PODD_BASE_INFERENCE_PENDING = PODD.VF.createURI(PODD.PODD_BASE, "inferencePending");
+    
+    /**
+     * The status of the background inference for a versioned ontology, one of "PENDING",
+     * "COMPLETE" or "FAILED". In the artifact management graph it is only stored while the
+     * inferences are pending or after they have failed.
+     */
+    public static final URI PODD_BASE_INFERENCE_STATUS = PODD.VF.createURI(PODD.PODD_BASE, "inferenceStatus");
+    
     /** http://purl.org/podd/ns/poddBase#lastModified */
     public static final URI PODD_BASE_LAST_MODIFIED = PODD.VF.createURI(PODD.PODD_BASE, "lastModified");
     
@@ -594,6 +644,13 @@ public interface PODD
     
     public static final URI PODD_SCHEMA_CLASSPATH = PODD.VF.createURI("http://purl.org/podd/ns/schema#classpath");
     
+    /**
+     * The name of an InferredAxiomGeneratorType to use for artifacts importing a schema ontology,
+     * given in the schema manifest.
+     */
+    public static final URI PODD_SCHEMA_INFERENCE_GENERATOR = PODD.VF
+            .createURI("http://purl.org/podd/ns/schema#inferenceGenerator");
+    
     public static final URI PODD_REPOSITORY_MANAGER = PODD.VF
             .createURI("http://purl.org/podd/ns/repository#RepositoryManager");
     
@@ -244,6 +244,11 @@ public interface PoddWebConstants
      */
     public static final String PATH_ATTACH_DATA_REF = "artifact/attachdataref";
     
+    /**
+     * Path to the data reference download service
+     */
+    public static final String PATH_DATA_REFERENCE_DOWNLOAD = "artifact/downloaddataref";
+    
     /**
      * Path to the Event attachment service
      */
@@ -281,6 +286,16 @@ public interface PoddWebConstants
      */
     public static final String PATH_GET_SCHEMA = "ns/{schemaPath}";
     
+    /**
+     * Path to get the timing statistics for queries.
+     */
+    public static final String PATH_ADMIN_QUERY_METRICS = "admin/metrics/queries";
+    
+    /**
+     * Path to get the status of the inferences for an artifact.
+     */
+    public static final String PATH_ARTIFACT_INFERENCE_STATUS = "artifact/inference";
+    
     /**
      * Key used to represent user identifier part of a URL
      */
@@ -372,6 +387,152 @@ public interface PoddWebConstants
     public static final String PROPERTY_MANAGEMENT_SESAME_LOCATION = "podd.repository.management.location";
     public static final String DEFAULT_MANAGEMENT_SESAME_LOCATION = "";
     
+    /**
+     * Set to true to stream uploaded artifacts directly into the staging repository instead of
+     * parsing them into memory first.
+     */
+    public static final String PROPERTY_UPLOAD_STREAMING = "podd.upload.streaming";
+    public static final String DEFAULT_UPLOAD_STREAMING = "false";
+    
+    /**
+     * The number of statements after which streaming uploads are staged on disk instead of in
+     * memory.
+     */
+    public static final String PROPERTY_UPLOAD_STAGING_SPILL_THRESHOLD = "podd.upload.staging.spillthreshold";
+    public static final String DEFAULT_UPLOAD_STAGING_SPILL_THRESHOLD = "1000000";
+    
+    /**
+     * Set to true to apply artifact edits that only change literal values as a delta against the
+     * current version, without recomputing inferences, where the schema ontologies allow it.
+     */
+    public static final String PROPERTY_UPDATE_INCREMENTAL = "podd.update.incremental";
+    public static final String DEFAULT_UPDATE_INCREMENTAL = "false";
+    
+    /**
+     * The number of milliseconds that verified credentials and roles are cached for, or 0 to
+     * disable the cache.
+     */
+    public static final String PROPERTY_AUTHENTICATION_CACHE_TTL = "podd.authentication.cache.ttl";
+    public static final String DEFAULT_AUTHENTICATION_CACHE_TTL = "300000";
+    
+    /**
+     * The maximum number of users that verified credentials and roles are cached for.
+     */
+    public static final String PROPERTY_AUTHENTICATION_CACHE_MAX_SIZE = "podd.authentication.cache.maxsize";
+    public static final String DEFAULT_AUTHENTICATION_CACHE_MAX_SIZE = "1000";
+    
+    /**
+     * The number of milliseconds after which a query is logged as a slow query, along with its
+     * contexts.
+     */
+    public static final String PROPERTY_QUERY_SLOW_THRESHOLD = "podd.query.slow.threshold";
+    public static final String DEFAULT_QUERY_SLOW_THRESHOLD = "50";
+    
+    /**
+     * The maximum number of idle OWLOntologyManager instances kept for each set of schema
+     * ontologies, to allow artifacts to be inferred concurrently. Defaults to the number of
+     * available processors.
+     */
+    public static final String PROPERTY_OWL_INFERENCE_MANAGER_POOL_SIZE = "podd.owl.inference.pool.size";
+    
+    /**
+     * A comma separated list of the InferredAxiomGeneratorType names used to compute inferences
+     * for artifacts that do not import a schema ontology with its own list in the schema manifest.
+     * Defaults to all of the generators.
+     */
+    public static final String PROPERTY_OWL_INFERENCE_GENERATORS = "podd.owl.inference.generators";
+    
+    /**
+     * Set to true to run the inferred axiom generators for an artifact in parallel, each using its
+     * own reasoner, on a dedicated pool of {@link #PROPERTY_OWL_INFERENCE_GENERATORS_THREADS}
+     * threads.
+     */
+    public static final String PROPERTY_OWL_INFERENCE_GENERATORS_PARALLEL = "podd.owl.inference.generators.parallel";
+    public static final String DEFAULT_OWL_INFERENCE_GENERATORS_PARALLEL = "false";
+    
+    /**
+     * The number of threads shared by all artifacts for running inferred axiom generators in
+     * parallel.
+     */
+    public static final String PROPERTY_OWL_INFERENCE_GENERATORS_THREADS = "podd.owl.inference.generators.threads";
+    public static final String DEFAULT_OWL_INFERENCE_GENERATORS_THREADS = "4";
+    
+    /**
+     * Set to true to compute the inferred axioms for loaded and updated artifacts on background
+     * threads, after the consistency check and the concrete statements have been committed.
+     */
+    public static final String PROPERTY_INFERENCE_ASYNCHRONOUS = "podd.inference.asynchronous";
+    public static final String DEFAULT_INFERENCE_ASYNCHRONOUS = "false";
+    
+    /**
+     * The number of threads used to compute background inferences.
+     */
+    public static final String PROPERTY_INFERENCE_THREADS = "podd.inference.threads";
+    public static final String DEFAULT_INFERENCE_THREADS = "2";
+    
+    /**
+     * The maximum number of background inferences waiting for a thread. Inferences that do not fit
+     * in the queue are computed before the load or update returns.
+     */
+    public static final String PROPERTY_INFERENCE_QUEUE_SIZE = "podd.inference.queue.size";
+    public static final String DEFAULT_INFERENCE_QUEUE_SIZE = "100";
+    
+    /**
+     * The maximum number of seconds that a SPARQL query submitted to the SPARQL service may take
+     * across all of the artifacts that it is evaluated against.
+     */
+    public static final String PROPERTY_SPARQL_QUERY_TIMEOUT = "podd.sparql.query.timeout";
+    public static final String DEFAULT_SPARQL_QUERY_TIMEOUT = "60";
+    
+    /**
+     * The maximum number of statements or solutions returned by the SPARQL service for a single
+     * query. Results past this limit are not sent.
+     */
+    public static final String PROPERTY_SPARQL_RESULT_LIMIT = "podd.sparql.result.limit";
+    public static final String DEFAULT_SPARQL_RESULT_LIMIT = "100000";
+    
+    /**
+     * Set to false to search for labels using SPARQL queries instead of the in-memory label
+     * indexes, which are built for each context the first time that it is searched.
+     */
+    public static final String PROPERTY_SEARCH_LABEL_INDEX = "podd.search.label.index";
+    public static final String DEFAULT_SEARCH_LABEL_INDEX = "true";
+    
+    /**
+     * The number of threads used to verify data references against their data repositories. Large
+     * numbers of data references for a single data repository alias are split across the threads,
+     * up to the maximum number of pooled SSH sessions for the repository.
+     */
+    public static final String PROPERTY_DATA_REFERENCE_VERIFY_THREADS = "podd.datareference.verify.threads";
+    public static final String DEFAULT_DATA_REFERENCE_VERIFY_THREADS = "4";
+    
+    /**
+     * The number of seconds that a successful data reference verification is remembered for. Set to
+     * 0 to verify every data reference each time.
+     */
+    public static final String PROPERTY_DATA_REFERENCE_VERIFY_CACHE_TTL = "podd.datareference.verify.cache.ttl";
+    public static final String DEFAULT_DATA_REFERENCE_VERIFY_CACHE_TTL = "300";
+    
+    /**
+     * The maximum number of concurrent downloads streamed from each data repository. Further
+     * requests are rejected as busy until a download completes.
+     */
+    public static final String PROPERTY_DATA_REFERENCE_DOWNLOAD_MAX_CONCURRENT =
+            "podd.datareference.download.max.concurrent";
+    public static final String DEFAULT_DATA_REFERENCE_DOWNLOAD_MAX_CONCURRENT = "2";
+    
+    /**
+     * The maximum number of pooled SSH sessions for each SSH data repository host, port and user.
+     */
+    public static final String PROPERTY_SSH_POOL_MAX_CONNECTIONS = "podd.ssh.pool.max.connections";
+    public static final String DEFAULT_SSH_POOL_MAX_CONNECTIONS = "4";
+    
+    /**
+     * The number of seconds after which idle pooled SSH sessions are closed.
+     */
+    public static final String PROPERTY_SSH_POOL_IDLE_TIMEOUT = "podd.ssh.pool.idle.timeout";
+    public static final String DEFAULT_SSH_POOL_IDLE_TIMEOUT = "60";
+    
     /**
      * Key used to select published artifacts. Defaults to true.
      */
@@ -409,6 +570,12 @@ public interface PoddWebConstants
      */
     public static final String KEY_SEARCH_TYPES = "searchtypes";
     
+    /**
+     * Key used in "search" service to also match objects whose types are subclasses of the search
+     * types. Defaults to false.
+     */
+    public static final String KEY_SEARCH_INCLUDE_SUBTYPES = "includesubtypes";
+    
     /**
      * Key used in "create object" service to indicate the type of object to be generated.
      */
@@ -0,0 +1,331 @@
+/**
+ * PODD is an OWL ontology database used for scientific project management
+ *
+ * Copyright (C) 2009-2013 The University Of Queensland
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.podd.utils;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.Model;
+import org.openrdf.model.URI;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.query.Query;
+import org.openrdf.query.parser.ParsedQuery;
+import org.openrdf.repository.sail.SailQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records timing and result size statistics for SPARQL queries executed through
+ * {@link RdfUtility}, grouped by a name that identifies the call site for each query.
+ *
+ * Queries that take longer than the slow query threshold are logged, along with the query text, its
+ * bindings and the contexts that were used as its dataset. The query text is only available for
+ * queries prepared on Sail repositories. For other repositories the log contains the type of the
+ * query instead.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public final class QueryMetrics
+{
+    /**
+     * Statistics for all of the executions of queries with a single name.
+     */
+    public static final class QueryStatistics
+    {
+        private final String queryName;
+        
+        private final AtomicLong executionCount = new AtomicLong();
+        
+        private final AtomicLong totalNanos = new AtomicLong();
+        
+        private final AtomicLong maxNanos = new AtomicLong();
+        
+        private final AtomicLong resultCount = new AtomicLong();
+        
+        private final AtomicLong slowQueryCount = new AtomicLong();
+        
+        private final AtomicLongArray latencyBuckets = new AtomicLongArray(
+                QueryMetrics.LATENCY_BUCKET_UPPER_BOUNDS_MILLIS.length + 1);
+        
+        private QueryStatistics(final String queryName)
+        {
+            this.queryName = queryName;
+        }
+        
+        private void record(final long elapsedNanos, final long results, final boolean slow)
+        {
+            this.executionCount.incrementAndGet();
+            this.totalNanos.addAndGet(elapsedNanos);
+            this.resultCount.addAndGet(results);
+            if(slow)
+            {
+                this.slowQueryCount.incrementAndGet();
+            }
+            
+            long currentMax = this.maxNanos.get();
+            while(elapsedNanos > currentMax && !this.maxNanos.compareAndSet(currentMax, elapsedNanos))
+            {
+                currentMax = this.maxNanos.get();
+            }
+            
+            final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+            int bucket = Arrays.binarySearch(QueryMetrics.LATENCY_BUCKET_UPPER_BOUNDS_MILLIS, elapsedMillis);
+            if(bucket < 0)
+            {
+                bucket = -bucket - 1;
+            }
+            this.latencyBuckets.incrementAndGet(bucket);
+        }
+        
+        public String getQueryName()
+        {
+            return this.queryName;
+        }
+        
+        public long getExecutionCount()
+        {
+            return this.executionCount.get();
+        }
+        
+        public long getTotalTimeMillis()
+        {
+            return TimeUnit.NANOSECONDS.toMillis(this.totalNanos.get());
+        }
+        
+        public long getMaxTimeMillis()
+        {
+            return TimeUnit.NANOSECONDS.toMillis(this.maxNanos.get());
+        }
+        
+        /**
+         * @return The total number of results, either statements or binding sets, returned by all
+         *         executions of the query.
+         */
+        public long getResultCount()
+        {
+            return this.resultCount.get();
+        }
+        
+        public long getSlowQueryCount()
+        {
+            return this.slowQueryCount.get();
+        }
+        
+        /**
+         * @return The number of executions in each latency bucket. The bucket at index i counts
+         *         executions up to {@link QueryMetrics#LATENCY_BUCKET_UPPER_BOUNDS_MILLIS}[i]
+         *         milliseconds, and the final bucket counts all slower executions.
+         */
+        public long[] getLatencyBuckets()
+        {
+            final long[] result = new long[this.latencyBuckets.length()];
+            for(int i = 0; i < result.length; i++)
+            {
+                result[i] = this.latencyBuckets.get(i);
+            }
+            return result;
+        }
+    }
+    
+    /**
+     * The name used for queries that were executed without a name.
+     */
+    public static final String UNNAMED_QUERY = "unnamed";
+    
+    /**
+     * The inclusive upper bounds, in milliseconds, for each of the latency histogram buckets other
+     * than the last bucket, which has no upper bound.
+     */
+    static final long[] LATENCY_BUCKET_UPPER_BOUNDS_MILLIS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000,
+            5000 };
+    
+    /**
+     * The default threshold in milliseconds above which queries are logged as slow queries.
+     */
+    public static final long DEFAULT_SLOW_QUERY_THRESHOLD_MILLIS = 50;
+    
+    private static final QueryMetrics INSTANCE = new QueryMetrics();
+    
+    /**
+     * @return The metrics for queries executed through {@link RdfUtility}.
+     */
+    public static QueryMetrics getInstance()
+    {
+        return QueryMetrics.INSTANCE;
+    }
+    
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+    
+    private final ConcurrentMap<String, QueryStatistics> statistics =
+            new ConcurrentHashMap<String, QueryStatistics>();
+    
+    private volatile long slowQueryThresholdNanos = TimeUnit.MILLISECONDS
+            .toNanos(QueryMetrics.DEFAULT_SLOW_QUERY_THRESHOLD_MILLIS);
+    
+    private QueryMetrics()
+    {
+    }
+    
+    /**
+     * Records a single execution of a query.
+     *
+     * @param queryName
+     *            The name identifying the call site of the query.
+     * @param query
+     *            The query that was executed, used to log slow queries.
+     * @param contexts
+     *            The contexts that were used as the default graphs for the query.
+     * @param elapsedNanos
+     *            The time taken to execute the query and collect its results.
+     * @param results
+     *            The number of results returned by the query.
+     */
+    public void record(final String queryName, final Query query, final URI[] contexts, final long elapsedNanos,
+            final long results)
+    {
+        final boolean slow = elapsedNanos > this.slowQueryThresholdNanos;
+        
+        this.getStatistics(queryName).record(elapsedNanos, results, slow);
+        
+        if(slow)
+        {
+            this.log.warn("Slow query {} took {} ms and returned {} results, contexts={} bindings={} query={}",
+                    queryName, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), results, Arrays.toString(contexts),
+                    query.getBindings(), QueryMetrics.getQueryText(query));
+        }
+        else if(this.log.isTraceEnabled())
+        {
+            this.log.trace("Query {} took {} ms and returned {} results", queryName,
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNanos), results);
+        }
+    }
+    
+    /**
+     * @return The source text of the given query, or a description of its type if the repository
+     *         that prepared it does not make its text available.
+     */
+    private static String getQueryText(final Query query)
+    {
+        if(query instanceof SailQuery)
+        {
+            final ParsedQuery parsedQuery = ((SailQuery)query).getParsedQuery();
+            if(parsedQuery.getSourceString() != null)
+            {
+                return parsedQuery.getSourceString();
+            }
+            return parsedQuery.getTupleExpr().toString();
+        }
+        return "(text not available for " + query.getClass().getName() + ")";
+    }
+    
+    /**
+     * @return A snapshot of the statistics for each query name, sorted by name.
+     */
+    public Map<String, QueryStatistics> getStatistics()
+    {
+        return new TreeMap<String, QueryStatistics>(this.statistics);
+    }
+    
+    public long getSlowQueryThresholdMillis()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(this.slowQueryThresholdNanos);
+    }
+    
+    /**
+     * Sets the threshold above which queries are logged as slow queries.
+     *
+     * @param slowQueryThresholdMillis
+     *            The threshold in milliseconds.
+     */
+    public void setSlowQueryThresholdMillis(final long slowQueryThresholdMillis)
+    {
+        this.slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryThresholdMillis);
+    }
+    
+    /**
+     * Discards all of the statistics that have been recorded.
+     */
+    public void reset()
+    {
+        this.statistics.clear();
+    }
+    
+    /**
+     * Adds the current statistics for each query name to the given model.
+     *
+     * @param model
+     *            The model to add the statistics to.
+     * @return The given model, to allow chaining.
+     */
+    public Model toModel(final Model model)
+    {
+        for(final Entry<String, QueryStatistics> nextEntry : this.getStatistics().entrySet())
+        {
+            final QueryStatistics nextStatistics = nextEntry.getValue();
+            final BNode node = PODD.VF.createBNode();
+            
+            model.add(node, RDF.TYPE, PODD.METRICS_TYPE_QUERY_METRICS);
+            model.add(node, PODD.METRICS_QUERY_NAME, PODD.VF.createLiteral(nextEntry.getKey()));
+            model.add(node, PODD.METRICS_EXECUTION_COUNT, PODD.VF.createLiteral(nextStatistics.getExecutionCount()));
+            model.add(node, PODD.METRICS_TOTAL_TIME, PODD.VF.createLiteral(nextStatistics.getTotalTimeMillis()));
+            model.add(node, PODD.METRICS_MAX_TIME, PODD.VF.createLiteral(nextStatistics.getMaxTimeMillis()));
+            model.add(node, PODD.METRICS_RESULT_COUNT, PODD.VF.createLiteral(nextStatistics.getResultCount()));
+            model.add(node, PODD.METRICS_SLOW_QUERY_COUNT, PODD.VF.createLiteral(nextStatistics.getSlowQueryCount()));
+            
+            final long[] buckets = nextStatistics.getLatencyBuckets();
+            for(int i = 0; i < buckets.length; i++)
+            {
+                if(buckets[i] == 0)
+                {
+                    continue;
+                }
+                final BNode bucketNode = PODD.VF.createBNode();
+                model.add(node, PODD.METRICS_HAS_LATENCY_BUCKET, bucketNode);
+                if(i < QueryMetrics.LATENCY_BUCKET_UPPER_BOUNDS_MILLIS.length)
+                {
+                    model.add(bucketNode, PODD.METRICS_BUCKET_UPPER_BOUND,
+                            PODD.VF.createLiteral(QueryMetrics.LATENCY_BUCKET_UPPER_BOUNDS_MILLIS[i]));
+                }
+                model.add(bucketNode, PODD.METRICS_BUCKET_COUNT, PODD.VF.createLiteral(buckets[i]));
+            }
+        }
+        return model;
+    }
+    
+    private QueryStatistics getStatistics(final String queryName)
+    {
+        QueryStatistics result = this.statistics.get(queryName);
+        if(result == null)
+        {
+            final QueryStatistics newStatistics = new QueryStatistics(queryName);
+            result = this.statistics.putIfAbsent(queryName, newStatistics);
+            if(result == null)
+            {
+                result = newStatistics;
+            }
+        }
+        return result;
+    }
+}
@@ -16,27 +16,22 @@
  */
 package com.github.podd.utils;
 
-import info.aduna.iteration.Iterations;
-
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Queue;
 import java.util.Set;
 
 import org.openrdf.OpenRDFException;
 import org.openrdf.model.Model;
-import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
-import org.openrdf.model.Value;
 import org.openrdf.model.impl.LinkedHashModel;
 import org.openrdf.model.impl.ValueFactoryImpl;
 import org.openrdf.model.vocabulary.OWL;
+import org.openrdf.query.BooleanQuery;
+import org.openrdf.query.Dataset;
 import org.openrdf.query.GraphQuery;
 import org.openrdf.query.QueryResults;
 import org.openrdf.query.TupleQuery;
@@ -44,6 +39,7 @@ import org.openrdf.query.impl.DatasetImpl;
 import org.openrdf.query.resultio.helpers.QueryResultCollector;
 import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.RepositoryResult;
 import org.openrdf.rio.RDFFormat;
 import org.openrdf.rio.Rio;
 import org.openrdf.rio.helpers.StatementCollector;
@@ -59,6 +55,19 @@ public class RdfUtility
     
     private final static Logger log = LoggerFactory.getLogger(RdfUtility.class);
     
+    /**
+     * The number of distinct URIs in a graph above which disconnected nodes are found using a
+     * parallel traversal.
+     */
+    public static final int PARALLEL_TRAVERSAL_THRESHOLD = 100000;
+    
+    private static final Set<URI> NODE_EXCLUSIONS = Collections.unmodifiableSet(new HashSet<URI>(Arrays.asList(
+            OWL.THING, OWL.ONTOLOGY, OWL.INDIVIDUAL,
+            ValueFactoryImpl.getInstance().createURI("http://www.w3.org/2002/07/owl#NamedIndividual"))));
+    
+    private static final Set<URI> PREDICATE_EXCLUSIONS = Collections.unmodifiableSet(new HashSet<URI>(Arrays.asList(
+            OWL.IMPORTS, OWL.VERSIONIRI)));
+    
     /**
      * Helper method to execute a given SPARQL Graph query.
      *
@@ -68,6 +77,23 @@ public class RdfUtility
      * @throws OpenRDFException
      */
     public static Model executeGraphQuery(final GraphQuery graphQuery, final URI... contexts) throws OpenRDFException
+    {
+        return RdfUtility.executeGraphQuery(QueryMetrics.UNNAMED_QUERY, graphQuery, contexts);
+    }
+    
+    /**
+     * Helper method to execute a given SPARQL Graph query, recording its execution time in
+     * {@link QueryMetrics} under the given name.
+     *
+     * @param queryName
+     *            A name identifying the call site of the query.
+     * @param graphQuery
+     * @param contexts
+     * @return
+     * @throws OpenRDFException
+     */
+    public static Model executeGraphQuery(final String queryName, final GraphQuery graphQuery, final URI... contexts)
+        throws OpenRDFException
     {
         final DatasetImpl dataset = new DatasetImpl();
         for(final URI uri : contexts)
@@ -76,18 +102,9 @@ public class RdfUtility
         }
         graphQuery.setDataset(dataset);
         final Model results = new LinkedHashModel();
-        final long before = System.currentTimeMillis();
+        final long before = System.nanoTime();
         graphQuery.evaluate(new StatementCollector(results));
-        final long total = System.currentTimeMillis() - before;
-        RdfUtility.log.debug("graph query took {}", Long.toString(total));
-        if(total > 50 && RdfUtility.log.isDebugEnabled())
-        {
-            new Throwable().printStackTrace();
-        }
-        else if(total > 30 && RdfUtility.log.isTraceEnabled())
-        {
-            new Throwable().printStackTrace();
-        }
+        QueryMetrics.getInstance().record(queryName, graphQuery, contexts, System.nanoTime() - before, results.size());
         
         return results;
     }
@@ -102,31 +119,88 @@ public class RdfUtility
      */
     public static QueryResultCollector executeTupleQuery(final TupleQuery tupleQuery, final URI... contexts)
         throws OpenRDFException
+    {
+        return RdfUtility.executeTupleQuery(QueryMetrics.UNNAMED_QUERY, tupleQuery, contexts);
+    }
+    
+    /**
+     * Helper method to execute a given SPARQL Tuple query, which may have had bindings attached,
+     * recording its execution time in {@link QueryMetrics} under the given name.
+     *
+     * @param queryName
+     *            A name identifying the call site of the query.
+     * @param tupleQuery
+     * @param contexts
+     * @return
+     * @throws OpenRDFException
+     */
+    public static QueryResultCollector executeTupleQuery(final String queryName, final TupleQuery tupleQuery,
+            final URI... contexts) throws OpenRDFException
     {
         final DatasetImpl dataset = new DatasetImpl();
         for(final URI uri : contexts)
         {
             dataset.addDefaultGraph(uri);
         }
+        return RdfUtility.executeTupleQuery(queryName, tupleQuery, dataset);
+    }
+    
+    /**
+     * Helper method to execute a given SPARQL Tuple query against the given dataset, which may
+     * include named graphs, recording its execution time in {@link QueryMetrics} under the given
+     * name.
+     *
+     * @param queryName
+     *            A name identifying the call site of the query.
+     * @param tupleQuery
+     * @param dataset
+     * @return
+     * @throws OpenRDFException
+     */
+    public static QueryResultCollector executeTupleQuery(final String queryName, final TupleQuery tupleQuery,
+            final Dataset dataset) throws OpenRDFException
+    {
         tupleQuery.setDataset(dataset);
         
         final QueryResultCollector results = new QueryResultCollector();
-        final long before = System.currentTimeMillis();
+        final long before = System.nanoTime();
         QueryResults.report(tupleQuery.evaluate(), results);
-        final long total = System.currentTimeMillis() - before;
-        RdfUtility.log.debug("tuple query took {}", Long.toString(total));
-        if(total > 50 && RdfUtility.log.isDebugEnabled())
-        {
-            new Throwable().printStackTrace();
-        }
-        else if(total > 30 && RdfUtility.log.isTraceEnabled())
-        {
-            new Throwable().printStackTrace();
-        }
+        QueryMetrics.getInstance().record(queryName, tupleQuery, RdfUtility.getDefaultGraphs(dataset),
+                System.nanoTime() - before, results.getBindingSets().size());
         
         return results;
     }
     
+    /**
+     * Helper method to execute a given SPARQL Boolean query against the given dataset, which may
+     * include named graphs, recording its execution time in {@link QueryMetrics} under the given
+     * name.
+     *
+     * @param queryName
+     *            A name identifying the call site of the query.
+     * @param booleanQuery
+     * @param dataset
+     * @return
+     * @throws OpenRDFException
+     */
+    public static boolean executeBooleanQuery(final String queryName, final BooleanQuery booleanQuery,
+            final Dataset dataset) throws OpenRDFException
+    {
+        booleanQuery.setDataset(dataset);
+        
+        final long before = System.nanoTime();
+        final boolean result = booleanQuery.evaluate();
+        QueryMetrics.getInstance().record(queryName, booleanQuery, RdfUtility.getDefaultGraphs(dataset),
+                System.nanoTime() - before, result ? 1 : 0);
+        
+        return result;
+    }
+    
+    private static URI[] getDefaultGraphs(final Dataset dataset)
+    {
+        return dataset.getDefaultGraphs().toArray(new URI[0]);
+    }
+    
     /**
      * Given a set of RDF Statements, and a Root node, this method finds any nodes that are not
      * connected to the Root node.
@@ -148,102 +222,78 @@ public class RdfUtility
     public static Set<URI> findDisconnectedNodes(final URI root, final RepositoryConnection connection,
             final URI... context) throws RepositoryException
     {
-        final List<URI> exclusions =
-                Arrays.asList(root, OWL.THING, OWL.ONTOLOGY, OWL.INDIVIDUAL,
-                        ValueFactoryImpl.getInstance().createURI("http://www.w3.org/2002/07/owl#NamedIndividual"));
-        
-        final List<URI> propertyExclusions = Arrays.asList(OWL.IMPORTS, OWL.VERSIONIRI);
-        
-        // - identify nodes that should be connected to the root
-        final Set<URI> nodesToCheck = new HashSet<URI>();
+        final UriAdjacencyIndex index = RdfUtility.buildAdjacencyIndex(root, connection, context);
         
-        final List<Statement> allStatements =
-                Iterations.asList(connection.getStatements(null, null, null, false, context));
-        for(final Statement s : allStatements)
+        final Set<URI> disconnectedNodes;
+        if(index.getNodeCount() >= RdfUtility.PARALLEL_TRAVERSAL_THRESHOLD)
         {
-            final URI predicateValue = s.getPredicate();
-            if(propertyExclusions.contains(predicateValue))
-            {
-                continue;
-            }
-            
-            final Value objectValue = s.getObject();
-            if(objectValue instanceof URI && !exclusions.contains(objectValue))
-            {
-                nodesToCheck.add((URI)objectValue);
-            }
-            
-            final Resource subjectValue = s.getSubject();
-            if(subjectValue instanceof URI && !exclusions.contains(subjectValue))
-            {
-                nodesToCheck.add((URI)subjectValue);
-            }
-            
+            disconnectedNodes = index.findUnreachableCandidatesParallel(root);
         }
-        
-        // RdfUtility.log.info("{} nodes to check for connectivity.", nodesToCheck.size());
-        // for(final URI u : objectsToCheck)
-        // {
-        // System.out.println("    " + u);
-        // }
-        
-        // - check for connectivity
-        final Queue<URI> queue = new LinkedList<URI>();
-        final Set<URI> visitedNodes = new HashSet<URI>(); // to handle cycles
-        queue.add(root);
-        visitedNodes.add(root);
-        
-        while(!queue.isEmpty())
+        else
         {
-            final URI currentNode = queue.remove();
-            
-            final List<URI> children = RdfUtility.getImmediateChildren(currentNode, connection, context);
-            for(final URI child : children)
-            {
-                // visit child node
-                if(nodesToCheck.contains(child))
-                {
-                    nodesToCheck.remove(child);
-                    if(nodesToCheck.isEmpty())
-                    {
-                        // all identified nodes are connected.
-                        return nodesToCheck;
-                    }
-                }
-                if(!visitedNodes.contains(child))
-                {
-                    queue.add(child);
-                    visitedNodes.add(child);
-                }
-            }
+            disconnectedNodes = index.findUnreachableCandidates(root);
         }
-        RdfUtility.log.debug("{} unconnected node(s). {}", nodesToCheck.size(), nodesToCheck);
-        return nodesToCheck;
+        
+        RdfUtility.log.debug("{} unconnected node(s). {}", disconnectedNodes.size(), disconnectedNodes);
+        return disconnectedNodes;
     }
     
     /**
-     * Internal helper method to retrieve the direct child objects of a given object.
+     * Variant of {@link #findDisconnectedNodes(URI, RepositoryConnection, URI...)} that always
+     * expands each level of the traversal in parallel, for very large graphs.
      *
-     * @param node
+     * @param root
+     *            The Root of the Graph, from which connectedness is calculated.
+     * @param connection
+     *            A RepositoryConnection
+     * @param context
+     *            The Graph containing statements.
+     * @return A <code>Set</code> containing any URIs that are not connected to the Root.
+     * @throws RepositoryException
+     */
+    public static Set<URI> findDisconnectedNodesParallel(final URI root, final RepositoryConnection connection,
+            final URI... context) throws RepositoryException
+    {
+        final Set<URI> disconnectedNodes =
+                RdfUtility.buildAdjacencyIndex(root, connection, context).findUnreachableCandidatesParallel(root);
+        
+        RdfUtility.log.debug("{} unconnected node(s). {}", disconnectedNodes.size(), disconnectedNodes);
+        return disconnectedNodes;
+    }
+    
+    /**
+     * Internal helper method to read all of the statements in the given contexts into an adjacency
+     * index in a single pass.
+     *
+     * @param root
      * @param connection
      * @param context
      * @return
      * @throws RepositoryException
      */
-    private static List<URI> getImmediateChildren(final URI node, final RepositoryConnection connection,
+    private static UriAdjacencyIndex buildAdjacencyIndex(final URI root, final RepositoryConnection connection,
             final URI... context) throws RepositoryException
     {
-        final List<URI> children = new ArrayList<URI>();
-        final List<Statement> childStatements =
-                Iterations.asList(connection.getStatements(node, null, null, false, context));
-        for(final Statement s : childStatements)
+        final Set<URI> exclusions = new HashSet<URI>(RdfUtility.NODE_EXCLUSIONS);
+        exclusions.add(root);
+        
+        final UriAdjacencyIndex.Builder builder =
+                new UriAdjacencyIndex.Builder(exclusions, RdfUtility.PREDICATE_EXCLUSIONS);
+        
+        final RepositoryResult<Statement> statements = connection.getStatements(null, null, null, false, context);
+        try
         {
-            if(s.getObject() instanceof URI)
+            while(statements.hasNext())
             {
-                children.add((URI)s.getObject());
+                builder.add(statements.next());
             }
         }
-        return children;
+        finally
+        {
+            statements.close();
+        }
+        
+        return builder.build();
     }
     
     /**
@@ -0,0 +1,272 @@
+/**
+ * PODD is an OWL ontology database used for scientific project management
+ *
+ * Copyright (C) 2009-2013 The University Of Queensland
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.podd.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+
+/**
+ * An immutable adjacency index over the URI nodes in a set of RDF statements, used to check
+ * connectivity without going back to the repository for each node.
+ *
+ * Each URI is assigned a dense int identifier, and the edges from subjects to URI objects are
+ * stored in compressed sparse row form, so that traversals only touch primitive arrays.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+final class UriAdjacencyIndex
+{
+    /**
+     * Builds the index in a single pass over the statements.
+     */
+    static final class Builder
+    {
+        private final Set<URI> nodeExclusions;
+        
+        private final Set<URI> predicateExclusions;
+        
+        private final Map<URI, Integer> ids = new HashMap<URI, Integer>();
+        
+        private final List<URI> nodes = new ArrayList<URI>();
+        
+        private final BitSet candidates = new BitSet();
+        
+        private int[] edgeSources = new int[1024];
+        
+        private int[] edgeTargets = new int[1024];
+        
+        private int edgeCount = 0;
+        
+        Builder(final Set<URI> nodeExclusions, final Set<URI> predicateExclusions)
+        {
+            this.nodeExclusions = nodeExclusions;
+            this.predicateExclusions = predicateExclusions;
+        }
+        
+        void add(final Statement statement)
+        {
+            final Resource subject = statement.getSubject();
+            final Value object = statement.getObject();
+            
+            final int subjectId = subject instanceof URI ? this.getId((URI)subject) : -1;
+            final int objectId = object instanceof URI ? this.getId((URI)object) : -1;
+            
+            // All links between URIs are followed during traversal, including excluded predicates
+            if(subjectId >= 0 && objectId >= 0)
+            {
+                this.addEdge(subjectId, objectId);
+            }
+            
+            if(!this.predicateExclusions.contains(statement.getPredicate()))
+            {
+                if(subjectId >= 0 && !this.nodeExclusions.contains(subject))
+                {
+                    this.candidates.set(subjectId);
+                }
+                if(objectId >= 0 && !this.nodeExclusions.contains(object))
+                {
+                    this.candidates.set(objectId);
+                }
+            }
+        }
+        
+        UriAdjacencyIndex build()
+        {
+            final int nodeCount = this.nodes.size();
+            
+            // Counting sort of the edges by source to give the compressed sparse row offsets
+            final int[] offsets = new int[nodeCount + 1];
+            for(int i = 0; i < this.edgeCount; i++)
+            {
+                offsets[this.edgeSources[i] + 1]++;
+            }
+            for(int i = 0; i < nodeCount; i++)
+            {
+                offsets[i + 1] += offsets[i];
+            }
+            
+            final int[] targets = new int[this.edgeCount];
+            final int[] next = Arrays.copyOf(offsets, nodeCount);
+            for(int i = 0; i < this.edgeCount; i++)
+            {
+                targets[next[this.edgeSources[i]]++] = this.edgeTargets[i];
+            }
+            
+            return new UriAdjacencyIndex(this.ids, this.nodes.toArray(new URI[nodeCount]), offsets, targets,
+                    this.candidates);
+        }
+        
+        private void addEdge(final int source, final int target)
+        {
+            if(this.edgeCount == this.edgeSources.length)
+            {
+                this.edgeSources = Arrays.copyOf(this.edgeSources, this.edgeCount * 2);
+                this.edgeTargets = Arrays.copyOf(this.edgeTargets, this.edgeCount * 2);
+            }
+            this.edgeSources[this.edgeCount] = source;
+            this.edgeTargets[this.edgeCount] = target;
+            this.edgeCount++;
+        }
+        
+        private int getId(final URI uri)
+        {
+            final Integer existing = this.ids.get(uri);
+            if(existing != null)
+            {
+                return existing;
+            }
+            final int id = this.nodes.size();
+            this.ids.put(uri, id);
+            this.nodes.add(uri);
+            return id;
+        }
+    }
+    
+    private final Map<URI, Integer> ids;
+    
+    private final URI[] nodes;
+    
+    private final int[] offsets;
+    
+    private final int[] targets;
+    
+    private final BitSet candidates;
+    
+    private UriAdjacencyIndex(final Map<URI, Integer> ids, final URI[] nodes, final int[] offsets,
+            final int[] targets, final BitSet candidates)
+    {
+        this.ids = ids;
+        this.nodes = nodes;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.candidates = candidates;
+    }
+    
+    /**
+     * @return The number of distinct URIs in the index.
+     */
+    int getNodeCount()
+    {
+        return this.nodes.length;
+    }
+    
+    /**
+     * Finds the candidate nodes that are not reachable from the given root using a breadth first
+     * search.
+     */
+    Set<URI> findUnreachableCandidates(final URI root)
+    {
+        final BitSet unreached = (BitSet)this.candidates.clone();
+        
+        final Integer rootId = this.ids.get(root);
+        if(rootId != null && !unreached.isEmpty())
+        {
+            final boolean[] visited = new boolean[this.nodes.length];
+            final int[] queue = new int[this.nodes.length];
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = rootId;
+            visited[rootId] = true;
+            
+            while(head < tail)
+            {
+                final int current = queue[head++];
+                for(int i = this.offsets[current]; i < this.offsets[current + 1]; i++)
+                {
+                    final int child = this.targets[i];
+                    if(!visited[child])
+                    {
+                        visited[child] = true;
+                        queue[tail++] = child;
+                        unreached.clear(child);
+                    }
+                }
+                if(unreached.isEmpty())
+                {
+                    // all identified nodes are connected
+                    break;
+                }
+            }
+        }
+        
+        return this.toUris(unreached);
+    }
+    
+    /**
+     * Finds the candidate nodes that are not reachable from the given root using a level
+     * synchronous breadth first search, where the children of each level are expanded in
+     * parallel.
+     */
+    Set<URI> findUnreachableCandidatesParallel(final URI root)
+    {
+        final Integer rootId = this.ids.get(root);
+        if(rootId == null)
+        {
+            return this.toUris(this.candidates);
+        }
+        
+        final AtomicIntegerArray visited = new AtomicIntegerArray(this.nodes.length);
+        visited.set(rootId, 1);
+        
+        int[] frontier = new int[] { rootId };
+        while(frontier.length > 0)
+        {
+            frontier =
+                    IntStream
+                            .of(frontier)
+                            .parallel()
+                            .flatMap(
+                                    node -> IntStream.range(this.offsets[node], this.offsets[node + 1]).map(
+                                            i -> this.targets[i]))
+                            .filter(child -> visited.compareAndSet(child, 0, 1)).toArray();
+        }
+        
+        final BitSet unreached = (BitSet)this.candidates.clone();
+        for(int id = unreached.nextSetBit(0); id >= 0; id = unreached.nextSetBit(id + 1))
+        {
+            if(visited.get(id) == 1)
+            {
+                unreached.clear(id);
+            }
+        }
+        
+        return this.toUris(unreached);
+    }
+    
+    private Set<URI> toUris(final BitSet idSet)
+    {
+        final Set<URI> result = new HashSet<URI>((int)(idSet.cardinality() / 0.75f) + 1);
+        for(int id = idSet.nextSetBit(0); id >= 0; id = idSet.nextSetBit(id + 1))
+        {
+            result.add(this.nodes[id]);
+        }
+        return result;
+    }
+}
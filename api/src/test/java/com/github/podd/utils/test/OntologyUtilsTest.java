@@ -345,6 +345,67 @@ public class OntologyUtilsTest
         Assert.assertTrue(imports.isEmpty());
     }
     
+    /**
+     * Test method for {@link com.github.podd.utils.OntologyUtils#recursiveFollowSchemaMap(ConcurrentMap)}
+     * .
+     */
+    @Test
+    public final void testRecursiveFollowSchemaMapChain() throws Exception
+    {
+        final URI a = this.vf.createURI("urn:test:a");
+        final URI b = this.vf.createURI("urn:test:b");
+        final URI c = this.vf.createURI("urn:test:c");
+        final URI d = this.vf.createURI("urn:test:d");
+        
+        final ConcurrentMap<URI, Set<URI>> nextImportsMap = new ConcurrentHashMap<>();
+        nextImportsMap.put(a, new LinkedHashSet<URI>());
+        nextImportsMap.put(b, new LinkedHashSet<URI>(Arrays.asList(a)));
+        nextImportsMap.put(c, new LinkedHashSet<URI>(Arrays.asList(b)));
+        nextImportsMap.put(d, new LinkedHashSet<URI>(Arrays.asList(c, a)));
+        
+        OntologyUtils.recursiveFollowSchemaMap(nextImportsMap);
+        
+        Assert.assertEquals(Collections.emptySet(), nextImportsMap.get(a));
+        Assert.assertEquals(new HashSet<URI>(Arrays.asList(a)), nextImportsMap.get(b));
+        Assert.assertEquals(new HashSet<URI>(Arrays.asList(a, b)), nextImportsMap.get(c));
+        Assert.assertEquals(new HashSet<URI>(Arrays.asList(a, b, c)), nextImportsMap.get(d));
+        
+        // The sets are copies, so modifying them must not affect later calls
+        nextImportsMap.get(d).clear();
+        nextImportsMap.put(d, new LinkedHashSet<URI>(Arrays.asList(c, a)));
+        nextImportsMap.put(c, new LinkedHashSet<URI>(Arrays.asList(b)));
+        nextImportsMap.put(b, new LinkedHashSet<URI>(Arrays.asList(a)));
+        OntologyUtils.recursiveFollowSchemaMap(nextImportsMap);
+        Assert.assertEquals(new HashSet<URI>(Arrays.asList(a, b, c)), nextImportsMap.get(d));
+    }
+    
+    /**
+     * Test method for {@link com.github.podd.utils.OntologyUtils#recursiveFollowSchemaMap(ConcurrentMap)}
+     * .
+     */
+    @Test
+    public final void testRecursiveFollowSchemaMapCycle() throws Exception
+    {
+        final URI a = this.vf.createURI("urn:test:a");
+        final URI b = this.vf.createURI("urn:test:b");
+        final URI c = this.vf.createURI("urn:test:c");
+        
+        final ConcurrentMap<URI, Set<URI>> nextImportsMap = new ConcurrentHashMap<>();
+        nextImportsMap.put(a, new LinkedHashSet<URI>(Arrays.asList(c)));
+        nextImportsMap.put(b, new LinkedHashSet<URI>(Arrays.asList(a)));
+        nextImportsMap.put(c, new LinkedHashSet<URI>(Arrays.asList(b)));
+        
+        try
+        {
+            OntologyUtils.recursiveFollowSchemaMap(nextImportsMap);
+            Assert.fail("Did not find expected exception");
+        }
+        catch(final SchemaManifestException e)
+        {
+            
+        }
+    }
+    
     @Test
     public final void testGetArtifactImportsNonExistent() throws Exception
     {
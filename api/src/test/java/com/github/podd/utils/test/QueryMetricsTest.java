@@ -0,0 +1,70 @@
+/**
+ * PODD is an OWL ontology database used for scientific project management
+ *
+ * Copyright (C) 2009-2013 The University Of Queensland
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.podd.utils.test;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.URI;
+
+import com.github.podd.utils.QueryMetrics;
+import com.github.podd.utils.QueryMetrics.QueryStatistics;
+
+/**
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class QueryMetricsTest
+{
+    @After
+    public void tearDown()
+    {
+        QueryMetrics.getInstance().reset();
+        QueryMetrics.getInstance().setSlowQueryThresholdMillis(QueryMetrics.DEFAULT_SLOW_QUERY_THRESHOLD_MILLIS);
+    }
+    
+    @Test
+    public void testRecord() throws Exception
+    {
+        final QueryMetrics metrics = QueryMetrics.getInstance();
+        metrics.setSlowQueryThresholdMillis(100);
+        
+        metrics.record("testQuery", null, new URI[0], TimeUnit.MILLISECONDS.toNanos(3), 10);
+        metrics.record("testQuery", null, new URI[0], TimeUnit.MILLISECONDS.toNanos(150), 5);
+        
+        final QueryStatistics statistics = metrics.getStatistics().get("testQuery");
+        Assert.assertNotNull(statistics);
+        Assert.assertEquals(2, statistics.getExecutionCount());
+        Assert.assertEquals(153, statistics.getTotalTimeMillis());
+        Assert.assertEquals(150, statistics.getMaxTimeMillis());
+        Assert.assertEquals(15, statistics.getResultCount());
+        Assert.assertEquals(1, statistics.getSlowQueryCount());
+        
+        final long[] buckets = statistics.getLatencyBuckets();
+        long total = 0;
+        for(final long nextBucket : buckets)
+        {
+            total += nextBucket;
+        }
+        Assert.assertEquals(2, total);
+        // 3 ms falls in the bucket up to 5 ms
+        Assert.assertEquals(1, buckets[2]);
+        // 150 ms falls in the bucket up to 200 ms
+        Assert.assertEquals(1, buckets[7]);
+    }
+}
@@ -20,6 +20,7 @@
 package com.github.podd.utils.test;
 
 import java.io.InputStream;
+import java.util.HashSet;
 import java.util.Set;
 
 import org.junit.Assert;
@@ -27,7 +28,9 @@ import org.junit.Test;
 import org.openrdf.model.Model;
 import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
 import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.model.vocabulary.RDFS;
 import org.openrdf.repository.Repository;
 import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryResult;
@@ -66,6 +69,62 @@ public class RdfUtilityTest
     
     @Test
     public void testFindDisconnectedNodes() throws Exception
+    {
+        this.assertDisconnectedNodes(false);
+    }
+    
+    @Test
+    public void testFindDisconnectedNodesParallel() throws Exception
+    {
+        this.assertDisconnectedNodes(true);
+    }
+    
+    /**
+     * Verifies that both traversals find exactly the objects in a disconnected cycle, and none of
+     * the objects in a tree connected to the root.
+     */
+    @Test
+    public void testFindDisconnectedNodesTree() throws Exception
+    {
+        final ValueFactory vf = ValueFactoryImpl.getInstance();
+        final URI context = vf.createURI("urn:concrete:random");
+        final URI root = vf.createURI("urn:podd:test:artifact");
+        final URI hasChild = vf.createURI("urn:podd:test:hasChild");
+        
+        final Repository tempRepository = new SailRepository(new MemoryStore());
+        tempRepository.initialize();
+        final RepositoryConnection connection = tempRepository.getConnection();
+        try
+        {
+            // a tree of connected objects with a fanout of 4, and a disconnected cycle of objects
+            final Set<URI> expected = new HashSet<URI>();
+            connection.begin();
+            connection.add(root, hasChild, vf.createURI("urn:podd:test:object:0"), context);
+            for(int i = 1; i < 50; i++)
+            {
+                final URI child = vf.createURI("urn:podd:test:object:" + i);
+                connection.add(vf.createURI("urn:podd:test:object:" + ((i - 1) / 4)), hasChild, child, context);
+                connection.add(child, RDFS.LABEL, vf.createLiteral("Object " + i), context);
+            }
+            for(int i = 0; i < 5; i++)
+            {
+                final URI orphan = vf.createURI("urn:podd:test:orphan:" + i);
+                expected.add(orphan);
+                connection.add(orphan, hasChild, vf.createURI("urn:podd:test:orphan:" + ((i + 1) % 5)), context);
+            }
+            connection.commit();
+            
+            Assert.assertEquals(expected, RdfUtility.findDisconnectedNodes(root, connection, context));
+            Assert.assertEquals(expected, RdfUtility.findDisconnectedNodesParallel(root, connection, context));
+        }
+        finally
+        {
+            connection.close();
+            tempRepository.shutDown();
+        }
+    }
+    
+    private void assertDisconnectedNodes(final boolean parallel) throws Exception
     {
         final URI context = ValueFactoryImpl.getInstance().createURI("urn:concrete:random");
         
@@ -100,7 +159,15 @@ public class RdfUtilityTest
                     Assert.fail("Could not find root object");
                 }
                 
-                final Set<URI> disconnectedObjects = RdfUtility.findDisconnectedNodes(root, connection, context);
+                final Set<URI> disconnectedObjects;
+                if(parallel)
+                {
+                    disconnectedObjects = RdfUtility.findDisconnectedNodesParallel(root, connection, context);
+                }
+                else
+                {
+                    disconnectedObjects = RdfUtility.findDisconnectedNodes(root, connection, context);
+                }
                 Assert.assertEquals("Not the expected validity", testData[3], disconnectedObjects.size());
                 
                 connection.clear();
@@ -0,0 +1,250 @@
+/**
+ * PODD is an OWL ontology database used for scientific project management
+ *
+ * Copyright (C) 2009-2013 The University Of Queensland
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.podd.benchmark;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openrdf.model.Model;
+import org.openrdf.model.Resource;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.model.util.GraphUtil;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.config.RepositoryConfigSchema;
+import org.openrdf.repository.config.RepositoryImplConfig;
+import org.openrdf.repository.config.RepositoryImplConfigBase;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.Rio;
+import org.openrdf.sail.memory.MemoryStore;
+
+import com.github.ansell.propertyutil.PropertyUtil;
+import com.github.podd.api.data.DataReference;
+import com.github.podd.api.data.PoddDataRepository;
+import com.github.podd.impl.PoddRepositoryManagerImpl;
+import com.github.podd.impl.data.PoddDataRepositoryManagerImpl;
+import com.github.podd.impl.data.SSHConnectionPool;
+import com.github.podd.impl.data.SSHFileReferenceImpl;
+import com.github.podd.impl.data.test.SSHService;
+import com.github.podd.utils.PODD;
+
+/**
+ * Benchmarks for {@link PoddDataRepositoryManagerImpl#verifyDataReferences(Set)} against SSH file
+ * repositories served by the embedded SSH server that is used by the data reference tests, so that
+ * the costs of opening SSH sessions and of each remote lstat are real, if local.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DataReferenceVerificationBenchmark
+{
+    private static final int VERIFY_THREADS = 4;
+    
+    @Param({ "100", "1000" })
+    public int referenceCount;
+    
+    @Param({ "1", "4" })
+    public int aliasCount;
+    
+    /**
+     * The maximum number of tasks that the references for each alias are split into.
+     */
+    @Param({ "1", "4" })
+    public int tasksPerAlias;
+    
+    private Path tempDirectory;
+    
+    private SSHService sshd;
+    
+    private Repository managementRepository;
+    
+    private PoddRepositoryManagerImpl repositoryManager;
+    
+    private Set<DataReference> references;
+    
+    private ExecutorService executor;
+    
+    private PoddDataRepositoryManagerImpl uncachedManager;
+    
+    private PoddDataRepositoryManagerImpl cachedManager;
+    
+    @Setup
+    public void prepare() throws Exception
+    {
+        this.tempDirectory = Files.createTempDirectory("podd-benchmark-verify-");
+        
+        this.sshd = new SSHService();
+        this.sshd.startTestSSHServer(Files.createDirectory(this.tempDirectory.resolve("ssh")));
+        SSHConnectionPool.getInstance().setMaxConnections(DataReferenceVerificationBenchmark.VERIFY_THREADS);
+        
+        final Path dataDirectory = Files.createDirectory(this.tempDirectory.resolve("data"));
+        final byte[] content = "benchmark".getBytes("UTF-8");
+        this.references = new LinkedHashSet<DataReference>();
+        for(int i = 0; i < this.referenceCount; i++)
+        {
+            final String filename = "file-" + i + ".bin";
+            Files.write(dataDirectory.resolve(filename), content);
+            
+            final SSHFileReferenceImpl reference = new SSHFileReferenceImpl();
+            reference.setRepositoryAlias("benchmark-alias-" + (i % this.aliasCount));
+            reference.setPath(dataDirectory.toString());
+            reference.setFilename(filename);
+            this.references.add(reference);
+        }
+        
+        this.managementRepository = new SailRepository(new MemoryStore());
+        this.managementRepository.initialize();
+        final Model graph =
+                Rio.parse(this.getClass().getResourceAsStream("/memorystoreconfig.ttl"), "", RDFFormat.TURTLE);
+        final Resource repositoryNode = GraphUtil.getUniqueSubject(graph, RepositoryConfigSchema.REPOSITORYTYPE, null);
+        final RepositoryImplConfig repositoryImplConfig = RepositoryImplConfigBase.create(graph, repositoryNode);
+        this.repositoryManager =
+                new PoddRepositoryManagerImpl(this.managementRepository, repositoryImplConfig, "",
+                        this.tempDirectory.resolve("repositories"), new PropertyUtil("podd"));
+        this.repositoryManager.init();
+        
+        final RepositoryConnection conn = this.repositoryManager.getManagementRepositoryConnection();
+        try
+        {
+            conn.begin();
+            for(int i = 0; i < this.aliasCount; i++)
+            {
+                conn.add(this.buildSshRepositoryModel("benchmark-alias-" + i),
+                        this.repositoryManager.getFileRepositoryManagementGraph());
+            }
+            conn.commit();
+        }
+        finally
+        {
+            conn.close();
+        }
+        
+        this.executor = Executors.newFixedThreadPool(DataReferenceVerificationBenchmark.VERIFY_THREADS);
+        
+        this.uncachedManager = this.newDataRepositoryManager();
+        this.uncachedManager.setVerificationCacheTtl(0);
+        
+        this.cachedManager = this.newDataRepositoryManager();
+        this.cachedManager.verifyDataReferences(this.references);
+    }
+    
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        try
+        {
+            this.executor.shutdownNow();
+            SSHConnectionPool.getInstance().reset();
+            this.sshd.stopTestSSHServer(this.tempDirectory);
+            this.repositoryManager.shutDown();
+        }
+        finally
+        {
+            PoddBenchmarkEnvironment.deleteRecursively(this.tempDirectory);
+        }
+    }
+    
+    /**
+     * Verifies each reference separately, as references were verified before they were grouped by
+     * repository.
+     */
+    @Benchmark
+    public int verifyEachReference() throws Exception
+    {
+        int valid = 0;
+        for(final DataReference nextReference : this.references)
+        {
+            @SuppressWarnings("unchecked")
+            final PoddDataRepository<DataReference> repository =
+                    (PoddDataRepository<DataReference>)this.uncachedManager.getRepository(nextReference
+                            .getRepositoryAlias());
+            if(repository.validate(nextReference))
+            {
+                valid++;
+            }
+        }
+        return valid;
+    }
+    
+    @Benchmark
+    public void verifyDataReferences() throws Exception
+    {
+        this.uncachedManager.verifyDataReferences(this.references);
+    }
+    
+    @Benchmark
+    public void verifyDataReferencesCached() throws Exception
+    {
+        this.cachedManager.verifyDataReferences(this.references);
+    }
+    
+    private PoddDataRepositoryManagerImpl newDataRepositoryManager()
+    {
+        final PoddDataRepositoryManagerImpl result = new PoddDataRepositoryManagerImpl();
+        result.setRepositoryManager(this.repositoryManager);
+        result.setVerificationExecutor(this.executor);
+        result.setMaxVerificationTasksPerAlias(this.tasksPerAlias);
+        return result;
+    }
+    
+    /**
+     * Builds the configuration for an SSH file repository that uses the embedded SSH server.
+     */
+    private Model buildSshRepositoryModel(final String alias)
+    {
+        final ValueFactory vf = ValueFactoryImpl.getInstance();
+        final URI aliasUri = vf.createURI("http://purl.org/podd/benchmark/alias/" + alias);
+        final Model model = new LinkedHashModel();
+        model.add(aliasUri, PODD.PODD_DATA_REPOSITORY_ALIAS, vf.createLiteral(alias));
+        model.add(aliasUri, RDF.TYPE, PODD.PODD_DATA_REPOSITORY);
+        model.add(aliasUri, RDF.TYPE, PODD.PODD_SSH_FILE_REPOSITORY);
+        model.add(aliasUri, PODD.PODD_DATA_REPOSITORY_PROTOCOL, vf.createLiteral(PoddDataRepository.PROTOCOL_SSH));
+        model.add(aliasUri, PODD.PODD_DATA_REPOSITORY_HOST, vf.createLiteral(SSHService.TEST_SSH_HOST));
+        model.add(aliasUri, PODD.PODD_DATA_REPOSITORY_PORT, vf.createLiteral(this.sshd.TEST_SSH_SERVICE_PORT));
+        model.add(aliasUri, PODD.PODD_FILE_REPOSITORY_FINGERPRINT, vf.createLiteral(SSHService.TEST_SSH_FINGERPRINT));
+        model.add(aliasUri, PODD.PODD_FILE_REPOSITORY_USERNAME, vf.createLiteral(SSHService.TEST_SSH_USERNAME));
+        model.add(aliasUri, PODD.PODD_FILE_REPOSITORY_SECRET, vf.createLiteral(SSHService.TEST_SSH_SECRET));
+        return model;
+    }
+}
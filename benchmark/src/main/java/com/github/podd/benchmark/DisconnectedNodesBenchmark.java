@@ -0,0 +1,195 @@
+/**
+ * PODD is an OWL ontology database used for scientific project management
+ *
+ * Copyright (C) 2009-2013 The University Of Queensland
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.podd.benchmark;
+
+import info.aduna.iteration.Iterations;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.vocabulary.OWL;
+import org.openrdf.model.vocabulary.RDFS;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.sail.memory.MemoryStore;
+
+import com.github.podd.utils.PODD;
+import com.github.podd.utils.RdfUtility;
+
+/**
+ * Benchmarks for finding disconnected objects in an artifact using {@link RdfUtility}, compared
+ * with a traversal that queries the repository for the children of each object, as was done before
+ * the adjacency index was introduced.
+ *
+ * The artifact is a tree of connected objects with a fanout of 4, and a disconnected cycle of 500
+ * objects.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DisconnectedNodesBenchmark
+{
+    private static final int DISCONNECTED_COUNT = 500;
+    
+    @Param({ "1000", "20000" })
+    public int connectedCount;
+    
+    private final URI context = PODD.VF.createURI("urn:concrete:random");
+    
+    private final URI root = PODD.VF.createURI("urn:podd:benchmark:artifact");
+    
+    private Repository repository;
+    
+    private RepositoryConnection connection;
+    
+    @Setup
+    public void prepare() throws Exception
+    {
+        final URI hasChild = PODD.VF.createURI("urn:podd:benchmark:hasChild");
+        
+        this.repository = new SailRepository(new MemoryStore());
+        this.repository.initialize();
+        this.connection = this.repository.getConnection();
+        this.connection.begin();
+        this.connection.add(this.root, hasChild, PODD.VF.createURI("urn:podd:benchmark:object:0"), this.context);
+        for(int i = 1; i < this.connectedCount; i++)
+        {
+            final URI child = PODD.VF.createURI("urn:podd:benchmark:object:" + i);
+            this.connection.add(PODD.VF.createURI("urn:podd:benchmark:object:" + ((i - 1) / 4)), hasChild, child,
+                    this.context);
+            this.connection.add(child, RDFS.LABEL, PODD.VF.createLiteral("Object " + i), this.context);
+        }
+        for(int i = 0; i < DisconnectedNodesBenchmark.DISCONNECTED_COUNT; i++)
+        {
+            this.connection.add(PODD.VF.createURI("urn:podd:benchmark:orphan:" + i), hasChild, PODD.VF
+                    .createURI("urn:podd:benchmark:orphan:"
+                            + ((i + 1) % DisconnectedNodesBenchmark.DISCONNECTED_COUNT)), this.context);
+        }
+        this.connection.commit();
+        
+        final Set<URI> expected = this.findDisconnectedNodesByQuery();
+        if(expected.size() != DisconnectedNodesBenchmark.DISCONNECTED_COUNT
+                || !expected.equals(this.findDisconnectedNodes())
+                || !expected.equals(this.findDisconnectedNodesParallel()))
+        {
+            throw new IllegalStateException("Traversals did not find the same disconnected nodes");
+        }
+    }
+    
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        try
+        {
+            this.connection.close();
+        }
+        finally
+        {
+            this.repository.shutDown();
+        }
+    }
+    
+    @Benchmark
+    public Set<URI> findDisconnectedNodes() throws Exception
+    {
+        return RdfUtility.findDisconnectedNodes(this.root, this.connection, this.context);
+    }
+    
+    @Benchmark
+    public Set<URI> findDisconnectedNodesParallel() throws Exception
+    {
+        return RdfUtility.findDisconnectedNodesParallel(this.root, this.connection, this.context);
+    }
+    
+    /**
+     * Finds the children of each node using a separate getStatements call.
+     */
+    @Benchmark
+    public Set<URI> findDisconnectedNodesByQuery() throws Exception
+    {
+        final List<URI> exclusions =
+                Arrays.asList(this.root, OWL.THING, OWL.ONTOLOGY, OWL.INDIVIDUAL,
+                        PODD.VF.createURI("http://www.w3.org/2002/07/owl#NamedIndividual"));
+        final List<URI> propertyExclusions = Arrays.asList(OWL.IMPORTS, OWL.VERSIONIRI);
+        
+        final Set<URI> nodesToCheck = new HashSet<URI>();
+        for(final Statement s : Iterations.asList(this.connection.getStatements(null, null, null, false,
+                this.context)))
+        {
+            if(propertyExclusions.contains(s.getPredicate()))
+            {
+                continue;
+            }
+            if(s.getObject() instanceof URI && !exclusions.contains(s.getObject()))
+            {
+                nodesToCheck.add((URI)s.getObject());
+            }
+            if(s.getSubject() instanceof URI && !exclusions.contains(s.getSubject()))
+            {
+                nodesToCheck.add((URI)s.getSubject());
+            }
+        }
+        
+        final Queue<URI> queue = new LinkedList<URI>();
+        final Set<URI> visitedNodes = new HashSet<URI>();
+        queue.add(this.root);
+        visitedNodes.add(this.root);
+        while(!queue.isEmpty())
+        {
+            final URI currentNode = queue.remove();
+            for(final Statement s : Iterations.asList(this.connection.getStatements(currentNode, null, null, false,
+                    this.context)))
+            {
+                if(s.getObject() instanceof URI)
+                {
+                    final URI child = (URI)s.getObject();
+                    nodesToCheck.remove(child);
+                    if(visitedNodes.add(child))
+                    {
+                        queue.add(child);
+                    }
+                }
+            }
+        }
+        return nodesToCheck;
+    }
+}
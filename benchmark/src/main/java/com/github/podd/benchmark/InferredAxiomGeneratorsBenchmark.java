@@ -0,0 +1,130 @@
+/**
+ * PODD is an OWL ontology database used for scientific project management
+ *
+ * Copyright (C) 2009-2013 The University Of Queensland
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.podd.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openrdf.rio.RDFFormat;
+
+import com.github.podd.utils.InferredOWLOntologyID;
+
+/**
+ * Compares loading artifacts with the inferred axiom generators run one after another on a single
+ * reasoner, against running them on a dedicated executor, where every generator other than the
+ * first classifies its own reasoner. A generatorThreads value of 0 runs the generators serially.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class InferredAxiomGeneratorsBenchmark
+{
+    /**
+     * Configures the generator executor for the trial.
+     */
+    @State(Scope.Benchmark)
+    public static class GeneratorState
+    {
+        @Param({ "0", "2", "4" })
+        public int generatorThreads;
+        
+        PoddBenchmarkEnvironment environment;
+        
+        private ExecutorService executor;
+        
+        @Setup
+        public void prepare(final PoddBenchmarkEnvironment environment) throws Exception
+        {
+            this.environment = environment;
+            if(this.generatorThreads > 0)
+            {
+                this.executor = Executors.newFixedThreadPool(this.generatorThreads);
+            }
+            environment.getOwlManager().setInferredAxiomGeneratorExecutor(this.executor);
+        }
+        
+        @TearDown
+        public void cleanUp() throws Exception
+        {
+            this.environment.getOwlManager().setInferredAxiomGeneratorExecutor(null);
+            if(this.executor != null)
+            {
+                this.executor.shutdownNow();
+            }
+        }
+    }
+    
+    /**
+     * Prepares a new serialised copy of the artifact before each load, and deletes the loaded
+     * artifact afterwards, so that the repository stays the same size throughout the trial.
+     */
+    @State(Scope.Thread)
+    public static class LoadState
+    {
+        PoddBenchmarkEnvironment environment;
+        
+        byte[] artifact;
+        
+        InferredOWLOntologyID loaded;
+        
+        @Setup(Level.Invocation)
+        public void prepare(final PoddBenchmarkEnvironment environment) throws Exception
+        {
+            this.environment = environment;
+            this.artifact = ScaledArtifacts.toBytes(environment.nextScaledArtifact(), RDFFormat.TURTLE);
+        }
+        
+        @TearDown(Level.Invocation)
+        public void cleanUp() throws Exception
+        {
+            if(this.loaded != null)
+            {
+                this.environment.getArtifactManager().deleteArtifact(this.loaded);
+                this.loaded = null;
+            }
+        }
+    }
+    
+    @Benchmark
+    public InferredOWLOntologyID loadArtifact(final GeneratorState generators, final LoadState state)
+        throws Exception
+    {
+        state.loaded =
+                generators.environment.getArtifactManager().loadArtifact(new ByteArrayInputStream(state.artifact),
+                        RDFFormat.TURTLE);
+        return state.loaded;
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * PODD is an OWL ontology database used for scientific project management
+ *
+ * Copyright (C) 2009-2013 The University Of Queensland
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.podd.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Model;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.vocabulary.OWL;
+import org.openrdf.model.vocabulary.RDFS;
+import org.openrdf.rio.RDFFormat;
+
+import com.github.podd.api.DanglingObjectPolicy;
+import com.github.podd.api.DataReferenceVerificationPolicy;
+import com.github.podd.api.UpdatePolicy;
+import com.github.podd.utils.InferredOWLOntologyID;
+import com.github.podd.utils.OntologyUtils;
+import com.github.podd.utils.PODD;
+
+/**
+ * Benchmarks for the main operations in {@link com.github.podd.impl.PoddArtifactManagerImpl}.
+ *
+ * Each benchmark runs against the artifact that {@link PoddBenchmarkEnvironment} loads for the
+ * trial, except for {@link #loadArtifact(LoadState)}, which loads and then deletes a new copy of
+ * the artifact for every invocation.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class PoddArtifactManagerBenchmark
+{
+    /**
+     * Prepares a new serialised copy of the artifact before each load, and deletes the loaded
+     * artifact afterwards, so that the repository stays the same size throughout the trial.
+     */
+    @State(Scope.Thread)
+    public static class LoadState
+    {
+        PoddBenchmarkEnvironment environment;
+        
+        byte[] artifact;
+        
+        InferredOWLOntologyID loaded;
+        
+        @Setup(Level.Invocation)
+        public void prepare(final PoddBenchmarkEnvironment environment) throws Exception
+        {
+            this.environment = environment;
+            this.artifact = ScaledArtifacts.toBytes(environment.nextScaledArtifact(), RDFFormat.TURTLE);
+        }
+        
+        @TearDown(Level.Invocation)
+        public void cleanUp() throws Exception
+        {
+            if(this.loaded != null)
+            {
+                this.environment.getArtifactManager().deleteArtifact(this.loaded);
+                this.loaded = null;
+            }
+        }
+    }
+    
+    /**
+     * Holds the statements that replace the top object in each update.
+     */
+    @State(Scope.Thread)
+    public static class UpdateState
+    {
+        Model topObject;
+        
+        int counter = 0;
+        
+        @Setup
+        public void prepare(final PoddBenchmarkEnvironment environment) throws Exception
+        {
+            this.topObject = environment.getLoadedTopObjectStatements();
+        }
+        
+        byte[] nextUpdate(final URI topObjectUri) throws Exception
+        {
+            final Model update = new LinkedHashModel(this.topObject);
+            update.remove(topObjectUri, RDFS.LABEL, null);
+            final Literal label = PODD.VF.createLiteral("Benchmark project " + this.counter++);
+            update.add(topObjectUri, RDFS.LABEL, label);
+            return ScaledArtifacts.toBytes(update, RDFFormat.TURTLE);
+        }
+    }
+    
+    private static final URI[] SEARCH_TYPES = { PODD.VF.createURI(PODD.PODD_SCIENCE, "Platform"),
+            PODD.VF.createURI(OWL.NAMESPACE, "NamedIndividual") };
+    
+    @Benchmark
+    public InferredOWLOntologyID loadArtifact(final LoadState state) throws Exception
+    {
+        state.loaded =
+                state.environment.getArtifactManager().loadArtifact(new ByteArrayInputStream(state.artifact),
+                        RDFFormat.TURTLE);
+        return state.loaded;
+    }
+    
+    @Benchmark
+    public Model updateArtifact(final PoddBenchmarkEnvironment environment, final UpdateState state)
+        throws Exception
+    {
+        final InferredOWLOntologyID artifact = environment.getLoadedArtifact();
+        final URI topObject = environment.getLoadedTopObject();
+        
+        final Model result =
+                environment.getArtifactManager().updateArtifact(artifact.getOntologyIRI().toOpenRDFURI(),
+                        artifact.getVersionIRI().toOpenRDFURI(), Collections.singleton(topObject),
+                        new ByteArrayInputStream(state.nextUpdate(topObject)), RDFFormat.TURTLE,
+                        UpdatePolicy.REPLACE_EXISTING, DanglingObjectPolicy.REPORT,
+                        DataReferenceVerificationPolicy.DO_NOT_VERIFY);
+        
+        // Later updates must be based on the newest version of the artifact
+        environment.setLoadedArtifact(OntologyUtils.modelToOntologyIDs(result).get(0));
+        return result;
+    }
+    
+    @Benchmark
+    public Model exportArtifact(final PoddBenchmarkEnvironment environment) throws Exception
+    {
+        return environment.getArtifactManager().exportArtifact(environment.getLoadedArtifact(), true);
+    }
+    
+    @Benchmark
+    public Model getObjectDetailsForDisplay(final PoddBenchmarkEnvironment environment) throws Exception
+    {
+        return environment.getArtifactManager().getObjectDetailsForDisplay(environment.getLoadedArtifact(),
+                environment.getLoadedTopObject());
+    }
+    
+    @Benchmark
+    public Model searchForOntologyLabels(final PoddBenchmarkEnvironment environment) throws Exception
+    {
+        return environment.getArtifactManager().searchForOntologyLabels(environment.getLoadedArtifact(), "lat",
+                PoddArtifactManagerBenchmark.SEARCH_TYPES);
+    }
+}
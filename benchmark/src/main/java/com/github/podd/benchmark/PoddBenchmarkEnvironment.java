@@ -0,0 +1,286 @@
+/**
+ * PODD is an OWL ontology database used for scientific project management
+ *
+ * Copyright (C) 2009-2013 The University Of Queensland
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.podd.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openrdf.model.Model;
+import org.openrdf.model.Resource;
+import org.openrdf.model.URI;
+import org.openrdf.model.util.GraphUtil;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.config.RepositoryConfigSchema;
+import org.openrdf.repository.config.RepositoryImplConfig;
+import org.openrdf.repository.config.RepositoryImplConfigBase;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.Rio;
+import org.openrdf.sail.memory.MemoryStore;
+import org.openrdf.sail.nativerdf.NativeStore;
+import org.semanticweb.owlapi.model.OWLOntologyManagerFactory;
+import org.semanticweb.owlapi.model.OWLOntologyManagerFactoryRegistry;
+import org.semanticweb.owlapi.reasoner.OWLReasonerFactoryRegistry;
+
+import com.github.ansell.propertyutil.PropertyUtil;
+import com.github.podd.api.data.DataReferenceProcessorRegistry;
+import com.github.podd.api.purl.PoddPurlProcessorFactoryRegistry;
+import com.github.podd.api.test.TestConstants;
+import com.github.podd.impl.PoddArtifactManagerImpl;
+import com.github.podd.impl.PoddOWLManagerImpl;
+import com.github.podd.impl.PoddRepositoryManagerImpl;
+import com.github.podd.impl.PoddSchemaManagerImpl;
+import com.github.podd.impl.PoddSesameManagerImpl;
+import com.github.podd.impl.data.DataReferenceManagerImpl;
+import com.github.podd.impl.purl.PoddPurlManagerImpl;
+import com.github.podd.impl.purl.UUIDPurlProcessorFactoryImpl;
+import com.github.podd.utils.InferredOWLOntologyID;
+import com.github.podd.utils.PODD;
+import com.github.podd.utils.PoddWebConstants;
+
+/**
+ * Shared state for the artifact manager benchmarks. A complete set of managers is created for each
+ * trial, using either MemoryStore or NativeStore repositories, and a scaled copy of a bundled test
+ * artifact is loaded before any measurements are made.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+@State(Scope.Benchmark)
+public class PoddBenchmarkEnvironment
+{
+    public static final String BACKEND_MEMORY = "memory";
+    
+    public static final String BACKEND_NATIVE = "native";
+    
+    private static final String SCHEMA_MANIFEST = "/podd-schema-manifest-version1only.ttl";
+    
+    /**
+     * The type of Sesame store to use for the management and permanent repositories.
+     */
+    @Param({ PoddBenchmarkEnvironment.BACKEND_MEMORY, PoddBenchmarkEnvironment.BACKEND_NATIVE })
+    public String backend;
+    
+    /**
+     * The number of times that each object in the test artifact is repeated.
+     */
+    @Param({ "1", "10", "50" })
+    public int scale;
+    
+    private Path tempDirectory;
+    
+    private Repository managementRepository;
+    
+    private PoddRepositoryManagerImpl repositoryManager;
+    
+    private PoddArtifactManagerImpl artifactManager;
+    
+    private PoddOWLManagerImpl owlManager;
+    
+    private Model baseArtifact;
+    
+    private InferredOWLOntologyID loadedArtifact;
+    
+    private URI loadedTopObject;
+    
+    private int copyCounter = 0;
+    
+    @Setup
+    public void setUp() throws Exception
+    {
+        this.tempDirectory = Files.createTempDirectory("podd-benchmark-");
+        
+        final String repositoryConfig;
+        if(PoddBenchmarkEnvironment.BACKEND_NATIVE.equals(this.backend))
+        {
+            this.managementRepository =
+                    new SailRepository(new NativeStore(this.tempDirectory.resolve("management").toFile()));
+            repositoryConfig = "/nativestoreconfig.ttl";
+        }
+        else if(PoddBenchmarkEnvironment.BACKEND_MEMORY.equals(this.backend))
+        {
+            this.managementRepository = new SailRepository(new MemoryStore());
+            repositoryConfig = "/memorystoreconfig.ttl";
+        }
+        else
+        {
+            throw new IllegalArgumentException("Unknown benchmark backend: " + this.backend);
+        }
+        this.managementRepository.initialize();
+        
+        final Model graph = Rio.parse(this.getClass().getResourceAsStream(repositoryConfig), "", RDFFormat.TURTLE);
+        final Resource repositoryNode = GraphUtil.getUniqueSubject(graph, RepositoryConfigSchema.REPOSITORYTYPE, null);
+        final RepositoryImplConfig repositoryImplConfig = RepositoryImplConfigBase.create(graph, repositoryNode);
+        
+        this.repositoryManager =
+                new PoddRepositoryManagerImpl(this.managementRepository, repositoryImplConfig, "",
+                        this.tempDirectory.resolve("repositories"), new PropertyUtil("podd"));
+        this.repositoryManager.init();
+        
+        final PoddPurlProcessorFactoryRegistry purlRegistry = new PoddPurlProcessorFactoryRegistry();
+        purlRegistry.clear();
+        purlRegistry.add(new UUIDPurlProcessorFactoryImpl());
+        
+        final PoddPurlManagerImpl purlManager = new PoddPurlManagerImpl();
+        purlManager.setPurlProcessorRegistry(purlRegistry);
+        
+        final DataReferenceProcessorRegistry dataReferenceRegistry = new DataReferenceProcessorRegistry();
+        dataReferenceRegistry.clear();
+        
+        final DataReferenceManagerImpl dataReferenceManager = new DataReferenceManagerImpl();
+        dataReferenceManager.setDataProcessorRegistry(dataReferenceRegistry);
+        
+        final Collection<OWLOntologyManagerFactory> ontologyManagers =
+                OWLOntologyManagerFactoryRegistry.getInstance().get(PoddWebConstants.DEFAULT_OWLAPI_MANAGER);
+        this.owlManager =
+                new PoddOWLManagerImpl(ontologyManagers.iterator().next(), OWLReasonerFactoryRegistry.getInstance()
+                        .getReasonerFactory("Pellet"));
+        
+        final PoddSesameManagerImpl sesameManager = new PoddSesameManagerImpl();
+        
+        final PoddSchemaManagerImpl schemaManager = new PoddSchemaManagerImpl();
+        schemaManager.setOwlManager(this.owlManager);
+        schemaManager.setRepositoryManager(this.repositoryManager);
+        schemaManager.setSesameManager(sesameManager);
+        
+        this.artifactManager = new PoddArtifactManagerImpl();
+        this.artifactManager.setRepositoryManager(this.repositoryManager);
+        this.artifactManager.setDataReferenceManager(dataReferenceManager);
+        this.artifactManager.setPurlManager(purlManager);
+        this.artifactManager.setOwlManager(this.owlManager);
+        this.artifactManager.setSchemaManager(schemaManager);
+        this.artifactManager.setSesameManager(sesameManager);
+        
+        schemaManager.uploadSchemaOntologies(Rio.parse(
+                this.getClass().getResourceAsStream(PoddBenchmarkEnvironment.SCHEMA_MANIFEST), "", RDFFormat.TURTLE));
+        
+        this.baseArtifact = ScaledArtifacts.parse(TestConstants.TEST_ARTIFACT_20130206, RDFFormat.TURTLE);
+        
+        final Model scaledArtifact = this.nextScaledArtifact();
+        this.loadedArtifact = this.loadArtifact(scaledArtifact);
+        this.loadedTopObject = scaledArtifact.filter(null, PODD.PODD_BASE_HAS_TOP_OBJECT, null).objectURI();
+    }
+    
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        try
+        {
+            if(this.repositoryManager != null)
+            {
+                this.repositoryManager.shutDown();
+            }
+        }
+        finally
+        {
+            PoddBenchmarkEnvironment.deleteRecursively(this.tempDirectory);
+        }
+    }
+    
+    public PoddArtifactManagerImpl getArtifactManager()
+    {
+        return this.artifactManager;
+    }
+    
+    public PoddOWLManagerImpl getOwlManager()
+    {
+        return this.owlManager;
+    }
+    
+    /**
+     * @return The scaled artifact that was loaded when the trial was set up.
+     */
+    public InferredOWLOntologyID getLoadedArtifact()
+    {
+        return this.loadedArtifact;
+    }
+    
+    public void setLoadedArtifact(final InferredOWLOntologyID loadedArtifact)
+    {
+        this.loadedArtifact = loadedArtifact;
+    }
+    
+    /**
+     * @return The top object of the artifact that was loaded when the trial was set up.
+     */
+    public URI getLoadedTopObject()
+    {
+        return this.loadedTopObject;
+    }
+    
+    /**
+     * @return The statements for the top object of the artifact that was loaded when the trial was
+     *         set up, as they were before any updates.
+     */
+    public Model getLoadedTopObjectStatements() throws Exception
+    {
+        return this.artifactManager.exportArtifact(this.loadedArtifact, false).filter(this.loadedTopObject, null,
+                null);
+    }
+    
+    /**
+     * Creates a new copy of the test artifact at the current scale, with identifiers that do not
+     * clash with any previous copies.
+     */
+    public synchronized Model nextScaledArtifact()
+    {
+        return ScaledArtifacts.scale(this.baseArtifact, "copy" + this.copyCounter++, this.scale);
+    }
+    
+    public InferredOWLOntologyID loadArtifact(final Model artifact) throws Exception
+    {
+        try (final InputStream input = new ByteArrayInputStream(ScaledArtifacts.toBytes(artifact, RDFFormat.TURTLE));)
+        {
+            return this.artifactManager.loadArtifact(input, RDFFormat.TURTLE);
+        }
+    }
+    
+    static void deleteRecursively(final Path path) throws IOException
+    {
+        if(path == null || !Files.exists(path))
+        {
+            return;
+        }
+        Files.walkFileTree(path, new SimpleFileVisitor<Path>()
+            {
+                @Override
+                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException
+                {
+                    Files.delete(file);
+                    return FileVisitResult.CONTINUE;
+                }
+                
+                @Override
+                public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException
+                {
+                    Files.delete(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * PODD is an OWL ontology database used for scientific project management
+ *
+ * Copyright (C) 2009-2013 The University Of Queensland
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.podd.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks using the standard JMH command line options, but writes the results in JSON
+ * format to {@link #DEFAULT_RESULT_FILE} unless a result file or format is given, so that the
+ * results of each run can be compared by other tools.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class PoddBenchmarkRunner
+{
+    public static final String DEFAULT_RESULT_FILE = "target/jmh-result.json";
+    
+    public static void main(final String... args) throws Exception
+    {
+        final CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        
+        if(commandLineOptions.shouldHelp())
+        {
+            commandLineOptions.showHelp();
+            return;
+        }
+        if(commandLineOptions.shouldList())
+        {
+            new Runner(commandLineOptions).list();
+            return;
+        }
+        
+        final ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLineOptions);
+        if(!commandLineOptions.getResultFormat().hasValue())
+        {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if(!commandLineOptions.getResult().hasValue())
+        {
+            options.result(PoddBenchmarkRunner.DEFAULT_RESULT_FILE);
+        }
+        
+        new Runner(options.build()).run();
+    }
+}
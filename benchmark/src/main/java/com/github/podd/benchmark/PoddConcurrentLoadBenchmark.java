@@ -0,0 +1,60 @@
+/**
+ * PODD is an OWL ontology database used for scientific project management
+ *
+ * Copyright (C) 2009-2013 The University Of Queensland
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.podd.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openrdf.rio.RDFFormat;
+
+import com.github.podd.benchmark.PoddArtifactManagerBenchmark.LoadState;
+import com.github.podd.utils.InferredOWLOntologyID;
+
+/**
+ * Measures the throughput of concurrent artifact loads that share the same schema ontologies.
+ *
+ * The benchmark runs with one thread per available processor by default. Run it with
+ * <code>-t 1</code>, <code>-t 2</code> and so on to see how the throughput scales with the number
+ * of concurrent uploads.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 2, timeUnit = TimeUnit.SECONDS)
+@Threads(Threads.MAX)
+@Fork(1)
+public class PoddConcurrentLoadBenchmark
+{
+    @Benchmark
+    public InferredOWLOntologyID loadArtifactConcurrently(final LoadState state) throws Exception
+    {
+        state.loaded =
+                state.environment.getArtifactManager().loadArtifact(new ByteArrayInputStream(state.artifact),
+                        RDFFormat.TURTLE);
+        return state.loaded;
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ * PODD is an OWL ontology database used for scientific project management
+ *
+ * Copyright (C) 2009-2013 The University Of Queensland
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.podd.benchmark;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.model.vocabulary.RDFS;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryResult;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.sail.memory.MemoryStore;
+
+import com.github.podd.api.purl.PoddPurlReference;
+import com.github.podd.impl.purl.PoddPurlManagerImpl;
+import com.github.podd.impl.purl.SimplePoddPurlReference;
+import com.github.podd.utils.PODD;
+
+/**
+ * Benchmarks for rewriting temporary URIs to PURLs in {@link PoddPurlManagerImpl}, using a
+ * synthetic upload where each new object has a type, a label, a link from its parent object and a
+ * link to a sibling object. The per URI benchmark scans the context for the subject and object of
+ * each temporary URI in turn for comparison.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PurlConversionBenchmark
+{
+    @Param({ "1000", "10000" })
+    public int temporaryUriCount;
+    
+    private final URI context = PODD.VF.createURI("urn:podd:benchmark:purl:context");
+    
+    private final PoddPurlManagerImpl purlManager = new PoddPurlManagerImpl();
+    
+    private List<Statement> statements;
+    
+    private Set<PoddPurlReference> purlReferences;
+    
+    private Repository repository;
+    
+    private RepositoryConnection connection;
+    
+    @Setup
+    public void prepare() throws Exception
+    {
+        final URI parent = PODD.VF.createURI("http://purl.example.org/podd/benchmark/parent");
+        final URI hasChild = PODD.VF.createURI("http://example.org/podd/benchmark#hasChild");
+        final URI hasSibling = PODD.VF.createURI("http://example.org/podd/benchmark#hasSibling");
+        final URI childType = PODD.VF.createURI("http://example.org/podd/benchmark#Child");
+        
+        this.statements = new ArrayList<Statement>();
+        this.purlReferences = new LinkedHashSet<PoddPurlReference>();
+        for(int i = 0; i < this.temporaryUriCount; i++)
+        {
+            final URI child = this.temporaryUri(i);
+            this.statements.add(PODD.VF.createStatement(parent, hasChild, child));
+            this.statements.add(PODD.VF.createStatement(child, RDF.TYPE, childType));
+            this.statements.add(PODD.VF.createStatement(child, RDFS.LABEL, PODD.VF.createLiteral("Child " + i)));
+            if(i > 0)
+            {
+                this.statements.add(PODD.VF.createStatement(child, hasSibling, this.temporaryUri(i - 1)));
+            }
+            this.purlReferences.add(new SimplePoddPurlReference(child, PODD.VF
+                    .createURI("http://purl.example.org/podd/benchmark/child/" + i)));
+        }
+        
+        this.repository = new SailRepository(new MemoryStore());
+        this.repository.initialize();
+    }
+    
+    private URI temporaryUri(final int index)
+    {
+        return PODD.VF.createURI("urn:temp:uuid:benchmark-" + index);
+    }
+    
+    @Setup(Level.Invocation)
+    public void loadStatements() throws Exception
+    {
+        this.connection = this.repository.getConnection();
+        this.connection.begin();
+        this.connection.add(this.statements, this.context);
+    }
+    
+    @TearDown(Level.Invocation)
+    public void discardStatements() throws Exception
+    {
+        this.connection.rollback();
+        this.connection.close();
+    }
+    
+    @TearDown
+    public void shutDown() throws Exception
+    {
+        this.repository.shutDown();
+    }
+    
+    @Benchmark
+    public long convertSinglePass() throws Exception
+    {
+        this.purlManager.convertTemporaryUris(this.purlReferences, this.connection, this.context);
+        return this.connection.size(this.context);
+    }
+    
+    @Benchmark
+    public long convertPerUriScans() throws Exception
+    {
+        for(final PoddPurlReference purl : this.purlReferences)
+        {
+            final URI inputUri = purl.getTemporaryURI();
+            final URI outputUri = purl.getPurlURI();
+            
+            final RepositoryResult<Statement> stmtsWithTempSubject =
+                    this.connection.getStatements(inputUri, null, null, false, this.context);
+            try
+            {
+                while(stmtsWithTempSubject.hasNext())
+                {
+                    final Statement next = stmtsWithTempSubject.next();
+                    this.connection.add(outputUri, next.getPredicate(), next.getObject(), this.context);
+                    this.connection.remove(next, this.context);
+                }
+            }
+            finally
+            {
+                stmtsWithTempSubject.close();
+            }
+            
+            final RepositoryResult<Statement> stmtsWithTempObject =
+                    this.connection.getStatements(null, null, inputUri, false, this.context);
+            try
+            {
+                while(stmtsWithTempObject.hasNext())
+                {
+                    final Statement next = stmtsWithTempObject.next();
+                    this.connection.add(next.getSubject(), next.getPredicate(), outputUri, this.context);
+                    this.connection.remove(next, this.context);
+                }
+            }
+            finally
+            {
+                stmtsWithTempObject.close();
+            }
+        }
+        return this.connection.size(this.context);
+    }
+}
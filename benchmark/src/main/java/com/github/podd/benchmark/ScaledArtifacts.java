@@ -0,0 +1,159 @@
+/**
+ * PODD is an OWL ontology database used for scientific project management
+ *
+ * Copyright (C) 2009-2013 The University Of Queensland
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.podd.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.openrdf.OpenRDFException;
+import org.openrdf.model.Model;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.vocabulary.OWL;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.Rio;
+
+import com.github.podd.utils.PODD;
+
+/**
+ * Creates larger copies of the bundled test artifacts, so that benchmarks can be run at several
+ * sizes.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public final class ScaledArtifacts
+{
+    /**
+     * Parses a bundled test artifact from the classpath.
+     *
+     * @param resourcePath
+     *            The classpath location of the artifact.
+     * @param format
+     *            The format of the artifact.
+     * @return The statements in the artifact.
+     */
+    public static Model parse(final String resourcePath, final RDFFormat format) throws OpenRDFException,
+        IOException
+    {
+        try (final InputStream input = ScaledArtifacts.class.getResourceAsStream(resourcePath);)
+        {
+            if(input == null)
+            {
+                throw new IOException("Could not find test artifact: " + resourcePath);
+            }
+            return Rio.parse(input, "", format);
+        }
+    }
+    
+    /**
+     * Creates a copy of the given artifact where every object other than the top object is
+     * repeated <code>scale</code> times. Each repetition is linked to the top object in the same
+     * way as the original object.
+     *
+     * The artifact, its version, and its objects are renamed using the given copy identifier so
+     * that several copies can be loaded into the same repository.
+     *
+     * @param artifact
+     *            The statements for a single artifact, including the ontology declaration and the
+     *            top object.
+     * @param copyId
+     *            An identifier that is unique for each copy of the artifact that will be loaded.
+     * @param scale
+     *            The number of times to repeat each object that is not the top object.
+     * @return The statements for the scaled copy of the artifact.
+     */
+    public static Model scale(final Model artifact, final String copyId, final int scale)
+    {
+        final URI ontology = artifact.filter(null, RDF.TYPE, OWL.ONTOLOGY).subjectURI();
+        final URI topObject = artifact.filter(ontology, PODD.PODD_BASE_HAS_TOP_OBJECT, null).objectURI();
+        
+        final Set<Value> renamed = new HashSet<Value>();
+        renamed.add(ontology);
+        renamed.add(topObject);
+        renamed.addAll(artifact.filter(ontology, OWL.VERSIONIRI, null).objects());
+        
+        final Set<Resource> repeated = new HashSet<Resource>();
+        for(final Resource nextSubject : artifact.subjects())
+        {
+            if(nextSubject instanceof URI && !renamed.contains(nextSubject))
+            {
+                repeated.add(nextSubject);
+            }
+        }
+        
+        final Model result = new LinkedHashModel(artifact.getNamespaces());
+        for(int i = 0; i < scale; i++)
+        {
+            final String suffix = "-" + copyId + "-" + i;
+            for(final Statement nextStatement : artifact)
+            {
+                final Resource subject = nextStatement.getSubject();
+                final Value object = nextStatement.getObject();
+                
+                // Only the repeated objects, and the links from the top object to them, are copied
+                // after the first repetition
+                if(i > 0 && !repeated.contains(subject)
+                        && !(topObject.equals(subject) && repeated.contains(object)))
+                {
+                    continue;
+                }
+                
+                result.add(
+                        (Resource)ScaledArtifacts.rename(subject, renamed, repeated, copyId, suffix),
+                        nextStatement.getPredicate(),
+                        ScaledArtifacts.rename(object, renamed, repeated, copyId, suffix));
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Serialises the given artifact so that it can be passed to
+     * {@link com.github.podd.api.PoddArtifactManager#loadArtifact(InputStream, RDFFormat)}.
+     */
+    public static byte[] toBytes(final Model artifact, final RDFFormat format) throws OpenRDFException
+    {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream(artifact.size() * 128);
+        Rio.write(artifact, output, format);
+        return output.toByteArray();
+    }
+    
+    private static Value rename(final Value value, final Set<Value> renamed, final Set<Resource> repeated,
+            final String copyId, final String suffix)
+    {
+        if(renamed.contains(value))
+        {
+            return PODD.VF.createURI(value.stringValue() + "-" + copyId);
+        }
+        else if(repeated.contains(value))
+        {
+            return PODD.VF.createURI(value.stringValue() + suffix);
+        }
+        return value;
+    }
+    
+    private ScaledArtifacts()
+    {
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * PODD is an OWL ontology database used for scientific project management
+ *
+ * Copyright (C) 2009-2013 The University Of Queensland
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.podd.benchmark;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openrdf.model.Model;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.vocabulary.OWL;
+import org.openrdf.model.vocabulary.RDF;
+import org.semanticweb.owlapi.model.OWLOntologyID;
+
+import com.github.podd.utils.InferredOWLOntologyID;
+import com.github.podd.utils.OntologyUtils;
+import com.github.podd.utils.PODD;
+
+/**
+ * Benchmarks for resolving schema imports in {@link OntologyUtils} using synthetic schema
+ * manifests, where each schema imports up to three earlier schemas.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SchemaImportsBenchmark
+{
+    @Param({ "100", "500" })
+    public int schemaCount;
+    
+    private Model manifest;
+    
+    private Set<InferredOWLOntologyID> schemaOntologies;
+    
+    private Map<URI, Set<URI>> directImports;
+    
+    @Setup
+    public void prepare() throws Exception
+    {
+        this.manifest = new LinkedHashModel();
+        this.directImports = new HashMap<URI, Set<URI>>();
+        for(int i = 0; i < this.schemaCount; i++)
+        {
+            final URI ontology = PODD.VF.createURI("urn:podd:benchmark:schema:" + i);
+            final URI version = this.versionUri(i);
+            this.manifest.add(ontology, RDF.TYPE, OWL.ONTOLOGY);
+            this.manifest.add(ontology, OWL.VERSIONIRI, version);
+            this.manifest.add(ontology, PODD.OMV_CURRENT_VERSION, version);
+            this.manifest.add(version, RDF.TYPE, OWL.ONTOLOGY);
+            this.manifest.add(version, PODD.PODD_BASE_INFERRED_VERSION,
+                    PODD.VF.createURI("urn:podd:benchmark:schema:" + i + ":inferred:1"));
+            
+            final Set<URI> imports = new LinkedHashSet<URI>();
+            for(final int nextImport : new int[] { i - 1, i / 2, i - 7 })
+            {
+                if(nextImport >= 0 && nextImport < i)
+                {
+                    imports.add(this.versionUri(nextImport));
+                    this.manifest.add(version, OWL.IMPORTS, this.versionUri(nextImport));
+                }
+            }
+            this.directImports.put(version, imports);
+        }
+        this.schemaOntologies =
+                new LinkedHashSet<InferredOWLOntologyID>(OntologyUtils.modelToOntologyIDs(this.manifest, false, true));
+    }
+    
+    private URI versionUri(final int index)
+    {
+        return PODD.VF.createURI("urn:podd:benchmark:schema:" + index + ":version:1");
+    }
+    
+    @Benchmark
+    public Map<URI, Set<URI>> computeImportsClosure() throws Exception
+    {
+        return OntologyUtils.computeImportsClosure(this.directImports);
+    }
+    
+    @Benchmark
+    public List<OWLOntologyID> schemaImports() throws Exception
+    {
+        return OntologyUtils.schemaImports(this.manifest, this.schemaOntologies,
+                new ConcurrentHashMap<URI, Set<URI>>());
+    }
+}
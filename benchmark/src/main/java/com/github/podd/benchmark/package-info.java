@@ -0,0 +1,27 @@
+/**
+ * PODD is an OWL ontology database used for scientific project management
+ *
+ * Copyright (C) 2009-2013 The University Of Queensland
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+/**
+ * JMH benchmarks for the PODD artifact manager.
+ *
+ * Build the benchmarks using "mvn -Pbenchmark install", and run them using
+ * "java -jar benchmark/target/benchmarks.jar". Results are written in JSON format to
+ * target/jmh-result.json unless a different result file or format is given on the command line,
+ * so that runs can be compared to find regressions.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+package com.github.podd.benchmark;
@@ -0,0 +1,178 @@
+/**
+ * PODD is an OWL ontology database used for scientific project management
+ *
+ * Copyright (C) 2009-2013 The University Of Queensland
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.podd.api;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.util.InferredAxiomGenerator;
+import org.semanticweb.owlapi.util.InferredClassAssertionAxiomGenerator;
+import org.semanticweb.owlapi.util.InferredDataPropertyCharacteristicAxiomGenerator;
+import org.semanticweb.owlapi.util.InferredEquivalentClassAxiomGenerator;
+import org.semanticweb.owlapi.util.InferredEquivalentDataPropertiesAxiomGenerator;
+import org.semanticweb.owlapi.util.InferredEquivalentObjectPropertyAxiomGenerator;
+import org.semanticweb.owlapi.util.InferredInverseObjectPropertiesAxiomGenerator;
+import org.semanticweb.owlapi.util.InferredObjectPropertyCharacteristicAxiomGenerator;
+import org.semanticweb.owlapi.util.InferredPropertyAssertionGenerator;
+import org.semanticweb.owlapi.util.InferredSubClassAxiomGenerator;
+import org.semanticweb.owlapi.util.InferredSubDataPropertyAxiomGenerator;
+import org.semanticweb.owlapi.util.InferredSubObjectPropertyAxiomGenerator;
+
+/**
+ * The OWLAPI {@link InferredAxiomGenerator}s that can be used to compute the inferred axioms for
+ * an artifact.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public enum InferredAxiomGeneratorType
+{
+    CLASS_ASSERTION
+    {
+        @Override
+        public InferredAxiomGenerator<? extends OWLAxiom> createGenerator()
+        {
+            return new InferredClassAssertionAxiomGenerator();
+        }
+    },
+    
+    DATA_PROPERTY_CHARACTERISTIC
+    {
+        @Override
+        public InferredAxiomGenerator<? extends OWLAxiom> createGenerator()
+        {
+            return new InferredDataPropertyCharacteristicAxiomGenerator();
+        }
+    },
+    
+    EQUIVALENT_CLASS
+    {
+        @Override
+        public InferredAxiomGenerator<? extends OWLAxiom> createGenerator()
+        {
+            return new InferredEquivalentClassAxiomGenerator();
+        }
+    },
+    
+    EQUIVALENT_DATA_PROPERTIES
+    {
+        @Override
+        public InferredAxiomGenerator<? extends OWLAxiom> createGenerator()
+        {
+            return new InferredEquivalentDataPropertiesAxiomGenerator();
+        }
+    },
+    
+    EQUIVALENT_OBJECT_PROPERTY
+    {
+        @Override
+        public InferredAxiomGenerator<? extends OWLAxiom> createGenerator()
+        {
+            return new InferredEquivalentObjectPropertyAxiomGenerator();
+        }
+    },
+    
+    INVERSE_OBJECT_PROPERTIES
+    {
+        @Override
+        public InferredAxiomGenerator<? extends OWLAxiom> createGenerator()
+        {
+            return new InferredInverseObjectPropertiesAxiomGenerator();
+        }
+    },
+    
+    OBJECT_PROPERTY_CHARACTERISTIC
+    {
+        @Override
+        public InferredAxiomGenerator<? extends OWLAxiom> createGenerator()
+        {
+            return new InferredObjectPropertyCharacteristicAxiomGenerator();
+        }
+    },
+    
+    /**
+     * NOTE: InferredPropertyAssertionGenerator significantly slows down inference computation.
+     */
+    PROPERTY_ASSERTION
+    {
+        @Override
+        public InferredAxiomGenerator<? extends OWLAxiom> createGenerator()
+        {
+            return new InferredPropertyAssertionGenerator();
+        }
+    },
+    
+    SUB_CLASS
+    {
+        @Override
+        public InferredAxiomGenerator<? extends OWLAxiom> createGenerator()
+        {
+            return new InferredSubClassAxiomGenerator();
+        }
+    },
+    
+    SUB_DATA_PROPERTY
+    {
+        @Override
+        public InferredAxiomGenerator<? extends OWLAxiom> createGenerator()
+        {
+            return new InferredSubDataPropertyAxiomGenerator();
+        }
+    },
+    
+    SUB_OBJECT_PROPERTY
+    {
+        @Override
+        public InferredAxiomGenerator<? extends OWLAxiom> createGenerator()
+        {
+            return new InferredSubObjectPropertyAxiomGenerator();
+        }
+    };
+    
+    /**
+     * Parses a comma separated list of generator names.
+     *
+     * @param generatorNames
+     *            The names of the generators, separated by commas.
+     * @return The generators that were named, or all of the generators if the list is null or
+     *         empty.
+     * @throws IllegalArgumentException
+     *             If one of the names does not match a generator.
+     */
+    public static Set<InferredAxiomGeneratorType> parse(final String generatorNames)
+    {
+        if(generatorNames == null || generatorNames.trim().isEmpty())
+        {
+            return EnumSet.allOf(InferredAxiomGeneratorType.class);
+        }
+        
+        final Set<InferredAxiomGeneratorType> result = EnumSet.noneOf(InferredAxiomGeneratorType.class);
+        for(final String nextName : generatorNames.split(","))
+        {
+            if(!nextName.trim().isEmpty())
+            {
+                result.add(InferredAxiomGeneratorType.valueOf(nextName.trim()));
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * @return A new instance of the generator. Generators are not shared between threads.
+     */
+    public abstract InferredAxiomGenerator<? extends OWLAxiom> createGenerator();
+}
@@ -131,7 +131,9 @@ public interface PoddArtifactManager
         PoddException, IOException;
     
     /**
-     * Exports the given artifact to the given output stream using an RDF format.
+     * Exports the given artifact to the given output stream using an RDF format. The statements
+     * are written to the stream as they are read from the repository, without collecting them in
+     * memory first.
      *
      * @param ontologyId
      *            The {@link InferredOWLOntologyID} of the artifact to export. This must contain
@@ -273,11 +275,40 @@ public interface PoddArtifactManager
      */
     DataReferenceManager getDataReferenceManager();
     
-    Set<DataReference> getFileReferences(InferredOWLOntologyID artifactId);
+    /**
+     * Extracts all of the data references in the given artifact.
+     *
+     * @param artifactId
+     *            The artifact to find data references in.
+     * @return The data references in the artifact.
+     */
+    Set<DataReference> getFileReferences(InferredOWLOntologyID artifactId) throws OpenRDFException, PoddException,
+        IOException;
     
-    Set<DataReference> getFileReferences(InferredOWLOntologyID artifactId, String alias);
+    /**
+     * Extracts the data references in the given artifact that refer to the data repository with
+     * the given alias.
+     *
+     * @param artifactId
+     *            The artifact to find data references in.
+     * @param alias
+     *            The data repository alias, which is compared ignoring case.
+     * @return The data references in the artifact for the given alias.
+     */
+    Set<DataReference> getFileReferences(InferredOWLOntologyID artifactId, String alias) throws OpenRDFException,
+        PoddException, IOException;
     
-    Set<DataReference> getFileReferences(InferredOWLOntologyID artifactId, URI objectUri);
+    /**
+     * Extracts the data references in the given artifact that are attached to the given object.
+     *
+     * @param artifactId
+     *            The artifact to find data references in.
+     * @param objectUri
+     *            The URI of the data reference object.
+     * @return The data references in the artifact for the given object.
+     */
+    Set<DataReference> getFileReferences(InferredOWLOntologyID artifactId, URI objectUri) throws OpenRDFException,
+        PoddException, IOException;
     
     /**
      *
@@ -493,6 +524,19 @@ public interface PoddArtifactManager
      */
     boolean isPublished(InferredOWLOntologyID ontologyId) throws OpenRDFException;
     
+    /**
+     * Returns the status of the inferred statements for the given version of an artifact. The
+     * status is {@link InferenceStatus#COMPLETE} unless the inferences for the version are still
+     * being computed in the background, or failed to be computed.
+     *
+     * @param ontologyId
+     *            The artifact version to check.
+     * @return The status of the inferred statements for the given artifact version.
+     * @throws OpenRDFException
+     *             If the status could not be read from the artifact management graph.
+     */
+    InferenceStatus getInferenceStatus(InferredOWLOntologyID ontologyId) throws OpenRDFException;
+    
     /**
      *
      * @return The list of artifacts that have been published.
@@ -577,6 +621,26 @@ public interface PoddArtifactManager
         UnsupportedRDFormatException, IOException, UnmanagedArtifactIRIException, UnmanagedArtifactVersionException,
         RepositoryNotFoundException;
     
+    /**
+     * Carries out a case-insensitive search for objects whose labels match a given term, optionally
+     * matching objects whose types are subclasses of the given types.
+     *
+     * @param ontologyID
+     *            The ontology and its imported ontologies make up the search space
+     * @param searchTerm
+     *            A String term which is searched for in the RDF:Labels
+     * @param searchTypes
+     *            The types (i.e. RDF:Type) of results to match with the search term
+     * @param includeSubTypes
+     *            True to also match objects whose types are subclasses of the search types
+     * @return A {@link Model} containing the URI and Label of each matching object.
+     * @see #searchForOntologyLabels(InferredOWLOntologyID, String, URI[])
+     */
+    Model searchForOntologyLabels(InferredOWLOntologyID ontologyID, String searchTerm, URI[] searchTypes,
+            boolean includeSubTypes) throws OpenRDFException, ResourceException, UnmanagedSchemaIRIException,
+        SchemaManifestException, UnsupportedRDFormatException, IOException, UnmanagedArtifactIRIException,
+        UnmanagedArtifactVersionException, RepositoryNotFoundException;
+    
     /**
      * Sets the {@link DataReferenceManager} to use for verifying file references for PODD
      * artifacts.
@@ -27,6 +27,7 @@ import org.openrdf.model.Model;
 import org.openrdf.model.URI;
 import org.openrdf.repository.RepositoryConnection;
 import org.semanticweb.owlapi.io.OWLOntologyDocumentSource;
+import org.semanticweb.owlapi.model.IRI;
 import org.semanticweb.owlapi.model.OWLException;
 import org.semanticweb.owlapi.model.OWLOntologyID;
 
@@ -74,6 +75,52 @@ public interface PoddOWLManager
             Set<? extends OWLOntologyID> dependentSchemaOntologies, RepositoryConnection managementConnection,
             URI schemaManagementContext) throws OWLException, PoddException, OpenRDFException, IOException;
     
+    /**
+     * Loads an ontology from the given {@link OWLOntologyDocumentSource} into the given
+     * {@link RepositoryConnection} after checking that it is in profile and consistent, but does
+     * not compute its inferred axioms. The inferred axioms must be computed later using
+     * {@link #inferStatements(InferredOWLOntologyID, RepositoryConnection, Set, RepositoryConnection, URI)}
+     * after the statements have been committed.
+     *
+     * @param owlSource
+     *            The source of the OWL ontology to be loaded.
+     * @param permanentRepositoryConnection
+     *            A connection to the repository where the ontology will be stored.
+     * @param replacementOntologyID
+     *            (Optional) A replacement ontology IRI and version IRI for the loaded ontology.
+     * @return An {@link InferredOWLOntologyID} object containing the details of the loaded
+     *         ontology, which is marked as having its inferences pending.
+     * @throws OWLException
+     * @throws PoddException
+     * @throws OpenRDFException
+     * @throws IOException
+     */
+    InferredOWLOntologyID loadAndCheck(OWLOntologyDocumentSource owlSource,
+            RepositoryConnection permanentRepositoryConnection, OWLOntologyID replacementOntologyID,
+            Set<? extends OWLOntologyID> dependentSchemaOntologies, RepositoryConnection managementConnection,
+            URI schemaManagementContext) throws OWLException, PoddException, OpenRDFException, IOException;
+    
+    /**
+     * Computes the inferred axioms for an ontology that was previously stored using
+     * {@link #loadAndCheck(OWLOntologyDocumentSource, RepositoryConnection, OWLOntologyID, Set, RepositoryConnection, URI)}
+     * and stores them in the inferred ontology context in the given {@link RepositoryConnection}.
+     *
+     * @param ontologyID
+     *            The ontology to compute inferences for.
+     * @param permanentRepositoryConnection
+     *            A connection to the repository where the ontology was stored.
+     * @return An {@link InferredOWLOntologyID} object containing the details of the ontology,
+     *         which is no longer marked as having its inferences pending.
+     * @throws OWLException
+     * @throws PoddException
+     * @throws OpenRDFException
+     * @throws IOException
+     */
+    InferredOWLOntologyID inferStatements(InferredOWLOntologyID ontologyID,
+            RepositoryConnection permanentRepositoryConnection, Set<? extends OWLOntologyID> dependentSchemaOntologies,
+            RepositoryConnection managementConnection, URI schemaManagementContext) throws OWLException,
+        PoddException, OpenRDFException, IOException;
+    
     /**
      * Attempts to regain memory in the underlying OWLOntologyManager by removing the ontology from
      * the in-memory cache.
@@ -91,6 +138,19 @@ public interface PoddOWLManager
     boolean removeCache(OWLOntologyID ontologyID, Set<? extends OWLOntologyID> dependentSchemaOntologies)
         throws OWLException;
     
+    /**
+     * Sets the generators used to compute the inferred axioms for artifacts that import the given
+     * schema ontology. Artifacts importing several configured schema ontologies use all of the
+     * generators configured for them, and artifacts importing none use the default generators.
+     *
+     * @param schemaOntologyIRI
+     *            The ontology IRI or version IRI of the schema ontology.
+     * @param generators
+     *            The generators to use for artifacts importing the schema ontology, or null to
+     *            use the default generators.
+     */
+    void setInferredAxiomGenerators(IRI schemaOntologyIRI, Set<InferredAxiomGeneratorType> generators);
+    
     /**
      * Helper method to verify that a given {@link Model} represents an ontology which complies with
      * the given schema OWL Ontology.
@@ -428,6 +428,23 @@ public interface PoddSesameManager
     InferredOWLOntologyID getSchemaVersion(IRI schemaVersionIRI, RepositoryConnection conn, URI schemaManagementGraph)
         throws OpenRDFException, UnmanagedSchemaIRIException;
     
+    /**
+     * Resolves the top object for each of the given artifacts, along with the label, description
+     * and barcode for each top object, using a single query for each batch of artifacts instead of
+     * separate queries for each artifact.
+     *
+     * @param artifacts
+     *            The artifacts to find top object labels for, which must all be stored in the
+     *            repository accessed using the given connection.
+     * @param permanentConnection
+     *            A connection to the permanent repository containing the artifacts.
+     * @return A map from each artifact to the label for its top object. Artifacts that do not have
+     *         a top object are not included in the map.
+     * @throws OpenRDFException
+     */
+    Map<InferredOWLOntologyID, PoddObjectLabel> getTopObjectLabels(List<InferredOWLOntologyID> artifacts,
+            RepositoryConnection permanentConnection) throws OpenRDFException;
+    
     URI getTopObjectIRI(InferredOWLOntologyID ontologyIRI, RepositoryConnection permanentConnection)
         throws OpenRDFException;
     
@@ -497,6 +514,35 @@ public interface PoddSesameManager
     Model searchOntologyLabels(String searchTerm, URI[] searchTypes, int limit, int offset,
             final RepositoryConnection repositoryConnection, URI... contexts) throws OpenRDFException;
     
+    /**
+     * Carries out a case-insensitive search for objects whose labels contain a given term.
+     * Implementations may return labels with words that are close to the term if no labels contain
+     * the term. An optional array of URIs can be used to limit the RDF types of objects to match. <br>
+     * NOTE: All of the types, if given, must match for the search to succeed.
+     *
+     * @param searchTerm
+     *            A String term which is searched for in the RDF:Labels
+     * @param searchTypes
+     *            The types (i.e. RDF:Type) of results to match with the search term.
+     * @param includeSubTypes
+     *            True to also match objects whose types are subclasses of the search types.
+     * @param limit
+     * @param offset
+     * @param repositoryConnection
+     * @return A {@link Model} containing the URI and Label of each matching object.
+     */
+    Model searchOntologyLabels(String searchTerm, URI[] searchTypes, boolean includeSubTypes, int limit,
+            int offset, final RepositoryConnection repositoryConnection, URI... contexts) throws OpenRDFException;
+    
+    /**
+     * Removes any label indexes that were built from the given contexts.
+     * <p>
+     * This method is called automatically when ontology versions are removed using this manager,
+     * but must also be called when statements are added to a context after it may have been
+     * searched, such as when inferences are computed in the background.
+     */
+    void invalidateLabelIndex(URI... contexts);
+    
     /**
      * Sets the given Ontology IRI to be published. This restricts the ability to publish the
      * ontology again.
@@ -537,6 +583,16 @@ public interface PoddSesameManager
     void updateManagedSchemaOntologyVersion(OWLOntologyID nextOntologyID, boolean updateCurrent,
             RepositoryConnection repositoryConnection, URI context) throws OpenRDFException;
     
+    /**
+     * Invalidates any cached contexts that were resolved from the management graphs.
+     * <p>
+     * This method is called automatically when ontology versions are updated or deleted using this
+     * manager, but as those changes are not visible to other connections until they are committed,
+     * it must also be called after the changes are committed. Otherwise the caches may be
+     * repopulated by other threads from a view of the management graphs before the commit.
+     */
+    void invalidateContextsCache();
+    
     /**
      * This method adds information to the PODD artifact management graph, and updates the links for
      * the current version for both the ontology and the inferred ontology.
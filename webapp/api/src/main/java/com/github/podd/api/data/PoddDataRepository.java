@@ -17,6 +17,9 @@
 package com.github.podd.api.data;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
 
 import org.openrdf.model.Model;
@@ -64,6 +67,40 @@ public interface PoddDataRepository<T extends DataReference>
      */
     Set<URI> getTypes();
     
+    /**
+     * Finds the size of the data that the given DataReference refers to.
+     *
+     * @param reference
+     *            The DataReference to find the size of.
+     * @return The size in bytes of the referenced data.
+     * @throws DataReferenceNotSupportedException
+     *             If this repository cannot handle the reference, or does not support downloads.
+     * @throws java.io.FileNotFoundException
+     *             If the referenced data does not exist in the remote repository.
+     * @throws IOException
+     *             If the remote repository could not be accessed.
+     */
+    long getSize(T reference) throws DataReferenceNotSupportedException, IOException;
+    
+    /**
+     * Opens a stream that reads the data that the given DataReference refers to directly from the
+     * remote repository, starting at the given offset. Any connection used by the stream is
+     * released when the stream is closed, so callers must always close it.
+     *
+     * @param reference
+     *            The DataReference to download.
+     * @param offset
+     *            The number of bytes at the start of the data to skip.
+     * @return A stream containing the referenced data, starting at the given offset.
+     * @throws DataReferenceNotSupportedException
+     *             If this repository cannot handle the reference, or does not support downloads.
+     * @throws java.io.FileNotFoundException
+     *             If the referenced data does not exist in the remote repository.
+     * @throws IOException
+     *             If the remote repository could not be accessed.
+     */
+    InputStream openStream(T reference, long offset) throws DataReferenceNotSupportedException, IOException;
+    
     /**
      * Validates the given DataReference instance.
      *
@@ -75,4 +112,20 @@ public interface PoddDataRepository<T extends DataReference>
      */
     boolean validate(T reference) throws DataReferenceNotSupportedException, IOException;
     
+    /**
+     * Validates each of the given DataReference instances, reusing any connection to the remote
+     * repository across all of them.
+     *
+     * @param references
+     *            The DataReferences to be validated, all of which must be supported by this
+     *            repository
+     * @return A Map from each of the given DataReferences to true if its validation was successful,
+     *         and false otherwise
+     * @throws DataReferenceNotSupportedException
+     *             If any of the references cannot be handled by this repository
+     * @throws IOException
+     *             If the remote repository could not be accessed
+     */
+    Map<T, Boolean> validateAll(Collection<T> references) throws DataReferenceNotSupportedException, IOException;
+    
 }
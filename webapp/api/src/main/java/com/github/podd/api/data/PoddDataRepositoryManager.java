@@ -17,6 +17,7 @@
 package com.github.podd.api.data;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.List;
 import java.util.Set;
@@ -64,8 +65,24 @@ public interface PoddDataRepositoryManager
     void addRepositoryMapping(String alias, PoddDataRepository<?> repositoryConfiguration, boolean overwrite)
         throws OpenRDFException, DataRepositoryException;
     
+    /**
+     * Copies all of the data referenced by the given {@link DataReference} from its remote data
+     * repository to the given output stream.
+     *
+     * @param nextFileReference
+     *            The reference to download.
+     * @param outputStream
+     *            The stream to copy the data to. It is not closed by this method.
+     * @throws DataRepositoryMappingNotFoundException
+     *             If the alias of the reference is not mapped to a data repository.
+     * @throws com.github.podd.exception.DataRepositoryBusyException
+     *             If the data repository already has the maximum number of concurrent downloads.
+     * @throws IOException
+     *             If the data could not be read from the remote data repository, or written to the
+     *             output stream.
+     */
     void downloadFileReference(DataReference nextFileReference, OutputStream outputStream) throws PoddException,
-        IOException;
+        OpenRDFException, IOException;
     
     /**
      * Returns a list of all aliases that are currently mapped.
@@ -88,6 +105,19 @@ public interface PoddDataRepositoryManager
      */
     List<String> getEquivalentAliases(String alias) throws DataRepositoryException, OpenRDFException;
     
+    /**
+     * Finds the size of the data referenced by the given {@link DataReference}.
+     *
+     * @param dataReference
+     *            The reference to find the size of.
+     * @return The size in bytes of the referenced data.
+     * @throws DataRepositoryMappingNotFoundException
+     *             If the alias of the reference is not mapped to a data repository.
+     * @throws java.io.FileNotFoundException
+     *             If the referenced data does not exist in the remote data repository.
+     */
+    long getFileReferenceSize(DataReference dataReference) throws PoddException, OpenRDFException, IOException;
+    
     PoddOWLManager getOWLManager();
     
     /**
@@ -134,6 +164,27 @@ public interface PoddDataRepositoryManager
      */
     void initialise(Model defaultAliasesConfiguraton) throws OpenRDFException, IOException, PoddException;
     
+    /**
+     * Opens a stream that reads the data referenced by the given {@link DataReference} directly from
+     * its remote data repository, starting at the given offset. The stream counts towards the
+     * maximum number of concurrent downloads for the data repository until it is closed, so callers
+     * must always close it.
+     *
+     * @param dataReference
+     *            The reference to download.
+     * @param offset
+     *            The number of bytes at the start of the data to skip.
+     * @return A stream containing the referenced data, starting at the given offset.
+     * @throws DataRepositoryMappingNotFoundException
+     *             If the alias of the reference is not mapped to a data repository.
+     * @throws com.github.podd.exception.DataRepositoryBusyException
+     *             If the data repository already has the maximum number of concurrent downloads.
+     * @throws java.io.FileNotFoundException
+     *             If the referenced data does not exist in the remote data repository.
+     */
+    InputStream openFileReference(DataReference dataReference, long offset) throws PoddException, OpenRDFException,
+        IOException;
+    
     /**
      * Removes the mapping for the given alias, returning the {@link PoddDataRepository} object that
      * was previously mapped to using the alias.
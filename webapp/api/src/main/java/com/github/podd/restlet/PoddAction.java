@@ -188,6 +188,14 @@ public enum PoddAction
             PoddRoles.PROJECT_OBSERVER.getRole(), PoddRoles.PROJECT_ADMIN.getRole(),
             PoddRoles.PROJECT_MEMBER.getRole(), PoddRoles.ADMIN.getRole())), false),
     
+    /**
+     * An action by a user asking to see the timing statistics for queries run by PODD.
+     *
+     * By default only administrators can see these statistics.
+     */
+    QUERY_METRICS_READ(true, "Could not retrieve query metrics", Collections.singleton(PoddRoles.ADMIN.getRole()),
+            false),
+    
     ;
     
     private final boolean authRequired;
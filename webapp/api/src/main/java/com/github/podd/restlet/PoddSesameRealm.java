@@ -18,13 +18,18 @@ package com.github.podd.restlet;
 
 import info.aduna.iteration.Iterations;
 
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -33,6 +38,7 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.openrdf.OpenRDFException;
 import org.openrdf.OpenRDFUtil;
@@ -98,17 +104,30 @@ public class PoddSesameRealm extends Realm
         @Override
         public void enrole(final ClientInfo clientInfo)
         {
+            final String identifier = clientInfo.getUser().getIdentifier();
+            final CachedUserRoles cachedUserRoles = PoddSesameRealm.this.getCachedUserRoles(identifier);
+            if(cachedUserRoles != null)
+            {
+                clientInfo.getRoles().addAll(cachedUserRoles.roles);
+                return;
+            }
+            
+            final long generation = PoddSesameRealm.this.authenticationCacheGeneration.get();
             RepositoryConnection conn = null;
             try
             {
                 conn = PoddSesameRealm.this.repository.getConnection();
-                final PoddUser user = PoddSesameRealm.this.findUser(clientInfo.getUser().getIdentifier(), conn);
+                final PoddUser user = PoddSesameRealm.this.findUser(identifier, conn);
                 
                 if(user != null)
                 {
                     // Add roles specific to this user
                     final Set<Role> userRoles = PoddSesameRealm.this.findRoles(user, conn);
                     
+                    PoddSesameRealm.this.putAuthenticationCacheEntry(PoddSesameRealm.this.userRolesCache, identifier,
+                            new CachedUserRoles(user, userRoles, PoddSesameRealm.this.getAuthenticationCacheExpiry()),
+                            generation);
+                    
                     for(final Role role : userRoles)
                     {
                         clientInfo.getRoles().add(role);
@@ -159,7 +178,9 @@ public class PoddSesameRealm extends Realm
         @Override
         protected User createUser(final String identifier, final Request request, final Response response)
         {
-            final PoddUser checkUser = PoddSesameRealm.this.findUser(identifier);
+            final CachedUserRoles cachedUserRoles = PoddSesameRealm.this.getCachedUserRoles(identifier);
+            final PoddUser checkUser =
+                    cachedUserRoles != null ? cachedUserRoles.user : PoddSesameRealm.this.findUser(identifier);
             
             if(checkUser == null)
             {
@@ -195,8 +216,23 @@ public class PoddSesameRealm extends Realm
         {
             try
             {
+                final byte[] secretDigest = secret == null ? null : PoddSesameRealm.this.digestSecret(secret);
+                if(PoddSesameRealm.this.isCredentialCached(identifier, secretDigest))
+                {
+                    return Verifier.RESULT_VALID;
+                }
+                
+                final long generation = PoddSesameRealm.this.authenticationCacheGeneration.get();
                 final PoddUserSecretHash secretHash = PoddSesameRealm.this.getUserSecretHash(identifier);
-                return secretHash.compare(secret) ? Verifier.RESULT_VALID : Verifier.RESULT_INVALID;
+                if(secretHash.compare(secret))
+                {
+                    // Only successful verifications are cached, so guessing secrets is never cheaper
+                    PoddSesameRealm.this.putAuthenticationCacheEntry(PoddSesameRealm.this.credentialCache, identifier,
+                            new CachedCredential(secretDigest, PoddSesameRealm.this.getAuthenticationCacheExpiry()),
+                            generation);
+                    return Verifier.RESULT_VALID;
+                }
+                return Verifier.RESULT_INVALID;
             }
             catch(OpenRDFException | NoSuchAlgorithmException | InvalidKeySpecException e)
             {
@@ -234,6 +270,60 @@ public class PoddSesameRealm extends Realm
     
     /** The currently cached list of root groups. */
     private volatile List<Group> cachedRootGroups;
+    
+    /**
+     * The default number of milliseconds that verified credentials and roles are cached for.
+     */
+    public static final long DEFAULT_AUTHENTICATION_CACHE_TTL = 300000;
+    
+    /**
+     * The default maximum number of users to cache verified credentials and roles for.
+     */
+    public static final int DEFAULT_AUTHENTICATION_CACHE_MAX_SIZE = 1000;
+    
+    private volatile long authenticationCacheTtl = PoddSesameRealm.DEFAULT_AUTHENTICATION_CACHE_TTL;
+    
+    private volatile int authenticationCacheMaxSize = PoddSesameRealm.DEFAULT_AUTHENTICATION_CACHE_MAX_SIZE;
+    
+    /**
+     * Digests of successfully verified secrets, keyed by user identifier.
+     */
+    private final ConcurrentMap<String, CachedCredential> credentialCache =
+            new ConcurrentHashMap<String, CachedCredential>();
+    
+    /**
+     * Users and their roles, keyed by user identifier.
+     */
+    private final ConcurrentMap<String, CachedUserRoles> userRolesCache =
+            new ConcurrentHashMap<String, CachedUserRoles>();
+    
+    /**
+     * Incremented on each eviction, so that entries loaded concurrently with a modification are
+     * discarded instead of being cached.
+     */
+    private final AtomicLong authenticationCacheGeneration = new AtomicLong();
+    
+    /**
+     * Index from object URIs to user identifiers to the roles that are mapped for the user on the
+     * object. It is loaded from the repository on first use, and then updated by map and unmap
+     * after their changes are committed.
+     */
+    private volatile ConcurrentMap<URI, ConcurrentMap<String, Set<Role>>> objectRolesIndex;
+    
+    private final Object objectRolesIndexLock = new Object();
+    
+    private final AtomicLong credentialCacheHits = new AtomicLong();
+    private final AtomicLong credentialCacheMisses = new AtomicLong();
+    private final AtomicLong userRolesCacheHits = new AtomicLong();
+    private final AtomicLong userRolesCacheMisses = new AtomicLong();
+    private final AtomicLong authenticationCacheEvictions = new AtomicLong();
+    
+    /**
+     * Random salt for the digests of cached secrets, so that they are not comparable across
+     * instances.
+     */
+    private final byte[] credentialCacheSalt = new byte[16];
+    
     protected final Logger log = LoggerFactory.getLogger(this.getClass());
     
     /**
@@ -247,6 +337,7 @@ public class PoddSesameRealm extends Realm
         // set PODD-specific Enroler and Verifier
         this.setEnroler(new DefaultPoddSesameRealmEnroler());
         this.setVerifier(new DefaultPoddSesameRealmVerifier());
+        new SecureRandom().nextBytes(this.credentialCacheSalt);
         // this.cachedRootGroups = new CopyOnWriteArrayList<Group>();
         // this.rootGroups = new CopyOnWriteArrayList<Group>();
         // this.roleMappings = new CopyOnWriteArrayList<RoleMapping>();
@@ -286,6 +377,191 @@ public class PoddSesameRealm extends Realm
         }
     }
     
+    /**
+     * Evicts any cached credentials and roles for the given user. This is called automatically
+     * after modifications to users and role mappings made through this realm are committed.
+     *
+     * @param identifier
+     *            The identifier of the user to evict.
+     */
+    public void evictAuthenticationCache(final String identifier)
+    {
+        this.authenticationCacheGeneration.incrementAndGet();
+        if(this.credentialCache.remove(identifier) != null)
+        {
+            this.authenticationCacheEvictions.incrementAndGet();
+        }
+        if(this.userRolesCache.remove(identifier) != null)
+        {
+            this.authenticationCacheEvictions.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Evicts all cached credentials and roles, which is necessary after modifications that may
+     * affect more than one user, such as group role mappings.
+     */
+    public void clearAuthenticationCache()
+    {
+        this.authenticationCacheGeneration.incrementAndGet();
+        this.authenticationCacheEvictions.addAndGet(this.credentialCache.size() + this.userRolesCache.size());
+        this.credentialCache.clear();
+        this.userRolesCache.clear();
+    }
+    
+    /**
+     * @return The number of times that a secret was verified using the cache.
+     */
+    public long getCredentialCacheHits()
+    {
+        return this.credentialCacheHits.get();
+    }
+    
+    /**
+     * @return The number of times that a secret needed to be verified using the stored hash.
+     */
+    public long getCredentialCacheMisses()
+    {
+        return this.credentialCacheMisses.get();
+    }
+    
+    /**
+     * @return The number of times that a user and their roles were found in the cache.
+     */
+    public long getUserRolesCacheHits()
+    {
+        return this.userRolesCacheHits.get();
+    }
+    
+    /**
+     * @return The number of times that a user and their roles needed to be found in the repository.
+     */
+    public long getUserRolesCacheMisses()
+    {
+        return this.userRolesCacheMisses.get();
+    }
+    
+    /**
+     * @return The number of cached credentials and roles that have been evicted, either due to
+     *         modifications, or to keep the caches within their maximum size.
+     */
+    public long getAuthenticationCacheEvictions()
+    {
+        return this.authenticationCacheEvictions.get();
+    }
+    
+    /**
+     * @return The number of users that currently have verified credentials cached.
+     */
+    public int getAuthenticationCacheSize()
+    {
+        return this.credentialCache.size();
+    }
+    
+    /**
+     * Sets the number of milliseconds that verified credentials and roles are cached for.
+     *
+     * @param authenticationCacheTtl
+     *            The number of milliseconds, or zero to disable caching.
+     */
+    public void setAuthenticationCacheTtl(final long authenticationCacheTtl)
+    {
+        this.authenticationCacheTtl = authenticationCacheTtl;
+        this.clearAuthenticationCache();
+    }
+    
+    /**
+     * Sets the maximum number of users that verified credentials and roles are cached for.
+     *
+     * @param authenticationCacheMaxSize
+     *            The maximum number of users, or zero to disable caching.
+     */
+    public void setAuthenticationCacheMaxSize(final int authenticationCacheMaxSize)
+    {
+        this.authenticationCacheMaxSize = authenticationCacheMaxSize;
+        this.clearAuthenticationCache();
+    }
+    
+    private byte[] digestSecret(final char[] secret) throws NoSuchAlgorithmException
+    {
+        final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(this.credentialCacheSalt);
+        digest.update(StandardCharsets.UTF_8.encode(CharBuffer.wrap(secret)));
+        return digest.digest();
+    }
+    
+    private boolean isCredentialCached(final String identifier, final byte[] secretDigest)
+    {
+        final CachedCredential cached = secretDigest == null ? null : this.credentialCache.get(identifier);
+        if(cached != null && !cached.isExpired() && MessageDigest.isEqual(cached.secretDigest, secretDigest))
+        {
+            this.credentialCacheHits.incrementAndGet();
+            return true;
+        }
+        this.credentialCacheMisses.incrementAndGet();
+        return false;
+    }
+    
+    private CachedUserRoles getCachedUserRoles(final String identifier)
+    {
+        final CachedUserRoles cached = this.userRolesCache.get(identifier);
+        if(cached != null && !cached.isExpired())
+        {
+            this.userRolesCacheHits.incrementAndGet();
+            return cached;
+        }
+        this.userRolesCacheMisses.incrementAndGet();
+        return null;
+    }
+    
+    private long getAuthenticationCacheExpiry()
+    {
+        return System.currentTimeMillis() + this.authenticationCacheTtl;
+    }
+    
+    /**
+     * Adds an entry to one of the authentication caches, unless there has been an eviction since
+     * the given generation, as the entry may then have been loaded before the modification that
+     * caused the eviction was committed.
+     */
+    private <T extends ExpiringCacheEntry> void putAuthenticationCacheEntry(final ConcurrentMap<String, T> cache,
+            final String identifier, final T entry, final long generation)
+    {
+        if(this.authenticationCacheTtl <= 0 || this.authenticationCacheMaxSize <= 0 || identifier == null)
+        {
+            return;
+        }
+        
+        if(cache.size() >= this.authenticationCacheMaxSize)
+        {
+            final Iterator<T> values = cache.values().iterator();
+            while(values.hasNext())
+            {
+                if(values.next().isExpired())
+                {
+                    values.remove();
+                    this.authenticationCacheEvictions.incrementAndGet();
+                }
+            }
+            
+            // If all of the entries are still valid, make room by discarding an arbitrary entry
+            final Iterator<String> keys = cache.keySet().iterator();
+            if(cache.size() >= this.authenticationCacheMaxSize && keys.hasNext())
+            {
+                keys.next();
+                keys.remove();
+                this.authenticationCacheEvictions.incrementAndGet();
+            }
+        }
+        
+        cache.put(identifier, entry);
+        
+        if(this.authenticationCacheGeneration.get() != generation)
+        {
+            cache.remove(identifier, entry);
+        }
+    }
+    
     /**
      * Recursively adds groups where a given user is a member.
      *
@@ -647,16 +923,20 @@ public class PoddSesameRealm extends Realm
         }
         finally
         {
-            if(conn != null)
+            try
             {
-                try
+                if(conn != null)
                 {
                     conn.close();
                 }
-                catch(final RepositoryException e)
-                {
-                    this.log.error("Found unexpected repository exception", e);
-                }
+            }
+            catch(final RepositoryException e)
+            {
+                this.log.error("Found unexpected repository exception", e);
+            }
+            finally
+            {
+                this.evictAuthenticationCache(nextUser.getIdentifier());
             }
         }
         
@@ -800,6 +1080,47 @@ public class PoddSesameRealm extends Realm
         return query.toString();
     }
     
+    protected String buildSparqlQueryForAllObjectRoles()
+    {
+        final StringBuilder query = new StringBuilder();
+        
+        query.append(" SELECT DISTINCT ?");
+        query.append(PoddSesameRealm.PARAM_ROLE);
+        query.append(" ?");
+        query.append(PoddSesameRealm.PARAM_USER_IDENTIFIER);
+        query.append(" ?");
+        query.append(PoddSesameRealm.PARAM_OBJECT_URI);
+        
+        query.append(" WHERE ");
+        query.append(" { ");
+        
+        final String roleMappingVar = " ?mapping ";
+        
+        query.append(roleMappingVar);
+        query.append(RenderUtils.getSPARQLQueryString(SesameRealmConstants.OAS_ROLEMAPPEDUSER));
+        query.append(" ?");
+        query.append(PoddSesameRealm.PARAM_USER_IDENTIFIER);
+        query.append(" . ");
+        
+        query.append(roleMappingVar);
+        query.append(RenderUtils.getSPARQLQueryString(SesameRealmConstants.OAS_ROLEMAPPEDROLE));
+        query.append(" ?");
+        query.append(PoddSesameRealm.PARAM_ROLE);
+        query.append(" . ");
+        
+        query.append(roleMappingVar);
+        query.append(RenderUtils.getSPARQLQueryString(PODD.PODD_ROLEMAPPEDOBJECT));
+        query.append(" ?");
+        query.append(PoddSesameRealm.PARAM_OBJECT_URI);
+        query.append(" . ");
+        
+        query.append(" } ");
+        
+        this.log.debug("all object roles query: {}", query);
+        
+        return query.toString();
+    }
+    
     protected String buildSparqlQueryForRolesWithObjects(final String userIdentifier)
     {
         this.log.debug("Building SPARQL query for Roles and object URIs of a User");
@@ -1413,16 +1734,20 @@ public class PoddSesameRealm extends Realm
         }
         finally
         {
-            if(conn != null)
+            try
             {
-                try
+                if(conn != null)
                 {
                     conn.close();
                 }
-                catch(final RepositoryException e)
-                {
-                    this.log.error("Found unexpected repository exception", e);
-                }
+            }
+            catch(final RepositoryException e)
+            {
+                this.log.error("Found unexpected repository exception", e);
+            }
+            finally
+            {
+                this.evictAuthenticationCache(nextUser.getIdentifier());
             }
         }
     }
@@ -1901,17 +2226,94 @@ public class PoddSesameRealm extends Realm
         return results;
     }
     
+    /**
+     * Finds the roles that users have for the given object, using an in-memory index of the object
+     * role mappings instead of querying the repository.
+     *
+     * @param userIdentifier
+     *            The identifier of the user to find roles for, or null to find roles for all
+     *            users.
+     * @param objectUri
+     *            The object to find roles for.
+     * @return A map from user identifiers to the roles that they have for the object.
+     */
     public Map<String, Collection<Role>> getRolesForObjectAlternate(final String userIdentifier, final URI objectUri)
     {
+        final ConcurrentMap<String, Collection<Role>> roleCollection =
+                new ConcurrentHashMap<String, Collection<Role>>();
+        
+        final Map<String, Set<Role>> objectRoles = this.getObjectRolesIndex().get(objectUri);
+        
+        if(objectRoles != null)
+        {
+            for(final Entry<String, Set<Role>> nextUserRoles : objectRoles.entrySet())
+            {
+                if((userIdentifier == null || userIdentifier.equals(nextUserRoles.getKey()))
+                        && !nextUserRoles.getValue().isEmpty())
+                {
+                    roleCollection.put(nextUserRoles.getKey(), new HashSet<Role>(nextUserRoles.getValue()));
+                }
+            }
+        }
+        
+        if(roleCollection.isEmpty())
+        {
+            this.log.warn("Could not find role with mappings for user: {}", userIdentifier);
+        }
+        
+        return roleCollection;
+    }
+    
+    private ConcurrentMap<URI, ConcurrentMap<String, Set<Role>>> getObjectRolesIndex()
+    {
+        ConcurrentMap<URI, ConcurrentMap<String, Set<Role>>> result = this.objectRolesIndex;
+        if(result == null)
+        {
+            synchronized(this.objectRolesIndexLock)
+            {
+                result = this.objectRolesIndex;
+                if(result == null)
+                {
+                    result = this.loadObjectRolesIndex();
+                    this.objectRolesIndex = result;
+                }
+            }
+        }
+        return result;
+    }
+    
+    private ConcurrentMap<URI, ConcurrentMap<String, Set<Role>>> loadObjectRolesIndex()
+    {
+        final ConcurrentMap<URI, ConcurrentMap<String, Set<Role>>> result =
+                new ConcurrentHashMap<URI, ConcurrentMap<String, Set<Role>>>();
+        
         RepositoryConnection conn = null;
         try
         {
             conn = this.getRepository().getConnection();
-            return this.getRolesForObjectAlternate(userIdentifier, objectUri, conn);
+            
+            final TupleQuery tupleQuery =
+                    conn.prepareTupleQuery(QueryLanguage.SPARQL, this.buildSparqlQueryForAllObjectRoles());
+            
+            final QueryResultCollector resultCollector = RdfUtility.executeTupleQuery(tupleQuery, this.getContexts());
+            
+            for(final BindingSet bindingSet : resultCollector.getBindingSets())
+            {
+                final Value objectUri = bindingSet.getValue(PoddSesameRealm.PARAM_OBJECT_URI);
+                if(objectUri instanceof URI)
+                {
+                    this.addObjectRole(result, bindingSet.getValue(PoddSesameRealm.PARAM_USER_IDENTIFIER)
+                            .stringValue(), this.buildRoleFromSparqlResult(bindingSet), (URI)objectUri);
+                }
+            }
+            
+            this.log.debug("Loaded object role mappings for {} objects", result.size());
+            
+            return result;
         }
         catch(final OpenRDFException e)
         {
-            throw new RuntimeException("Failure finding user in repository", e);
+            throw new RuntimeException("Failure loading object role mappings from repository", e);
         }
         finally
         {
@@ -1929,6 +2331,94 @@ public class PoddSesameRealm extends Realm
         }
     }
     
+    private void addObjectRole(final ConcurrentMap<URI, ConcurrentMap<String, Set<Role>>> index,
+            final String userIdentifier, final Role role, final URI objectUri)
+    {
+        ConcurrentMap<String, Set<Role>> objectRoles = index.get(objectUri);
+        if(objectRoles == null)
+        {
+            objectRoles = new ConcurrentHashMap<String, Set<Role>>();
+            index.put(objectUri, objectRoles);
+        }
+        
+        Set<Role> userRoles = objectRoles.get(userIdentifier);
+        if(userRoles == null)
+        {
+            userRoles = Collections.newSetFromMap(new ConcurrentHashMap<Role, Boolean>());
+            objectRoles.put(userIdentifier, userRoles);
+        }
+        
+        userRoles.add(role);
+    }
+    
+    /**
+     * Adds a role mapping to the object roles index, if it has been loaded. This must only be
+     * called after the mapping is committed to the repository.
+     */
+    private void addObjectRoleToIndex(final String userIdentifier, final Role role, final URI objectUri)
+    {
+        synchronized(this.objectRolesIndexLock)
+        {
+            if(this.objectRolesIndex != null)
+            {
+                this.addObjectRole(this.objectRolesIndex, userIdentifier, role, objectUri);
+            }
+        }
+    }
+    
+    /**
+     * Removes a role mapping from the object roles index, if it has been loaded. This must only be
+     * called after the removal is committed to the repository.
+     *
+     * @param objectUri
+     *            The object to remove the role for, or null to remove the role for all objects.
+     */
+    private void removeObjectRoleFromIndex(final String userIdentifier, final Role role, final URI objectUri)
+    {
+        synchronized(this.objectRolesIndexLock)
+        {
+            if(this.objectRolesIndex == null)
+            {
+                return;
+            }
+            
+            final Collection<ConcurrentMap<String, Set<Role>>> affectedObjects;
+            if(objectUri == null)
+            {
+                affectedObjects = this.objectRolesIndex.values();
+            }
+            else if(this.objectRolesIndex.containsKey(objectUri))
+            {
+                affectedObjects = Collections.singleton(this.objectRolesIndex.get(objectUri));
+            }
+            else
+            {
+                affectedObjects = Collections.emptySet();
+            }
+            
+            for(final ConcurrentMap<String, Set<Role>> nextObjectRoles : affectedObjects)
+            {
+                final Set<Role> userRoles = nextObjectRoles.get(userIdentifier);
+                if(userRoles != null)
+                {
+                    userRoles.remove(role);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Discards the object roles index, so that it is reloaded from the repository when it is next
+     * needed.
+     */
+    private void resetObjectRolesIndex()
+    {
+        synchronized(this.objectRolesIndexLock)
+        {
+            this.objectRolesIndex = null;
+        }
+    }
+    
     public Map<String, Collection<Role>> getRolesForObjectAlternate(final String userIdentifier, final URI objectUri,
             final RepositoryConnection conn) throws OpenRDFException
     {
@@ -2495,6 +2985,10 @@ public class PoddSesameRealm extends Realm
         {
             throw new RuntimeException("Found unexpected exception while adding role mapping", e);
         }
+        finally
+        {
+            this.clearAuthenticationCache();
+        }
     }
     
     /**
@@ -2515,6 +3009,10 @@ public class PoddSesameRealm extends Realm
         {
             throw new RuntimeException("Found unexpected exception while adding role mapping", e);
         }
+        finally
+        {
+            this.evictAuthenticationCache(user.getIdentifier());
+        }
     }
     
     public void map(final User user, final Role role, final URI optionalObjectUri)
@@ -2544,6 +3042,12 @@ public class PoddSesameRealm extends Realm
             }
             
             conn.commit();
+            
+            if(optionalObjectUri != null)
+            {
+                this.addObjectRoleToIndex(user.getIdentifier(), this.getRoleByName(role.getName()).getRole(),
+                        optionalObjectUri);
+            }
         }
         catch(final RepositoryException e)
         {
@@ -2564,16 +3068,20 @@ public class PoddSesameRealm extends Realm
         }
         finally
         {
-            if(conn != null)
+            try
             {
-                try
+                if(conn != null)
                 {
                     conn.close();
                 }
-                catch(final RepositoryException e)
-                {
-                    this.log.error("Found exception closing repository connection", e);
-                }
+            }
+            catch(final RepositoryException e)
+            {
+                this.log.error("Found exception closing repository connection", e);
+            }
+            finally
+            {
+                this.evictAuthenticationCache(user.getIdentifier());
             }
         }
     }
@@ -2641,6 +3149,8 @@ public class PoddSesameRealm extends Realm
                     "Cannot create an PoddSesameRealm without specifying the contexts that are used to manage user data.");
         }
         this.userManagerContexts = contexts;
+        this.clearAuthenticationCache();
+        this.resetObjectRolesIndex();
     }
     
     public void setRepository(final Repository repository)
@@ -2654,6 +3164,8 @@ public class PoddSesameRealm extends Realm
         {
             this.vf = ValueFactoryImpl.getInstance();
         }
+        this.clearAuthenticationCache();
+        this.resetObjectRolesIndex();
     }
     
     /**
@@ -2827,6 +3339,12 @@ public class PoddSesameRealm extends Realm
                 }
             }
             conn.commit();
+            
+            // The mappings that were removed include any object specific mappings for the role
+            if(SesameRealmConstants.OAS_ROLEMAPPEDUSER.equals(mappingUri))
+            {
+                this.removeObjectRoleFromIndex(identifier, oasRole.getRole(), null);
+            }
         }
         catch(final OpenRDFException e)
         {
@@ -2845,15 +3363,27 @@ public class PoddSesameRealm extends Realm
         }
         finally
         {
-            if(conn != null)
+            try
             {
-                try
+                if(conn != null)
                 {
                     conn.close();
                 }
-                catch(final RepositoryException e)
+            }
+            catch(final RepositoryException e)
+            {
+                this.log.error("Failure to close connection", e);
+            }
+            finally
+            {
+                // Group role mappings may apply to any user
+                if(SesameRealmConstants.OAS_ROLEMAPPEDUSER.equals(mappingUri))
                 {
-                    this.log.error("Failure to close connection", e);
+                    this.evictAuthenticationCache(identifier);
+                }
+                else
+                {
+                    this.clearAuthenticationCache();
                 }
             }
         }
@@ -2933,6 +3463,8 @@ public class PoddSesameRealm extends Realm
                     }
                 }
                 conn.commit();
+                
+                this.removeObjectRoleFromIndex(user.getIdentifier(), oasRole.getRole(), optionalObjectUri);
             }
             catch(final OpenRDFException e)
             {
@@ -2951,16 +3483,20 @@ public class PoddSesameRealm extends Realm
             }
             finally
             {
-                if(conn != null)
+                try
                 {
-                    try
+                    if(conn != null)
                     {
                         conn.close();
                     }
-                    catch(final RepositoryException e)
-                    {
-                        this.log.error("Failure to close connection", e);
-                    }
+                }
+                catch(final RepositoryException e)
+                {
+                    this.log.error("Failure to close connection", e);
+                }
+                finally
+                {
+                    this.evictAuthenticationCache(user.getIdentifier());
                 }
             }
         }
@@ -2978,6 +3514,45 @@ public class PoddSesameRealm extends Realm
         }
     }
     
+    private abstract static class ExpiringCacheEntry
+    {
+        private final long expiresAt;
+        
+        ExpiringCacheEntry(final long expiresAt)
+        {
+            this.expiresAt = expiresAt;
+        }
+        
+        boolean isExpired()
+        {
+            return System.currentTimeMillis() >= this.expiresAt;
+        }
+    }
+    
+    private static final class CachedCredential extends ExpiringCacheEntry
+    {
+        private final byte[] secretDigest;
+        
+        CachedCredential(final byte[] secretDigest, final long expiresAt)
+        {
+            super(expiresAt);
+            this.secretDigest = secretDigest;
+        }
+    }
+    
+    private static final class CachedUserRoles extends ExpiringCacheEntry
+    {
+        private final PoddUser user;
+        private final Set<Role> roles;
+        
+        CachedUserRoles(final PoddUser user, final Set<Role> roles, final long expiresAt)
+        {
+            super(expiresAt);
+            this.user = user;
+            this.roles = Collections.unmodifiableSet(new LinkedHashSet<Role>(roles));
+        }
+    }
+    
     private static final class PoddUserSecretHash
     {
         private String hash;
@@ -17,6 +17,7 @@
 package com.github.podd.api.purl.test;
 
 import java.io.InputStream;
+import java.util.HashSet;
 import java.util.Set;
 
 import org.junit.After;
@@ -25,7 +26,9 @@ import org.junit.Before;
 import org.junit.Test;
 import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
 import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.model.vocabulary.RDFS;
 import org.openrdf.repository.Repository;
 import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryResult;
@@ -37,6 +40,7 @@ import com.github.podd.api.purl.PoddPurlManager;
 import com.github.podd.api.purl.PoddPurlProcessorFactoryRegistry;
 import com.github.podd.api.purl.PoddPurlReference;
 import com.github.podd.api.test.TestConstants;
+import com.github.podd.impl.purl.SimplePoddPurlReference;
 
 /**
  * Abstract class to test PoddPurlManager.
@@ -164,6 +168,44 @@ public abstract class AbstractPoddPurlManagerTest
         Assert.assertEquals("Repository size should not have changed", repoSize, this.testRepositoryConnection.size());
     }
     
+    /**
+     * Tests that temporary URIs are replaced when they appear as both the subject and object of a
+     * statement, and that statements in other contexts are not modified.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testConvertTemporaryUrisSubjectAndObject() throws Exception
+    {
+        final ValueFactory vf = ValueFactoryImpl.getInstance();
+        final URI context = vf.createURI("urn:testcontext");
+        final URI otherContext = vf.createURI("urn:testothercontext");
+        final URI tempParent = vf.createURI(AbstractPoddPurlManagerTest.TEMP_URI_PREFIX + ":parent");
+        final URI tempChild = vf.createURI(AbstractPoddPurlManagerTest.TEMP_URI_PREFIX + ":child");
+        final URI purlParent = vf.createURI("http://purl.example.org/podd/parent");
+        final URI purlChild = vf.createURI("http://purl.example.org/podd/child");
+        final URI predicate = vf.createURI("http://example.org/hasChild");
+        
+        this.testRepositoryConnection.add(tempParent, predicate, tempChild, context);
+        this.testRepositoryConnection.add(tempChild, RDFS.LABEL, vf.createLiteral("child"), context);
+        this.testRepositoryConnection.add(tempParent, predicate, tempChild, otherContext);
+        
+        final Set<PoddPurlReference> purlSet = new HashSet<PoddPurlReference>();
+        purlSet.add(new SimplePoddPurlReference(tempParent, purlParent));
+        purlSet.add(new SimplePoddPurlReference(tempChild, purlChild));
+        
+        this.testPurlManager.convertTemporaryUris(purlSet, this.testRepositoryConnection, context);
+        
+        Assert.assertEquals(2, this.testRepositoryConnection.size(context));
+        Assert.assertTrue(this.testRepositoryConnection.hasStatement(purlParent, predicate, purlChild, false, context));
+        Assert.assertTrue(this.testRepositoryConnection.hasStatement(purlChild, RDFS.LABEL, vf.createLiteral("child"),
+                false, context));
+        
+        Assert.assertEquals(1, this.testRepositoryConnection.size(otherContext));
+        Assert.assertTrue(this.testRepositoryConnection.hasStatement(tempParent, predicate, tempChild, false,
+                otherContext));
+    }
+    
     @Test
     public void testConvertTemporaryUrisWithEmptyPurlSet() throws Exception
     {
@@ -65,11 +65,11 @@ public abstract class AbstractPoddRepositoryManagerTest
     @Rule
     public TemporaryFolder tempDir = new TemporaryFolder();
     
-    private PoddRepositoryManager testRepositoryManager;
+    protected PoddRepositoryManager testRepositoryManager;
     
-    private URI schemaGraph;
+    protected URI schemaGraph;
     
-    private URI artifactGraph;
+    protected URI artifactGraph;
     
     private InferredOWLOntologyID testA1;
     private InferredOWLOntologyID testB1;
@@ -139,8 +139,8 @@ public abstract class AbstractPoddRepositoryManagerTest
     private URI testVersionUriB2;
     private URI testVersionUriC1;
     private URI testVersionUriC3;
-    private Path testTempRepositoryManagerPath;
-    private Repository managementRepository;
+    protected Path testTempRepositoryManagerPath;
+    protected Repository managementRepository;
     
     private final InferredOWLOntologyID owlid(final IRI ontologyUri, final IRI versionUri, final IRI inferredUri)
     {
@@ -71,14 +71,14 @@ public abstract class AbstractPoddSesameManagerTest
     
     protected Logger log = LoggerFactory.getLogger(this.getClass());
     
-    private PoddSesameManager testPoddSesameManager;
+    protected PoddSesameManager testPoddSesameManager;
     
     private Repository testRepository;
-    private RepositoryConnection testRepositoryConnection;
+    protected RepositoryConnection testRepositoryConnection;
     
-    private URI artifactGraph;
+    protected URI artifactGraph;
     
-    private URI schemaGraph;
+    protected URI schemaGraph;
     
     public abstract PoddSesameManager getNewPoddSesameManagerInstance();
     
@@ -130,7 +130,7 @@ public abstract class AbstractPoddSesameManagerTest
      * @return An InferredOWLOntologyID for the loaded ontology
      * @throws Exception
      */
-    private InferredOWLOntologyID loadOntologyFromResource(final String resourcePath,
+    protected InferredOWLOntologyID loadOntologyFromResource(final String resourcePath,
             final String inferredResourcePath, final RDFFormat format) throws Exception
     {
         final InputStream resourceStream = this.getClass().getResourceAsStream(resourcePath);
@@ -183,7 +183,7 @@ public abstract class AbstractPoddSesameManagerTest
     /**
      * This method loads all PODD schema ontologies.
      */
-    private List<InferredOWLOntologyID> loadSchemaOntologies() throws Exception
+    protected List<InferredOWLOntologyID> loadSchemaOntologies() throws Exception
     {
         return this.loadSchemaOntologies(this.testRepositoryConnection, this.schemaGraph);
     }
@@ -1654,6 +1654,70 @@ public abstract class AbstractPoddSesameManagerTest
                 topObjectList);
     }
     
+    /**
+     * Test method for
+     * {@link com.github.podd.api.PoddSesameManager#getTopObjectLabels(List, RepositoryConnection)}
+     * .
+     */
+    @Test
+    public void testGetTopObjectLabels() throws Exception
+    {
+        this.loadSchemaOntologies();
+        final InferredOWLOntologyID nextOntologyID =
+                this.loadOntologyFromResource(TestConstants.TEST_ARTIFACT_20130206,
+                        TestConstants.TEST_ARTIFACT_20130206_INFERRED, RDFFormat.TURTLE);
+        
+        final Map<InferredOWLOntologyID, PoddObjectLabel> topObjectLabels =
+                this.testPoddSesameManager.getTopObjectLabels(Arrays.asList(nextOntologyID),
+                        this.testRepositoryConnection);
+        
+        Assert.assertEquals(1, topObjectLabels.size());
+        final PoddObjectLabel topObjectLabel = topObjectLabels.get(nextOntologyID);
+        Assert.assertNotNull(topObjectLabel);
+        Assert.assertEquals("Not the expected top object URI",
+                ValueFactoryImpl.getInstance().createURI("http://purl.org/podd/basic-1-20130206/object:2966"),
+                topObjectLabel.getObjectURI());
+        
+        // The bulk results must match the results for the individual object
+        final PoddObjectLabel expectedLabel =
+                this.testPoddSesameManager.getObjectLabel(nextOntologyID, topObjectLabel.getObjectURI(),
+                        this.testRepositoryConnection, this.testRepositoryConnection, this.schemaGraph,
+                        this.artifactGraph);
+        Assert.assertEquals(expectedLabel.getLabel(), topObjectLabel.getLabel());
+        Assert.assertEquals(expectedLabel.getDescription(), topObjectLabel.getDescription());
+        Assert.assertEquals(expectedLabel.getBarcode(), topObjectLabel.getBarcode());
+    }
+    
+    /**
+     * Test method for
+     * {@link com.github.podd.api.PoddSesameManager#getTopObjectLabels(List, RepositoryConnection)}
+     * . Test that the top object URI is used as the label for a top object without a label.
+     */
+    @Test
+    public void testGetTopObjectLabelsWithoutLabel() throws Exception
+    {
+        this.loadSchemaOntologies();
+        final InferredOWLOntologyID nextOntologyID =
+                this.loadOntologyFromResource(TestConstants.TEST_ARTIFACT_20130206,
+                        TestConstants.TEST_ARTIFACT_20130206_INFERRED, RDFFormat.TURTLE);
+        
+        final URI topObjectUri =
+                ValueFactoryImpl.getInstance().createURI("http://purl.org/podd/basic-1-20130206/object:2966");
+        this.testRepositoryConnection.remove(topObjectUri, RDFS.LABEL, null, nextOntologyID.getVersionIRI()
+                .toOpenRDFURI(), nextOntologyID.getInferredOntologyIRI().toOpenRDFURI());
+        
+        final Map<InferredOWLOntologyID, PoddObjectLabel> topObjectLabels =
+                this.testPoddSesameManager.getTopObjectLabels(Arrays.asList(nextOntologyID),
+                        this.testRepositoryConnection);
+        
+        Assert.assertEquals(1, topObjectLabels.size());
+        final PoddObjectLabel topObjectLabel = topObjectLabels.get(nextOntologyID);
+        Assert.assertNotNull(topObjectLabel);
+        Assert.assertEquals(topObjectUri, topObjectLabel.getObjectURI());
+        Assert.assertEquals(topObjectUri.stringValue(), topObjectLabel.getLabel());
+        Assert.assertEquals(topObjectUri.stringValue(), topObjectLabel.getLabelLiteral().stringValue());
+    }
+    
     /**
      * Test method for
      * {@link com.github.podd.api.PoddSesameManager#getTopObjects(InferredOWLOntologyID, RepositoryConnection)}
@@ -1997,6 +2061,69 @@ public abstract class AbstractPoddSesameManagerTest
                 .filter(null, null, PODD.VF.createLiteral("No")).size());
     }
     
+    /**
+     * Test method for
+     * {@link com.github.podd.api.PoddSesameManager#searchOntologyLabels(String, URI[], boolean, int, int, RepositoryConnection, URI...)}
+     */
+    @Test
+    public void testSearchOntologyLabelsIncludeSubTypes() throws Exception
+    {
+        // prepare:
+        this.loadSchemaOntologies();
+        final InferredOWLOntologyID ontologyID =
+                this.loadOntologyFromResource(TestConstants.TEST_ARTIFACT_20130206,
+                        TestConstants.TEST_ARTIFACT_20130206_INFERRED, RDFFormat.TURTLE);
+        
+        final String searchTerm = "ME";
+        final URI[] searchTypes = { PODD.VF.createURI(PODD.PODD_SCIENCE, "Platform") };
+        final URI[] contexts =
+                this.testPoddSesameManager.versionAndSchemaContexts(ontologyID, this.testRepositoryConnection,
+                        this.schemaGraph, this.artifactGraph);
+        final Model exactResult =
+                this.testPoddSesameManager.searchOntologyLabels(searchTerm, searchTypes, false, 1000, 0,
+                        this.testRepositoryConnection, contexts);
+        final Model result =
+                this.testPoddSesameManager.searchOntologyLabels(searchTerm, searchTypes, true, 1000, 0,
+                        this.testRepositoryConnection, contexts);
+        
+        // verify: subtypes can only add to the exact matches
+        Assert.assertTrue("Missing exact type matches", result.containsAll(exactResult));
+        Assert.assertEquals("Expected Platform SPAD Meter not found", 1,
+                result.filter(null, null, PODD.VF.createLiteral("SPAD Meter")).size());
+    }
+    
+    /**
+     * Test method for
+     * {@link com.github.podd.api.PoddSesameManager#searchOntologyLabels(String, URI[], int, int, RepositoryConnection, URI...)}
+     * after the artifact has been deleted.
+     */
+    @Test
+    public void testSearchOntologyLabelsAfterDelete() throws Exception
+    {
+        // prepare:
+        this.loadSchemaOntologies();
+        final InferredOWLOntologyID ontologyID =
+                this.loadOntologyFromResource(TestConstants.TEST_ARTIFACT_20130206,
+                        TestConstants.TEST_ARTIFACT_20130206_INFERRED, RDFFormat.TURTLE);
+        
+        final URI[] searchTypes = { PODD.VF.createURI(PODD.PODD_SCIENCE, "Platform") };
+        final URI[] contexts = this.testPoddSesameManager.versionAndInferredContexts(ontologyID);
+        
+        Assert.assertFalse(
+                "Expected results before delete",
+                this.testPoddSesameManager.searchOntologyLabels("Meter", searchTypes, 1000, 0,
+                        this.testRepositoryConnection, contexts).isEmpty());
+        
+        this.testPoddSesameManager.deleteOntologies(Arrays.asList(ontologyID), this.testRepositoryConnection,
+                this.testRepositoryConnection, this.artifactGraph);
+        
+        // verify: labels from the deleted artifact are no longer found
+        Assert.assertTrue(
+                "Found results after delete",
+                this.testPoddSesameManager.searchOntologyLabels("Meter", searchTypes, 1000, 0,
+                        this.testRepositoryConnection, contexts).isEmpty());
+    }
+    
     /**
      * Test method for
      * {@link com.github.podd.impl.PoddRepositoryManagerImpl#updateCurrentManagedSchemaOntologyVersion(org.semanticweb.owlapi.model.OWLOntologyID, org.semanticweb.owlapi.model.OWLOntologyID, boolean)}
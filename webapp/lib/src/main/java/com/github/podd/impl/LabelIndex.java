@@ -0,0 +1,489 @@
+/**
+ * PODD is an OWL ontology database used for scientific project management
+ *
+ * Copyright (C) 2009-2013 The University Of Queensland
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.podd.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.openrdf.OpenRDFException;
+import org.openrdf.model.Model;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.model.vocabulary.RDFS;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryResult;
+
+/**
+ * An immutable in-memory index over the labels, types and subclass relationships in a single
+ * context, used to answer label searches without scanning every label in the repository.
+ *
+ * Labels are indexed by the trigrams in their lower case form, so that substring matches only need
+ * to check the labels that contain every trigram of the search term.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+final class LabelIndex
+{
+    private static final int GRAM_LENGTH = 3;
+    
+    private static final int[] NO_ENTRIES = new int[0];
+    
+    /**
+     * Builds the index for the given context by reading its label, type, and subclass statements.
+     */
+    static LabelIndex build(final RepositoryConnection repositoryConnection, final URI context)
+        throws OpenRDFException
+    {
+        final List<Resource> subjects = new ArrayList<Resource>();
+        final List<Value> labels = new ArrayList<Value>();
+        final Map<String, List<Integer>> postings = new HashMap<String, List<Integer>>();
+        
+        final RepositoryResult<Statement> labelStatements =
+                repositoryConnection.getStatements(null, RDFS.LABEL, null, false, context);
+        try
+        {
+            while(labelStatements.hasNext())
+            {
+                final Statement next = labelStatements.next();
+                final Integer id = subjects.size();
+                subjects.add(next.getSubject());
+                labels.add(next.getObject());
+                for(final String gram : LabelIndex.grams(LabelIndex.normalise(next.getObject().stringValue())))
+                {
+                    List<Integer> entries = postings.get(gram);
+                    if(entries == null)
+                    {
+                        entries = new ArrayList<Integer>();
+                        postings.put(gram, entries);
+                    }
+                    entries.add(id);
+                }
+            }
+        }
+        finally
+        {
+            labelStatements.close();
+        }
+        
+        final Map<String, int[]> gramIndex = new HashMap<String, int[]>((int)(postings.size() / 0.75f) + 1);
+        for(final Map.Entry<String, List<Integer>> nextPosting : postings.entrySet())
+        {
+            final List<Integer> entries = nextPosting.getValue();
+            final int[] ids = new int[entries.size()];
+            for(int i = 0; i < ids.length; i++)
+            {
+                ids[i] = entries.get(i);
+            }
+            gramIndex.put(nextPosting.getKey(), ids);
+        }
+        
+        final String[] normalisedLabels = new String[labels.size()];
+        for(int i = 0; i < normalisedLabels.length; i++)
+        {
+            normalisedLabels[i] = LabelIndex.normalise(labels.get(i).stringValue());
+        }
+        
+        return new LabelIndex(subjects.toArray(new Resource[subjects.size()]),
+                labels.toArray(new Value[labels.size()]), normalisedLabels, gramIndex, LabelIndex.uriMap(
+                        repositoryConnection, RDF.TYPE, context), LabelIndex.uriMap(repositoryConnection,
+                        RDFS.SUBCLASSOF, context));
+    }
+    
+    /**
+     * Searches the given indexes for labels containing the search term, ignoring case. If there are
+     * no such labels, labels containing a word that is within a small edit distance of the search
+     * term are returned instead.
+     *
+     * @param indexes
+     *            The indexes for the contexts that make up the search space.
+     * @param searchTerm
+     *            The term to search for.
+     * @param searchTypes
+     *            The types that each result must have, or null to match all types.
+     * @param includeSubTypes
+     *            True to also match results whose types are subclasses of the search types.
+     * @param limit
+     *            The maximum number of results.
+     * @param offset
+     *            The number of matching results to skip.
+     * @return A {@link Model} containing the rdfs:label statements for each matching object.
+     */
+    static Model search(final List<LabelIndex> indexes, final String searchTerm, final URI[] searchTypes,
+            final boolean includeSubTypes, final int limit, final int offset)
+    {
+        final String term = LabelIndex.normalise(searchTerm);
+        
+        final TypeMatcher typeMatcher = new TypeMatcher(indexes, searchTypes, includeSubTypes);
+        
+        // Every distinct match, including those skipped by the offset, so that duplicates across
+        // contexts are only counted once
+        final Model matches = new LinkedHashModel();
+        final Model results = new LinkedHashModel();
+        if(limit <= 0)
+        {
+            return results;
+        }
+        
+        for(final LabelIndex nextIndex : indexes)
+        {
+            for(final int id : nextIndex.findContaining(term))
+            {
+                if(typeMatcher.matches(nextIndex.subjects[id])
+                        && LabelIndex.addMatch(nextIndex, id, matches, results, limit, offset))
+                {
+                    return results;
+                }
+            }
+        }
+        
+        if(matches.isEmpty())
+        {
+            final int maxEdits = LabelIndex.maxEdits(term);
+            if(maxEdits > 0)
+            {
+                for(final LabelIndex nextIndex : indexes)
+                {
+                    for(int id = 0; id < nextIndex.subjects.length; id++)
+                    {
+                        if(LabelIndex.hasSimilarWord(nextIndex.normalisedLabels[id], term, maxEdits)
+                                && typeMatcher.matches(nextIndex.subjects[id])
+                                && LabelIndex.addMatch(nextIndex, id, matches, results, limit, offset))
+                        {
+                            return results;
+                        }
+                    }
+                }
+            }
+        }
+        
+        return results;
+    }
+    
+    /**
+     * Records the given label as a match, adding it to the results if it is a new match that is
+     * not skipped by the offset.
+     *
+     * @return True if the results now contain the maximum number of results.
+     */
+    private static boolean addMatch(final LabelIndex index, final int id, final Model matches, final Model results,
+            final int limit, final int offset)
+    {
+        if(matches.add(index.subjects[id], RDFS.LABEL, index.labels[id]) && matches.size() > offset)
+        {
+            results.add(index.subjects[id], RDFS.LABEL, index.labels[id]);
+        }
+        return results.size() >= limit;
+    }
+    
+    static String normalise(final String label)
+    {
+        return label.toLowerCase(Locale.ROOT);
+    }
+    
+    /**
+     * @return The number of edits allowed for a fuzzy match of the given term, with short terms
+     *         not being matched fuzzily as they would match too many labels.
+     */
+    private static int maxEdits(final String term)
+    {
+        if(term.length() < 4)
+        {
+            return 0;
+        }
+        else if(term.length() < 8)
+        {
+            return 1;
+        }
+        return 2;
+    }
+    
+    private static boolean hasSimilarWord(final String label, final String term, final int maxEdits)
+    {
+        for(final String word : label.split("[^\\p{L}\\p{N}]+"))
+        {
+            if(Math.abs(word.length() - term.length()) <= maxEdits
+                    && LabelIndex.editDistance(word, term, maxEdits) <= maxEdits)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Computes the Levenshtein distance between the given strings, stopping early once it is known
+     * to be more than the given maximum.
+     */
+    private static int editDistance(final String a, final String b, final int max)
+    {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for(int j = 0; j <= b.length(); j++)
+        {
+            previous[j] = j;
+        }
+        for(int i = 1; i <= a.length(); i++)
+        {
+            current[0] = i;
+            int rowMinimum = current[0];
+            for(int j = 1; j <= b.length(); j++)
+            {
+                final int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMinimum = Math.min(rowMinimum, current[j]);
+            }
+            if(rowMinimum > max)
+            {
+                return rowMinimum;
+            }
+            final int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+    
+    private static Set<String> grams(final String normalisedLabel)
+    {
+        final Set<String> result = new HashSet<String>();
+        for(int i = 0; i + LabelIndex.GRAM_LENGTH <= normalisedLabel.length(); i++)
+        {
+            result.add(normalisedLabel.substring(i, i + LabelIndex.GRAM_LENGTH));
+        }
+        return result;
+    }
+    
+    private static Map<Resource, Set<URI>> uriMap(final RepositoryConnection repositoryConnection,
+            final URI predicate, final URI context) throws OpenRDFException
+    {
+        final Map<Resource, Set<URI>> result = new HashMap<Resource, Set<URI>>();
+        final RepositoryResult<Statement> statements =
+                repositoryConnection.getStatements(null, predicate, null, false, context);
+        try
+        {
+            while(statements.hasNext())
+            {
+                final Statement next = statements.next();
+                if(next.getObject() instanceof URI)
+                {
+                    Set<URI> objects = result.get(next.getSubject());
+                    if(objects == null)
+                    {
+                        objects = new HashSet<URI>(4);
+                        result.put(next.getSubject(), objects);
+                    }
+                    objects.add((URI)next.getObject());
+                }
+            }
+        }
+        finally
+        {
+            statements.close();
+        }
+        return result;
+    }
+    
+    private final Resource[] subjects;
+    
+    private final Value[] labels;
+    
+    private final String[] normalisedLabels;
+    
+    private final Map<String, int[]> gramIndex;
+    
+    private final Map<Resource, Set<URI>> types;
+    
+    private final Map<Resource, Set<URI>> superClasses;
+    
+    private LabelIndex(final Resource[] subjects, final Value[] labels, final String[] normalisedLabels,
+            final Map<String, int[]> gramIndex, final Map<Resource, Set<URI>> types,
+            final Map<Resource, Set<URI>> superClasses)
+    {
+        this.subjects = subjects;
+        this.labels = labels;
+        this.normalisedLabels = normalisedLabels;
+        this.gramIndex = gramIndex;
+        this.types = types;
+        this.superClasses = superClasses;
+    }
+    
+    /**
+     * @return True if this index does not contain any labels, types or subclass relationships.
+     */
+    boolean isEmpty()
+    {
+        return this.subjects.length == 0 && this.types.isEmpty() && this.superClasses.isEmpty();
+    }
+    
+    /**
+     * @return The identifiers, in label order, of the labels that contain the given normalised term.
+     */
+    private int[] findContaining(final String term)
+    {
+        int[] candidates = null;
+        for(final String gram : LabelIndex.grams(term))
+        {
+            final int[] entries = this.gramIndex.get(gram);
+            if(entries == null)
+            {
+                return LabelIndex.NO_ENTRIES;
+            }
+            candidates = candidates == null ? entries : LabelIndex.intersect(candidates, entries);
+            if(candidates.length == 0)
+            {
+                return LabelIndex.NO_ENTRIES;
+            }
+        }
+        
+        final int[] result = new int[candidates == null ? this.subjects.length : candidates.length];
+        int count = 0;
+        for(int i = 0; i < result.length; i++)
+        {
+            final int id = candidates == null ? i : candidates[i];
+            // The trigrams may all appear without the term appearing, so always check the label
+            if(this.normalisedLabels[id].contains(term))
+            {
+                result[count++] = id;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+    
+    private static int[] intersect(final int[] a, final int[] b)
+    {
+        final int[] result = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while(i < a.length && j < b.length)
+        {
+            if(a[i] < b[j])
+            {
+                i++;
+            }
+            else if(a[i] > b[j])
+            {
+                j++;
+            }
+            else
+            {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+    
+    /**
+     * Matches subjects against the search types, using the types and subclass relationships from
+     * all of the indexes in the search space.
+     */
+    private static final class TypeMatcher
+    {
+        private final List<LabelIndex> indexes;
+        
+        private final URI[] searchTypes;
+        
+        private final boolean includeSubTypes;
+        
+        private final Map<URI, Set<URI>> ancestors = new HashMap<URI, Set<URI>>();
+        
+        TypeMatcher(final List<LabelIndex> indexes, final URI[] searchTypes, final boolean includeSubTypes)
+        {
+            this.indexes = indexes;
+            this.searchTypes = searchTypes;
+            this.includeSubTypes = includeSubTypes;
+        }
+        
+        /**
+         * @return True if the subject has all of the search types.
+         */
+        boolean matches(final Resource subject)
+        {
+            if(this.searchTypes == null || this.searchTypes.length == 0)
+            {
+                return true;
+            }
+            
+            final Set<URI> subjectTypes = new HashSet<URI>();
+            for(final LabelIndex nextIndex : this.indexes)
+            {
+                final Set<URI> nextTypes = nextIndex.types.get(subject);
+                if(nextTypes != null)
+                {
+                    subjectTypes.addAll(nextTypes);
+                }
+            }
+            
+            if(this.includeSubTypes)
+            {
+                final Set<URI> expanded = new HashSet<URI>(subjectTypes);
+                for(final URI nextType : subjectTypes)
+                {
+                    expanded.addAll(this.getAncestors(nextType));
+                }
+                return expanded.containsAll(Arrays.asList(this.searchTypes));
+            }
+            return subjectTypes.containsAll(Arrays.asList(this.searchTypes));
+        }
+        
+        private Set<URI> getAncestors(final URI type)
+        {
+            Set<URI> result = this.ancestors.get(type);
+            if(result == null)
+            {
+                result = new LinkedHashSet<URI>();
+                final Deque<URI> queue = new ArrayDeque<URI>(Collections.singleton(type));
+                while(!queue.isEmpty())
+                {
+                    final URI next = queue.removeFirst();
+                    for(final LabelIndex nextIndex : this.indexes)
+                    {
+                        final Set<URI> parents = nextIndex.superClasses.get(next);
+                        if(parents != null)
+                        {
+                            for(final URI parent : parents)
+                            {
+                                if(result.add(parent))
+                                {
+                                    queue.addLast(parent);
+                                }
+                            }
+                        }
+                    }
+                }
+                this.ancestors.put(type, result);
+            }
+            return result;
+        }
+    }
+}
@@ -26,13 +26,30 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.openrdf.OpenRDFException;
 import org.openrdf.model.Literal;
@@ -45,11 +62,15 @@ import org.openrdf.model.impl.LinkedHashModel;
 import org.openrdf.model.util.Namespaces;
 import org.openrdf.model.vocabulary.OWL;
 import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.model.vocabulary.RDFS;
+import org.openrdf.model.vocabulary.XMLSchema;
 import org.openrdf.repository.Repository;
 import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryException;
 import org.openrdf.repository.RepositoryResult;
 import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFParser;
 import org.openrdf.rio.Rio;
 import org.openrdf.rio.UnsupportedRDFormatException;
 import org.openrdf.rio.helpers.StatementCollector;
@@ -63,6 +84,7 @@ import org.slf4j.LoggerFactory;
 import com.clarkparsia.owlapi.explanation.GlassBoxExplanation;
 import com.github.podd.api.DanglingObjectPolicy;
 import com.github.podd.api.DataReferenceVerificationPolicy;
+import com.github.podd.api.InferenceStatus;
 import com.github.podd.api.MetadataPolicy;
 import com.github.podd.api.PoddArtifactManager;
 import com.github.podd.api.PoddOWLManager;
@@ -93,12 +115,15 @@ import com.github.podd.exception.SchemaManifestException;
 import com.github.podd.exception.UnmanagedArtifactIRIException;
 import com.github.podd.exception.UnmanagedArtifactVersionException;
 import com.github.podd.exception.UnmanagedSchemaIRIException;
+import com.github.podd.impl.purl.PurlRewritingRDFHandler;
+import com.github.podd.utils.ArtifactUploadRDFHandler;
 import com.github.podd.utils.DebugUtils;
 import com.github.podd.utils.InferredOWLOntologyID;
 import com.github.podd.utils.OntologyUtils;
 import com.github.podd.utils.PODD;
 import com.github.podd.utils.PoddObjectLabel;
 import com.github.podd.utils.RdfUtility;
+import com.github.podd.utils.StagingRepositoryInserter;
 
 /**
  * Implementation of the PODD Artifact Manager API, to manage the lifecycle for PODD Artifacts.
@@ -124,11 +149,147 @@ public class PoddArtifactManagerImpl implements PoddArtifactManager
     
     private PoddSesameManager sesameManager;
     
+    private volatile boolean streamingUploads = false;
+    
+    private volatile boolean incrementalUpdates = false;
+    
+    private volatile long stagingSpillThreshold = PoddArtifactManagerImpl.DEFAULT_STAGING_SPILL_THRESHOLD;
+    
+    private volatile Executor inferenceExecutor = null;
+    
+    /**
+     * Background inference tasks, by artifact version, that are waiting or running. The status of
+     * each task is also stored in the artifact management graph, so that the inferences can be
+     * resumed after a restart.
+     */
+    private final ConcurrentMap<URI, InferenceTask> inferenceTasks = new ConcurrentHashMap<>();
+    
+    /**
+     * Submits retries of failed background inferences to the inference executor after a delay.
+     */
+    private final ScheduledThreadPoolExecutor inferenceRetryScheduler = new ScheduledThreadPoolExecutor(1,
+            new ThreadFactory()
+            {
+                private final AtomicInteger threadCount = new AtomicInteger();
+                
+                @Override
+                public Thread newThread(final Runnable runnable)
+                {
+                    final Thread result =
+                            new Thread(runnable, "podd-inference-retry-" + this.threadCount.incrementAndGet());
+                    result.setDaemon(true);
+                    return result;
+                }
+            });
+    
+    private volatile long inferenceRetryDelayMillis = PoddArtifactManagerImpl.DEFAULT_INFERENCE_RETRY_DELAY_MILLIS;
+    
+    /**
+     * Resolved artifact versions, keyed by the artifact IRI and the requested version IRI, which
+     * may be null to request the current version.
+     */
+    private final ConcurrentMap<List<IRI>, CachedValue<InferredOWLOntologyID>> artifactCache =
+            new ConcurrentHashMap<>();
+    
+    /**
+     * Schema imports, keyed by the artifact version IRI.
+     */
+    private final ConcurrentMap<IRI, CachedValue<Set<OWLOntologyID>>> schemaImportsCache =
+            new ConcurrentHashMap<>();
+    
+    /**
+     * Incremented after each change to the artifact management graph is committed, so that values
+     * resolved concurrently with a change are never returned from the caches.
+     */
+    private final AtomicLong artifactCacheGeneration = new AtomicLong();
+    
+    private final AtomicLong artifactCacheHits = new AtomicLong();
+    
+    private final AtomicLong artifactCacheMisses = new AtomicLong();
+    
+    /**
+     * The default number of statements after which streaming uploads are staged on disk.
+     */
+    public static final long DEFAULT_STAGING_SPILL_THRESHOLD = 1000000;
+    
+    /**
+     * The number of times that background inferences are attempted for an artifact version before
+     * they are marked as failed.
+     */
+    public static final int MAX_INFERENCE_ATTEMPTS = 3;
+    
+    /**
+     * The default number of milliseconds before the first retry of failed background inferences.
+     * The delay is doubled for each later retry.
+     */
+    public static final long DEFAULT_INFERENCE_RETRY_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    
+    /**
+     * Annotation properties that are not declared in the schema ontologies, but never affect
+     * inferences.
+     */
+    private static final Set<URI> BUILT_IN_ANNOTATION_PROPERTIES = Collections.unmodifiableSet(new HashSet<URI>(
+            Arrays.asList(RDFS.LABEL, RDFS.COMMENT, RDFS.SEEALSO, RDFS.ISDEFINEDBY)));
+    
+    /**
+     * The maximum number of statements held in memory while copying a context to a new version.
+     */
+    private static final int COPY_BATCH_SIZE = 10000;
+    
     /**
      *
      */
     public PoddArtifactManagerImpl()
     {
+        this.inferenceRetryScheduler.setKeepAliveTime(60, TimeUnit.SECONDS);
+        this.inferenceRetryScheduler.allowCoreThreadTimeOut(true);
+    }
+    
+    /**
+     * Computes the inferred statements for an artifact version in the background. The outcome is
+     * recorded before the task completes, so that threads waiting for the task also see any retry
+     * that it schedules.
+     */
+    private final class InferenceTask extends FutureTask<InferredOWLOntologyID>
+    {
+        private final InferredOWLOntologyID artifactId;
+        
+        private final Set<? extends OWLOntologyID> schemaImports;
+        
+        private final int attempt;
+        
+        InferenceTask(final InferredOWLOntologyID artifactId, final Set<? extends OWLOntologyID> schemaImports,
+                final int attempt)
+        {
+            super(new Callable<InferredOWLOntologyID>()
+                {
+                    @Override
+                    public InferredOWLOntologyID call() throws Exception
+                    {
+                        return PoddArtifactManagerImpl.this.inferPendingStatements(artifactId, schemaImports);
+                    }
+                });
+            this.artifactId = artifactId;
+            this.schemaImports = schemaImports;
+            this.attempt = attempt;
+        }
+        
+        @Override
+        protected void set(final InferredOWLOntologyID result)
+        {
+            // Labels for the inferred statements may have been searched before they were added
+            PoddArtifactManagerImpl.this.getSesameManager().invalidateLabelIndex(
+                    this.artifactId.getInferredOntologyIRI().toOpenRDFURI());
+            PoddArtifactManagerImpl.this.inferenceTasks.remove(this.artifactId.getVersionIRI().toOpenRDFURI(), this);
+            super.set(result);
+        }
+        
+        @Override
+        protected void setException(final Throwable t)
+        {
+            PoddArtifactManagerImpl.this.handleInferenceFailure(this, t);
+            super.setException(t);
+        }
     }
     
     @Override
@@ -187,6 +348,9 @@ public class PoddArtifactManagerImpl implements PoddArtifactManager
         List<InferredOWLOntologyID> requestedArtifactIds = null;
         final Set<? extends OWLOntologyID> schemaImports = this.getSchemaImports(artifactId);
         
+        // Background inferences must not store statements after the artifact has been deleted
+        this.awaitInferences(artifactId.getOntologyIRI());
+        
         try
         {
             permanentConnection = this.getRepositoryManager().getPermanentRepositoryConnection(schemaImports);
@@ -221,6 +385,8 @@ public class PoddArtifactManagerImpl implements PoddArtifactManager
                     this.getRepositoryManager().getArtifactManagementGraph());
             permanentConnection.commit();
             managementConnection.commit();
+            this.invalidateArtifactCache();
+            this.getSesameManager().invalidateContextsCache();
             
             return !requestedArtifactIds.isEmpty();
         }
@@ -387,6 +553,18 @@ public class PoddArtifactManagerImpl implements PoddArtifactManager
     @Override
     public Model exportArtifact(final InferredOWLOntologyID ontologyId, final boolean includeInferred)
         throws OpenRDFException, PoddException, IOException
+    {
+        final Model model = new LinkedHashModel();
+        this.exportArtifact(ontologyId, new StatementCollector(model), includeInferred);
+        return model;
+    }
+    
+    /**
+     * Streams the statements for the given artifact directly from the permanent repository to the
+     * given handler.
+     */
+    private void exportArtifact(final InferredOWLOntologyID ontologyId, final RDFHandler handler,
+            final boolean includeInferred) throws OpenRDFException, PoddException, IOException
     {
         if(ontologyId.getOntologyIRI() == null || ontologyId.getVersionIRI() == null)
         {
@@ -418,7 +596,7 @@ public class PoddArtifactManagerImpl implements PoddArtifactManager
             final Set<? extends OWLOntologyID> schemaImports = this.getSchemaImports(ontologyId);
             conn = this.getRepositoryManager().getPermanentRepositoryConnection(schemaImports);
             
-            return this.exportArtifactInternal(includeInferred, conn, contexts.toArray(new Resource[] {}));
+            conn.exportStatements(null, null, null, includeInferred, handler, contexts.toArray(new Resource[] {}));
         }
         finally
         {
@@ -442,8 +620,7 @@ public class PoddArtifactManagerImpl implements PoddArtifactManager
     public void exportArtifact(final InferredOWLOntologyID ontologyId, final OutputStream outputStream,
             final RDFFormat format, final boolean includeInferred) throws OpenRDFException, PoddException, IOException
     {
-        final Model model = this.exportArtifact(ontologyId, includeInferred);
-        Rio.write(model, outputStream, format);
+        this.exportArtifact(ontologyId, Rio.createWriter(format, outputStream), includeInferred);
     }
     
     @Override
@@ -585,11 +762,29 @@ public class PoddArtifactManagerImpl implements PoddArtifactManager
     public InferredOWLOntologyID getArtifact(final IRI artifactIRI, final IRI versionIRI)
         throws UnmanagedArtifactIRIException, UnmanagedArtifactVersionException, UnmanagedSchemaIRIException
     {
+        final List<IRI> cacheKey = Arrays.asList(artifactIRI, versionIRI);
+        // Read the generation before resolving the artifact, so that the result is ignored if
+        // there is a change in the meantime
+        final long generation = this.artifactCacheGeneration.get();
+        final CachedValue<InferredOWLOntologyID> cached = this.artifactCache.get(cacheKey);
+        if(cached != null && cached.generation == generation)
+        {
+            this.artifactCacheHits.incrementAndGet();
+            return cached.value;
+        }
+        this.artifactCacheMisses.incrementAndGet();
+        
         RepositoryConnection managementConnection = null;
         try
         {
             managementConnection = this.getRepositoryManager().getManagementRepositoryConnection();
-            return this.getArtifactInternal(artifactIRI, versionIRI, managementConnection);
+            final InferredOWLOntologyID result =
+                    this.getArtifactInternal(artifactIRI, versionIRI, managementConnection);
+            if(result != null)
+            {
+                this.artifactCache.put(cacheKey, new CachedValue<InferredOWLOntologyID>(generation, result));
+            }
+            return result;
         }
         catch(final OpenRDFException e)
         {
@@ -643,6 +838,10 @@ public class PoddArtifactManagerImpl implements PoddArtifactManager
                     throw new UnmanagedArtifactVersionException(artifactIRI, result.getVersionIRI(), versionIRI,
                             "Artifact IRI and Version IRI combination did not match");
                 }
+                
+                result =
+                        result.withInferencePending(this.getInferenceStatus(result, managementConnection)
+                                == InferenceStatus.PENDING);
             }
             
             return result;
@@ -794,24 +993,72 @@ public class PoddArtifactManagerImpl implements PoddArtifactManager
     }
     
     @Override
-    public Set<DataReference> getFileReferences(final InferredOWLOntologyID artifactId)
+    public Set<DataReference> getFileReferences(final InferredOWLOntologyID artifactId) throws OpenRDFException,
+        PoddException, IOException
     {
-        // TODO Auto-generated method stub
-        return null;
+        RepositoryConnection permanentConnection = null;
+        RepositoryConnection managementConnection = null;
+        try
+        {
+            final Set<? extends OWLOntologyID> schemaImports = this.getSchemaImports(artifactId);
+            managementConnection = this.getRepositoryManager().getManagementRepositoryConnection();
+            permanentConnection = this.getRepositoryManager().getPermanentRepositoryConnection(schemaImports);
+            
+            final URI[] contexts =
+                    this.getSesameManager().versionAndInferredAndSchemaContexts(artifactId, managementConnection,
+                            this.getRepositoryManager().getSchemaManagementGraph(),
+                            this.getRepositoryManager().getArtifactManagementGraph());
+            
+            return this.getDataReferenceManager().extractDataReferences(permanentConnection, contexts);
+        }
+        finally
+        {
+            try
+            {
+                if(permanentConnection != null)
+                {
+                    permanentConnection.close();
+                }
+            }
+            finally
+            {
+                if(managementConnection != null)
+                {
+                    managementConnection.close();
+                }
+            }
+        }
     }
     
     @Override
     public Set<DataReference> getFileReferences(final InferredOWLOntologyID artifactId, final String alias)
+        throws OpenRDFException, PoddException, IOException
     {
-        // TODO Auto-generated method stub
-        return null;
+        final Set<DataReference> results = new LinkedHashSet<DataReference>();
+        for(final DataReference nextReference : this.getFileReferences(artifactId))
+        {
+            if(alias.equalsIgnoreCase(nextReference.getRepositoryAlias()))
+            {
+                results.add(nextReference);
+            }
+        }
+        return results;
     }
     
     @Override
     public Set<DataReference> getFileReferences(final InferredOWLOntologyID artifactId, final URI objectUri)
+        throws OpenRDFException, PoddException, IOException
     {
-        // TODO Auto-generated method stub
-        return null;
+        final Set<DataReference> results = new LinkedHashSet<DataReference>();
+        for(final DataReference nextReference : this.getFileReferences(artifactId))
+        {
+            if(nextReference.getObjectIri() != null
+                    && objectUri.equals(nextReference.getObjectIri().toOpenRDFURI()))
+            {
+                results.add(nextReference);
+            }
+        }
+        return results;
     }
     
     /*
@@ -825,6 +1072,72 @@ public class PoddArtifactManagerImpl implements PoddArtifactManager
         return this.dataRepositoryManager;
     }
     
+    @Override
+    public InferenceStatus getInferenceStatus(final InferredOWLOntologyID ontologyId) throws OpenRDFException
+    {
+        RepositoryConnection managementConnection = null;
+        try
+        {
+            managementConnection = this.getRepositoryManager().getManagementRepositoryConnection();
+            return this.getInferenceStatus(ontologyId, managementConnection);
+        }
+        finally
+        {
+            if(managementConnection != null)
+            {
+                managementConnection.close();
+            }
+        }
+    }
+    
+    /**
+     * Finds the inference status for an artifact version from the artifact management graph. The
+     * status is only stored while the inferences are pending, or after they have failed.
+     */
+    private InferenceStatus getInferenceStatus(final InferredOWLOntologyID ontologyId,
+            final RepositoryConnection managementConnection) throws OpenRDFException
+    {
+        final URI versionUri = ontologyId.getVersionIRI().toOpenRDFURI();
+        final InferenceTask task = this.inferenceTasks.get(versionUri);
+        if(task != null && !task.isDone())
+        {
+            return InferenceStatus.PENDING;
+        }
+        
+        final RepositoryResult<Statement> statuses =
+                managementConnection.getStatements(versionUri, PODD.PODD_BASE_INFERENCE_STATUS, null, false, this
+                        .getRepositoryManager().getArtifactManagementGraph());
+        try
+        {
+            if(statuses.hasNext())
+            {
+                return InferenceStatus.valueOf(statuses.next().getObject().stringValue());
+            }
+            return InferenceStatus.COMPLETE;
+        }
+        finally
+        {
+            statuses.close();
+        }
+    }
+    
+    /**
+     * Stores the inference status for an artifact version in the artifact management graph, or
+     * removes it if the inferences are complete.
+     */
+    private void setInferenceStatus(final InferredOWLOntologyID ontologyId, final InferenceStatus status,
+            final RepositoryConnection managementConnection) throws RepositoryException
+    {
+        final URI versionUri = ontologyId.getVersionIRI().toOpenRDFURI();
+        final URI artifactManagementGraph = this.getRepositoryManager().getArtifactManagementGraph();
+        managementConnection.remove(versionUri, PODD.PODD_BASE_INFERENCE_STATUS, null, artifactManagementGraph);
+        if(status != InferenceStatus.COMPLETE)
+        {
+            managementConnection.add(versionUri, PODD.PODD_BASE_INFERENCE_STATUS,
+                    PODD.VF.createLiteral(status.name()), artifactManagementGraph);
+        }
+    }
+    
     /*
      * (non-Javadoc)
      * 
@@ -1124,16 +1437,28 @@ public class PoddArtifactManagerImpl implements PoddArtifactManager
                 artifactID,
                 "Cannot get schema imports without an artifact reference. May need to try PoddSchemaManager.getCurrentSchemaOntologies instead.");
         
+        final long generation = this.artifactCacheGeneration.get();
+        final InferredOWLOntologyID inferredOWLOntologyID =
+                this.getArtifact(artifactID.getOntologyIRI(), artifactID.getVersionIRI());
+        
+        if(inferredOWLOntologyID != null)
+        {
+            final CachedValue<Set<OWLOntologyID>> cached =
+                    this.schemaImportsCache.get(inferredOWLOntologyID.getVersionIRI());
+            if(cached != null && cached.generation == generation)
+            {
+                this.artifactCacheHits.incrementAndGet();
+                return new LinkedHashSet<>(cached.value);
+            }
+            this.artifactCacheMisses.incrementAndGet();
+        }
+        
         RepositoryConnection managementConnection = null;
         
         try
         {
             managementConnection = this.getRepositoryManager().getManagementRepositoryConnection();
             
-            final InferredOWLOntologyID inferredOWLOntologyID =
-                    this.getArtifactInternal(artifactID.getOntologyIRI(), artifactID.getVersionIRI(),
-                            managementConnection);
-            
             final Model model = new LinkedHashModel();
             // NOTE: In future when we support imports to exist between artifacts, will be utilising
             // the entire artifact management graph here, so exporting it all
@@ -1147,6 +1472,9 @@ public class PoddArtifactManagerImpl implements PoddArtifactManager
             
             this.log.debug("Returning from getSchemaImports: {} {}", artifactID, result);
             
+            this.schemaImportsCache.put(inferredOWLOntologyID.getVersionIRI(), new CachedValue<Set<OWLOntologyID>>(
+                    generation, Collections.unmodifiableSet(new LinkedHashSet<>(result))));
+            
             return result;
         }
         finally
@@ -1175,69 +1503,52 @@ public class PoddArtifactManagerImpl implements PoddArtifactManager
         throws OpenRDFException, UnmanagedSchemaIRIException, SchemaManifestException, UnsupportedRDFormatException,
         IOException, UnmanagedArtifactIRIException, UnmanagedArtifactVersionException, RepositoryNotFoundException
     {
-        final List<PoddObjectLabel> results = new ArrayList<PoddObjectLabel>();
-        final ConcurrentMap<Set<? extends OWLOntologyID>, RepositoryConnection> cache =
-                new ConcurrentHashMap<Set<? extends OWLOntologyID>, RepositoryConnection>();
-        
-        RepositoryConnection managementConnection = null;
-        
-        try
+        // Group the artifacts by permanent repository so their labels can be found in bulk
+        final Map<Set<? extends OWLOntologyID>, List<InferredOWLOntologyID>> artifactsBySchemaImports =
+                new LinkedHashMap<Set<? extends OWLOntologyID>, List<InferredOWLOntologyID>>();
+        for(final InferredOWLOntologyID artifactId : artifacts)
         {
-            managementConnection = this.getRepositoryManager().getManagementRepositoryConnection();
-            for(final InferredOWLOntologyID artifactId : artifacts)
+            final Set<? extends OWLOntologyID> schemaImports = this.getSchemaImports(artifactId);
+            List<InferredOWLOntologyID> nextArtifacts = artifactsBySchemaImports.get(schemaImports);
+            if(nextArtifacts == null)
             {
-                final Set<? extends OWLOntologyID> schemaImports = this.getSchemaImports(artifactId);
-                RepositoryConnection permanentConnection = cache.get(schemaImports);
-                if(permanentConnection == null)
-                {
-                    RepositoryConnection nextConnection =
-                            this.getRepositoryManager().getPermanentRepositoryConnection(schemaImports);
-                    final RepositoryConnection putIfAbsent = cache.putIfAbsent(schemaImports, nextConnection);
-                    if(putIfAbsent != null)
-                    {
-                        nextConnection.close();
-                        nextConnection = putIfAbsent;
-                    }
-                    permanentConnection = nextConnection;
-                }
-                final URI objectIRI = this.getSesameManager().getTopObjectIRI(artifactId, permanentConnection);
-                if(objectIRI == null)
-                {
-                    throw new UnmanagedArtifactIRIException(artifactId.getOntologyIRI(),
-                            "Could not find the top object for an artifact");
-                }
-                results.add(this.getSesameManager().getObjectLabel(artifactId, objectIRI, managementConnection,
-                        permanentConnection, this.getRepositoryManager().getSchemaManagementGraph(),
-                        this.getRepositoryManager().getArtifactManagementGraph()));
+                nextArtifacts = new ArrayList<InferredOWLOntologyID>();
+                artifactsBySchemaImports.put(schemaImports, nextArtifacts);
             }
+            nextArtifacts.add(artifactId);
         }
-        finally
+        
+        final Map<InferredOWLOntologyID, PoddObjectLabel> labels =
+                new HashMap<InferredOWLOntologyID, PoddObjectLabel>();
+        for(final Entry<Set<? extends OWLOntologyID>, List<InferredOWLOntologyID>> nextEntry : artifactsBySchemaImports
+                .entrySet())
         {
+            RepositoryConnection permanentConnection = null;
             try
             {
-                if(managementConnection != null)
-                {
-                    managementConnection.close();
-                }
+                permanentConnection = this.getRepositoryManager().getPermanentRepositoryConnection(nextEntry.getKey());
+                labels.putAll(this.getSesameManager().getTopObjectLabels(nextEntry.getValue(), permanentConnection));
             }
             finally
             {
-                for(final RepositoryConnection nextPermanentConnection : cache.values())
+                if(permanentConnection != null)
                 {
-                    try
-                    {
-                        if(nextPermanentConnection != null)
-                        {
-                            nextPermanentConnection.close();
-                        }
-                    }
-                    catch(final Throwable e)
-                    {
-                        this.log.error("Found exception closing connection", e);
-                    }
+                    permanentConnection.close();
                 }
             }
         }
+        
+        final List<PoddObjectLabel> results = new ArrayList<PoddObjectLabel>(artifacts.size());
+        for(final InferredOWLOntologyID artifactId : artifacts)
+        {
+            final PoddObjectLabel nextLabel = labels.get(artifactId);
+            if(nextLabel == null)
+            {
+                throw new UnmanagedArtifactIRIException(artifactId.getOntologyIRI(),
+                        "Could not find the top object for an artifact");
+            }
+            results.add(nextLabel);
+        }
         return results;
     }
     
@@ -1565,9 +1876,12 @@ public class PoddArtifactManagerImpl implements PoddArtifactManager
         // FIXME: This method only works if the imports are already in a repository somewhere, need
         // to fix the Sesame manager to look for imports in Models also
         
+        final boolean streaming = this.streamingUploads;
+        
         // connection to the temporary repository that the artifact RDF triples
         // will be stored while they are initially parsed by OWLAPI.
         Repository tempRepository = null;
+        StagingRepositoryInserter stagingInserter = null;
         RepositoryConnection temporaryConnection = null;
         RepositoryConnection permanentConnection = null;
         RepositoryConnection managementConnection = null;
@@ -1576,9 +1890,40 @@ public class PoddArtifactManagerImpl implements PoddArtifactManager
         try
         {
             final URI randomContext = PODD.VF.createURI("urn:uuid:" + UUID.randomUUID().toString());
-            Model rawModel = Rio.parse(inputStream, "", format, randomContext);
+            final Value now = PODD.VF.createLiteral(new Date());
+            Model rawModel = null;
+            final List<InferredOWLOntologyID> ontologyIDs;
+            
+            if(streaming)
+            {
+                // Stream the statements directly into the temporary repository, cleaning
+                // privileged assertions, replacing default timestamps and rewriting temporary URIs
+                // to PURLs on the way
+                stagingInserter =
+                        new StagingRepositoryInserter(this.getRepositoryManager().getNewTemporaryRepository(),
+                                this.stagingSpillThreshold, randomContext);
+                final ArtifactUploadRDFHandler uploadHandler = new ArtifactUploadRDFHandler(now, stagingInserter);
+                final PurlRewritingRDFHandler purlHandler =
+                        new PurlRewritingRDFHandler(this.getPurlManager() == null ? null : this.getPurlManager()
+                                .getPurlProcessorFactoryRegistry(), null, uploadHandler);
+                
+                final RDFParser parser = Rio.createParser(format);
+                parser.setRDFHandler(purlHandler);
+                parser.parse(inputStream, "");
+                
+                tempRepository = stagingInserter.getRepository();
+                ontologyIDs = OntologyUtils.modelToOntologyIDs(uploadHandler.getOntologyHeaders(), true, false);
+                
+                this.log.debug("Staged {} statements, generated {} PURLs, removed {} privileged assertions",
+                        stagingInserter.getStatementCount(), purlHandler.getPurlReferences().size(),
+                        uploadHandler.getPrivilegedAssertionCount());
+            }
+            else
+            {
+                rawModel = Rio.parse(inputStream, "", format, randomContext);
+                ontologyIDs = OntologyUtils.modelToOntologyIDs(rawModel, true, false);
+            }
             
-            final List<InferredOWLOntologyID> ontologyIDs = OntologyUtils.modelToOntologyIDs(rawModel, true, false);
             if(ontologyIDs.isEmpty())
             {
                 throw new EmptyOntologyException(null, "Loaded ontology is empty");
@@ -1596,15 +1941,21 @@ public class PoddArtifactManagerImpl implements PoddArtifactManager
             managementConnection = this.getRepositoryManager().getManagementRepositoryConnection();
             managementConnection.begin();
             
-            tempRepository = this.repositoryManager.getNewTemporaryRepository();
+            if(!streaming)
+            {
+                tempRepository = this.repositoryManager.getNewTemporaryRepository();
+            }
             temporaryConnection = tempRepository.getConnection();
             
-            // Load the artifact RDF triples into a random context in the temp
-            // repository, which may be shared between different uploads
-            temporaryConnection.add(rawModel, randomContext);
-            
-            rawModel.clear();
-            rawModel = null;
+            if(rawModel != null)
+            {
+                // Load the artifact RDF triples into a random context in the temp
+                // repository, which may be shared between different uploads
+                temporaryConnection.add(rawModel, randomContext);
+                
+                rawModel.clear();
+                rawModel = null;
+            }
             
             // check and ensure schema ontology imports are for version IRIs
             this.useVersionsForSchemaImports(ontologyIDs.get(0).getOntologyIRI().toOpenRDFURI(), managementConnection,
@@ -1636,13 +1987,16 @@ public class PoddArtifactManagerImpl implements PoddArtifactManager
                         nextArtifactSchemaImport.getVersionIRI().toOpenRDFURI(), randomContext);
             }
             
-            // Remove any assertions that the user has made about publication status, as this
-            // information is a privileged operation that must be done through the designated API
-            // method
-            this.cleanPrivilegedAssertions(randomContext, temporaryConnection);
-            
-            // Replace temporary URIs with PURLs
-            this.handlePurls(temporaryConnection, randomContext);
+            if(!streaming)
+            {
+                // Remove any assertions that the user has made about publication status, as this
+                // information is a privileged operation that must be done through the designated
+                // API method
+                this.cleanPrivilegedAssertions(randomContext, temporaryConnection);
+                
+                // Replace temporary URIs with PURLs
+                this.handlePurls(temporaryConnection, randomContext);
+            }
             
             // Set a Version IRI for this artifact based on the PURL
             /*
@@ -1693,10 +2047,12 @@ public class PoddArtifactManagerImpl implements PoddArtifactManager
             temporaryConnection.add(ontologyIRI.toOpenRDFURI(), OWL.VERSIONIRI, newVersionIRI.toOpenRDFURI(),
                     randomContext);
             
-            // check and update statements with default timestamp values
-            final Value now = PODD.VF.createLiteral(new Date());
-            this.handleTimestamps(temporaryConnection, PODD.PODD_BASE_CREATED_AT, now, randomContext);
-            this.handleTimestamps(temporaryConnection, PODD.PODD_BASE_LAST_MODIFIED, now, randomContext);
+            if(!streaming)
+            {
+                // check and update statements with default timestamp values
+                this.handleTimestamps(temporaryConnection, PODD.PODD_BASE_CREATED_AT, now, randomContext);
+                this.handleTimestamps(temporaryConnection, PODD.PODD_BASE_LAST_MODIFIED, now, randomContext);
+            }
             
             this.handleDanglingObjects(ontologyIRI, temporaryConnection, randomContext, danglingObjectPolicy);
             
@@ -1710,11 +2066,17 @@ public class PoddArtifactManagerImpl implements PoddArtifactManager
             
             inferredOWLOntologyID =
                     this.loadInferStoreArtifact(temporaryConnection, permanentConnection, managementConnection,
-                            randomContext, dataReferenceVerificationPolicy, false, schemaImports);
+                            randomContext, dataReferenceVerificationPolicy,
+                            this.isDeferringInferences(dataReferenceVerificationPolicy), schemaImports);
             
             this.getSesameManager().updateManagedPoddArtifactVersion(inferredOWLOntologyID, true, managementConnection,
                     this.getRepositoryManager().getArtifactManagementGraph());
             
+            if(inferredOWLOntologyID.isInferencePending())
+            {
+                this.setInferenceStatus(inferredOWLOntologyID, InferenceStatus.PENDING, managementConnection);
+            }
+            
             managementConnection.remove(inferredOWLOntologyID.getOntologyIRI().toOpenRDFURI(), OWL.IMPORTS, null, this
                     .getRepositoryManager().getArtifactManagementGraph());
             
@@ -1735,6 +2097,21 @@ public class PoddArtifactManagerImpl implements PoddArtifactManager
             
             permanentConnection.commit();
             managementConnection.commit();
+            this.invalidateArtifactCache();
+            this.getSesameManager().invalidateContextsCache();
+            
+            if(inferredOWLOntologyID.isInferencePending())
+            {
+                this.scheduleInferences(inferredOWLOntologyID, schemaImports, 1);
+            }
+            
+            if(stagingInserter != null)
+            {
+                stagingInserter.sampleMemoryUsage();
+                this.log.info("Uploaded artifact {} from {} statements (staged on disk: {}), peak heap usage {} MB",
+                        inferredOWLOntologyID.getVersionIRI(), stagingInserter.getStatementCount(),
+                        stagingInserter.isSpilledToDisk(), stagingInserter.getPeakMemoryUsage() / (1024 * 1024));
+            }
             
             return inferredOWLOntologyID;
         }
@@ -1827,7 +2204,11 @@ public class PoddArtifactManagerImpl implements PoddArtifactManager
                         {
                             try
                             {
-                                if(tempRepository != null)
+                                if(stagingInserter != null)
+                                {
+                                    stagingInserter.shutDown();
+                                }
+                                else if(tempRepository != null)
                                 {
                                     tempRepository.shutDown();
                                 }
@@ -1871,31 +2252,413 @@ public class PoddArtifactManagerImpl implements PoddArtifactManager
     {
         // load into OWLAPI
         this.log.debug("Loading podd artifact from temp repository: {}", tempContext);
-        final List<Statement> statements =
-                Iterations.asList(tempRepositoryConnection.getStatements(null, null, null, true, tempContext));
-        
-        final RioMemoryTripleSource owlSource =
-                new RioMemoryTripleSource(statements.iterator(), Namespaces.asMap(Iterations
-                        .asSet(tempRepositoryConnection.getNamespaces())));
+        // Stream the statements from the temporary repository into OWLAPI instead of copying them
+        // into a list first
+        final RepositoryResult<Statement> statements =
+                tempRepositoryConnection.getStatements(null, null, null, true, tempContext);
         
-        final InferredOWLOntologyID inferredOWLOntologyID =
-                this.getOWLManager().loadAndInfer(owlSource, permanentConnection, null, dependentSchemaOntologies,
-                        managementConnection, this.getRepositoryManager().getSchemaManagementGraph());
-        
-        // Check file references after inferencing to accurately identify
-        // the parent object
-        this.handleFileReferences(permanentConnection, fileReferencePolicy, inferredOWLOntologyID.getVersionIRI()
-                .toOpenRDFURI(), inferredOWLOntologyID.getInferredOntologyIRI().toOpenRDFURI());
-        
-        return inferredOWLOntologyID;
-    }
-    
-    /*
-     * (non-Javadoc)
-     * 
-     * @see com.github.podd.api.PoddArtifactManager#publishArtifact(org.semanticweb .owlapi.model.
-     * OWLOntologyID)
-     */
+        final InferredOWLOntologyID inferredOWLOntologyID;
+        try
+        {
+            final RioMemoryTripleSource owlSource =
+                    new RioMemoryTripleSource(new Iterator<Statement>()
+                        {
+                            @Override
+                            public boolean hasNext()
+                            {
+                                try
+                                {
+                                    return statements.hasNext();
+                                }
+                                catch(final RepositoryException e)
+                                {
+                                    throw new PoddRuntimeException("Could not read from temporary repository", e);
+                                }
+                            }
+                            
+                            @Override
+                            public Statement next()
+                            {
+                                try
+                                {
+                                    return statements.next();
+                                }
+                                catch(final RepositoryException e)
+                                {
+                                    throw new PoddRuntimeException("Could not read from temporary repository", e);
+                                }
+                            }
+                            
+                            @Override
+                            public void remove()
+                            {
+                                throw new UnsupportedOperationException("Cannot remove statements");
+                            }
+                        }, Namespaces.asMap(Iterations.asSet(tempRepositoryConnection.getNamespaces())));
+            
+            if(asynchronousInferences)
+            {
+                inferredOWLOntologyID =
+                        this.getOWLManager().loadAndCheck(owlSource, permanentConnection, null,
+                                dependentSchemaOntologies, managementConnection,
+                                this.getRepositoryManager().getSchemaManagementGraph());
+            }
+            else
+            {
+                inferredOWLOntologyID =
+                        this.getOWLManager().loadAndInfer(owlSource, permanentConnection, null,
+                                dependentSchemaOntologies, managementConnection,
+                                this.getRepositoryManager().getSchemaManagementGraph());
+            }
+        }
+        finally
+        {
+            statements.close();
+        }
+        
+        // Check file references after inferencing to accurately identify
+        // the parent object
+        this.handleFileReferences(permanentConnection, fileReferencePolicy, inferredOWLOntologyID.getVersionIRI()
+                .toOpenRDFURI(), inferredOWLOntologyID.getInferredOntologyIRI().toOpenRDFURI());
+        
+        return inferredOWLOntologyID;
+    }
+    
+    /**
+     * Inferences can only be deferred if an executor is available, and the data references do not
+     * need to be verified, as verification uses the inferred statements to find the parent
+     * objects.
+     */
+    private boolean isDeferringInferences(final DataReferenceVerificationPolicy dataReferenceVerificationPolicy)
+    {
+        return this.inferenceExecutor != null
+                && DataReferenceVerificationPolicy.VERIFY != dataReferenceVerificationPolicy;
+    }
+    
+    /**
+     * Submits a task to compute and store the inferred statements for an artifact version whose
+     * concrete statements have been committed. Retries are submitted after a delay that doubles
+     * for each attempt.
+     */
+    private void scheduleInferences(final InferredOWLOntologyID artifactId,
+            final Set<? extends OWLOntologyID> schemaImports, final int attempt)
+    {
+        final InferenceTask task = new InferenceTask(artifactId, schemaImports, attempt);
+        this.inferenceTasks.put(artifactId.getVersionIRI().toOpenRDFURI(), task);
+        
+        if(attempt <= 1)
+        {
+            this.executeInferences(task);
+            return;
+        }
+        
+        final long delay = this.inferenceRetryDelayMillis << (attempt - 2);
+        try
+        {
+            this.inferenceRetryScheduler.schedule(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        PoddArtifactManagerImpl.this.executeInferences(task);
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+        }
+        catch(final RejectedExecutionException e)
+        {
+            this.leaveInferencesPending(task, e);
+        }
+    }
+    
+    /**
+     * Runs an inference task on the inference executor, or on the current thread if there is no
+     * inference executor. If the executor rejects the task, the artifact version is left with its
+     * inferences pending in the artifact management graph, so that they are computed when
+     * {@link #resumePendingInferences()} is next called.
+     */
+    private void executeInferences(final InferenceTask task)
+    {
+        final Executor executor = this.inferenceExecutor;
+        if(executor == null)
+        {
+            task.run();
+            return;
+        }
+        
+        try
+        {
+            executor.execute(task);
+        }
+        catch(final RejectedExecutionException e)
+        {
+            this.leaveInferencesPending(task, e);
+        }
+    }
+    
+    private void leaveInferencesPending(final InferenceTask task, final RejectedExecutionException cause)
+    {
+        this.log.warn("Background inference was rejected, inferences will remain pending until they are resumed: "
+                + task.artifactId, cause);
+        // Cancelling the task releases any threads waiting for it without marking it as failed
+        this.inferenceTasks.remove(task.artifactId.getVersionIRI().toOpenRDFURI(), task);
+        task.cancel(false);
+    }
+    
+    /**
+     * Schedules a delayed retry of a failed inference task, or marks the inferences for the
+     * artifact version as failed in the artifact management graph once it has been attempted
+     * {@link #MAX_INFERENCE_ATTEMPTS} times.
+     */
+    private void handleInferenceFailure(final InferenceTask task, final Throwable cause)
+    {
+        final URI versionUri = task.artifactId.getVersionIRI().toOpenRDFURI();
+        if(task.attempt < PoddArtifactManagerImpl.MAX_INFERENCE_ATTEMPTS)
+        {
+            this.log.warn("Failed to compute inferences for artifact, retrying: " + task.artifactId, cause);
+            this.scheduleInferences(task.artifactId, task.schemaImports, task.attempt + 1);
+            return;
+        }
+        
+        this.log.error("Failed to compute inferences for artifact: " + task.artifactId, cause);
+        RepositoryConnection managementConnection = null;
+        try
+        {
+            managementConnection = this.getRepositoryManager().getManagementRepositoryConnection();
+            managementConnection.begin();
+            if(this.getSesameManager().getOntologyVersion(task.artifactId.getVersionIRI(), managementConnection,
+                    this.getRepositoryManager().getArtifactManagementGraph()) != null)
+            {
+                this.setInferenceStatus(task.artifactId, InferenceStatus.FAILED, managementConnection);
+            }
+            managementConnection.commit();
+            this.invalidateArtifactCache();
+        }
+        catch(final OpenRDFException e)
+        {
+            this.log.error("Failed to mark inferences as failed for artifact: " + task.artifactId, e);
+            try
+            {
+                if(managementConnection != null && managementConnection.isActive())
+                {
+                    managementConnection.rollback();
+                }
+            }
+            catch(final RepositoryException e1)
+            {
+                this.log.error("Found exception rolling back management repository connection", e1);
+            }
+        }
+        finally
+        {
+            this.inferenceTasks.remove(versionUri, task);
+            if(managementConnection != null)
+            {
+                try
+                {
+                    managementConnection.close();
+                }
+                catch(final RepositoryException e)
+                {
+                    this.log.error("Found exception closing management repository connection", e);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Waits for all background inferences to finish, so that the repositories can be shut down
+     * without losing any inferences.
+     */
+    public void awaitInferences()
+    {
+        this.awaitInferences(null);
+    }
+    
+    /**
+     * Waits for any background inferences for versions of the given artifact, or all artifacts if
+     * the artifact IRI is null, to finish, including any retries of failed inferences.
+     */
+    private void awaitInferences(final IRI artifactIRI)
+    {
+        boolean waited = true;
+        while(waited)
+        {
+            waited = false;
+            for(final InferenceTask nextTask : this.inferenceTasks.values())
+            {
+                if(artifactIRI == null || artifactIRI.equals(nextTask.artifactId.getOntologyIRI()))
+                {
+                    waited = true;
+                    try
+                    {
+                        nextTask.get();
+                    }
+                    catch(final ExecutionException | CancellationException e)
+                    {
+                        // Already logged when the task failed
+                        this.inferenceTasks.remove(nextTask.artifactId.getVersionIRI().toOpenRDFURI(), nextTask);
+                    }
+                    catch(final InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                        throw new PoddRuntimeException("Interrupted while waiting for inferences", e);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Schedules inferences for all artifact versions that are marked in the artifact management
+     * graph as having pending inferences, which happens if the application was stopped before
+     * their inferences were stored. This must be called once at startup, after the repositories
+     * have been initialised.
+     *
+     * @throws OpenRDFException
+     *             If the artifact management graph could not be read.
+     */
+    public void resumePendingInferences() throws OpenRDFException
+    {
+        final List<InferredOWLOntologyID> pendingVersions = new ArrayList<InferredOWLOntologyID>();
+        RepositoryConnection managementConnection = null;
+        try
+        {
+            managementConnection = this.getRepositoryManager().getManagementRepositoryConnection();
+            for(final Statement nextPending : Iterations.asList(managementConnection.getStatements(null,
+                    PODD.PODD_BASE_INFERENCE_STATUS, PODD.VF.createLiteral(InferenceStatus.PENDING.name()), false,
+                    this.getRepositoryManager().getArtifactManagementGraph())))
+            {
+                final InferredOWLOntologyID nextVersion =
+                        nextPending.getSubject() instanceof URI ? this.getSesameManager().getOntologyVersion(
+                                IRI.create((URI)nextPending.getSubject()), managementConnection,
+                                this.getRepositoryManager().getArtifactManagementGraph()) : null;
+                if(nextVersion == null)
+                {
+                    this.log.warn("Found pending inferences for an unmanaged artifact version: {}",
+                            nextPending.getSubject());
+                }
+                else
+                {
+                    pendingVersions.add(nextVersion);
+                }
+            }
+        }
+        finally
+        {
+            if(managementConnection != null)
+            {
+                managementConnection.close();
+            }
+        }
+        
+        for(final InferredOWLOntologyID nextVersion : pendingVersions)
+        {
+            try
+            {
+                this.log.info("Resuming pending inferences for artifact: {}", nextVersion);
+                this.scheduleInferences(nextVersion, this.getSchemaImports(nextVersion), 1);
+            }
+            catch(final PoddException | IOException e)
+            {
+                this.log.error("Could not find schema imports to resume inferences for artifact: " + nextVersion, e);
+            }
+        }
+    }
+    
+    /**
+     * Computes and stores the inferred statements for an artifact version that was stored with its
+     * inferences pending.
+     */
+    private InferredOWLOntologyID inferPendingStatements(final InferredOWLOntologyID artifactId,
+            final Set<? extends OWLOntologyID> schemaImports) throws OpenRDFException, OWLException, IOException,
+        PoddException
+    {
+        RepositoryConnection permanentConnection = null;
+        RepositoryConnection managementConnection = null;
+        try
+        {
+            managementConnection = this.getRepositoryManager().getManagementRepositoryConnection();
+            managementConnection.begin();
+            permanentConnection = this.getRepositoryManager().getPermanentRepositoryConnection(schemaImports);
+            permanentConnection.begin();
+            
+            // An earlier attempt may have been interrupted after storing some of the inferences
+            permanentConnection.clear(artifactId.getInferredOntologyIRI().toOpenRDFURI());
+            
+            final InferredOWLOntologyID result =
+                    this.getOWLManager().inferStatements(artifactId, permanentConnection, schemaImports,
+                            managementConnection, this.getRepositoryManager().getSchemaManagementGraph());
+            
+            // Do not store inferences for a version that was removed while they were computed
+            if(this.getSesameManager().getOntologyVersion(artifactId.getVersionIRI(), managementConnection,
+                    this.getRepositoryManager().getArtifactManagementGraph()) == null)
+            {
+                this.log.info("Discarding inferences for artifact version that is no longer managed: {}",
+                        artifactId);
+                permanentConnection.rollback();
+                managementConnection.rollback();
+            }
+            else
+            {
+                // The inferences are stored in the permanent repository, and the status in the
+                // management repository, so they cannot be committed in a single transaction. The
+                // status is removed last, so if this fails the inferences are recomputed at the next
+                // startup, replacing those stored here.
+                permanentConnection.commit();
+                this.setInferenceStatus(artifactId, InferenceStatus.COMPLETE, managementConnection);
+                managementConnection.commit();
+                this.invalidateArtifactCache();
+            }
+            
+            return result;
+        }
+        catch(final Throwable e)
+        {
+            try
+            {
+                if(managementConnection != null && managementConnection.isActive())
+                {
+                    managementConnection.rollback();
+                }
+            }
+            finally
+            {
+                if(permanentConnection != null && permanentConnection.isActive())
+                {
+                    permanentConnection.rollback();
+                }
+            }
+            throw e;
+        }
+        finally
+        {
+            try
+            {
+                if(permanentConnection != null)
+                {
+                    permanentConnection.close();
+                }
+            }
+            catch(final RepositoryException e)
+            {
+                this.log.error("Found exception closing permanent repository connection", e);
+            }
+            finally
+            {
+                if(managementConnection != null)
+                {
+                    managementConnection.close();
+                }
+            }
+        }
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.github.podd.api.PoddArtifactManager#publishArtifact(org.semanticweb .owlapi.model.
+     * OWLOntologyID)
+     */
     @Override
     public InferredOWLOntologyID publishArtifact(final InferredOWLOntologyID ontologyId) throws OpenRDFException,
         PublishArtifactException, UnmanagedArtifactIRIException, UnmanagedSchemaIRIException
@@ -1941,6 +2704,7 @@ public class PoddArtifactManagerImpl implements PoddArtifactManager
                             this.getRepositoryManager().getArtifactManagementGraph());
             
             managementConnection.commit();
+            this.invalidateArtifactCache();
             
             return published;
         }
@@ -1981,6 +2745,15 @@ public class PoddArtifactManagerImpl implements PoddArtifactManager
             final URI[] searchTypes) throws OpenRDFException, UnmanagedSchemaIRIException, SchemaManifestException,
         UnsupportedRDFormatException, IOException, UnmanagedArtifactIRIException, UnmanagedArtifactVersionException,
         RepositoryNotFoundException
+    {
+        return this.searchForOntologyLabels(ontologyID, searchTerm, searchTypes, false);
+    }
+    
+    @Override
+    public Model searchForOntologyLabels(final InferredOWLOntologyID ontologyID, final String searchTerm,
+            final URI[] searchTypes, final boolean includeSubTypes) throws OpenRDFException,
+        UnmanagedSchemaIRIException, SchemaManifestException, UnsupportedRDFormatException, IOException,
+        UnmanagedArtifactIRIException, UnmanagedArtifactVersionException, RepositoryNotFoundException
     {
         RepositoryConnection permanentConnection = null;
         RepositoryConnection managementConnection = null;
@@ -1999,15 +2772,15 @@ public class PoddArtifactManagerImpl implements PoddArtifactManager
             {
                 schemaImports = this.getSchemaImports(ontologyID);
                 permanentConnection = this.getRepositoryManager().getPermanentRepositoryConnection(schemaImports);
-                return this.getSesameManager().searchOntologyLabels(searchTerm, searchTypes, 1000, 0,
-                        permanentConnection, contexts);
+                return this.getSesameManager().searchOntologyLabels(searchTerm, searchTypes, includeSubTypes, 1000,
+                        0, permanentConnection, contexts);
             }
             else
             {
                 // Otherwise we can use the management repository for the search
                 schemaImports = this.getSchemaManager().getCurrentSchemaOntologies();
-                return this.getSesameManager().searchOntologyLabels(searchTerm, searchTypes, 1000, 0,
-                        managementConnection, contexts);
+                return this.getSesameManager().searchOntologyLabels(searchTerm, searchTypes, includeSubTypes, 1000,
+                        0, managementConnection, contexts);
             }
         }
         catch(final Throwable e)
@@ -2107,6 +2880,71 @@ public class PoddArtifactManagerImpl implements PoddArtifactManager
         this.owlManager = owlManager;
     }
     
+    /**
+     * Sets the number of statements after which streaming uploads are staged in a disk-backed
+     * repository instead of in memory.
+     *
+     * @param stagingSpillThreshold
+     *            The number of statements, or a negative number to always stage uploads in memory.
+     */
+    public void setStagingSpillThreshold(final long stagingSpillThreshold)
+    {
+        this.stagingSpillThreshold = stagingSpillThreshold;
+    }
+    
+    /**
+     * Sets whether updates that only change literal values, using properties that the schema
+     * ontologies do not use in any axioms, are applied as a delta against the current version
+     * instead of recomputing the inferences for the whole artifact.
+     *
+     * @param incrementalUpdates
+     *            True to apply suitable updates incrementally, and false to always recompute the
+     *            inferences for the artifact.
+     */
+    public void setIncrementalUpdates(final boolean incrementalUpdates)
+    {
+        this.incrementalUpdates = incrementalUpdates;
+    }
+    
+    /**
+     * Sets the executor used to compute inferences in the background. If an executor is set,
+     * artifacts that are loaded or updated without verifying their data references are stored
+     * and returned as soon as they are found to be consistent, and are marked as having their
+     * inferences pending until the executor has stored the inferred statements.
+     *
+     * @param inferenceExecutor
+     *            The executor to use for background inferencing, or null to compute inferences
+     *            before returning from each load or update.
+     */
+    public void setInferenceExecutor(final Executor inferenceExecutor)
+    {
+        this.inferenceExecutor = inferenceExecutor;
+    }
+    
+    /**
+     * Sets the number of milliseconds before the first retry of failed background inferences. The
+     * delay is doubled for each later retry.
+     *
+     * @param inferenceRetryDelayMillis
+     *            The delay before the first retry of failed background inferences.
+     */
+    public void setInferenceRetryDelayMillis(final long inferenceRetryDelayMillis)
+    {
+        this.inferenceRetryDelayMillis = inferenceRetryDelayMillis;
+    }
+    
+    /**
+     * Sets whether uploaded artifacts are streamed directly from the parser into the temporary
+     * repository, instead of being parsed into memory first.
+     *
+     * @param streamingUploads
+     *            True to stream uploads, and false to parse uploads into memory first.
+     */
+    public void setStreamingUploads(final boolean streamingUploads)
+    {
+        this.streamingUploads = streamingUploads;
+    }
+    
     /*
      * (non-Javadoc)
      * 
@@ -2231,6 +3069,30 @@ public class PoddArtifactManagerImpl implements PoddArtifactManager
             permanentConnection = this.getRepositoryManager().getPermanentRepositoryConnection(currentSchemaImports);
             permanentConnection.begin();
             
+            // Incremental updates copy the existing inferences, so they cannot be used until the
+            // inferences for the current version have been computed
+            if(this.incrementalUpdates && UpdatePolicy.REPLACE_ALL != updatePolicy
+                    && this.getInferenceStatus(artifactID) == InferenceStatus.COMPLETE)
+            {
+                inferredOWLOntologyID =
+                        this.updateArtifactIncremental(artifactID, objectUris, model, updatePolicy,
+                                fileReferenceAction, currentSchemaImports, permanentConnection, managementConnection);
+                
+                if(inferredOWLOntologyID != null)
+                {
+                    permanentConnection.commit();
+                    managementConnection.commit();
+                    this.invalidateArtifactCache();
+                    this.getSesameManager().invalidateContextsCache();
+                    tempRepositoryConnection.rollback();
+                    
+                    // Temporary objects are never updated incrementally, so there are no PURL
+                    // replacements to report
+                    return OntologyUtils.ontologyIDsToModel(Arrays.asList(inferredOWLOntologyID),
+                            new LinkedHashModel());
+                }
+            }
+            
             // load and copy the artifact's concrete statements to the temporary
             // store
             final RepositoryResult<Statement> repoResult =
@@ -2386,15 +3248,28 @@ public class PoddArtifactManagerImpl implements PoddArtifactManager
             
             inferredOWLOntologyID =
                     this.loadInferStoreArtifact(tempRepositoryConnection, permanentConnection, managementConnection,
-                            tempContext, fileReferenceAction, false, currentSchemaImports);
+                            tempContext, fileReferenceAction, this.isDeferringInferences(fileReferenceAction),
+                            currentSchemaImports);
             
             this.getSesameManager().updateManagedPoddArtifactVersion(inferredOWLOntologyID, true, managementConnection,
                     this.getRepositoryManager().getArtifactManagementGraph());
             
+            if(inferredOWLOntologyID.isInferencePending())
+            {
+                this.setInferenceStatus(inferredOWLOntologyID, InferenceStatus.PENDING, managementConnection);
+            }
+            
             permanentConnection.commit();
             managementConnection.commit();
+            this.invalidateArtifactCache();
+            this.getSesameManager().invalidateContextsCache();
             tempRepositoryConnection.rollback();
             
+            if(inferredOWLOntologyID.isInferencePending())
+            {
+                this.scheduleInferences(inferredOWLOntologyID, currentSchemaImports, 1);
+            }
+            
             return OntologyUtils.ontologyIDsToModel(Arrays.asList(inferredOWLOntologyID), resultsModel);
         }
         catch(final Exception e)
@@ -2488,6 +3363,294 @@ public class PoddArtifactManagerImpl implements PoddArtifactManager
         }
     }
     
+    /**
+     * Attempts to apply an update as a delta against the current version of an artifact, copying
+     * the unchanged statements and the existing inferences into the contexts for the new version
+     * instead of loading the artifact into OWLAPI to recompute its inferences.
+     *
+     * The delta is only applied if every added or removed statement is a literal value on an
+     * existing object, using a property that the schema ontologies do not use in any axioms that
+     * could change the inferences for the artifact. Otherwise the permanent repository is not
+     * modified and null is returned, and the caller must fall back to a full update.
+     *
+     * @return The {@link InferredOWLOntologyID} for the new version, or null if the update could
+     *         not be applied incrementally.
+     */
+    private InferredOWLOntologyID updateArtifactIncremental(final InferredOWLOntologyID artifactID,
+            final Collection<URI> objectUris, final Model model, final UpdatePolicy updatePolicy,
+            final DataReferenceVerificationPolicy fileReferenceAction,
+            final Set<? extends OWLOntologyID> currentSchemaImports, final RepositoryConnection permanentConnection,
+            final RepositoryConnection managementConnection) throws OpenRDFException, PoddException
+    {
+        final URI versionContext = artifactID.getVersionIRI().toOpenRDFURI();
+        final URI inferredContext = artifactID.getInferredOntologyIRI().toOpenRDFURI();
+        
+        // Apply the same timestamp and privileged assertion handling as a full update to the edits
+        final Value now = PODD.VF.createLiteral(new Date());
+        final Model edits = new LinkedHashModel();
+        for(final Statement nextEdit : model)
+        {
+            if(PODD.PODD_BASE_HAS_PUBLICATION_STATUS.equals(nextEdit.getPredicate()))
+            {
+                continue;
+            }
+            
+            if((PODD.PODD_BASE_CREATED_AT.equals(nextEdit.getPredicate()) || PODD.PODD_BASE_LAST_MODIFIED
+                    .equals(nextEdit.getPredicate()))
+                    && nextEdit.getObject() instanceof Literal
+                    && ((Literal)nextEdit.getObject()).calendarValue().getYear() == 1970)
+            {
+                edits.add(nextEdit.getSubject(), nextEdit.getPredicate(), now);
+            }
+            else
+            {
+                edits.add(nextEdit.getSubject(), nextEdit.getPredicate(), nextEdit.getObject());
+            }
+        }
+        
+        final Model added = new LinkedHashModel();
+        final Model removed = new LinkedHashModel();
+        
+        if(UpdatePolicy.REPLACE_EXISTING == updatePolicy)
+        {
+            final Collection<Resource> replaceableObjects = new LinkedHashSet<Resource>(objectUris);
+            
+            if(replaceableObjects.isEmpty())
+            {
+                for(final Resource nextSubject : edits.subjects())
+                {
+                    if(nextSubject instanceof URI)
+                    {
+                        replaceableObjects.add(nextSubject);
+                    }
+                }
+            }
+            
+            for(final Resource nextReplaceableObject : replaceableObjects)
+            {
+                final RepositoryResult<Statement> currentStatements =
+                        permanentConnection.getStatements(nextReplaceableObject, null, null, false, versionContext);
+                try
+                {
+                    while(currentStatements.hasNext())
+                    {
+                        final Statement nextCurrent = currentStatements.next();
+                        if(!edits.contains(nextCurrent.getSubject(), nextCurrent.getPredicate(),
+                                nextCurrent.getObject()))
+                        {
+                            removed.add(nextCurrent.getSubject(), nextCurrent.getPredicate(), nextCurrent.getObject());
+                        }
+                    }
+                }
+                finally
+                {
+                    currentStatements.close();
+                }
+            }
+        }
+        
+        for(final Statement nextEdit : edits)
+        {
+            if(!permanentConnection.hasStatement(nextEdit.getSubject(), nextEdit.getPredicate(), nextEdit.getObject(),
+                    false, versionContext))
+            {
+                added.add(nextEdit);
+            }
+        }
+        
+        final Resource[] schemaContexts = this.getSchemaContexts(currentSchemaImports);
+        
+        for(final Model nextDelta : Arrays.asList(added, removed))
+        {
+            for(final Statement nextStatement : nextDelta)
+            {
+                if(!(nextStatement.getSubject() instanceof URI) || !(nextStatement.getObject() instanceof Literal))
+                {
+                    return null;
+                }
+                
+                // New objects may need to be linked into the artifact, so they are not handled here
+                if(!permanentConnection.hasStatement(nextStatement.getSubject(), null, null, false, versionContext))
+                {
+                    return null;
+                }
+                
+                if(!this.isInferenceNeutralProperty(nextStatement.getSubject(), nextStatement.getPredicate(),
+                        (Literal)nextStatement.getObject(), permanentConnection, schemaContexts, versionContext,
+                        inferredContext))
+                {
+                    return null;
+                }
+            }
+        }
+        
+        final OWLOntologyID currentManagedArtifactID =
+                this.getSesameManager().getCurrentArtifactVersion(artifactID.getOntologyIRI(), managementConnection,
+                        this.getRepositoryManager().getArtifactManagementGraph());
+        final URI newVersionIRI =
+                PODD.VF.createURI(this.incrementVersion(currentManagedArtifactID.getVersionIRI().toString()));
+        final URI newInferredIRI = PODD.VF.createURI(PODD.INFERRED_PREFIX + newVersionIRI);
+        
+        this.log.info("Applying incremental update to <{}>: {} added, {} removed, new version <{}>", new Object[] {
+                artifactID.getOntologyIRI(), added.size(), removed.size(), newVersionIRI });
+        
+        final Map<Value, Resource> versionRewrites = new HashMap<Value, Resource>();
+        versionRewrites.put(versionContext, newVersionIRI);
+        versionRewrites.put(inferredContext, newInferredIRI);
+        
+        this.copyVersionContext(permanentConnection, versionContext, newVersionIRI, versionRewrites, removed);
+        permanentConnection.add(added, newVersionIRI);
+        
+        // Inferred statements are never stored if they duplicate concrete statements
+        this.copyVersionContext(permanentConnection, inferredContext, newInferredIRI, versionRewrites, added);
+        
+        final InferredOWLOntologyID result =
+                new InferredOWLOntologyID(artifactID.getOntologyIRI().toOpenRDFURI(), newVersionIRI, newInferredIRI);
+        
+        this.handleFileReferences(permanentConnection, fileReferenceAction, newVersionIRI, newInferredIRI);
+        
+        this.getSesameManager().updateManagedPoddArtifactVersion(result, true, managementConnection,
+                this.getRepositoryManager().getArtifactManagementGraph());
+        
+        return result;
+    }
+    
+    /**
+     * Copies the statements from one context into another, rewriting references to the old
+     * version of an artifact, and skipping any statements that are in the given exclusions. The
+     * statements are streamed from the old context and added in batches of at most
+     * {@link #COPY_BATCH_SIZE}, so the whole context is never held in memory.
+     */
+    private void copyVersionContext(final RepositoryConnection permanentConnection, final URI fromContext,
+            final URI toContext, final Map<Value, Resource> versionRewrites, final Model exclusions)
+        throws RepositoryException
+    {
+        final Model batch = new LinkedHashModel();
+        
+        final RepositoryResult<Statement> statements =
+                permanentConnection.getStatements(null, null, null, false, fromContext);
+        try
+        {
+            while(statements.hasNext())
+            {
+                final Statement nextStatement = statements.next();
+                if(exclusions.contains(nextStatement.getSubject(), nextStatement.getPredicate(),
+                        nextStatement.getObject()))
+                {
+                    continue;
+                }
+                
+                Resource subject = nextStatement.getSubject();
+                if(versionRewrites.containsKey(subject))
+                {
+                    subject = versionRewrites.get(subject);
+                }
+                
+                Value object = nextStatement.getObject();
+                if(versionRewrites.containsKey(object))
+                {
+                    object = versionRewrites.get(object);
+                }
+                
+                batch.add(subject, nextStatement.getPredicate(), object);
+                if(batch.size() >= PoddArtifactManagerImpl.COPY_BATCH_SIZE)
+                {
+                    permanentConnection.add(batch, toContext);
+                    batch.clear();
+                }
+            }
+        }
+        finally
+        {
+            statements.close();
+        }
+        
+        permanentConnection.add(batch, toContext);
+    }
+    
+    /**
+     * Finds the contexts in the permanent repository that contain the given schema ontologies and
+     * their inferences.
+     */
+    private Resource[] getSchemaContexts(final Set<? extends OWLOntologyID> schemaOntologyIDs)
+    {
+        final List<Resource> schemaContexts = new ArrayList<Resource>();
+        for(final OWLOntologyID nextSchemaOntologyID : schemaOntologyIDs)
+        {
+            if(nextSchemaOntologyID.getVersionIRI() != null)
+            {
+                schemaContexts.add(nextSchemaOntologyID.getVersionIRI().toOpenRDFURI());
+            }
+            if(nextSchemaOntologyID instanceof InferredOWLOntologyID
+                    && ((InferredOWLOntologyID)nextSchemaOntologyID).getInferredOntologyIRI() != null)
+            {
+                schemaContexts.add(((InferredOWLOntologyID)nextSchemaOntologyID).getInferredOntologyIRI()
+                        .toOpenRDFURI());
+            }
+        }
+        return schemaContexts.toArray(new Resource[schemaContexts.size()]);
+    }
+    
+    /**
+     * Checks whether changing the given literal value for the given property on an object could
+     * change the inferences for an artifact, based on the axioms in the schema ontologies.
+     *
+     * The property must be an annotation or datatype property that is not used in any
+     * restrictions, property hierarchies, or functional property declarations. Any range must match
+     * the datatype of the literal, and the object must already be asserted or inferred to be a
+     * member of any domain.
+     */
+    private boolean isInferenceNeutralProperty(final Resource subject, final URI property, final Literal value,
+            final RepositoryConnection permanentConnection, final Resource[] schemaContexts,
+            final URI versionContext, final URI inferredContext) throws RepositoryException
+    {
+        if(!PoddArtifactManagerImpl.BUILT_IN_ANNOTATION_PROPERTIES.contains(property)
+                && !permanentConnection.hasStatement(property, RDF.TYPE, OWL.ANNOTATIONPROPERTY, false, schemaContexts)
+                && !permanentConnection.hasStatement(property, RDF.TYPE, OWL.DATATYPEPROPERTY, false, schemaContexts))
+        {
+            return false;
+        }
+        
+        if(permanentConnection.hasStatement(property, RDF.TYPE, OWL.FUNCTIONALPROPERTY, false, schemaContexts)
+                || permanentConnection.hasStatement(null, OWL.ONPROPERTY, property, false, schemaContexts)
+                || permanentConnection.hasStatement(property, RDFS.SUBPROPERTYOF, null, false, schemaContexts)
+                || permanentConnection.hasStatement(null, RDFS.SUBPROPERTYOF, property, false, schemaContexts)
+                || permanentConnection.hasStatement(property, OWL.EQUIVALENTPROPERTY, null, false, schemaContexts)
+                || permanentConnection.hasStatement(null, OWL.EQUIVALENTPROPERTY, property, false, schemaContexts))
+        {
+            return false;
+        }
+        
+        final List<Statement> ranges =
+                Iterations.asList(permanentConnection.getStatements(property, RDFS.RANGE, null, false,
+                        schemaContexts));
+        // Plain literals without language tags are equivalent to xsd:string literals
+        final URI datatype =
+                value.getDatatype() == null && value.getLanguage() == null ? XMLSchema.STRING : value.getDatatype();
+        for(final Statement nextRange : ranges)
+        {
+            if(!RDFS.LITERAL.equals(nextRange.getObject()) && !nextRange.getObject().equals(datatype))
+            {
+                return false;
+            }
+        }
+        
+        final List<Statement> domains =
+                Iterations.asList(permanentConnection.getStatements(property, RDFS.DOMAIN, null, false,
+                        schemaContexts));
+        for(final Statement nextDomain : domains)
+        {
+            if(!(nextDomain.getObject() instanceof Resource)
+                    || !permanentConnection.hasStatement(subject, RDF.TYPE, nextDomain.getObject(), false,
+                            versionContext, inferredContext))
+            {
+                return false;
+            }
+        }
+        
+        return true;
+    }
+    
     @Override
     public InferredOWLOntologyID updateSchemaImports(final InferredOWLOntologyID artifactId,
             final Set<? extends OWLOntologyID> oldSchemaOntologyIds,
@@ -2631,6 +3794,10 @@ public class PoddArtifactManagerImpl implements PoddArtifactManager
             oldPermanentConnection.commit();
             newPermanentConnection.commit();
             managementConnection.commit();
+            this.invalidateArtifactCache();
+            
+            // The imports were modified directly above, after the cache was last invalidated
+            this.getSesameManager().invalidateContextsCache();
             
             this.log.info("Completed reload of artifact to Repository: {}", artifactVersion);
             
@@ -2781,4 +3948,51 @@ public class PoddArtifactManagerImpl implements PoddArtifactManager
         }
     }
     
+    /**
+     * Invalidates the cached artifact versions and schema imports.
+     * <p>
+     * This method is called automatically after changes to artifacts made using this manager are
+     * committed, but must also be called after any other changes to the artifact management graph
+     * are committed.
+     */
+    public void invalidateArtifactCache()
+    {
+        this.artifactCacheGeneration.incrementAndGet();
+        this.artifactCache.clear();
+        this.schemaImportsCache.clear();
+    }
+    
+    /**
+     * @return The number of times that artifact versions or schema imports were found in the
+     *         cache.
+     */
+    public long getArtifactCacheHits()
+    {
+        return this.artifactCacheHits.get();
+    }
+    
+    /**
+     * @return The number of times that artifact versions or schema imports were resolved from the
+     *         management graphs.
+     */
+    public long getArtifactCacheMisses()
+    {
+        return this.artifactCacheMisses.get();
+    }
+    
+    /**
+     * A value resolved during a single generation of the artifact caches.
+     */
+    private static final class CachedValue<T>
+    {
+        private final long generation;
+        private final T value;
+        
+        CachedValue(final long generation, final T value)
+        {
+            this.generation = generation;
+            this.value = value;
+        }
+    }
+    
 }
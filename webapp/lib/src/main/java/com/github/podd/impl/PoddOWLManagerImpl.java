@@ -18,13 +18,21 @@ package com.github.podd.impl;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.mindswap.pellet.exceptions.PelletRuntimeException;
 import org.openrdf.OpenRDFException;
@@ -36,8 +44,7 @@ import org.openrdf.model.vocabulary.OWL;
 import org.openrdf.query.BindingSet;
 import org.openrdf.query.QueryLanguage;
 import org.openrdf.query.TupleQuery;
-import org.openrdf.query.TupleQueryResult;
-import org.openrdf.query.impl.DatasetImpl;
+import org.openrdf.query.resultio.helpers.QueryResultCollector;
 import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryException;
 import org.openrdf.repository.util.RDFInserter;
@@ -77,18 +84,6 @@ import org.semanticweb.owlapi.reasoner.TimeOutException;
 import org.semanticweb.owlapi.rio.RioMemoryTripleSource;
 import org.semanticweb.owlapi.rio.RioParserImpl;
 import org.semanticweb.owlapi.rio.RioRenderer;
-import org.semanticweb.owlapi.util.InferredAxiomGenerator;
-import org.semanticweb.owlapi.util.InferredClassAssertionAxiomGenerator;
-import org.semanticweb.owlapi.util.InferredDataPropertyCharacteristicAxiomGenerator;
-import org.semanticweb.owlapi.util.InferredEquivalentClassAxiomGenerator;
-import org.semanticweb.owlapi.util.InferredEquivalentDataPropertiesAxiomGenerator;
-import org.semanticweb.owlapi.util.InferredEquivalentObjectPropertyAxiomGenerator;
-import org.semanticweb.owlapi.util.InferredInverseObjectPropertiesAxiomGenerator;
-import org.semanticweb.owlapi.util.InferredObjectPropertyCharacteristicAxiomGenerator;
-import org.semanticweb.owlapi.util.InferredOntologyGenerator;
-import org.semanticweb.owlapi.util.InferredSubClassAxiomGenerator;
-import org.semanticweb.owlapi.util.InferredSubDataPropertyAxiomGenerator;
-import org.semanticweb.owlapi.util.InferredSubObjectPropertyAxiomGenerator;
 import org.semanticweb.owlapi.util.NullProgressMonitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -99,6 +94,7 @@ import com.clarkparsia.owlapi.explanation.PelletExplanation;
 import com.clarkparsia.owlapi.explanation.io.rdfxml.RDFXMLExplanationRenderer;
 import com.clarkparsia.pellet.owlapiv3.PelletReasoner;
 import com.clarkparsia.pellet.owlapiv3.PelletReasonerFactory;
+import com.github.podd.api.InferredAxiomGeneratorType;
 import com.github.podd.api.PoddOWLManager;
 import com.github.podd.exception.DataRepositoryException;
 import com.github.podd.exception.EmptyOntologyException;
@@ -110,6 +106,7 @@ import com.github.podd.utils.DeduplicatingRDFInserter;
 import com.github.podd.utils.InferredOWLOntologyID;
 import com.github.podd.utils.OntologyUtils;
 import com.github.podd.utils.PODD;
+import com.github.podd.utils.RdfUtility;
 
 /**
  * Implementation of PoddOWLManager interface.
@@ -130,7 +127,41 @@ public class PoddOWLManagerImpl implements PoddOWLManager
     private final ConcurrentMap<Set<? extends OWLOntologyID>, OWLOntologyManager> managerCache =
             new ConcurrentHashMap<>();
     
+    /**
+     * Idle managers, each with a set of schema ontologies already cached, which are borrowed
+     * exclusively by {@link #loadAndInfer} so that concurrent inferencing does not contend on the
+     * shared managers in {@link #managerCache}.
+     */
+    private final ConcurrentMap<Set<? extends OWLOntologyID>, BlockingQueue<OWLOntologyManager>> inferenceManagerPool =
+            new ConcurrentHashMap<>();
+    
+    private final int maxIdleInferenceManagers;
+    
+    private volatile Set<InferredAxiomGeneratorType> defaultInferredAxiomGenerators = EnumSet
+            .allOf(InferredAxiomGeneratorType.class);
+    
+    private final ConcurrentMap<IRI, Set<InferredAxiomGeneratorType>> schemaInferredAxiomGenerators =
+            new ConcurrentHashMap<>();
+    
+    private volatile ExecutorService inferredAxiomGeneratorExecutor = null;
+    
     public PoddOWLManagerImpl(final OWLOntologyManagerFactory nextManager, final OWLReasonerFactory nextReasonerFactory)
+    {
+        this(nextManager, nextReasonerFactory, Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * @param nextManager
+     *            The factory used to create OWLOntologyManager instances.
+     * @param nextReasonerFactory
+     *            The factory used to create reasoners.
+     * @param maxIdleInferenceManagers
+     *            The maximum number of idle managers to keep for each set of schema ontologies
+     *            after inferencing. More managers than this may be in use concurrently, but the
+     *            extra managers are discarded when they are released.
+     */
+    public PoddOWLManagerImpl(final OWLOntologyManagerFactory nextManager,
+            final OWLReasonerFactory nextReasonerFactory, final int maxIdleInferenceManagers)
     {
         if(nextManager == null)
         {
@@ -140,11 +171,16 @@ public class PoddOWLManagerImpl implements PoddOWLManager
         {
             throw new IllegalArgumentException("OWLReasonerFactory was null");
         }
+        if(maxIdleInferenceManagers < 1)
+        {
+            throw new IllegalArgumentException("Maximum idle inference managers must be positive");
+        }
         this.managerFactory = nextManager;
         // this.owlOntologyManager = nextManager.buildOWLOntologyManager();
         // this.managerCache.put(Collections.<OWLOntologyID> emptySet(),
         // managerFactory.buildOWLOntologyManager());
         this.reasonerFactory = nextReasonerFactory;
+        this.maxIdleInferenceManagers = maxIdleInferenceManagers;
     }
     
     private List<InferredOWLOntologyID> buildDirectImportsList(final OWLOntologyID ontologyID,
@@ -167,14 +203,10 @@ public class PoddOWLManagerImpl implements PoddOWLManager
         this.log.debug("Generated SPARQL {}", sparqlQuery);
         final TupleQuery query = conn.prepareTupleQuery(QueryLanguage.SPARQL, sparqlQuery.toString());
         
-        final DatasetImpl dataset = new DatasetImpl();
-        dataset.addDefaultGraph(context);
-        query.setDataset(dataset);
-        
-        final TupleQueryResult queryResults = query.evaluate();
-        while(queryResults.hasNext())
+        final QueryResultCollector queryResults =
+                RdfUtility.executeTupleQuery("buildDirectImportsList", query, context);
+        for(final BindingSet nextResult : queryResults.getBindingSets())
         {
-            final BindingSet nextResult = queryResults.next();
             final String ontologyIRI = nextResult.getValue("x").stringValue();
             final String versionIRI = nextResult.getValue("xv").stringValue();
             final String inferredIRI = nextResult.getValue("xiv").stringValue();
@@ -269,9 +301,64 @@ public class PoddOWLManagerImpl implements PoddOWLManager
         return cachedManager;
     }
     
+    /**
+     * Borrows a manager for exclusive use while inferencing, reusing an idle manager for the given
+     * schema ontologies if one is available.
+     */
+    private OWLOntologyManager borrowInferenceManager(final Set<? extends OWLOntologyID> schemaOntologies)
+    {
+        final BlockingQueue<OWLOntologyManager> idleManagers = this.inferenceManagerPool.get(schemaOntologies);
+        if(idleManagers != null)
+        {
+            final OWLOntologyManager idleManager = idleManagers.poll();
+            if(idleManager != null)
+            {
+                return idleManager;
+            }
+        }
+        return this.managerFactory.buildOWLOntologyManager();
+    }
+    
+    /**
+     * Returns a manager that only contains the given schema ontologies to the pool, or discards it
+     * if there are already enough idle managers for the schema ontologies.
+     */
+    private void releaseInferenceManager(final Set<? extends OWLOntologyID> schemaOntologies,
+            final OWLOntologyManager inferenceManager)
+    {
+        BlockingQueue<OWLOntologyManager> idleManagers = this.inferenceManagerPool.get(schemaOntologies);
+        if(idleManagers == null)
+        {
+            final BlockingQueue<OWLOntologyManager> newIdleManagers =
+                    new ArrayBlockingQueue<>(this.maxIdleInferenceManagers);
+            idleManagers = this.inferenceManagerPool.putIfAbsent(schemaOntologies, newIdleManagers);
+            if(idleManagers == null)
+            {
+                idleManagers = newIdleManagers;
+            }
+        }
+        
+        if(!idleManagers.offer(inferenceManager))
+        {
+            this.log.debug("Discarding inference manager as the pool was full: {}", schemaOntologies);
+        }
+    }
+    
     public OWLOntologyManager cacheSchemaOntologies(final Set<? extends OWLOntologyID> ontologyIDs,
             final RepositoryConnection managementConnection, final URI schemaManagementContext)
         throws OpenRDFException, OWLException, IOException, PoddException
+    {
+        return this.cacheSchemaOntologies(ontologyIDs, managementConnection, schemaManagementContext, null);
+    }
+    
+    /**
+     * Caches the given schema ontologies, and their imports, in the given manager, or in the shared
+     * manager for the schema ontologies if the given manager is null.
+     */
+    private OWLOntologyManager cacheSchemaOntologies(final Set<? extends OWLOntologyID> ontologyIDs,
+            final RepositoryConnection managementConnection, final URI schemaManagementContext,
+            final OWLOntologyManager targetManager) throws OpenRDFException, OWLException, IOException,
+        PoddException
     {
         // -- validate input
         if(ontologyIDs == null)
@@ -303,7 +390,8 @@ public class PoddOWLManagerImpl implements PoddOWLManager
         // TODO: Check the exact imports for the given ontology and refine to exclude unrelated
         // schema ontologies?
         
-        final OWLOntologyManager cachedManager = this.getCachedManager(ontologyIDs);
+        final OWLOntologyManager cachedManager =
+                targetManager != null ? targetManager : this.getCachedManager(ontologyIDs);
         synchronized(cachedManager)
         {
             this.log.debug("About to cache ontologies: {}", manifestImports);
@@ -497,23 +585,8 @@ public class PoddOWLManagerImpl implements PoddOWLManager
             final OWLOntologyID inferredOntologyID) throws ReasonerInterruptedException, TimeOutException,
         OWLOntologyCreationException, OWLOntologyChangeException
     {
-        final List<InferredAxiomGenerator<? extends OWLAxiom>> axiomGenerators =
-                new ArrayList<InferredAxiomGenerator<? extends OWLAxiom>>();
-        axiomGenerators.add(new InferredClassAssertionAxiomGenerator());
-        axiomGenerators.add(new InferredDataPropertyCharacteristicAxiomGenerator());
-        axiomGenerators.add(new InferredEquivalentClassAxiomGenerator());
-        axiomGenerators.add(new InferredEquivalentDataPropertiesAxiomGenerator());
-        axiomGenerators.add(new InferredEquivalentObjectPropertyAxiomGenerator());
-        axiomGenerators.add(new InferredInverseObjectPropertiesAxiomGenerator());
-        axiomGenerators.add(new InferredObjectPropertyCharacteristicAxiomGenerator());
-        
-        // NOTE: InferredPropertyAssertionGenerator significantly slows down
-        // inference computation
-        axiomGenerators.add(new org.semanticweb.owlapi.util.InferredPropertyAssertionGenerator());
-        
-        axiomGenerators.add(new InferredSubClassAxiomGenerator());
-        axiomGenerators.add(new InferredSubDataPropertyAxiomGenerator());
-        axiomGenerators.add(new InferredSubObjectPropertyAxiomGenerator());
+        final Set<InferredAxiomGeneratorType> generatorTypes =
+                this.getInferredAxiomGenerators(nextReasoner.getRootOntology());
         
         IRI importIRI = concreteOntologyID.getVersionIRI();
         if(importIRI == null)
@@ -521,21 +594,216 @@ public class PoddOWLManagerImpl implements PoddOWLManager
             importIRI = concreteOntologyID.getOntologyIRI();
         }
         
-        final InferredOntologyGenerator iog = new InferredOntologyGenerator(nextReasoner, axiomGenerators);
-        
+        final long classificationStart = System.nanoTime();
         nextReasoner.precomputeInferences(InferenceType.CLASS_HIERARCHY);
+        this.log.debug("Classified {} in {} ms", concreteOntologyID,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - classificationStart));
         
-        final OWLOntology nextInferredAxiomsOntology =
-                nextReasoner.getRootOntology().getOWLOntologyManager().createOntology(inferredOntologyID);
+        final OWLOntologyManager manager = nextReasoner.getRootOntology().getOWLOntologyManager();
         
-        nextReasoner.getRootOntology().getOWLOntologyManager()
-                .applyChange(new AddImport(nextInferredAxiomsOntology, new OWLImportsDeclarationImpl(importIRI)));
+        final OWLOntology nextInferredAxiomsOntology = manager.createOntology(inferredOntologyID);
         
-        iog.fillOntology(nextInferredAxiomsOntology.getOWLOntologyManager(), nextInferredAxiomsOntology);
+        manager.applyChange(new AddImport(nextInferredAxiomsOntology, new OWLImportsDeclarationImpl(importIRI)));
+        
+        final long start = System.nanoTime();
+        final Set<OWLAxiom> inferredAxioms;
+        final ExecutorService executor = this.inferredAxiomGeneratorExecutor;
+        if(executor != null && generatorTypes.size() > 1)
+        {
+            inferredAxioms = this.computeInferredAxiomsParallel(nextReasoner, generatorTypes, executor);
+        }
+        else
+        {
+            inferredAxioms = new HashSet<OWLAxiom>();
+            for(final InferredAxiomGeneratorType nextType : generatorTypes)
+            {
+                inferredAxioms.addAll(this.computeInferredAxioms(nextType, nextReasoner));
+            }
+        }
+        
+        manager.addAxioms(nextInferredAxiomsOntology, inferredAxioms);
+        
+        this.log.debug("Generated {} inferred axioms for {} in {} ms", inferredAxioms.size(), concreteOntologyID,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
         
         return nextInferredAxiomsOntology;
     }
     
+    /**
+     * Runs a single generator against the given reasoner, logging the time it took and the number
+     * of axioms it generated.
+     */
+    private Set<? extends OWLAxiom> computeInferredAxioms(final InferredAxiomGeneratorType generatorType,
+            final OWLReasoner nextReasoner)
+    {
+        final long start = System.nanoTime();
+        
+        final Set<? extends OWLAxiom> result =
+                generatorType.createGenerator().createAxioms(nextReasoner.getRootOntology().getOWLOntologyManager(),
+                        nextReasoner);
+        
+        this.log.debug("Inferred axiom generator {} generated {} axioms in {} ms", generatorType, result.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        
+        return result;
+    }
+    
+    /**
+     * Runs each generator in parallel on the given executor. Reasoners are not thread safe, so the
+     * first generator uses the given reasoner, which has already been classified, and each of the
+     * others uses its own reasoner over the same root ontology, which is not modified until all of
+     * the generators complete. The extra reasoners are created on this thread, as creating a
+     * reasoner registers a listener with the ontology manager, but each is classified inside its
+     * own task.
+     */
+    private Set<OWLAxiom> computeInferredAxiomsParallel(final OWLReasoner nextReasoner,
+            final Set<InferredAxiomGeneratorType> generatorTypes, final ExecutorService executor)
+    {
+        final List<OWLReasoner> taskReasoners = new ArrayList<OWLReasoner>(generatorTypes.size() - 1);
+        try
+        {
+            final List<Callable<Set<? extends OWLAxiom>>> tasks =
+                    new ArrayList<Callable<Set<? extends OWLAxiom>>>(generatorTypes.size());
+            for(final InferredAxiomGeneratorType nextType : generatorTypes)
+            {
+                final OWLReasoner taskReasoner;
+                final boolean classify;
+                if(tasks.isEmpty())
+                {
+                    taskReasoner = nextReasoner;
+                    classify = false;
+                }
+                else
+                {
+                    taskReasoner = this.createReasoner(nextReasoner.getRootOntology());
+                    classify = true;
+                    taskReasoners.add(taskReasoner);
+                }
+                
+                tasks.add(new Callable<Set<? extends OWLAxiom>>()
+                    {
+                        @Override
+                        public Set<? extends OWLAxiom> call() throws Exception
+                        {
+                            if(classify)
+                            {
+                                taskReasoner.precomputeInferences(InferenceType.CLASS_HIERARCHY);
+                            }
+                            return PoddOWLManagerImpl.this.computeInferredAxioms(nextType, taskReasoner);
+                        }
+                    });
+            }
+            
+            final Set<OWLAxiom> result = new HashSet<OWLAxiom>();
+            for(final Future<Set<? extends OWLAxiom>> nextResult : executor.invokeAll(tasks))
+            {
+                result.addAll(nextResult.get());
+            }
+            return result;
+        }
+        catch(final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new ReasonerInterruptedException(e);
+        }
+        catch(final ExecutionException e)
+        {
+            if(e.getCause() instanceof RuntimeException)
+            {
+                throw (RuntimeException)e.getCause();
+            }
+            throw new OWLRuntimeException(e.getCause());
+        }
+        finally
+        {
+            for(final OWLReasoner nextTaskReasoner : taskReasoners)
+            {
+                nextTaskReasoner.dispose();
+            }
+        }
+    }
+    
+    /**
+     * Finds the generators to use for the given ontology, based on the schema ontologies in its
+     * imports closure.
+     */
+    private Set<InferredAxiomGeneratorType> getInferredAxiomGenerators(final OWLOntology nextOntology)
+    {
+        if(this.schemaInferredAxiomGenerators.isEmpty())
+        {
+            return this.defaultInferredAxiomGenerators;
+        }
+        
+        Set<InferredAxiomGeneratorType> result = null;
+        for(final OWLOntology nextImport : nextOntology.getImportsClosure())
+        {
+            final OWLOntologyID nextID = nextImport.getOntologyID();
+            Set<InferredAxiomGeneratorType> nextGenerators = null;
+            if(nextID.getVersionIRI() != null)
+            {
+                nextGenerators = this.schemaInferredAxiomGenerators.get(nextID.getVersionIRI());
+            }
+            if(nextGenerators == null && nextID.getOntologyIRI() != null)
+            {
+                nextGenerators = this.schemaInferredAxiomGenerators.get(nextID.getOntologyIRI());
+            }
+            if(nextGenerators != null)
+            {
+                if(result == null)
+                {
+                    result = EnumSet.noneOf(InferredAxiomGeneratorType.class);
+                }
+                result.addAll(nextGenerators);
+            }
+        }
+        
+        if(result == null)
+        {
+            return this.defaultInferredAxiomGenerators;
+        }
+        return result;
+    }
+    
+    /**
+     * Sets the generators used for artifacts that do not import any schema ontologies configured
+     * using {@link #setInferredAxiomGenerators(IRI, Set)}.
+     *
+     * @param generators
+     *            The default generators.
+     */
+    public void setDefaultInferredAxiomGenerators(final Set<InferredAxiomGeneratorType> generators)
+    {
+        this.defaultInferredAxiomGenerators = EnumSet.copyOf(generators);
+    }
+    
+    @Override
+    public void setInferredAxiomGenerators(final IRI schemaOntologyIRI,
+            final Set<InferredAxiomGeneratorType> generators)
+    {
+        if(generators == null)
+        {
+            this.schemaInferredAxiomGenerators.remove(schemaOntologyIRI);
+        }
+        else
+        {
+            this.schemaInferredAxiomGenerators.put(schemaOntologyIRI, EnumSet.copyOf(generators));
+        }
+    }
+    
+    /**
+     * Sets the executor used to run the inferred axiom generators for an artifact in parallel,
+     * each against its own reasoner. The executor should be bounded and dedicated to this purpose,
+     * as each task may hold a thread for the whole of a classification.
+     *
+     * @param inferredAxiomGeneratorExecutor
+     *            The executor to run the generators on, or null to run them one after another
+     *            using a single reasoner.
+     */
+    public void setInferredAxiomGeneratorExecutor(final ExecutorService inferredAxiomGeneratorExecutor)
+    {
+        this.inferredAxiomGeneratorExecutor = inferredAxiomGeneratorExecutor;
+    }
+    
     public OWLReasoner createReasoner(final OWLOntology nextOntology)
     {
         if(this.reasonerFactory == null)
@@ -698,144 +966,235 @@ public class PoddOWLManagerImpl implements PoddOWLManager
             final RepositoryConnection managementConnection, final URI schemaManagementContext) throws OWLException,
         PoddException, OpenRDFException, IOException
     {
-        return this.loadAndInfer(permanentRepositoryConnection, replacementOntologyID, owlSource, true,
+        return this.loadAndInfer(permanentRepositoryConnection, replacementOntologyID, owlSource,
                 dependentSchemaOntologies, managementConnection, schemaManagementContext);
     }
     
+    @Override
+    public InferredOWLOntologyID loadAndCheck(final OWLOntologyDocumentSource owlSource,
+            final RepositoryConnection permanentRepositoryConnection, final OWLOntologyID replacementOntologyID,
+            final Set<? extends OWLOntologyID> dependentSchemaOntologies,
+            final RepositoryConnection managementConnection, final URI schemaManagementContext) throws OWLException,
+        PoddException, OpenRDFException, IOException
+    {
+        return this.loadAndInfer(permanentRepositoryConnection, replacementOntologyID, owlSource,
+                dependentSchemaOntologies, managementConnection, schemaManagementContext, false);
+    }
+    
     public InferredOWLOntologyID loadAndInfer(final RepositoryConnection permanentRepositoryConnection,
             final OWLOntologyID ontologyID, final OWLOntologyDocumentSource owlSource,
-            final boolean removeFromCacheOnException, final Set<? extends OWLOntologyID> dependentSchemaOntologies,
+            final Set<? extends OWLOntologyID> dependentSchemaOntologies,
             final RepositoryConnection managementConnection, final URI schemaManagementContext) throws OWLException,
         PoddException, OpenRDFException, IOException
     {
-        InferredOWLOntologyID inferredOWLOntologyID = null;
-        OWLOntology nextOntology = null;
-        OWLOntologyManager cachedManager = null;
+        return this.loadAndInfer(permanentRepositoryConnection, ontologyID, owlSource, dependentSchemaOntologies,
+                managementConnection, schemaManagementContext, true);
+    }
+    
+    /**
+     * Loads and checks the given ontology, and optionally infers its statements, using a manager
+     * that is borrowed exclusively for this call, so that no lock is shared with other calls using
+     * the same schema ontologies while reasoning. The loaded and inferred ontologies are always
+     * removed from the borrowed manager before it is returned to the pool.
+     */
+    private InferredOWLOntologyID loadAndInfer(final RepositoryConnection permanentRepositoryConnection,
+            final OWLOntologyID ontologyID, final OWLOntologyDocumentSource owlSource,
+            final Set<? extends OWLOntologyID> dependentSchemaOntologies,
+            final RepositoryConnection managementConnection, final URI schemaManagementContext,
+            final boolean computeInferences) throws OWLException, PoddException, OpenRDFException, IOException
+    {
+        final OWLOntologyManager inferenceManager = this.borrowInferenceManager(dependentSchemaOntologies);
+        Set<OWLOntology> schemaOntologies = null;
+        OWLReasoner nextReasoner = null;
         try
         {
-            cachedManager =
-                    this.cacheSchemaOntologies(dependentSchemaOntologies, managementConnection, schemaManagementContext);
-            synchronized(cachedManager)
+            this.cacheSchemaOntologies(dependentSchemaOntologies, managementConnection, schemaManagementContext,
+                    inferenceManager);
+            schemaOntologies = new HashSet<OWLOntology>(inferenceManager.getOntologies());
+            
+            final OWLOntology nextOntology = this.loadOntologyInternal(ontologyID, owlSource, inferenceManager);
+            
+            nextReasoner = this.checkProfileAndConsistency(nextOntology);
+            
+            // Copy the statements to permanentRepositoryConnection
+            this.dumpOntologyToRepository(nextOntology, permanentRepositoryConnection, nextOntology.getOntologyID()
+                    .getVersionIRI().toOpenRDFURI());
+            
+            if(!computeInferences)
             {
-                nextOntology = this.loadOntologyInternal(ontologyID, owlSource, cachedManager);
-                
-                // Check the OWLAPI OWLOntology against an OWLProfile to make sure
-                // it is in profile
-                final OWLProfileReport profileReport =
-                        this.getReasonerProfiles().iterator().next().checkOntology(nextOntology);
-                if(!profileReport.isInProfile())
-                {
-                    if(this.log.isInfoEnabled())
-                    {
-                        for(final OWLProfileViolation violation : profileReport.getViolations())
-                        {
-                            this.log.info(violation.toString());
-                        }
-                    }
-                    throw new OntologyNotInProfileException(nextOntology, profileReport,
-                            "Ontology is not in required OWL Profile: " + profileReport.getProfile().getName());
-                }
-                
-                // Use the OWLManager to create a reasoner over the ontology
-                final OWLReasoner nextReasoner = this.createReasoner(nextOntology);
-                
-                // Test that the ontology was consistent with this reasoner
-                // This ensures in the case of Pellet that it is in the OWL2-DL
-                // profile
-                if(!nextReasoner.isConsistent())
+                // The inferred statements are computed later by inferStatements, after the
+                // concrete statements have been committed
+                return this.generateInferredOntologyID(nextOntology.getOntologyID()).withInferencePending(true);
+            }
+            
+            // Use an OWLAPI InferredAxiomGenerator together with the reasoner
+            // to create inferred
+            // axioms to store in the database.
+            // Serialise the inferred statements back to a different context in
+            // the permanent
+            // repository connection.
+            // The contexts to use within the permanent repository connection
+            // are all encapsulated
+            // in the InferredOWLOntologyID object.
+            return this.inferStatements(nextOntology, permanentRepositoryConnection, nextReasoner);
+        }
+        finally
+        {
+            this.cleanInferenceManager(dependentSchemaOntologies, inferenceManager, schemaOntologies, nextReasoner);
+        }
+    }
+    
+    @Override
+    public InferredOWLOntologyID inferStatements(final InferredOWLOntologyID ontologyID,
+            final RepositoryConnection permanentRepositoryConnection,
+            final Set<? extends OWLOntologyID> dependentSchemaOntologies,
+            final RepositoryConnection managementConnection, final URI schemaManagementContext) throws OWLException,
+        PoddException, OpenRDFException, IOException
+    {
+        final OWLOntologyManager inferenceManager = this.borrowInferenceManager(dependentSchemaOntologies);
+        Set<OWLOntology> schemaOntologies = null;
+        OWLReasoner nextReasoner = null;
+        try
+        {
+            this.cacheSchemaOntologies(dependentSchemaOntologies, managementConnection, schemaManagementContext,
+                    inferenceManager);
+            schemaOntologies = new HashSet<OWLOntology>(inferenceManager.getOntologies());
+            
+            // Reload the concrete statements that were stored by loadAndCheck
+            final Model model = new LinkedHashModel();
+            permanentRepositoryConnection.export(new StatementCollector(model), ontologyID.getVersionIRI()
+                    .toOpenRDFURI());
+            final OWLOntology nextOntology =
+                    this.loadOntologyInternal(null,
+                            new RioMemoryTripleSource(model.iterator(), Namespaces.asMap(model.getNamespaces())),
+                            inferenceManager);
+            
+            nextReasoner = this.createReasoner(nextOntology);
+            
+            return this.inferStatements(nextOntology, permanentRepositoryConnection, nextReasoner);
+        }
+        finally
+        {
+            this.cleanInferenceManager(dependentSchemaOntologies, inferenceManager, schemaOntologies, nextReasoner);
+        }
+    }
+    
+    /**
+     * Checks that the given ontology is in the profile supported by the reasoner and that it is
+     * consistent.
+     *
+     * @return The reasoner that was used to check the consistency of the ontology.
+     */
+    private OWLReasoner checkProfileAndConsistency(final OWLOntology nextOntology)
+        throws OntologyNotInProfileException, InconsistentOntologyException
+    {
+        // Check the OWLAPI OWLOntology against an OWLProfile to make sure
+        // it is in profile
+        final OWLProfileReport profileReport = this.getReasonerProfiles().iterator().next().checkOntology(nextOntology);
+        if(!profileReport.isInProfile())
+        {
+            if(this.log.isInfoEnabled())
+            {
+                for(final OWLProfileViolation violation : profileReport.getViolations())
                 {
-                    final RDFXMLExplanationRenderer renderer = new RDFXMLExplanationRenderer();
-                    // Get 100 inconsistency explanations, any more than that and they need to make
-                    // modifications and try again
-                    final ExplanationUtils exp =
-                            new ExplanationUtils((PelletReasoner)nextReasoner,
-                                    (PelletReasonerFactory)this.getReasonerFactory(), renderer,
-                                    new NullProgressMonitor(), 100);
-                    
-                    try
-                    {
-                        final Set<Set<OWLAxiom>> inconsistencyExplanations = exp.explainClassHierarchy();
-                        
-                        throw new InconsistentOntologyException(inconsistencyExplanations,
-                                nextOntology.getOntologyID(), renderer,
-                                "Ontology is inconsistent (explanation available)");
-                    }
-                    catch(final org.mindswap.pellet.exceptions.InconsistentOntologyException e)
-                    {
-                        throw new InconsistentOntologyException(new HashSet<Set<OWLAxiom>>(),
-                                nextOntology.getOntologyID(), renderer,
-                                "Ontology is inconsistent (textual explanation available): " + e.getMessage());
-                    }
-                    catch(PelletRuntimeException | OWLRuntimeException e)
-                    {
-                        throw new InconsistentOntologyException(new HashSet<Set<OWLAxiom>>(),
-                                nextOntology.getOntologyID(), renderer,
-                                "Ontology is inconsistent (no explanation available): " + e.getMessage());
-                    }
+                    this.log.info(violation.toString());
                 }
+            }
+            throw new OntologyNotInProfileException(nextOntology, profileReport,
+                    "Ontology is not in required OWL Profile: " + profileReport.getProfile().getName());
+        }
+        
+        // Use the OWLManager to create a reasoner over the ontology
+        final OWLReasoner nextReasoner = this.createReasoner(nextOntology);
+        
+        // Test that the ontology was consistent with this reasoner
+        // This ensures in the case of Pellet that it is in the OWL2-DL
+        // profile
+        if(!nextReasoner.isConsistent())
+        {
+            final RDFXMLExplanationRenderer renderer = new RDFXMLExplanationRenderer();
+            // Get 100 inconsistency explanations, any more than that and they need to make
+            // modifications and try again
+            final ExplanationUtils exp =
+                    new ExplanationUtils((PelletReasoner)nextReasoner, (PelletReasonerFactory)this.getReasonerFactory(),
+                            renderer, new NullProgressMonitor(), 100);
+            
+            try
+            {
+                final Set<Set<OWLAxiom>> inconsistencyExplanations = exp.explainClassHierarchy();
                 
-                // Copy the statements to permanentRepositoryConnection
-                this.dumpOntologyToRepository(nextOntology, permanentRepositoryConnection, nextOntology.getOntologyID()
-                        .getVersionIRI().toOpenRDFURI());
-                
-                // NOTE: At this stage, a client could be notified, and the artifact
-                // could be streamed
-                // back to them from permanentRepositoryConnection
-                
-                // Use an OWLAPI InferredAxiomGenerator together with the reasoner
-                // to create inferred
-                // axioms to store in the database.
-                // Serialise the inferred statements back to a different context in
-                // the permanent
-                // repository connection.
-                // The contexts to use within the permanent repository connection
-                // are all encapsulated
-                // in the InferredOWLOntologyID object.
-                
-                // FIXME: This should return a Future so that we can defer inferencing into the
-                // background
-                inferredOWLOntologyID = this.inferStatements(nextOntology, permanentRepositoryConnection, nextReasoner);
+                throw new InconsistentOntologyException(inconsistencyExplanations, nextOntology.getOntologyID(),
+                        renderer, "Ontology is inconsistent (explanation available)");
+            }
+            catch(final org.mindswap.pellet.exceptions.InconsistentOntologyException e)
+            {
+                throw new InconsistentOntologyException(new HashSet<Set<OWLAxiom>>(), nextOntology.getOntologyID(),
+                        renderer, "Ontology is inconsistent (textual explanation available): " + e.getMessage());
+            }
+            catch(PelletRuntimeException | OWLRuntimeException e)
+            {
+                throw new InconsistentOntologyException(new HashSet<Set<OWLAxiom>>(), nextOntology.getOntologyID(),
+                        renderer, "Ontology is inconsistent (no explanation available): " + e.getMessage());
+            }
+            finally
+            {
+                // The reasoner is not returned, so it must be disposed before the manager is reused
+                nextReasoner.dispose();
             }
         }
-        catch(final Throwable e)
+        
+        return nextReasoner;
+    }
+    
+    /**
+     * Disposes the given reasoner, which removes its listener from the manager, then removes any
+     * ontologies that were added to the given manager after the schema ontologies were cached, and
+     * then returns it to the pool. The manager is discarded if the schema ontologies were not
+     * cached successfully, or if it could not be cleaned.
+     */
+    private void cleanInferenceManager(final Set<? extends OWLOntologyID> dependentSchemaOntologies,
+            final OWLOntologyManager inferenceManager, final Set<OWLOntology> schemaOntologies,
+            final OWLReasoner reasoner)
+    {
+        if(reasoner != null)
+        {
+            try
+            {
+                reasoner.dispose();
+            }
+            catch(final Throwable e)
+            {
+                // Do not propagate this exception as it would clobber any real exception from
+                // loadAndInfer
+                this.log.error("Found exception while disposing reasoner: ", e);
+                return;
+            }
+        }
+        
+        if(schemaOntologies == null)
+        {
+            return;
+        }
+        
+        try
         {
-            if(cachedManager != null)
+            for(final OWLOntology nextOntology : new ArrayList<OWLOntology>(inferenceManager.getOntologies()))
             {
-                synchronized(cachedManager)
+                if(!schemaOntologies.contains(nextOntology))
                 {
-                    try
-                    {
-                        try
-                        {
-                            if(nextOntology != null && removeFromCacheOnException)
-                            {
-                                this.removeCacheInternal(nextOntology.getOntologyID(), dependentSchemaOntologies,
-                                        cachedManager);
-                            }
-                        }
-                        finally
-                        {
-                            if(inferredOWLOntologyID != null && removeFromCacheOnException)
-                            {
-                                this.removeCacheInternal(inferredOWLOntologyID.getInferredOWLOntologyID(),
-                                        dependentSchemaOntologies, cachedManager);
-                            }
-                        }
-                    }
-                    catch(final Throwable e1)
-                    {
-                        // Do not propagate this exception as it will clobber the real exception
-                        // that we
-                        // want to rethrow
-                        this.log.error("Found exception while clearing memory cache: ", e1);
-                    }
+                    inferenceManager.removeOntology(nextOntology);
                 }
             }
-            
-            throw e;
+        }
+        catch(final Throwable e)
+        {
+            // Do not propagate this exception as it would clobber any real exception from
+            // loadAndInfer
+            this.log.error("Found exception while clearing inference manager: ", e);
+            return;
         }
         
-        return inferredOWLOntologyID;
+        this.releaseInferenceManager(dependentSchemaOntologies, inferenceManager);
     }
     
     public OWLOntology loadOntologyInternal(final OWLOntologyID ontologyID, final OWLOntologyDocumentSource owlSource,
@@ -974,6 +1333,7 @@ public class PoddOWLManagerImpl implements PoddOWLManager
                 cachedManager.removeOntology(nextOntology.getOntologyID());
             }
             this.managerCache.remove(dependentSchemaOntologies);
+            this.inferenceManagerPool.remove(dependentSchemaOntologies);
             return true;
         }
         else
@@ -24,13 +24,19 @@ import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -43,7 +49,6 @@ import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
 import org.openrdf.model.Value;
 import org.openrdf.model.impl.LinkedHashModel;
-import org.openrdf.model.util.ModelException;
 import org.openrdf.model.vocabulary.RDF;
 import org.openrdf.model.vocabulary.SESAME;
 import org.openrdf.repository.Repository;
@@ -69,7 +74,6 @@ import com.github.ansell.propertyutil.PropertyUtil;
 import com.github.podd.api.PoddRepositoryManager;
 import com.github.podd.exception.RepositoryNotFoundException;
 import com.github.podd.utils.ManualShutdownRepository;
-import com.github.podd.utils.OntologyUtils;
 import com.github.podd.utils.PODD;
 
 /**
@@ -94,8 +98,17 @@ public class PoddRepositoryManagerImpl implements PoddRepositoryManager
     
     private ManualShutdownRepository managementRepository;
     
-    private ConcurrentMap<Set<? extends OWLOntologyID>, ManualShutdownRepository> permanentRepositories =
-            new ConcurrentHashMap<>();
+    private ConcurrentMap<List<URI>, ManualShutdownRepository> permanentRepositories = new ConcurrentHashMap<>();
+    
+    /**
+     * Index from the sorted list of schema version IRIs to the permanent repository containing
+     * exactly those schemas. Loaded from the management graph by {@link #init()}.
+     */
+    private final ConcurrentMap<List<URI>, PermanentRepositoryReference> schemaSetIndex = new ConcurrentHashMap<>();
+    
+    private volatile boolean schemaSetIndexLoaded = false;
+    
+    private final ConcurrentMap<List<URI>, Object> creationLocks = new ConcurrentHashMap<>();
     
     private RepositoryImplConfig permanentRepositoryConfigForNew;
     
@@ -131,6 +144,31 @@ public class PoddRepositoryManagerImpl implements PoddRepositoryManager
                         PODD.DEFAULT_REPOSITORY_MANAGEMENT_GRAPH.stringValue()));
     }
     
+    /**
+     * Loads the index from schema ontologies to permanent repositories from the repository
+     * management graph. Must be called before any permanent repositories are requested, and is
+     * called again if the management repository is replaced.
+     *
+     * @throws OpenRDFException
+     *             If there was an error reading the repository management graph.
+     */
+    public void init() throws OpenRDFException
+    {
+        RepositoryConnection managementConnection = null;
+        try
+        {
+            managementConnection = this.getManagementRepositoryConnection();
+            this.loadSchemaSetIndex(managementConnection);
+        }
+        finally
+        {
+            if(managementConnection != null)
+            {
+                managementConnection.close();
+            }
+        }
+    }
+    
     @Override
     public URI getArtifactManagementGraph()
     {
@@ -181,276 +219,352 @@ public class PoddRepositoryManagerImpl implements PoddRepositoryManager
             throw new IllegalArgumentException("Schema ontologies cannot be empty");
         }
         
-        if(this.log.isTraceEnabled())
-        {
-            new RuntimeException().printStackTrace();
-        }
+        final List<URI> schemaSetKey = PoddRepositoryManagerImpl.getSchemaSetKey(schemaOntologies);
         
-        ManualShutdownRepository permanentRepository = this.getPermanentRepositoryInternal(schemaOntologies);
+        ManualShutdownRepository permanentRepository = this.permanentRepositories.get(schemaSetKey);
         
-        // ManualShutdownRepository permanentRepository =
-        // this.permanentRepositories.get(schemaOntologies);
-        // This synchronisation should not inhibit most operations, but is necessary to prevent
-        // multiple repositories with the same schema ontologies, given that there is a relatively
-        // large latency in the new repository create process
+        // Synchronisation is only on the lock for this exact set of schema ontologies, which
+        // prevents multiple repositories being created for the same set, given that there is a
+        // relatively large latency in the new repository create process, without making requests
+        // for unrelated schema sets queue up behind it.
         // ConcurrentMap.putIfAbsent is not applicable to the initial situation as it is very costly
         // to create a repository if it is not needed
         if(permanentRepository == null)
         {
-            synchronized(this.permanentRepositories)
+            synchronized(this.getCreationLock(schemaSetKey))
             {
-                permanentRepository = this.getPermanentRepositoryInternal(schemaOntologies);
+                permanentRepository = this.permanentRepositories.get(schemaSetKey);
                 if(permanentRepository == null)
                 {
                     this.log.debug("Permanent repository not cached, but may exist");
-                    
-                    RepositoryConnection managementConnection = null;
-                    try
+                    permanentRepository =
+                            this.openPermanentRepository(schemaOntologies, schemaSetKey, createIfNotExists);
+                }
+            }
+        }
+        this.log.debug("Returning from get permanent repository");
+        return permanentRepository.getConnection();
+    }
+    
+    /**
+     * Finds or creates the permanent repository for the given set of schema ontologies, using the
+     * schema set index to locate existing repositories. Must only be called while holding the
+     * creation lock for the given key.
+     *
+     * @param schemaOntologies
+     *            The schema ontologies that the repository must contain.
+     * @param schemaSetKey
+     *            The canonical key for the schema ontologies, as returned by
+     *            {@link #getSchemaSetKey(Set)}.
+     * @param createIfNotExists
+     *            True to create a new repository if one does not already exist.
+     * @return The permanent repository, which has been cached before being returned.
+     */
+    private ManualShutdownRepository openPermanentRepository(final Set<? extends OWLOntologyID> schemaOntologies,
+            final List<URI> schemaSetKey, final boolean createIfNotExists) throws OpenRDFException, IOException,
+        RepositoryNotFoundException
+    {
+        if(!this.schemaSetIndexLoaded)
+        {
+            throw new IllegalStateException("Repository manager has not been initialised");
+        }
+        
+        ManualShutdownRepository permanentRepository = null;
+        PermanentRepositoryReference newReference = null;
+        
+        RepositoryConnection managementConnection = null;
+        try
+        {
+            managementConnection = this.getManagementRepositoryConnection();
+            managementConnection.begin();
+            
+            final PermanentRepositoryReference existingReference = this.schemaSetIndex.get(schemaSetKey);
+            
+            // If no existing repository found, then create one, else we regenerate a reference to
+            // the existing repository
+            if(existingReference == null)
+            {
+                // Throw exception after debugging if we were told not to create a new repository
+                // for this case
+                if(!createIfNotExists)
+                {
+                    if(this.log.isDebugEnabled())
                     {
-                        managementConnection = this.getManagementRepositoryConnection();
-                        managementConnection.begin();
-                        URI repositoryUri = null;
-                        
-                        final Entry<Resource, RepositoryManager> sesameRepositoryManagerMap =
-                                this.getRepositoryManagerEntry(schemaOntologies, managementConnection);
-                        final Resource repositoryManagerURI = sesameRepositoryManagerMap.getKey();
-                        final RepositoryManager sesameRepositoryManager = sesameRepositoryManagerMap.getValue();
-                        
-                        final Model repositoriesInManagerModel = new LinkedHashModel();
-                        managementConnection.exportStatements(repositoryManagerURI,
-                                PODD.PODD_REPOSITORY_MANAGER_CONTAINS_REPOSITORY, null, false, new StatementCollector(
-                                        repositoriesInManagerModel), this.repositoryGraph);
-                        for(final Value nextRepository : repositoriesInManagerModel.objects())
+                        this.log.debug("Listing all {} indexed repositories:", this.schemaSetIndex.size());
+                        for(final Entry<List<URI>, PermanentRepositoryReference> nextEntry : this.schemaSetIndex
+                                .entrySet())
                         {
-                            if(nextRepository instanceof URI)
+                            this.log.debug("\t{}", nextEntry.getValue().getRepositoryUri());
+                            for(final URI nextOntologyInNextRepository : nextEntry.getKey())
                             {
-                                final Model model = new LinkedHashModel();
-                                managementConnection.exportStatements((URI)nextRepository,
-                                        PODD.PODD_REPOSITORY_CONTAINS_SCHEMA_VERSION, null, true,
-                                        new StatementCollector(model), this.repositoryGraph);
-                                
-                                final Set<Value> schemasInRepository =
-                                        model.filter((URI)nextRepository, PODD.PODD_REPOSITORY_CONTAINS_SCHEMA_VERSION,
-                                                null).objects();
-                                boolean missingSchema = false;
-                                if(schemasInRepository.size() != schemaOntologies.size())
-                                {
-                                    continue;
-                                }
-                                for(final OWLOntologyID nextSchemaOntology : schemaOntologies)
-                                {
-                                    if(!model.contains((URI)nextRepository,
-                                            PODD.PODD_REPOSITORY_CONTAINS_SCHEMA_VERSION, nextSchemaOntology
-                                                    .getVersionIRI().toOpenRDFURI()))
-                                    {
-                                        missingSchema = true;
-                                        break;
-                                    }
-                                }
-                                
-                                for(final Value nextSchema : schemasInRepository)
-                                {
-                                    if(nextSchema instanceof URI)
-                                    {
-                                        boolean foundNextSchema = false;
-                                        for(final OWLOntologyID nextSchemaOntology : schemaOntologies)
-                                        {
-                                            if(nextSchemaOntology.getVersionIRI().toOpenRDFURI().equals(nextSchema))
-                                            {
-                                                foundNextSchema = true;
-                                                break;
-                                            }
-                                        }
-                                        if(!foundNextSchema)
-                                        {
-                                            missingSchema = true;
-                                            break;
-                                        }
-                                    }
-                                    else
-                                    {
-                                        // If the schema was not a URI we have no hope of finding
-                                        // it, so report it as missing
-                                        missingSchema = true;
-                                    }
-                                }
-                                
-                                if(!missingSchema)
-                                {
-                                    repositoryUri = (URI)nextRepository;
-                                    break;
-                                }
+                                this.log.debug("\t\t{}", nextOntologyInNextRepository);
                             }
                         }
-                        
-                        // If no existing repository found, then create one, else we regenerate a
-                        // reference to the existing repository
-                        if(repositoryUri == null)
+                    }
+                    
+                    throw new RepositoryNotFoundException(
+                            "Could not find an existing repository for the given set of schema ontolgoies: "
+                                    + schemaOntologies);
+                }
+                
+                this.log.debug("Permanent repository not created yet");
+                
+                final Entry<Resource, RepositoryManager> sesameRepositoryManagerMap =
+                        this.getRepositoryManagerEntry(schemaOntologies, managementConnection);
+                final Resource repositoryManagerURI = sesameRepositoryManagerMap.getKey();
+                final RepositoryManager sesameRepositoryManager = sesameRepositoryManagerMap.getValue();
+                
+                // Create a new one
+                final URI repositoryUri =
+                        managementConnection.getValueFactory().createURI("urn:podd:repository:",
+                                UUID.randomUUID().toString());
+                // Get a new repository ID using our base name as the starting point
+                final String newRepositoryID = sesameRepositoryManager.getNewRepositoryID(repositoryUri.stringValue());
+                final Date creationDate = new Date();
+                final SimpleDateFormat iso8601Format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+                final RepositoryConfig config =
+                        new RepositoryConfig(newRepositoryID, "PODD Redesign Repository (Automatically created at "
+                                + iso8601Format.format(creationDate) + ")", this.permanentRepositoryConfigForNew);
+                sesameRepositoryManager.addRepositoryConfig(config);
+                
+                final ManualShutdownRepository nextRepository =
+                        new ManualShutdownRepository(this.getRepositoryByID(sesameRepositoryManager, newRepositoryID));
+                // If we somehow created a new repository since we entered this section, we need
+                // to remove the new repository to cleanup
+                final ManualShutdownRepository putIfAbsent =
+                        this.permanentRepositories.putIfAbsent(schemaSetKey, nextRepository);
+                if(putIfAbsent != null)
+                {
+                    this.log.error("Created a new duplicate repository that must now be removed: {}", newRepositoryID);
+                    final boolean removeRepository = sesameRepositoryManager.removeRepository(newRepositoryID);
+                    if(!removeRepository)
+                    {
+                        this.log.warn("Could not remove duplicate repository: {}", newRepositoryID);
+                    }
+                    permanentRepository = putIfAbsent;
+                }
+                else
+                {
+                    this.log.debug("Permanent repository created: {}", newRepositoryID);
+                    permanentRepository = nextRepository;
+                    
+                    // In this case, we need to copy the relevant schema ontologies over to the new
+                    // repository
+                    this.initialisePermanentRepository(schemaOntologies, managementConnection, permanentRepository);
+                    this.addNewRepositoryID(schemaOntologies, managementConnection, repositoryUri,
+                            repositoryManagerURI, newRepositoryID);
+                    newReference =
+                            new PermanentRepositoryReference(repositoryUri, repositoryManagerURI, newRepositoryID);
+                }
+            }
+            else
+            {
+                this.log.debug("Permanent repository exists but not cached: {}", existingReference.getRepositoryUri());
+                
+                RepositoryManager sesameRepositoryManager =
+                        this.sesameRepositoryManagers.get(existingReference.getRepositoryManagerUri());
+                if(sesameRepositoryManager == null)
+                {
+                    // The repository manager has not been initialised yet, which only happens once
+                    // for each manager
+                    sesameRepositoryManager =
+                            this.getRepositoryManagerEntry(schemaOntologies, managementConnection).getValue();
+                }
+                
+                final Repository existingRepository =
+                        sesameRepositoryManager.getRepository(existingReference.getRepositoryId());
+                
+                if(existingRepository == null)
+                {
+                    throw new RuntimeException("Failed to get existing repository from manager: "
+                            + existingReference.getRepositoryId());
+                }
+                
+                // Wrap the repository so that it will not be accidentally shutdown by user code
+                // outside of our lifecycle here
+                final ManualShutdownRepository nextRepository = new ManualShutdownRepository(existingRepository);
+                
+                final ManualShutdownRepository putIfAbsent =
+                        this.permanentRepositories.putIfAbsent(schemaSetKey, nextRepository);
+                if(putIfAbsent != null)
+                {
+                    // TODO: Should we shutdown the repository that is being replaced?
+                    // Ideally we will be shutting down the repository manager later,
+                    // and they should be references to the same Repository anyway
+                    // nextRepository.shutDown();
+                    
+                    permanentRepository = putIfAbsent;
+                }
+                else
+                {
+                    permanentRepository = nextRepository;
+                }
+            }
+            managementConnection.commit();
+        }
+        catch(final Throwable e)
+        {
+            if(managementConnection != null)
+            {
+                managementConnection.rollback();
+            }
+            if(newReference != null)
+            {
+                // The management graph does not know about the new repository, so it must not be
+                // used
+                this.permanentRepositories.remove(schemaSetKey, permanentRepository);
+            }
+            throw e;
+        }
+        finally
+        {
+            if(managementConnection != null)
+            {
+                managementConnection.close();
+            }
+        }
+        
+        // Only index the new repository after the management graph has been committed
+        if(newReference != null)
+        {
+            this.schemaSetIndex.put(schemaSetKey, newReference);
+        }
+        
+        return permanentRepository;
+    }
+    
+    /**
+     * Creates a canonical key for a set of schema ontologies, consisting of the sorted list of
+     * their version IRIs, so that equivalent sets map to the same permanent repository.
+     *
+     * @param schemaOntologies
+     *            The set of schema ontologies, which must all have version IRIs.
+     * @return An unmodifiable, sorted list of the version IRIs for the given schema ontologies.
+     */
+    static List<URI> getSchemaSetKey(final Set<? extends OWLOntologyID> schemaOntologies)
+    {
+        final List<URI> result = new ArrayList<>(schemaOntologies.size());
+        for(final OWLOntologyID nextSchemaOntology : schemaOntologies)
+        {
+            if(nextSchemaOntology.getVersionIRI() == null)
+            {
+                throw new IllegalArgumentException("Schema ontologies must all have version IRIs: "
+                        + nextSchemaOntology);
+            }
+            result.add(nextSchemaOntology.getVersionIRI().toOpenRDFURI());
+        }
+        return PoddRepositoryManagerImpl.getCanonicalKey(result);
+    }
+    
+    private static List<URI> getCanonicalKey(final Collection<URI> schemaVersionIRIs)
+    {
+        final SortedSet<String> sorted = new TreeSet<>();
+        for(final URI nextVersion : schemaVersionIRIs)
+        {
+            sorted.add(nextVersion.stringValue());
+        }
+        final List<URI> result = new ArrayList<>(sorted.size());
+        for(final String nextVersion : sorted)
+        {
+            result.add(PODD.VF.createURI(nextVersion));
+        }
+        return Collections.unmodifiableList(result);
+    }
+    
+    private Object getCreationLock(final List<URI> schemaSetKey)
+    {
+        final Object newLock = new Object();
+        final Object existingLock = this.creationLocks.putIfAbsent(schemaSetKey, newLock);
+        return existingLock != null ? existingLock : newLock;
+    }
+    
+    /**
+     * Replaces the index from canonical schema set keys to permanent repositories with the
+     * contents of the repository management graph. The index is then kept up to date as
+     * repositories are created.
+     *
+     * @param managementConnection
+     *            An open connection to the management repository.
+     * @throws RepositoryException
+     */
+    private void loadSchemaSetIndex(final RepositoryConnection managementConnection) throws RepositoryException
+    {
+        synchronized(this.schemaSetIndex)
+        {
+            this.schemaSetIndexLoaded = false;
+            this.schemaSetIndex.clear();
+            
+            final Model model = new LinkedHashModel();
+            Iterations.addAll(managementConnection.getStatements(null, null, null, false, this.repositoryGraph), model);
+            
+            for(final Resource nextRepositoryManager : model.filter(null, RDF.TYPE, PODD.PODD_REPOSITORY_MANAGER)
+                    .subjects())
+            {
+                for(final Value nextRepository : model.filter(nextRepositoryManager,
+                        PODD.PODD_REPOSITORY_MANAGER_CONTAINS_REPOSITORY, null).objects())
+                {
+                    if(!(nextRepository instanceof URI))
+                    {
+                        this.log.error("Found repository labelled with a non-URI: {}", nextRepository);
+                        continue;
+                    }
+                    
+                    final Set<URI> schemaVersions = new HashSet<>();
+                    boolean validSchemas = true;
+                    for(final Value nextSchema : model.filter((URI)nextRepository,
+                            PODD.PODD_REPOSITORY_CONTAINS_SCHEMA_VERSION, null).objects())
+                    {
+                        if(nextSchema instanceof URI)
                         {
-                            // Throw exception after debugging if we were told not to create a new
-                            // repository for this case
-                            if(!createIfNotExists)
-                            {
-                                if(this.log.isDebugEnabled())
-                                {
-                                    final Set<Value> debugRepositories =
-                                            repositoriesInManagerModel.filter(null, RDF.TYPE, PODD.PODD_REPOSITORY,
-                                                    this.repositoryGraph).objects();
-                                    this.log.debug("Listing all {} repositories in manager:", debugRepositories.size());
-                                    for(final Value nextRepositoryUri : debugRepositories)
-                                    {
-                                        if(!(nextRepositoryUri instanceof URI))
-                                        {
-                                            this.log.error("Found repository labelled with a non-URI: {}",
-                                                    nextRepositoryUri);
-                                            continue;
-                                        }
-                                        
-                                        this.log.debug("\t{}", nextRepositoryUri);
-                                        final Set<Value> ontologiesInNextRepository =
-                                                repositoriesInManagerModel.filter((URI)nextRepositoryUri,
-                                                        PODD.PODD_REPOSITORY_CONTAINS_SCHEMA_VERSION, null).objects();
-                                        for(final Value nextOntologyInNextRepository : ontologiesInNextRepository)
-                                        {
-                                            this.log.debug("\t\t{}", nextOntologyInNextRepository);
-                                        }
-                                    }
-                                }
-                                
-                                throw new RepositoryNotFoundException(
-                                        "Could not find an existing repository for the given set of schema ontolgoies: "
-                                                + schemaOntologies);
-                            }
-                            
-                            this.log.debug("Permanent repository not created yet");
-                            // Create a new one
-                            repositoryUri =
-                                    managementConnection.getValueFactory().createURI("urn:podd:repository:",
-                                            UUID.randomUUID().toString());
-                            // Get a new repository ID using our base name as the starting point
-                            final String newRepositoryID =
-                                    sesameRepositoryManager.getNewRepositoryID(repositoryUri.stringValue());
-                            final Date creationDate = new Date();
-                            final SimpleDateFormat iso8601Format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
-                            final RepositoryConfig config =
-                                    new RepositoryConfig(newRepositoryID,
-                                            "PODD Redesign Repository (Automatically created at "
-                                                    + iso8601Format.format(creationDate) + ")",
-                                            this.permanentRepositoryConfigForNew);
-                            sesameRepositoryManager.addRepositoryConfig(config);
-                            
-                            final ManualShutdownRepository nextRepository =
-                                    new ManualShutdownRepository(this.getRepositoryByID(sesameRepositoryManager,
-                                            newRepositoryID));
-                            // If we somehow created a new repository since we entered this section,
-                            // we need to remove the new repository to cleanup
-                            final ManualShutdownRepository putIfAbsent =
-                                    this.permanentRepositories.putIfAbsent(schemaOntologies, nextRepository);
-                            if(putIfAbsent != null)
-                            {
-                                this.log.error("Created a new duplicate repository that must now be removed: {}",
-                                        newRepositoryID);
-                                final boolean removeRepository =
-                                        sesameRepositoryManager.removeRepository(newRepositoryID);
-                                if(!removeRepository)
-                                {
-                                    this.log.warn("Could not remove duplicate repository: {}", newRepositoryID);
-                                }
-                                permanentRepository = putIfAbsent;
-                            }
-                            else
-                            {
-                                this.log.debug("Permanent repository created: {}", newRepositoryID);
-                                permanentRepository = nextRepository;
-                                
-                                // In this case, we need to copy the relevant schema ontologies over
-                                // to the new repository
-                                this.initialisePermanentRepository(schemaOntologies, managementConnection,
-                                        permanentRepository);
-                                this.addNewRepositoryID(schemaOntologies, managementConnection, repositoryUri,
-                                        repositoryManagerURI, newRepositoryID);
-                            }
+                            schemaVersions.add((URI)nextSchema);
                         }
                         else
                         {
-                            this.log.debug("Permanent repository exists but not cached: {}", repositoryUri);
-                            if(this.log.isTraceEnabled())
-                            {
-                                new RuntimeException().printStackTrace();
-                            }
-                            // create reference to existing repositoryUri
-                            final Model model = new LinkedHashModel();
-                            managementConnection.exportStatements(repositoryUri, null, null, false,
-                                    new StatementCollector(model), this.repositoryGraph);
-                            if(!model.contains(repositoryUri, RDF.TYPE, PODD.PODD_REPOSITORY))
-                            {
-                                throw new RuntimeException(
-                                        "Found repository that was not typed correctly in management graph: "
-                                                + repositoryUri.stringValue());
-                            }
-                            
-                            Repository nextRepository = null;
-                            
-                            try
-                            {
-                                final Literal existingRepositoryId =
-                                        model.filter(repositoryUri, PODD.PODD_REPOSITORY_ID_IN_MANAGER, null)
-                                                .objectLiteral();
-                                
-                                nextRepository = sesameRepositoryManager.getRepository(existingRepositoryId.getLabel());
-                                
-                                if(nextRepository == null)
-                                {
-                                    throw new RuntimeException("Failed to get existing repository from manager: "
-                                            + existingRepositoryId);
-                                }
-                            }
-                            catch(final ModelException e)
-                            {
-                                throw new RuntimeException("Failed to find a unique repositoryId in manager", e);
-                            }
-                            
-                            // Wrap the repository so that it will not be accidentally shutdown by
-                            // user code outside of our lifecycle here
-                            nextRepository = new ManualShutdownRepository(nextRepository);
-                            
-                            final ManualShutdownRepository putIfAbsent =
-                                    this.permanentRepositories.putIfAbsent(schemaOntologies,
-                                            (ManualShutdownRepository)nextRepository);
-                            if(putIfAbsent != null)
-                            {
-                                // TODO: Should we shutdown the repository that is being replaced?
-                                // Ideally we will be shutting down the repository manager later,
-                                // and they should be references to the same Repository anyway
-                                // nextRepository.shutDown();
-                                
-                                nextRepository = putIfAbsent;
-                            }
-                            permanentRepository = (ManualShutdownRepository)nextRepository;
+                            // If the schema was not a URI we have no hope of matching it
+                            validSchemas = false;
                         }
-                        managementConnection.commit();
                     }
-                    catch(final Throwable e)
+                    
+                    final Set<Value> repositoryIds =
+                            model.filter((URI)nextRepository, PODD.PODD_REPOSITORY_ID_IN_MANAGER, null).objects();
+                    
+                    if(!validSchemas || schemaVersions.isEmpty() || repositoryIds.size() != 1)
                     {
-                        if(managementConnection != null)
-                        {
-                            managementConnection.rollback();
-                        }
-                        throw e;
+                        this.log.warn("Not indexing incomplete repository description: {}", nextRepository);
+                        continue;
                     }
-                    finally
+                    
+                    final PermanentRepositoryReference nextReference =
+                            new PermanentRepositoryReference((URI)nextRepository, nextRepositoryManager,
+                                    repositoryIds.iterator().next().stringValue());
+                    
+                    final PermanentRepositoryReference existing =
+                            this.schemaSetIndex.putIfAbsent(PoddRepositoryManagerImpl.getCanonicalKey(schemaVersions),
+                                    nextReference);
+                    if(existing != null)
                     {
-                        if(managementConnection != null)
-                        {
-                            managementConnection.close();
-                        }
+                        this.log.warn("Found duplicate repositories for the same schema ontologies: {} {}",
+                                existing.getRepositoryUri(), nextRepository);
                     }
-                    
                 }
             }
+            
+            this.log.debug("Loaded schema set index for {} permanent repositories", this.schemaSetIndex.size());
+            this.schemaSetIndexLoaded = true;
+        }
+    }
+    
+    /**
+     * Removes all entries from the schema set index, which must be reloaded using
+     * {@link #init()} before permanent repositories can be requested again.
+     */
+    private void clearSchemaSetIndex()
+    {
+        synchronized(this.schemaSetIndex)
+        {
+            this.schemaSetIndexLoaded = false;
+            this.schemaSetIndex.clear();
         }
-        this.log.debug("Returning from get permanent repository");
-        return permanentRepository.getConnection();
     }
     
     /**
@@ -581,20 +695,6 @@ public class PoddRepositoryManagerImpl implements PoddRepositoryManager
         return sesameRepositoryManager.getRepository(newRepositoryID);
     }
     
-    protected ManualShutdownRepository getPermanentRepositoryInternal(
-            final Set<? extends OWLOntologyID> schemaOntologies)
-    {
-        for(final Entry<Set<? extends OWLOntologyID>, ManualShutdownRepository> nextEntry : this.permanentRepositories
-                .entrySet())
-        {
-            if(OntologyUtils.ontologyVersionsMatch(schemaOntologies, nextEntry.getKey()))
-            {
-                return nextEntry.getValue();
-            }
-        }
-        return null;
-    }
-    
     @Override
     public URI getSchemaManagementGraph()
     {
@@ -668,6 +768,7 @@ public class PoddRepositoryManagerImpl implements PoddRepositoryManager
     public void setManagementRepository(final Repository repository) throws OpenRDFException
     {
         this.managementRepository = new ManualShutdownRepository(repository);
+        this.init();
     }
     
     @Override
@@ -697,7 +798,7 @@ public class PoddRepositoryManagerImpl implements PoddRepositoryManager
         {
             synchronized(this.permanentRepositories)
             {
-                for(final Entry<Set<? extends OWLOntologyID>, ManualShutdownRepository> nextRepository : this.permanentRepositories
+                for(final Entry<List<URI>, ManualShutdownRepository> nextRepository : this.permanentRepositories
                         .entrySet())
                 {
                     try
@@ -720,6 +821,8 @@ public class PoddRepositoryManagerImpl implements PoddRepositoryManager
                     }
                 }
                 this.permanentRepositories.clear();
+                this.creationLocks.clear();
+                this.clearSchemaSetIndex();
             }
             
             synchronized(this.sesameRepositoryManagers)
@@ -999,4 +1102,39 @@ public class PoddRepositoryManagerImpl implements PoddRepositoryManager
             return Collections.<Resource, RepositoryManager> singletonMap(newRepositoryManagerURI, repositoryManager);
         }
     }
+    
+    /**
+     * The location of a permanent repository inside of a Sesame {@link RepositoryManager}.
+     */
+    private static final class PermanentRepositoryReference
+    {
+        private final URI repositoryUri;
+        
+        private final Resource repositoryManagerUri;
+        
+        private final String repositoryId;
+        
+        PermanentRepositoryReference(final URI repositoryUri, final Resource repositoryManagerUri,
+                final String repositoryId)
+        {
+            this.repositoryUri = repositoryUri;
+            this.repositoryManagerUri = repositoryManagerUri;
+            this.repositoryId = repositoryId;
+        }
+        
+        URI getRepositoryUri()
+        {
+            return this.repositoryUri;
+        }
+        
+        Resource getRepositoryManagerUri()
+        {
+            return this.repositoryManagerUri;
+        }
+        
+        String getRepositoryId()
+        {
+            return this.repositoryId;
+        }
+    }
 }
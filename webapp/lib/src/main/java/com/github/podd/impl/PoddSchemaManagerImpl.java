@@ -311,6 +311,7 @@ public class PoddSchemaManagerImpl implements PoddSchemaManager
             
             this.setUpdateManagedSchemaOntologyVersionInternal(schemaOntologyID, true, managementConnection,
                     this.repositoryManager.getSchemaManagementGraph());
+            this.sesameManager.invalidateContextsCache();
         }
         finally
         {
@@ -532,6 +533,7 @@ public class PoddSchemaManagerImpl implements PoddSchemaManager
                                     nextMinimalImport, this.repositoryManager.getSchemaManagementGraph());
                         }
                         managementConnection.commit();
+                        this.sesameManager.invalidateContextsCache();
                         
                         results.add(nextResult);
                     }
@@ -609,6 +611,7 @@ public class PoddSchemaManagerImpl implements PoddSchemaManager
             }
             
             managementConnection.commit();
+            this.sesameManager.invalidateContextsCache();
             
             return nextResult;
         }
@@ -22,13 +22,19 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.openrdf.OpenRDFException;
 import org.openrdf.model.Model;
@@ -46,9 +52,7 @@ import org.openrdf.query.BindingSet;
 import org.openrdf.query.BooleanQuery;
 import org.openrdf.query.GraphQuery;
 import org.openrdf.query.QueryLanguage;
-import org.openrdf.query.QueryResults;
 import org.openrdf.query.TupleQuery;
-import org.openrdf.query.TupleQueryResult;
 import org.openrdf.query.impl.DatasetImpl;
 import org.openrdf.query.resultio.helpers.QueryResultCollector;
 import org.openrdf.queryrender.RenderUtils;
@@ -86,8 +90,49 @@ import com.github.podd.utils.RdfUtility;
  */
 public class PoddSesameManagerImpl implements PoddSesameManager
 {
+    /**
+     * The maximum number of artifacts to include in each query for top object labels.
+     */
+    private static final int TOP_OBJECT_LABELS_BATCH_SIZE = 500;
+    
+    /**
+     * The maximum number of sets of schema contexts to cache. The cache is cleared when it is
+     * full.
+     */
+    private static final int CONTEXTS_CACHE_SIZE = 1024;
+    
+    /**
+     * The maximum number of label indexes to cache. The cache is cleared when it is full.
+     */
+    private static final int LABEL_INDEXES_SIZE = 256;
+    
     private final Logger log = LoggerFactory.getLogger(this.getClass());
     
+    /**
+     * Cache of resolved schema contexts, keyed by the artifact version IRI, or null for all current
+     * schemas, followed by the schema and artifact management graphs.
+     */
+    private final ConcurrentMap<List<URI>, CachedContexts> contextsCache = new ConcurrentHashMap<>();
+    
+    /**
+     * Incremented on each invalidation, so that contexts resolved concurrently with an
+     * invalidation are never returned from the cache.
+     */
+    private final AtomicLong contextsCacheGeneration = new AtomicLong();
+    
+    private final AtomicLong contextsCacheHits = new AtomicLong();
+    
+    private final AtomicLong contextsCacheMisses = new AtomicLong();
+    
+    /**
+     * Label indexes, keyed by the repository and the context that they were built from. Artifact
+     * and schema versions are never modified in place, so entries only need to be removed when the
+     * contexts for a version are removed, or when the cache is full.
+     */
+    private final ConcurrentMap<List<Object>, LabelIndex> labelIndexes = new ConcurrentHashMap<>();
+    
+    private volatile boolean labelIndexEnabled = true;
+    
     public PoddSesameManagerImpl()
     {
     }
@@ -97,6 +142,8 @@ public class PoddSesameManagerImpl implements PoddSesameManager
             final RepositoryConnection permanentConnection, final RepositoryConnection managementConnection,
             final URI managementGraph) throws OpenRDFException
     {
+        this.invalidateContextsCache();
+        
         for(final InferredOWLOntologyID nextOntologyID : givenOntologies)
         {
             final List<InferredOWLOntologyID> versionInternal =
@@ -124,6 +171,8 @@ public class PoddSesameManagerImpl implements PoddSesameManager
             // clear out the direct and inferred ontology graphs
             permanentConnection.remove((URI)null, null, null, nextOntologyID.getInferredOntologyIRI().toOpenRDFURI());
             permanentConnection.remove((URI)null, null, null, nextOntologyID.getVersionIRI().toOpenRDFURI());
+            this.invalidateLabelIndex(nextOntologyID.getInferredOntologyIRI().toOpenRDFURI(), nextOntologyID
+                    .getVersionIRI().toOpenRDFURI());
             
             // clear out references attached to the version and inferred IRIs in
             // the management graph
@@ -221,7 +270,7 @@ public class PoddSesameManagerImpl implements PoddSesameManager
         
         this.log.trace("Created SPARQL {}.", graphQuery);
         
-        return RdfUtility.executeGraphQuery(rdfsGraphQuery, contexts);
+        return RdfUtility.executeGraphQuery("fillMissingLabels", rdfsGraphQuery, contexts);
     }
     
     @Override
@@ -243,7 +292,8 @@ public class PoddSesameManagerImpl implements PoddSesameManager
         this.log.debug("Generated SPARQL {} ", sb);
         
         final TupleQuery query = repositoryConnection.prepareTupleQuery(QueryLanguage.SPARQL, sb.toString());
-        final QueryResultCollector queryResults = RdfUtility.executeTupleQuery(query, schemaManagementGraph);
+        final QueryResultCollector queryResults =
+                RdfUtility.executeTupleQuery("getAllCurrentSchemaOntologyVersions", query, schemaManagementGraph);
         
         for(final BindingSet nextResult : queryResults.getBindingSets())
         {
@@ -288,7 +338,8 @@ public class PoddSesameManagerImpl implements PoddSesameManager
         this.log.debug("Generated SPARQL {} ", sb);
         
         final TupleQuery query = repositoryConnection.prepareTupleQuery(QueryLanguage.SPARQL, sb.toString());
-        final QueryResultCollector queryResults = RdfUtility.executeTupleQuery(query, schemaManagementGraph);
+        final QueryResultCollector queryResults =
+                RdfUtility.executeTupleQuery("getAllSchemaOntologyVersions", query, schemaManagementGraph);
         
         for(final BindingSet nextResult : queryResults.getBindingSets())
         {
@@ -384,7 +435,7 @@ public class PoddSesameManagerImpl implements PoddSesameManager
             query.setBinding("poddObject", objectUri);
         }
         
-        final QueryResultCollector queryResults = RdfUtility.executeTupleQuery(query, contexts);
+        final QueryResultCollector queryResults = RdfUtility.executeTupleQuery("getCardinalityValues", query, contexts);
         
         final ConcurrentMap<URI, URI> resultMap = new ConcurrentHashMap<URI, URI>();
         
@@ -459,7 +510,8 @@ public class PoddSesameManagerImpl implements PoddSesameManager
         
         final TupleQuery tupleQuery = repositoryConnection.prepareTupleQuery(QueryLanguage.SPARQL, sb.toString());
         
-        final QueryResultCollector queryResults = RdfUtility.executeTupleQuery(tupleQuery, contexts);
+        final QueryResultCollector queryResults =
+                RdfUtility.executeTupleQuery("getEventsTopConcepts", tupleQuery, contexts);
         
         final Set<URI> resultSet = new HashSet<URI>();
         for(final BindingSet next : queryResults.getBindingSets())
@@ -489,7 +541,8 @@ public class PoddSesameManagerImpl implements PoddSesameManager
         
         final TupleQuery tupleQuery = repositoryConnection.prepareTupleQuery(QueryLanguage.SPARQL, sb.toString());
         
-        final QueryResultCollector queryResults = RdfUtility.executeTupleQuery(tupleQuery, contexts);
+        final QueryResultCollector queryResults =
+                RdfUtility.executeTupleQuery("getDirectSubClassOf", tupleQuery, contexts);
         
         final Set<URI> resultSet = new HashSet<URI>();
         for(final BindingSet next : queryResults.getBindingSets())
@@ -521,7 +574,7 @@ public class PoddSesameManagerImpl implements PoddSesameManager
         
         final TupleQuery tupleQuery = repositoryConnection.prepareTupleQuery(QueryLanguage.SPARQL, sb.toString());
         tupleQuery.setBinding("poddObject", objectUri);
-        final QueryResultCollector queryResults = RdfUtility.executeTupleQuery(tupleQuery, contexts);
+        final QueryResultCollector queryResults = RdfUtility.executeTupleQuery("getChildObjects", tupleQuery, contexts);
         
         final Set<URI> resultSet = new HashSet<URI>();
         for(final BindingSet next : queryResults.getBindingSets())
@@ -658,12 +711,9 @@ public class PoddSesameManagerImpl implements PoddSesameManager
         
         final TupleQuery query1 = repositoryConnection.prepareTupleQuery(QueryLanguage.SPARQL, sb1.toString());
         query1.setBinding("ontologyIri", ontologyIRI.toOpenRDFURI());
-        query1.setDataset(dataset);
-        
-        final TupleQueryResult query1Results = query1.evaluate();
         
-        final QueryResultCollector nextResults1 = new QueryResultCollector();
-        QueryResults.report(query1Results, nextResults1);
+        final QueryResultCollector nextResults1 =
+                RdfUtility.executeTupleQuery("getCurrentVersionsByOntologyIRI", query1, dataset);
         
         for(final BindingSet nextResult : nextResults1.getBindingSets())
         {
@@ -695,12 +745,9 @@ public class PoddSesameManagerImpl implements PoddSesameManager
         
         final TupleQuery query2 = repositoryConnection.prepareTupleQuery(QueryLanguage.SPARQL, sb2.toString());
         query2.setBinding("nextVersion", ontologyIRI.toOpenRDFURI());
-        query2.setDataset(dataset);
         
-        final TupleQueryResult queryResults2 = query2.evaluate();
-        
-        final QueryResultCollector nextResults2 = new QueryResultCollector();
-        QueryResults.report(queryResults2, nextResults2);
+        final QueryResultCollector nextResults2 =
+                RdfUtility.executeTupleQuery("getCurrentVersionsByVersionIRI", query2, dataset);
         
         for(final BindingSet nextResult : nextResults2.getBindingSets())
         {
@@ -813,7 +860,7 @@ public class PoddSesameManagerImpl implements PoddSesameManager
         // instanceQuery,
         // nextRangeType);
         
-        return RdfUtility.executeGraphQuery(rdfsGraphQuery, contexts);
+        return RdfUtility.executeGraphQuery("getInstancesOf", rdfsGraphQuery, contexts);
     }
     
     @Override
@@ -842,7 +889,7 @@ public class PoddSesameManagerImpl implements PoddSesameManager
         final GraphQuery graphQuery = repositoryConnection.prepareGraphQuery(QueryLanguage.SPARQL, sb.toString());
         graphQuery.setBinding("poddObject", objectUri);
         
-        final Model queryResults = RdfUtility.executeGraphQuery(graphQuery, contexts);
+        final Model queryResults = RdfUtility.executeGraphQuery("getObjectData", graphQuery, contexts);
         
         return queryResults;
     }
@@ -906,8 +953,9 @@ public class PoddSesameManagerImpl implements PoddSesameManager
         graphQuery.setBinding("poddObject", objectUri);
         
         final Model queryResults =
-                RdfUtility.executeGraphQuery(graphQuery, this.versionAndInferredAndSchemaContexts(artifactID,
-                        managementConnection, schemaManagementGraph, artifactManagementGraph));
+                RdfUtility.executeGraphQuery("getObjectDetailsForDisplay", graphQuery, this
+                        .versionAndInferredAndSchemaContexts(artifactID, managementConnection, schemaManagementGraph,
+                                artifactManagementGraph));
         
         return queryResults;
     }
@@ -977,7 +1025,7 @@ public class PoddSesameManagerImpl implements PoddSesameManager
                     this.schemaContexts(ontologyID, managementConnection, schemaManagementGraph,
                             artifactManagementGraph);
         }
-        final QueryResultCollector queryResults = RdfUtility.executeTupleQuery(tupleQuery, contexts);
+        final QueryResultCollector queryResults = RdfUtility.executeTupleQuery("getObjectLabel", tupleQuery, contexts);
         
         String label = null;
         String description = null;
@@ -1076,7 +1124,8 @@ public class PoddSesameManagerImpl implements PoddSesameManager
         this.log.debug("[getObjectTypeContainsMetadata] Created SPARQL {} \n   with objectType bound to {}",
                 owlRestrictionQueryString, objectType);
         
-        final Model rdfsQueryResults = RdfUtility.executeGraphQuery(rdfsGraphQuery, contexts);
+        final Model rdfsQueryResults =
+                RdfUtility.executeGraphQuery("getObjectTypeContainsMetadata", rdfsGraphQuery, contexts);
         results.addAll(rdfsQueryResults);
         
         this.log.debug("rdfsQueryResults ", rdfsQueryResults);
@@ -1146,7 +1195,7 @@ public class PoddSesameManagerImpl implements PoddSesameManager
             // this.log.trace("Created SPARQL {} \n   with rangeClass bound to {}",
             // subRangeQueryString, restriction);
             
-            results.addAll(RdfUtility.executeGraphQuery(subRangeGraphQuery, contexts));
+            results.addAll(RdfUtility.executeGraphQuery("getObjectTypeContainsMetadata", subRangeGraphQuery, contexts));
         }
         
         return results;
@@ -1239,7 +1288,8 @@ public class PoddSesameManagerImpl implements PoddSesameManager
         
         this.log.trace("Created SPARQL {} \n   with objectType bound to {}", owlRestrictionQueryString, objectType);
         
-        final Model restrictionQueryResults = RdfUtility.executeGraphQuery(graphQuery, contexts);
+        final Model restrictionQueryResults =
+                RdfUtility.executeGraphQuery("getObjectTypeMetadata", graphQuery, contexts);
         results.addAll(restrictionQueryResults);
         
         this.log.debug("restrictionQueryResults {}", restrictionQueryResults);
@@ -1292,7 +1342,7 @@ public class PoddSesameManagerImpl implements PoddSesameManager
         
         this.log.trace("Created SPARQL {} \n   with objectType bound to {}", rdfsQueryString, objectType);
         
-        final Model rdfsQueryResults = RdfUtility.executeGraphQuery(rdfsGraphQuery, contexts);
+        final Model rdfsQueryResults = RdfUtility.executeGraphQuery("getObjectTypeMetadata", rdfsGraphQuery, contexts);
         results.addAll(rdfsQueryResults);
         
         this.log.debug("rdfsQueryResults {}", rdfsQueryResults);
@@ -1339,7 +1389,8 @@ public class PoddSesameManagerImpl implements PoddSesameManager
                     repositoryConnection.prepareGraphQuery(QueryLanguage.SPARQL, annotationQueryString);
             annotationGraphQuery.setBinding("objectType", objectType);
             
-            final Model annotationQueryResults = RdfUtility.executeGraphQuery(annotationGraphQuery, contexts);
+            final Model annotationQueryResults =
+                    RdfUtility.executeGraphQuery("getObjectTypeMetadata", annotationGraphQuery, contexts);
             
             this.log.debug("annotationQueryResults {}", annotationQueryResults);
             
@@ -1403,7 +1454,7 @@ public class PoddSesameManagerImpl implements PoddSesameManager
             this.log.trace("Created SPARQL get metaData for properties {} ", sb2);
             
             final GraphQuery graphQuery2 = repositoryConnection.prepareGraphQuery(QueryLanguage.SPARQL, sb2String);
-            final Model queryResults2 = RdfUtility.executeGraphQuery(graphQuery2, contexts);
+            final Model queryResults2 = RdfUtility.executeGraphQuery("getObjectTypeMetadata", graphQuery2, contexts);
             
             this.log.debug("SPARQL get metaData for properties result {}", queryResults2);
             results.addAll(queryResults2);
@@ -1530,7 +1581,7 @@ public class PoddSesameManagerImpl implements PoddSesameManager
         final TupleQuery tupleQuery = permanentConnection.prepareTupleQuery(QueryLanguage.SPARQL, sb.toString());
         tupleQuery.setBinding("objectUri", objectUri);
         final QueryResultCollector queryResults =
-                RdfUtility.executeTupleQuery(tupleQuery, this.versionAndSchemaContexts(ontologyID,
+                RdfUtility.executeTupleQuery("getObjectTypes", tupleQuery, this.versionAndSchemaContexts(ontologyID,
                         managementConnection, schemaManagementGraph, artifactManagementGraph));
         
         final List<URI> results = new ArrayList<URI>(queryResults.getBindingSets().size());
@@ -1582,12 +1633,8 @@ public class PoddSesameManagerImpl implements PoddSesameManager
         this.log.debug("Generated SPARQL {}", sb);
         
         final TupleQuery query1 = repositoryConnection.prepareTupleQuery(QueryLanguage.SPARQL, sb.toString());
-        query1.setDataset(dataset);
-        
-        final TupleQueryResult query1Results = query1.evaluate();
         
-        final QueryResultCollector nextResults1 = new QueryResultCollector();
-        QueryResults.report(query1Results, nextResults1);
+        final QueryResultCollector nextResults1 = RdfUtility.executeTupleQuery("getOntologies", query1, dataset);
         
         for(final BindingSet nextResult : nextResults1.getBindingSets())
         {
@@ -1632,14 +1679,13 @@ public class PoddSesameManagerImpl implements PoddSesameManager
         final DatasetImpl dataset = new DatasetImpl();
         dataset.addDefaultGraph(context);
         dataset.addNamedGraph(context);
-        query.setDataset(dataset);
         
         IRI ontologyIRI = null;
         
-        final TupleQueryResult queryResults = query.evaluate();
-        if(queryResults.hasNext())
+        final QueryResultCollector queryResults = RdfUtility.executeTupleQuery("getOntologyIRI", query, dataset);
+        if(!queryResults.getBindingSets().isEmpty())
         {
-            final BindingSet nextResult = queryResults.next();
+            final BindingSet nextResult = queryResults.getBindingSets().get(0);
             final Value nextOntology = nextResult.getValue("nextOntology");
             if(nextOntology instanceof URI)
             {
@@ -1678,12 +1724,9 @@ public class PoddSesameManagerImpl implements PoddSesameManager
         
         final TupleQuery query = repositoryConnection.prepareTupleQuery(QueryLanguage.SPARQL, sb2.toString());
         query.setBinding("versionIri", versionIRI.toOpenRDFURI());
-        query.setDataset(dataset);
         
-        final TupleQueryResult queryResults = query.evaluate();
-        
-        final QueryResultCollector resultsCollector = new QueryResultCollector();
-        QueryResults.report(queryResults, resultsCollector);
+        final QueryResultCollector resultsCollector =
+                RdfUtility.executeTupleQuery("getOntologyVersion", query, dataset);
         
         for(final BindingSet nextResult : resultsCollector.getBindingSets())
         {
@@ -1732,7 +1775,7 @@ public class PoddSesameManagerImpl implements PoddSesameManager
         
         this.log.trace("Created SPARQL {} \n   with poddObject bound to {}", sb, objectUri);
         
-        return RdfUtility.executeGraphQuery(graphQuery, contexts);
+        return RdfUtility.executeGraphQuery("getParentDetails", graphQuery, contexts);
     }
     
     /*
@@ -1765,7 +1808,7 @@ public class PoddSesameManagerImpl implements PoddSesameManager
         
         this.log.trace("Created SPARQL {} \n   with poddObject bound to {}", sb, objectUri);
         
-        return RdfUtility.executeGraphQuery(graphQuery, contexts);
+        return RdfUtility.executeGraphQuery("getReferringObjectDetails", graphQuery, contexts);
     }
     
     @Override
@@ -1786,6 +1829,130 @@ public class PoddSesameManagerImpl implements PoddSesameManager
         }
     }
     
+    @Override
+    public Map<InferredOWLOntologyID, PoddObjectLabel> getTopObjectLabels(
+            final List<InferredOWLOntologyID> artifacts, final RepositoryConnection permanentConnection)
+        throws OpenRDFException
+    {
+        final Map<InferredOWLOntologyID, PoddObjectLabel> results =
+                new HashMap<InferredOWLOntologyID, PoddObjectLabel>();
+        
+        // Results are matched back to artifacts using the ontology IRI, so each batch can only
+        // contain one version of each artifact
+        final List<Map<URI, InferredOWLOntologyID>> batches = new ArrayList<Map<URI, InferredOWLOntologyID>>();
+        for(final InferredOWLOntologyID nextArtifact : artifacts)
+        {
+            Map<URI, InferredOWLOntologyID> nextBatch = null;
+            for(final Map<URI, InferredOWLOntologyID> existingBatch : batches)
+            {
+                if(existingBatch.size() < PoddSesameManagerImpl.TOP_OBJECT_LABELS_BATCH_SIZE
+                        && !existingBatch.containsKey(nextArtifact.getOntologyIRI().toOpenRDFURI()))
+                {
+                    nextBatch = existingBatch;
+                    break;
+                }
+            }
+            if(nextBatch == null)
+            {
+                nextBatch = new LinkedHashMap<URI, InferredOWLOntologyID>();
+                batches.add(nextBatch);
+            }
+            nextBatch.put(nextArtifact.getOntologyIRI().toOpenRDFURI(), nextArtifact);
+        }
+        
+        for(final Map<URI, InferredOWLOntologyID> nextBatch : batches)
+        {
+            this.getTopObjectLabelsBatch(nextBatch, permanentConnection, results);
+        }
+        
+        return results;
+    }
+    
+    private void getTopObjectLabelsBatch(final Map<URI, InferredOWLOntologyID> artifacts,
+            final RepositoryConnection permanentConnection, final Map<InferredOWLOntologyID, PoddObjectLabel> results)
+        throws OpenRDFException
+    {
+        final StringBuilder sb = new StringBuilder(1024 + 64 * artifacts.size());
+        sb.append("SELECT ?artifactUri ?topObjectUri ?label ?description ?barcode ");
+        sb.append(" WHERE { ");
+        sb.append(" ?artifactUri <" + PODD.PODD_BASE_HAS_TOP_OBJECT.stringValue() + "> ?topObjectUri . ");
+        sb.append(" OPTIONAL { ?topObjectUri <" + RDFS.LABEL + "> ?label . ");
+        sb.append(" FILTER (lang(?label) = 'en'|| lang(?label)='') } ");
+        sb.append(" OPTIONAL { ?topObjectUri <" + RDFS.COMMENT + "> ?description . } ");
+        sb.append(" OPTIONAL { ?topObjectUri <" + PODDSCIENCE.HAS_BARCODE + "> ?barcode . } ");
+        sb.append(" }");
+        sb.append(" VALUES (?artifactUri) { ");
+        
+        // Each artifact contributes its own version and inferred contexts to the default graph
+        final Set<URI> contexts = new LinkedHashSet<URI>();
+        for(final InferredOWLOntologyID nextArtifact : artifacts.values())
+        {
+            sb.append(" ( ");
+            sb.append(RenderUtils.getSPARQLQueryString(nextArtifact.getOntologyIRI().toOpenRDFURI()));
+            sb.append(" ) ");
+            contexts.addAll(Arrays.asList(this.versionAndInferredContexts(nextArtifact)));
+        }
+        sb.append(" } ");
+        
+        this.log.trace("Created SPARQL {}", sb);
+        
+        final TupleQuery tupleQuery = permanentConnection.prepareTupleQuery(QueryLanguage.SPARQL, sb.toString());
+        final QueryResultCollector queryResults =
+                RdfUtility.executeTupleQuery("getTopObjectLabelsBatch", tupleQuery,
+                        contexts.toArray(new URI[contexts.size()]));
+        
+        final Map<URI, URI> topObjects = new LinkedHashMap<URI, URI>();
+        final Map<URI, String> labels = new HashMap<URI, String>();
+        final Map<URI, String> descriptions = new HashMap<URI, String>();
+        final Map<URI, String> barcodes = new HashMap<URI, String>();
+        
+        for(final BindingSet next : queryResults.getBindingSets())
+        {
+            final URI artifactUri = (URI)next.getValue("artifactUri");
+            final URI topObjectUri = (URI)next.getValue("topObjectUri");
+            
+            final URI existingTopObject = topObjects.get(artifactUri);
+            if(existingTopObject == null)
+            {
+                topObjects.put(artifactUri, topObjectUri);
+            }
+            else if(!existingTopObject.equals(topObjectUri))
+            {
+                this.log.warn("More than one top object found: {}", artifactUri);
+                continue;
+            }
+            
+            if(next.getValue("label") != null)
+            {
+                labels.put(artifactUri, next.getValue("label").stringValue());
+            }
+            
+            if(next.getValue("description") != null)
+            {
+                descriptions.put(artifactUri, next.getValue("description").stringValue());
+            }
+            
+            if(next.getValue("barcode") != null)
+            {
+                barcodes.put(artifactUri, next.getValue("barcode").stringValue());
+            }
+        }
+        
+        for(final Entry<URI, URI> nextTopObject : topObjects.entrySet())
+        {
+            final URI artifactUri = nextTopObject.getKey();
+            final InferredOWLOntologyID artifactID = artifacts.get(artifactUri);
+            // Fall back to the top object URI if it does not have a label, as getObjectLabel does
+            String label = labels.get(artifactUri);
+            if(label == null)
+            {
+                label = nextTopObject.getValue().stringValue();
+            }
+            results.put(artifactID, new PoddObjectLabelImpl(artifactID, nextTopObject.getValue(), label, descriptions
+                    .get(artifactUri), barcodes.get(artifactUri)));
+        }
+    }
+    
     /**
      * Internal helper method to retrieve the Top-Object IRI for a given ontology.
      *
@@ -1837,7 +2004,7 @@ public class PoddSesameManagerImpl implements PoddSesameManager
         query.setBinding("artifactUri", ontologyID.getOntologyIRI().toOpenRDFURI());
         
         final QueryResultCollector queryResults =
-                RdfUtility.executeTupleQuery(query, this.versionAndInferredContexts(ontologyID));
+                RdfUtility.executeTupleQuery("getTopObjects", query, this.versionAndInferredContexts(ontologyID));
         
         final List<URI> topObjectList = new ArrayList<URI>();
         
@@ -1900,7 +2067,8 @@ public class PoddSesameManagerImpl implements PoddSesameManager
         
         final TupleQuery tupleQuery = repositoryConnection.prepareTupleQuery(QueryLanguage.SPARQL, sb.toString());
         tupleQuery.setBinding("poddObject", objectUri);
-        final QueryResultCollector queryResults = RdfUtility.executeTupleQuery(tupleQuery, contexts);
+        final QueryResultCollector queryResults =
+                RdfUtility.executeTupleQuery("getWeightedProperties", tupleQuery, contexts);
         // this.versionAndSchemaContexts(artifactID, repositoryConnection, c));
         
         final List<URI> resultList = new ArrayList<URI>();
@@ -2073,9 +2241,8 @@ public class PoddSesameManagerImpl implements PoddSesameManager
         final DatasetImpl dataset = new DatasetImpl();
         dataset.addDefaultGraph(managementGraph);
         dataset.addNamedGraph(managementGraph);
-        booleanQuery.setDataset(dataset);
         
-        return booleanQuery.evaluate();
+        return RdfUtility.executeBooleanQuery("isPublished", booleanQuery, dataset);
     }
     
     @Override
@@ -2083,6 +2250,33 @@ public class PoddSesameManagerImpl implements PoddSesameManager
             final int offset, final RepositoryConnection repositoryConnection, final URI... contexts)
         throws OpenRDFException
     {
+        return this.searchOntologyLabels(searchTerm, searchTypes, false, limit, offset, repositoryConnection,
+                contexts);
+    }
+    
+    @Override
+    public Model searchOntologyLabels(final String searchTerm, final URI[] searchTypes,
+            final boolean includeSubTypes, final int limit, final int offset,
+            final RepositoryConnection repositoryConnection, final URI... contexts) throws OpenRDFException
+    {
+        // The index can only be used when the contexts are known, as otherwise the whole
+        // repository would need to be indexed
+        if(this.labelIndexEnabled && contexts.length > 0)
+        {
+            final long before = System.nanoTime();
+            final List<LabelIndex> indexes = new ArrayList<LabelIndex>(contexts.length);
+            for(final URI nextContext : contexts)
+            {
+                indexes.add(this.getLabelIndex(repositoryConnection, nextContext));
+            }
+            final Model results =
+                    LabelIndex.search(indexes, searchTerm, searchTypes, includeSubTypes, limit, offset);
+            this.log.debug("Label index search for '{}' over {} contexts took {} ms and found {} results",
+                    searchTerm, contexts.length, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - before),
+                    results.size());
+            return results;
+        }
+        
         final StringBuilder sb = new StringBuilder(1024);
         
         sb.append("CONSTRUCT { ");
@@ -2092,12 +2286,18 @@ public class PoddSesameManagerImpl implements PoddSesameManager
         // limit the "types" of objects to search for
         if(searchTypes != null)
         {
-            for(final URI type : searchTypes)
+            for(int i = 0; i < searchTypes.length; i++)
             {
-                sb.append(" ?uri a <" + type.stringValue() + "> . ");
-                // sb.append(" ?uri a ?type . ");
-                // sb.append(" ?type rdfs:subClassOf+ <" + type.stringValue() +
-                // "> . ");
+                if(includeSubTypes)
+                {
+                    sb.append(" ?uri a ?type" + i + " . ");
+                    sb.append(" ?type" + i + " <" + RDFS.SUBCLASSOF.stringValue() + ">* <"
+                            + searchTypes[i].stringValue() + "> . ");
+                }
+                else
+                {
+                    sb.append(" ?uri a <" + searchTypes[i].stringValue() + "> . ");
+                }
             }
         }
         
@@ -2117,11 +2317,61 @@ public class PoddSesameManagerImpl implements PoddSesameManager
         
         this.log.trace("Created SPARQL {} with searchTerm bound to '{}' ", sb, searchTerm);
         
-        final Model queryResults = RdfUtility.executeGraphQuery(graphQuery, contexts);
+        final Model queryResults = RdfUtility.executeGraphQuery("searchOntologyLabels", graphQuery, contexts);
         
         return queryResults;
     }
     
+    private LabelIndex getLabelIndex(final RepositoryConnection repositoryConnection, final URI context)
+        throws OpenRDFException
+    {
+        final List<Object> cacheKey = Arrays.<Object> asList(repositoryConnection.getRepository(), context);
+        LabelIndex result = this.labelIndexes.get(cacheKey);
+        if(result == null)
+        {
+            result = LabelIndex.build(repositoryConnection, context);
+            // Do not cache indexes that may include uncommitted changes, or that are empty as their
+            // statements, such as background inferences, may not have been added yet
+            if(!repositoryConnection.isActive() && !result.isEmpty())
+            {
+                if(this.labelIndexes.size() >= PoddSesameManagerImpl.LABEL_INDEXES_SIZE)
+                {
+                    this.labelIndexes.clear();
+                }
+                this.labelIndexes.putIfAbsent(cacheKey, result);
+            }
+        }
+        return result;
+    }
+    
+    @Override
+    public void invalidateLabelIndex(final URI... contexts)
+    {
+        final Set<URI> contextSet = new HashSet<URI>(Arrays.asList(contexts));
+        final Iterator<List<Object>> keys = this.labelIndexes.keySet().iterator();
+        while(keys.hasNext())
+        {
+            if(contextSet.contains(keys.next().get(1)))
+            {
+                keys.remove();
+            }
+        }
+    }
+    
+    /**
+     * @param labelIndexEnabled
+     *            False to search for labels using SPARQL queries instead of in-memory label
+     *            indexes.
+     */
+    public void setLabelIndexEnabled(final boolean labelIndexEnabled)
+    {
+        this.labelIndexEnabled = labelIndexEnabled;
+        if(!labelIndexEnabled)
+        {
+            this.labelIndexes.clear();
+        }
+    }
+    
     @Override
     public InferredOWLOntologyID setPublished(final boolean wantToPublish, final InferredOWLOntologyID ontologyID,
             final RepositoryConnection repositoryConnection, final URI artifactManagementGraph) throws OpenRDFException
@@ -2184,6 +2434,8 @@ public class PoddSesameManagerImpl implements PoddSesameManager
     public void updateManagedSchemaOntologyVersion(final OWLOntologyID nextOntologyID, final boolean updateCurrent,
             final RepositoryConnection repositoryConnection, final URI context) throws OpenRDFException
     {
+        this.invalidateContextsCache();
+        
         final URI nextOntologyUri = nextOntologyID.getOntologyIRI().toOpenRDFURI();
         final URI nextVersionUri = nextOntologyID.getVersionIRI().toOpenRDFURI();
         // NOTE: The version is not used for the inferred ontology ID. A new ontology URI must be
@@ -2239,6 +2491,8 @@ public class PoddSesameManagerImpl implements PoddSesameManager
             final boolean updateCurrentAndDeletePrevious, final RepositoryConnection repositoryConnection,
             final URI managementGraph) throws OpenRDFException
     {
+        this.invalidateContextsCache();
+        
         final URI nextOntologyUri = nextOntologyID.getOntologyIRI().toOpenRDFURI();
         final URI nextVersionUri = nextOntologyID.getVersionIRI().toOpenRDFURI();
         // NOTE: The version is not used for the inferred ontology ID. A new ontology URI must be
@@ -2310,6 +2564,7 @@ public class PoddSesameManagerImpl implements PoddSesameManager
                             {
                                 // clear inferred statements for previous inferred version
                                 repositoryConnection.clear((URI)nextInferredVersion.getObject());
+                                this.invalidateLabelIndex((URI)nextInferredVersion.getObject());
                                 
                                 // remove all references from artifact management graph
                                 repositoryConnection.remove((URI)nextInferredVersion.getObject(), null, null,
@@ -2322,6 +2577,7 @@ public class PoddSesameManagerImpl implements PoddSesameManager
                         }
                         
                         repositoryConnection.clear((URI)nextPreviousVersion.getObject());
+                        this.invalidateLabelIndex((URI)nextPreviousVersion.getObject());
                         repositoryConnection.remove((URI)nextPreviousVersion.getObject(), null, null, managementGraph);
                     }
                     else
@@ -2491,6 +2747,20 @@ public class PoddSesameManagerImpl implements PoddSesameManager
             final URI artifactManagementGraph) throws OpenRDFException, SchemaManifestException,
         UnmanagedSchemaIRIException
     {
+        final List<URI> cacheKey =
+                Arrays.asList(artifactID == null ? null : artifactID.getVersionIRI().toOpenRDFURI(),
+                        schemaManagementGraph, artifactManagementGraph);
+        // Read the generation before resolving the contexts, so that the result is ignored if
+        // there is an invalidation in the meantime
+        final long generation = this.contextsCacheGeneration.get();
+        final CachedContexts cached = this.contextsCache.get(cacheKey);
+        if(cached != null && cached.generation == generation)
+        {
+            this.contextsCacheHits.incrementAndGet();
+            return cached.contexts.clone();
+        }
+        this.contextsCacheMisses.incrementAndGet();
+        
         final Set<URI> contexts = new LinkedHashSet<URI>();
         final Set<OWLOntologyID> dependentSchemaOntologies = new LinkedHashSet<>();
         if(artifactID != null)
@@ -2523,7 +2793,40 @@ public class PoddSesameManagerImpl implements PoddSesameManager
             contexts.add(schemaOntology.getVersionIRI().toOpenRDFURI());
         }
         
-        return contexts.toArray(new URI[0]);
+        final URI[] result = contexts.toArray(new URI[0]);
+        // Do not cache contexts that may have been resolved from uncommitted changes
+        if(!managementConnection.isActive())
+        {
+            if(this.contextsCache.size() >= PoddSesameManagerImpl.CONTEXTS_CACHE_SIZE)
+            {
+                this.contextsCache.clear();
+            }
+            this.contextsCache.put(cacheKey, new CachedContexts(generation, result));
+        }
+        return result.clone();
+    }
+    
+    @Override
+    public void invalidateContextsCache()
+    {
+        this.contextsCacheGeneration.incrementAndGet();
+        this.contextsCache.clear();
+    }
+    
+    /**
+     * @return The number of times that schema contexts were found in the cache.
+     */
+    public long getContextsCacheHits()
+    {
+        return this.contextsCacheHits.get();
+    }
+    
+    /**
+     * @return The number of times that schema contexts were resolved from the management graphs.
+     */
+    public long getContextsCacheMisses()
+    {
+        return this.contextsCacheMisses.get();
     }
     
     @Override
@@ -2572,8 +2875,23 @@ public class PoddSesameManagerImpl implements PoddSesameManager
         
         this.log.trace("Created SPARQL {} \n   with objects types bound to {}", subChildQueryString, objectsType);
         
-        return RdfUtility.executeGraphQuery(subChildGraphQuery, contexts);
+        return RdfUtility.executeGraphQuery("ChildOfList", subChildGraphQuery, contexts);
+        
+    }
+    
+    /**
+     * Schema contexts resolved during a single generation of the contexts cache.
+     */
+    private static final class CachedContexts
+    {
+        private final long generation;
+        private final URI[] contexts;
         
+        CachedContexts(final long generation, final URI[] contexts)
+        {
+            this.generation = generation;
+            this.contexts = contexts;
+        }
     }
     
 }
@@ -16,7 +16,12 @@
  */
 package com.github.podd.impl.data;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -30,6 +35,7 @@ import org.openrdf.model.vocabulary.RDF;
 
 import com.github.podd.api.data.DataReference;
 import com.github.podd.api.data.PoddDataRepository;
+import com.github.podd.exception.DataReferenceNotSupportedException;
 import com.github.podd.exception.DataRepositoryIncompleteException;
 import com.github.podd.utils.PODD;
 
@@ -109,10 +115,47 @@ abstract class AbstractPoddDataRepositoryImpl<T extends DataReference> implement
         return this.model;
     }
     
+    /**
+     * Downloads are not supported unless a sub-class overrides this.
+     */
+    @Override
+    public long getSize(final T reference) throws DataReferenceNotSupportedException, IOException
+    {
+        throw new DataReferenceNotSupportedException(reference, "Data repository does not support downloads: "
+                + this.alias);
+    }
+    
     @Override
     public Set<URI> getTypes()
     {
         return this.types;
     }
     
+    /**
+     * Downloads are not supported unless a sub-class overrides this.
+     */
+    @Override
+    public InputStream openStream(final T reference, final long offset) throws DataReferenceNotSupportedException,
+        IOException
+    {
+        throw new DataReferenceNotSupportedException(reference, "Data repository does not support downloads: "
+                + this.alias);
+    }
+    
+    /**
+     * Validates each reference in turn using {@link #validate(DataReference)}. Sub-classes that can
+     * share a connection across references should override this.
+     */
+    @Override
+    public Map<T, Boolean> validateAll(final Collection<T> references) throws DataReferenceNotSupportedException,
+        IOException
+    {
+        final Map<T, Boolean> results = new LinkedHashMap<T, Boolean>();
+        for(final T nextReference : references)
+        {
+            results.put(nextReference, this.validate(nextReference));
+        }
+        return results;
+    }
+    
 }
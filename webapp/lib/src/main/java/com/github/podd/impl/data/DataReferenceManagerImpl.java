@@ -24,12 +24,9 @@ import org.openrdf.OpenRDFException;
 import org.openrdf.model.Model;
 import org.openrdf.model.URI;
 import org.openrdf.query.GraphQuery;
-import org.openrdf.query.GraphQueryResult;
 import org.openrdf.query.MalformedQueryException;
 import org.openrdf.query.QueryEvaluationException;
 import org.openrdf.query.QueryLanguage;
-import org.openrdf.query.QueryResults;
-import org.openrdf.query.impl.DatasetImpl;
 import org.openrdf.repository.RepositoryConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,6 +38,7 @@ import com.github.podd.api.data.DataReferenceProcessor;
 import com.github.podd.api.data.DataReferenceProcessorFactory;
 import com.github.podd.api.data.DataReferenceProcessorRegistry;
 import com.github.podd.utils.PoddRdfProcessorUtils;
+import com.github.podd.utils.RdfUtility;
 
 /**
  * @author Peter Ansell p_ansell@yahoo.com
@@ -78,23 +76,9 @@ public class DataReferenceManagerImpl implements DataReferenceManager
                 
                 final GraphQuery graphQuery = repositoryConnection.prepareGraphQuery(QueryLanguage.SPARQL, sparqlQuery);
                 
-                // Create a new dataset to specify contexts that the query will
-                // be allowed to access
-                final DatasetImpl dataset = new DatasetImpl();
-                for(final URI artifactGraphUri : contexts)
-                {
-                    dataset.addDefaultGraph(artifactGraphUri);
-                }
-                
-                // set the dataset for the query to be our artificially
-                // constructed dataset
-                graphQuery.setDataset(dataset);
-                
-                final GraphQueryResult queryResult = graphQuery.evaluate();
-                
                 // following contains statements for file references from the
-                // whole artifact
-                final Model results = QueryResults.asModel(queryResult);
+                // whole artifact, restricted to the given contexts
+                final Model results = RdfUtility.executeGraphQuery("extractDataReferences", graphQuery, contexts);
                 
                 if(!results.isEmpty())
                 {
@@ -18,16 +18,29 @@ package com.github.podd.impl.data;
 
 import info.aduna.iteration.Iterations;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.openrdf.OpenRDFException;
 import org.openrdf.model.Literal;
@@ -59,7 +72,9 @@ import com.github.podd.api.data.PoddDataRepository;
 import com.github.podd.api.data.PoddDataRepositoryManager;
 import com.github.podd.api.data.PoddDataRepositoryRegistry;
 import com.github.podd.exception.DataReferenceInvalidException;
+import com.github.podd.exception.DataReferenceNotSupportedException;
 import com.github.podd.exception.DataReferenceVerificationException;
+import com.github.podd.exception.DataRepositoryBusyException;
 import com.github.podd.exception.DataRepositoryException;
 import com.github.podd.exception.DataRepositoryIncompleteException;
 import com.github.podd.exception.DataRepositoryMappingExistsException;
@@ -77,6 +92,26 @@ import com.github.podd.utils.RdfUtility;
  */
 public class PoddDataRepositoryManagerImpl implements PoddDataRepositoryManager
 {
+    /**
+     * The data repositories for each lower case alias, built from a single version of the file
+     * repository management graph, along with the errors for aliases whose repository could not be
+     * created.
+     */
+    private static final class AliasIndex
+    {
+        private final long generation;
+        
+        private final Map<String, PoddDataRepository<? extends DataReference>> repositories =
+                new HashMap<String, PoddDataRepository<? extends DataReference>>();
+        
+        private final Map<String, DataRepositoryException> failures = new HashMap<String, DataRepositoryException>();
+        
+        private AliasIndex(final long generation)
+        {
+            this.generation = generation;
+        }
+    }
+    
     private final Logger log = LoggerFactory.getLogger(this.getClass());
     
     private PoddRepositoryManager repositoryManager;
@@ -85,6 +120,46 @@ public class PoddDataRepositoryManagerImpl implements PoddDataRepositoryManager
     
     private final Model dataRepositorySchema;
     
+    /**
+     * Upper bound on the number of successful verifications that are remembered before the cache is
+     * cleared.
+     */
+    private static final int MAX_VERIFIED_REFERENCES = 10000;
+    
+    /**
+     * Expiry times, in milliseconds since the epoch, for data references that were recently
+     * verified successfully, keyed by repository alias, reference type and data location.
+     */
+    private final ConcurrentMap<List<String>, Long> verifiedReferences = new ConcurrentHashMap<List<String>, Long>();
+    
+    private final AtomicLong verificationCacheHits = new AtomicLong();
+    
+    /**
+     * Incremented each time the file repository management graph is changed, so that alias
+     * indexes built from an earlier version of the graph are not used.
+     */
+    private final AtomicLong aliasIndexGeneration = new AtomicLong();
+    
+    private volatile AliasIndex aliasIndex;
+    
+    private volatile long verificationCacheTtl = TimeUnit.MINUTES.toMillis(5);
+    
+    private volatile ExecutorService verificationExecutor;
+    
+    /**
+     * The smallest number of data references that are verified together in a single task when the
+     * references for an alias are split across several tasks.
+     */
+    private static final int MIN_VERIFICATION_TASK_SIZE = 8;
+    
+    private volatile int maxVerificationTasksPerAlias = 1;
+    
+    private static final int DOWNLOAD_BUFFER_SIZE = 32 * 1024;
+    
+    private final ConcurrentMap<String, Semaphore> downloadPermits = new ConcurrentHashMap<String, Semaphore>();
+    
+    private volatile int maxConcurrentDownloads = 2;
+    
     /**
      *
      */
@@ -191,6 +266,7 @@ public class PoddDataRepositoryManagerImpl implements PoddDataRepositoryManager
                 conn.add(model, context);
             }
             conn.commit();
+            this.invalidateAliasIndex();
         }
         catch(final Throwable e)
         {
@@ -218,10 +294,17 @@ public class PoddDataRepositoryManagerImpl implements PoddDataRepositoryManager
     
     @Override
     public void downloadFileReference(final DataReference nextFileReference, final OutputStream outputStream)
-        throws PoddException, IOException
+        throws PoddException, OpenRDFException, IOException
     {
-        // TODO
-        throw new RuntimeException("TODO: Implement me");
+        try (final InputStream inputStream = this.openFileReference(nextFileReference, 0);)
+        {
+            final byte[] buffer = new byte[PoddDataRepositoryManagerImpl.DOWNLOAD_BUFFER_SIZE];
+            int read;
+            while((read = inputStream.read(buffer)) >= 0)
+            {
+                outputStream.write(buffer, 0, read);
+            }
+        }
     }
     
     @Override
@@ -317,6 +400,13 @@ public class PoddDataRepositoryManagerImpl implements PoddDataRepositoryManager
         return results;
     }
     
+    @Override
+    public long getFileReferenceSize(final DataReference dataReference) throws PoddException, OpenRDFException,
+        IOException
+    {
+        return this.getRepositoryForReference(dataReference).getSize(dataReference);
+    }
+    
     @Override
     public PoddOWLManager getOWLManager()
     {
@@ -333,57 +423,18 @@ public class PoddDataRepositoryManagerImpl implements PoddDataRepositoryManager
             throw new IllegalArgumentException("Could not find a repository with a null alias");
         }
         
-        RepositoryConnection conn = null;
-        try
-        {
-            conn = this.repositoryManager.getManagementRepositoryConnection();
-            
-            final URI context = this.repositoryManager.getFileRepositoryManagementGraph();
-            final Model repositories = new LinkedHashModel();
-            // Fetch the entire configuration into memory, as it should never be
-            // more than a trivial
-            // size. If this hampers efficiency could switch back to on demand
-            // querying
-            Iterations.addAll(conn.getStatements(null, null, null, true, context), repositories);
-            final Set<Resource> matchingRepositories = new HashSet<Resource>();
-            for(final Resource nextRepository : repositories.filter(null, RDF.TYPE, PODD.PODD_DATA_REPOSITORY)
-                    .subjects())
-            {
-                for(final Value nextAlias : repositories.filter(nextRepository, PODD.PODD_DATA_REPOSITORY_ALIAS, null)
-                        .objects())
-                {
-                    if(nextAlias instanceof Literal && ((Literal)nextAlias).getLabel().equalsIgnoreCase(alias))
-                    {
-                        matchingRepositories.add(nextRepository);
-                        break;
-                    }
-                }
-            }
-            
-            for(final Resource nextMatchingRepository : matchingRepositories)
-            {
-                final PoddDataRepository<? extends DataReference> repository =
-                        PoddDataRepositoryRegistry.getInstance().createDataRepository(nextMatchingRepository,
-                                repositories);
-                
-                if(repository != null)
-                {
-                    return repository;
-                }
-            }
-        }
-        finally
+        final AliasIndex index = this.getAliasIndex();
+        final String aliasInLowerCase = alias.toLowerCase();
+        final PoddDataRepository<? extends DataReference> repository = index.repositories.get(aliasInLowerCase);
+        if(repository == null && index.failures.containsKey(aliasInLowerCase))
         {
-            if(conn != null && conn.isOpen())
-            {
-                conn.close();
-            }
+            throw index.failures.get(aliasInLowerCase);
         }
         
         // log.warn("Could not find a repository with alias: {}", alias);
         // throw new DataRepositoryMappingNotFoundException(alias,
         // "Could not find a repository with this alias");
-        return null;
+        return repository;
     }
     
     @Override
@@ -443,6 +494,60 @@ public class PoddDataRepositoryManagerImpl implements PoddDataRepositoryManager
         }
     }
     
+    @Override
+    public InputStream openFileReference(final DataReference dataReference, final long offset)
+        throws PoddException, OpenRDFException, IOException
+    {
+        final PoddDataRepository<DataReference> repository = this.getRepositoryForReference(dataReference);
+        
+        final String alias = repository.getAlias().toLowerCase();
+        Semaphore permits = this.downloadPermits.get(alias);
+        if(permits == null)
+        {
+            final Semaphore newPermits = new Semaphore(this.maxConcurrentDownloads);
+            permits = this.downloadPermits.putIfAbsent(alias, newPermits);
+            if(permits == null)
+            {
+                permits = newPermits;
+            }
+        }
+        if(!permits.tryAcquire())
+        {
+            throw new DataRepositoryBusyException(alias,
+                    "Data repository already has the maximum number of concurrent downloads");
+        }
+        
+        final Semaphore heldPermits = permits;
+        try
+        {
+            return new FilterInputStream(repository.openStream(dataReference, offset))
+                {
+                    private final AtomicBoolean closed = new AtomicBoolean();
+                    
+                    @Override
+                    public void close() throws IOException
+                    {
+                        if(this.closed.compareAndSet(false, true))
+                        {
+                            try
+                            {
+                                super.close();
+                            }
+                            finally
+                            {
+                                heldPermits.release();
+                            }
+                        }
+                    }
+                };
+        }
+        catch(final IOException | PoddException | RuntimeException e)
+        {
+            heldPermits.release();
+            throw e;
+        }
+    }
+    
     @Override
     public PoddDataRepository<?> removeRepositoryMapping(final String alias) throws DataRepositoryException,
         OpenRDFException
@@ -496,6 +601,9 @@ public class PoddDataRepositoryManagerImpl implements PoddDataRepositoryManager
             }
             
             conn.commit();
+            this.invalidateAliasIndex();
+            // Close the pooled sessions for the alias, unless another alias uses the same account
+            SSHConnectionPool.getInstance().remove(aliasInLowerCase);
             return repositoryToRemove;
         }
         finally
@@ -511,6 +619,131 @@ public class PoddDataRepositoryManagerImpl implements PoddDataRepositoryManager
         }
     }
     
+    @SuppressWarnings("unchecked")
+    private PoddDataRepository<DataReference> getRepositoryForReference(final DataReference dataReference)
+        throws DataRepositoryException, OpenRDFException
+    {
+        final String alias = dataReference.getRepositoryAlias();
+        final PoddDataRepository<DataReference> repository =
+                alias == null ? null : (PoddDataRepository<DataReference>)this.getRepository(alias);
+        if(repository == null)
+        {
+            throw new DataRepositoryMappingNotFoundException(alias,
+                    "Could not find a File Repository configuration mapped to this alias");
+        }
+        return repository;
+    }
+    
+    /**
+     * Returns the current alias index, building it from the file repository management graph if it
+     * has not been built since the graph was last changed through this manager.
+     */
+    private AliasIndex getAliasIndex() throws OpenRDFException
+    {
+        final long generation = this.aliasIndexGeneration.get();
+        final AliasIndex current = this.aliasIndex;
+        if(current != null && current.generation == generation)
+        {
+            return current;
+        }
+        
+        final AliasIndex result = this.buildAliasIndex(generation);
+        synchronized(this.aliasIndexGeneration)
+        {
+            // Do not replace the index if the graph changed while this index was being built
+            if(this.aliasIndexGeneration.get() == generation)
+            {
+                this.aliasIndex = result;
+            }
+        }
+        return result;
+    }
+    
+    private AliasIndex buildAliasIndex(final long generation) throws OpenRDFException
+    {
+        final AliasIndex result = new AliasIndex(generation);
+        
+        RepositoryConnection conn = null;
+        try
+        {
+            conn = this.repositoryManager.getManagementRepositoryConnection();
+            
+            final URI context = this.repositoryManager.getFileRepositoryManagementGraph();
+            final Model repositories = new LinkedHashModel();
+            // Fetch the entire configuration into memory, as it should never be
+            // more than a trivial size
+            Iterations.addAll(conn.getStatements(null, null, null, true, context), repositories);
+            for(final Resource nextRepository : repositories.filter(null, RDF.TYPE, PODD.PODD_DATA_REPOSITORY)
+                    .subjects())
+            {
+                PoddDataRepository<? extends DataReference> repository = null;
+                DataRepositoryException failure = null;
+                try
+                {
+                    repository = PoddDataRepositoryRegistry.getInstance().createDataRepository(nextRepository,
+                            repositories);
+                }
+                catch(final DataRepositoryException e)
+                {
+                    failure = e;
+                }
+                
+                for(final Value nextAlias : repositories.filter(nextRepository, PODD.PODD_DATA_REPOSITORY_ALIAS, null)
+                        .objects())
+                {
+                    if(nextAlias instanceof Literal)
+                    {
+                        final String aliasInLowerCase = ((Literal)nextAlias).getLabel().toLowerCase();
+                        if(repository != null)
+                        {
+                            if(!result.repositories.containsKey(aliasInLowerCase))
+                            {
+                                result.repositories.put(aliasInLowerCase, repository);
+                            }
+                        }
+                        else if(failure != null && !result.failures.containsKey(aliasInLowerCase))
+                        {
+                            result.failures.put(aliasInLowerCase, failure);
+                        }
+                    }
+                }
+            }
+        }
+        finally
+        {
+            if(conn != null && conn.isOpen())
+            {
+                conn.close();
+            }
+        }
+        
+        this.log.debug("Built data repository alias index with {} aliases", result.repositories.size());
+        return result;
+    }
+    
+    /**
+     * Discards the alias index and the verification cache after the file repository management
+     * graph has been changed.
+     */
+    private void invalidateAliasIndex()
+    {
+        synchronized(this.aliasIndexGeneration)
+        {
+            this.aliasIndexGeneration.incrementAndGet();
+            this.aliasIndex = null;
+        }
+        this.verifiedReferences.clear();
+    }
+    
+    /**
+     * @return The number of data references that were not verified again because they were
+     *         successfully verified within the verification cache TTL.
+     */
+    public long getVerificationCacheHits()
+    {
+        return this.verificationCacheHits.get();
+    }
+    
     @Override
     public void setOWLManager(final PoddOWLManager owlManager)
     {
@@ -521,45 +754,282 @@ public class PoddDataRepositoryManagerImpl implements PoddDataRepositoryManager
     public void setRepositoryManager(final PoddRepositoryManager repositoryManager)
     {
         this.repositoryManager = repositoryManager;
+        this.invalidateAliasIndex();
+    }
+    
+    /**
+     * Sets the maximum number of downloads that may read from each data repository at the same
+     * time. Downloads that are already in progress are not affected.
+     *
+     * @param maxConcurrentDownloads
+     *            The maximum number of concurrent downloads for each data repository.
+     */
+    public void setMaxConcurrentDownloads(final int maxConcurrentDownloads)
+    {
+        this.maxConcurrentDownloads = maxConcurrentDownloads;
+        this.downloadPermits.clear();
+    }
+    
+    /**
+     * Sets the number of milliseconds that a successful data reference verification is remembered
+     * for. A value of zero or less disables the verification cache.
+     *
+     * @param verificationCacheTtl
+     *            The number of milliseconds to remember successful verifications.
+     */
+    public void setVerificationCacheTtl(final long verificationCacheTtl)
+    {
+        this.verificationCacheTtl = verificationCacheTtl;
+        this.verifiedReferences.clear();
+    }
+    
+    /**
+     * Sets the executor used to verify data references concurrently. If this is null, all data
+     * references are verified on the calling thread.
+     *
+     * @param verificationExecutor
+     *            The executor to use for verifying data references.
+     */
+    public void setVerificationExecutor(final ExecutorService verificationExecutor)
+    {
+        this.verificationExecutor = verificationExecutor;
+    }
+    
+    /**
+     * Sets the maximum number of tasks that the data references for a single repository alias are
+     * split into when they are verified using the verification executor. This should not be more
+     * than the number of threads for the executor, or the number of connections that each data
+     * repository can use concurrently.
+     *
+     * @param maxVerificationTasksPerAlias
+     *            The maximum number of concurrent verification tasks for each alias.
+     */
+    public void setMaxVerificationTasksPerAlias(final int maxVerificationTasksPerAlias)
+    {
+        if(maxVerificationTasksPerAlias < 1)
+        {
+            throw new IllegalArgumentException("Must allow at least one verification task for each alias");
+        }
+        this.maxVerificationTasksPerAlias = maxVerificationTasksPerAlias;
     }
     
     @Override
     public void verifyDataReferences(final Set<DataReference> fileReferenceResults) throws OpenRDFException,
         DataRepositoryException, DataReferenceVerificationException
     {
-        final Map<DataReference, Throwable> errors = new HashMap<DataReference, Throwable>();
+        final Map<DataReference, Throwable> errors = new ConcurrentHashMap<DataReference, Throwable>();
         
+        // Group the references by alias so that each repository is only created once, and each
+        // task can share a single connection to the remote repository across its references
+        final long now = System.currentTimeMillis();
+        final Map<String, List<DataReference>> referencesByAlias = new LinkedHashMap<String, List<DataReference>>();
         for(final DataReference dataReference : fileReferenceResults)
         {
+            if(this.isRecentlyVerified(dataReference, now))
+            {
+                this.verificationCacheHits.incrementAndGet();
+                continue;
+            }
+            
             final String alias = dataReference.getRepositoryAlias();
+            final String aliasKey = alias == null ? null : alias.toLowerCase();
+            List<DataReference> references = referencesByAlias.get(aliasKey);
+            if(references == null)
+            {
+                references = new ArrayList<DataReference>();
+                referencesByAlias.put(aliasKey, references);
+            }
+            references.add(dataReference);
+        }
+        
+        final ExecutorService executor = this.verificationExecutor;
+        final int maxTasksPerAlias = executor == null ? 1 : this.maxVerificationTasksPerAlias;
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(referencesByAlias.size());
+        for(final Entry<String, List<DataReference>> nextEntry : referencesByAlias.entrySet())
+        {
+            final String alias = nextEntry.getKey();
+            final List<DataReference> aliasReferences = nextEntry.getValue();
             final PoddDataRepository<DataReference> repository =
                     (PoddDataRepository<DataReference>)this.getRepository(alias);
             if(repository == null)
             {
-                errors.put(dataReference, new DataRepositoryMappingNotFoundException(alias,
-                        "Could not find a File Repository configuration mapped to this alias"));
+                for(final DataReference dataReference : aliasReferences)
+                {
+                    errors.put(dataReference, new DataRepositoryMappingNotFoundException(
+                            dataReference.getRepositoryAlias(),
+                            "Could not find a File Repository configuration mapped to this alias"));
+                }
             }
             else
+            {
+                // Large groups are split so that they can use several connections to the repository
+                final int taskCount =
+                        Math.max(1, Math.min(maxTasksPerAlias, aliasReferences.size()
+                                / PoddDataRepositoryManagerImpl.MIN_VERIFICATION_TASK_SIZE));
+                final int taskSize = (aliasReferences.size() + taskCount - 1) / taskCount;
+                for(int i = 0; i < aliasReferences.size(); i += taskSize)
+                {
+                    final List<DataReference> references =
+                            aliasReferences.subList(i, Math.min(i + taskSize, aliasReferences.size()));
+                    tasks.add(new Callable<Void>()
+                        {
+                            @Override
+                            public Void call()
+                            {
+                                PoddDataRepositoryManagerImpl.this.verifyRepositoryReferences(repository,
+                                        references, errors);
+                                return null;
+                            }
+                        });
+                }
+            }
+        }
+        
+        if(executor == null || tasks.size() < 2)
+        {
+            for(final Callable<Void> nextTask : tasks)
             {
                 try
                 {
-                    if(!repository.validate(dataReference))
-                    {
-                        errors.put(dataReference, new DataReferenceInvalidException(dataReference,
-                                "Remote File Repository says this File Reference is invalid"));
-                    }
+                    nextTask.call();
                 }
                 catch(final Exception e)
                 {
-                    errors.put(dataReference, e);
+                    throw new PoddRuntimeException("Failed to verify data references", e);
                 }
             }
         }
+        else
+        {
+            try
+            {
+                for(final Future<Void> nextFuture : executor.invokeAll(tasks))
+                {
+                    nextFuture.get();
+                }
+            }
+            catch(final InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new PoddRuntimeException("Interrupted while verifying data references", e);
+            }
+            catch(final ExecutionException e)
+            {
+                throw new PoddRuntimeException("Failed to verify data references", e.getCause());
+            }
+        }
         
         if(!errors.isEmpty())
         {
-            throw new DataReferenceVerificationException(errors, "File Reference validation resulted in failures");
+            throw new DataReferenceVerificationException(new HashMap<DataReference, Throwable>(errors),
+                    "File Reference validation resulted in failures");
+        }
+    }
+    
+    /**
+     * Verifies the given references, which all share the alias of the given repository, recording
+     * any failures in the given map and remembering any successes in the verification cache.
+     */
+    private void verifyRepositoryReferences(final PoddDataRepository<DataReference> repository,
+            final List<DataReference> references, final Map<DataReference, Throwable> errors)
+    {
+        final List<DataReference> supportedReferences = new ArrayList<DataReference>(references.size());
+        for(final DataReference dataReference : references)
+        {
+            try
+            {
+                if(repository.canHandle(dataReference))
+                {
+                    supportedReferences.add(dataReference);
+                }
+                else
+                {
+                    errors.put(dataReference, new DataReferenceNotSupportedException(dataReference,
+                            "cannot handle file reference for validation"));
+                }
+            }
+            catch(final Exception e)
+            {
+                errors.put(dataReference, e);
+            }
+        }
+        
+        if(supportedReferences.isEmpty())
+        {
+            return;
+        }
+        
+        try
+        {
+            final Map<DataReference, Boolean> results = repository.validateAll(supportedReferences);
+            final long expiry = System.currentTimeMillis() + this.verificationCacheTtl;
+            for(final DataReference dataReference : supportedReferences)
+            {
+                if(Boolean.TRUE.equals(results.get(dataReference)))
+                {
+                    this.rememberVerified(dataReference, expiry);
+                }
+                else
+                {
+                    errors.put(dataReference, new DataReferenceInvalidException(dataReference,
+                            "Remote File Repository says this File Reference is invalid"));
+                }
+            }
+        }
+        catch(final Exception e)
+        {
+            for(final DataReference dataReference : supportedReferences)
+            {
+                errors.put(dataReference, e);
+            }
+        }
+    }
+    
+    /**
+     * The verification key only includes the location of the data, so that a verification is
+     * shared by all references to the same data, including references from other artifacts and
+     * from other versions of the same artifact.
+     */
+    private List<String> getVerificationKey(final DataReference dataReference)
+    {
+        final String alias = dataReference.getRepositoryAlias();
+        return Arrays.asList(alias == null ? null : alias.toLowerCase(), dataReference.getClass().getName(),
+                dataReference.getDataLocation());
+    }
+    
+    private boolean isRecentlyVerified(final DataReference dataReference, final long now)
+    {
+        if(this.verificationCacheTtl <= 0)
+        {
+            return false;
+        }
+        
+        final List<String> key = this.getVerificationKey(dataReference);
+        final Long expiry = this.verifiedReferences.get(key);
+        if(expiry == null)
+        {
+            return false;
+        }
+        if(expiry > now)
+        {
+            return true;
+        }
+        this.verifiedReferences.remove(key, expiry);
+        return false;
+    }
+    
+    private void rememberVerified(final DataReference dataReference, final long expiry)
+    {
+        if(this.verificationCacheTtl <= 0)
+        {
+            return;
+        }
+        
+        if(this.verifiedReferences.size() >= PoddDataRepositoryManagerImpl.MAX_VERIFIED_REFERENCES)
+        {
+            this.verifiedReferences.clear();
         }
+        this.verifiedReferences.put(this.getVerificationKey(dataReference), expiry);
     }
     
 }
@@ -0,0 +1,647 @@
+/**
+ * PODD is an OWL ontology database used for scientific project management
+ *
+ * Copyright (C) 2009-2013 The University Of Queensland
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.podd.impl.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.schmizz.sshj.DefaultConfig;
+import net.schmizz.sshj.SSHClient;
+import net.schmizz.sshj.sftp.SFTPClient;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A pool of authenticated SSH sessions, each with an open SFTP channel, shared by all of the SSH
+ * based data repositories. Sessions are pooled separately for each user, host, port and host key
+ * fingerprint, so data repository aliases that use the same account share a pool, with a bounded
+ * number of sessions for each pool. Credentials are only used to authenticate new sessions, and are
+ * not kept by the pool.
+ *
+ * Idle sessions are closed after the idle timeout by a background thread, which also logs the
+ * statistics for each pool at debug level. Sessions are checked to be connected and authenticated
+ * before they are reused.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public final class SSHConnectionPool
+{
+    /**
+     * A session borrowed from the pool. Closing it returns it to the pool, unless it has been
+     * invalidated, in which case it is disconnected.
+     */
+    public static final class PooledConnection implements Closeable
+    {
+        private final Pool pool;
+        
+        private final SSHClient sshClient;
+        
+        private final SFTPClient sftpClient;
+        
+        private volatile long lastUsed = System.currentTimeMillis();
+        
+        private volatile boolean reused;
+        
+        private volatile boolean invalid;
+        
+        private PooledConnection(final Pool pool, final SSHClient sshClient, final SFTPClient sftpClient)
+        {
+            this.pool = pool;
+            this.sshClient = sshClient;
+            this.sftpClient = sftpClient;
+        }
+        
+        public SFTPClient getSFTPClient()
+        {
+            return this.sftpClient;
+        }
+        
+        /**
+         * @return True if this session was used before it was borrowed this time, and hence may
+         *         have been dropped by the remote host since it was last used.
+         */
+        public boolean isReused()
+        {
+            return this.reused;
+        }
+        
+        /**
+         * Marks this session as unusable, so that it is disconnected instead of being returned to
+         * the pool when it is closed.
+         */
+        public void invalidate()
+        {
+            this.invalid = true;
+        }
+        
+        @Override
+        public void close()
+        {
+            this.pool.release(this);
+        }
+        
+        private boolean isHealthy()
+        {
+            return !this.invalid && this.sshClient.isConnected() && this.sshClient.isAuthenticated();
+        }
+        
+        private void disconnect()
+        {
+            try
+            {
+                this.sftpClient.close();
+            }
+            catch(final IOException e)
+            {
+                SSHConnectionPool.LOG.debug("Failed to close SFTP channel", e);
+            }
+            try
+            {
+                this.sshClient.close();
+            }
+            catch(final IOException e)
+            {
+                SSHConnectionPool.LOG.debug("Failed to close SSH session", e);
+            }
+        }
+    }
+    
+    /**
+     * Statistics for a single pool of sessions.
+     */
+    public static final class PoolStatistics
+    {
+        private final String poolName;
+        
+        private final AtomicLong createdCount = new AtomicLong();
+        
+        private final AtomicLong reusedCount = new AtomicLong();
+        
+        private final AtomicLong evictedCount = new AtomicLong();
+        
+        private final AtomicLong failedHealthCheckCount = new AtomicLong();
+        
+        private final AtomicLong activeCount = new AtomicLong();
+        
+        private final AtomicLong idleCount = new AtomicLong();
+        
+        private PoolStatistics(final String poolName)
+        {
+            this.poolName = poolName;
+        }
+        
+        /**
+         * @return The user, host, port and host key fingerprint that the sessions in this pool
+         *         connect to.
+         */
+        public String getPoolName()
+        {
+            return this.poolName;
+        }
+        
+        /**
+         * @return The number of sessions that were connected and authenticated for this pool.
+         */
+        public long getCreatedCount()
+        {
+            return this.createdCount.get();
+        }
+        
+        /**
+         * @return The number of times an idle session was borrowed instead of creating a new session.
+         */
+        public long getReusedCount()
+        {
+            return this.reusedCount.get();
+        }
+        
+        /**
+         * @return The number of idle sessions that were closed after the idle timeout.
+         */
+        public long getEvictedCount()
+        {
+            return this.evictedCount.get();
+        }
+        
+        /**
+         * @return The number of idle sessions that were closed because they were no longer
+         *         connected and authenticated, or were invalidated by the borrower.
+         */
+        public long getFailedHealthCheckCount()
+        {
+            return this.failedHealthCheckCount.get();
+        }
+        
+        public long getActiveCount()
+        {
+            return this.activeCount.get();
+        }
+        
+        public long getIdleCount()
+        {
+            return this.idleCount.get();
+        }
+        
+        @Override
+        public String toString()
+        {
+            return this.poolName + " [created=" + this.getCreatedCount() + ", reused=" + this.getReusedCount()
+                    + ", evicted=" + this.getEvictedCount() + ", failedHealthCheck="
+                    + this.getFailedHealthCheckCount() + ", active=" + this.getActiveCount() + ", idle="
+                    + this.getIdleCount() + "]";
+        }
+    }
+    
+    /**
+     * The sessions for a single data repository alias.
+     */
+    private final class Pool
+    {
+        private final Semaphore permits;
+        
+        private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<PooledConnection>();
+        
+        private final PoolStatistics statistics;
+        
+        private volatile boolean closed;
+        
+        private Pool(final String target, final int maxConnections)
+        {
+            this.permits = new Semaphore(maxConnections, true);
+            this.statistics = new PoolStatistics(target);
+        }
+        
+        private PooledConnection borrow(final String host, final int port, final String fingerprint,
+                final String username, final String secret) throws IOException
+        {
+            try
+            {
+                if(!this.permits.tryAcquire(SSHConnectionPool.this.borrowTimeoutMillis, TimeUnit.MILLISECONDS))
+                {
+                    throw new IOException("Timed out waiting for an SSH session: " + this.statistics.getPoolName());
+                }
+            }
+            catch(final InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for an SSH session: "
+                        + this.statistics.getPoolName(), e);
+            }
+            
+            try
+            {
+                PooledConnection connection;
+                while((connection = this.idle.pollFirst()) != null)
+                {
+                    this.statistics.idleCount.decrementAndGet();
+                    if(connection.isHealthy())
+                    {
+                        connection.reused = true;
+                        this.statistics.reusedCount.incrementAndGet();
+                        this.statistics.activeCount.incrementAndGet();
+                        return connection;
+                    }
+                    this.statistics.failedHealthCheckCount.incrementAndGet();
+                    connection.disconnect();
+                }
+                
+                connection = this.connect(host, port, fingerprint, username, secret);
+                this.statistics.createdCount.incrementAndGet();
+                this.statistics.activeCount.incrementAndGet();
+                return connection;
+            }
+            catch(IOException | RuntimeException e)
+            {
+                this.permits.release();
+                throw e;
+            }
+        }
+        
+        private PooledConnection connect(final String host, final int port, final String fingerprint,
+                final String username, final String secret) throws IOException
+        {
+            final SSHClient sshClient = new SSHClient(SSHConnectionPool.DEFAULT_CONFIG);
+            try
+            {
+                sshClient.addHostKeyVerifier(fingerprint);
+                sshClient.connect(host, port);
+                sshClient.authPassword(username, secret);
+                return new PooledConnection(this, sshClient, sshClient.newSFTPClient());
+            }
+            catch(IOException | RuntimeException e)
+            {
+                sshClient.close();
+                throw e;
+            }
+        }
+        
+        private void release(final PooledConnection connection)
+        {
+            try
+            {
+                this.statistics.activeCount.decrementAndGet();
+                if(this.closed)
+                {
+                    connection.disconnect();
+                }
+                else if(connection.isHealthy())
+                {
+                    connection.lastUsed = System.currentTimeMillis();
+                    this.idle.offerFirst(connection);
+                    this.statistics.idleCount.incrementAndGet();
+                    if(this.closed)
+                    {
+                        // the pool was closed while the connection was being returned
+                        this.close();
+                    }
+                }
+                else
+                {
+                    this.statistics.failedHealthCheckCount.incrementAndGet();
+                    connection.disconnect();
+                }
+            }
+            finally
+            {
+                this.permits.release();
+            }
+        }
+        
+        private void evictIdle(final long idleBefore)
+        {
+            // The least recently used sessions are at the end of the deque
+            final Iterator<PooledConnection> iterator = this.idle.descendingIterator();
+            while(iterator.hasNext())
+            {
+                final PooledConnection connection = iterator.next();
+                if(connection.lastUsed < idleBefore && this.idle.removeLastOccurrence(connection))
+                {
+                    this.statistics.idleCount.decrementAndGet();
+                    this.statistics.evictedCount.incrementAndGet();
+                    connection.disconnect();
+                }
+            }
+        }
+        
+        private void close()
+        {
+            this.closed = true;
+            PooledConnection connection;
+            while((connection = this.idle.pollFirst()) != null)
+            {
+                this.statistics.idleCount.decrementAndGet();
+                connection.disconnect();
+            }
+        }
+    }
+    
+    /**
+     * The default maximum number of sessions for each pool.
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS = 4;
+    
+    /**
+     * The default number of milliseconds after which idle sessions are closed.
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    
+    /**
+     * The default number of milliseconds to wait for a session when all sessions in a pool are in
+     * use.
+     */
+    public static final long DEFAULT_BORROW_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    
+    private static final DefaultConfig DEFAULT_CONFIG = new DefaultConfig();
+    
+    private static final Logger LOG = LoggerFactory.getLogger(SSHConnectionPool.class);
+    
+    private static final SSHConnectionPool INSTANCE = new SSHConnectionPool();
+    
+    /**
+     * The minimum number of milliseconds between runs of the idle session evictor.
+     */
+    private static final long MIN_EVICTION_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(1);
+    
+    /**
+     * @return The pool shared by all of the SSH based data repositories.
+     */
+    public static SSHConnectionPool getInstance()
+    {
+        return SSHConnectionPool.INSTANCE;
+    }
+    
+    /**
+     * The pools, keyed by the user, host, port and host key fingerprint that their sessions are
+     * connected to.
+     */
+    private final ConcurrentMap<String, Pool> pools = new ConcurrentHashMap<String, Pool>();
+    
+    /**
+     * The pool key most recently used by each data repository alias, so that a pool can be closed
+     * when no aliases use it.
+     */
+    private final ConcurrentMap<String, String> aliasTargets = new ConcurrentHashMap<String, String>();
+    
+    private final ScheduledExecutorService evictor = new ScheduledThreadPoolExecutor(1, new ThreadFactory()
+        {
+            private final AtomicInteger threadCount = new AtomicInteger();
+            
+            @Override
+            public Thread newThread(final Runnable runnable)
+            {
+                final Thread result =
+                        new Thread(runnable, "podd-ssh-pool-evictor-" + this.threadCount.incrementAndGet());
+                result.setDaemon(true);
+                return result;
+            }
+        });
+    
+    private ScheduledFuture<?> evictorTask;
+    
+    private volatile int maxConnections = SSHConnectionPool.DEFAULT_MAX_CONNECTIONS;
+    
+    private volatile long idleTimeoutMillis = SSHConnectionPool.DEFAULT_IDLE_TIMEOUT_MILLIS;
+    
+    private volatile long borrowTimeoutMillis = SSHConnectionPool.DEFAULT_BORROW_TIMEOUT_MILLIS;
+    
+    private SSHConnectionPool()
+    {
+    }
+    
+    /**
+     * Borrows an authenticated session with an open SFTP channel for the given data repository
+     * alias, connecting a new session if there are no idle sessions in the pool for its user, host,
+     * port and fingerprint. The session must be closed after use to return it to the pool. If the
+     * user, host, port or fingerprint for the alias have changed, the previous pool for the alias
+     * is closed unless another alias still uses it.
+     *
+     * @throws IOException
+     *             If a new session could not be connected and authenticated, or if all of the
+     *             sessions in the pool remained in use for the borrow timeout.
+     */
+    public PooledConnection borrow(final String alias, final String host, final int port, final String fingerprint,
+            final String username, final String secret) throws IOException
+    {
+        this.startEvictor();
+        
+        final String target = username + "@" + host.toLowerCase() + ":" + port + " " + fingerprint;
+        final String previousTarget = this.aliasTargets.put(alias.toLowerCase(), target);
+        if(previousTarget != null && !previousTarget.equals(target))
+        {
+            this.removeIfUnused(previousTarget);
+        }
+        
+        Pool pool = this.pools.get(target);
+        while(pool == null || pool.closed)
+        {
+            // The pool may have been closed after its last alias was removed
+            if(pool != null)
+            {
+                this.pools.remove(target, pool);
+            }
+            final Pool newPool = new Pool(target, this.maxConnections);
+            pool = this.pools.putIfAbsent(target, newPool);
+            if(pool == null)
+            {
+                pool = newPool;
+            }
+        }
+        return pool.borrow(host, port, fingerprint, username, secret);
+    }
+    
+    /**
+     * Closes all idle sessions that have not been used within the idle timeout.
+     */
+    public void evictIdle()
+    {
+        final long idleBefore = System.currentTimeMillis() - this.idleTimeoutMillis;
+        for(final Pool nextPool : this.pools.values())
+        {
+            nextPool.evictIdle(idleBefore);
+        }
+    }
+    
+    /**
+     * Stops tracking the given data repository alias. If no other alias uses the same pool, the
+     * idle sessions in the pool are closed and the pool and its statistics are discarded. Sessions
+     * that are currently borrowed are closed when they are returned.
+     *
+     * @param alias
+     *            The alias of a data repository that has been removed or reconfigured.
+     */
+    public void remove(final String alias)
+    {
+        final String target = this.aliasTargets.remove(alias.toLowerCase());
+        if(target != null)
+        {
+            this.removeIfUnused(target);
+        }
+    }
+    
+    /**
+     * Closes all idle sessions and discards all pools and their statistics. Sessions that are
+     * currently borrowed are closed when they are returned.
+     */
+    public void reset()
+    {
+        this.aliasTargets.clear();
+        final Iterator<Pool> iterator = this.pools.values().iterator();
+        while(iterator.hasNext())
+        {
+            final Pool nextPool = iterator.next();
+            iterator.remove();
+            nextPool.close();
+        }
+    }
+    
+    /**
+     * Stops the idle session evictor, logs the statistics for each pool, and then closes all
+     * sessions as for {@link #reset()}. The evictor is started again if another session is
+     * borrowed.
+     */
+    public synchronized void close()
+    {
+        if(this.evictorTask != null)
+        {
+            this.evictorTask.cancel(false);
+            this.evictorTask = null;
+        }
+        for(final PoolStatistics nextStatistics : this.getStatistics().values())
+        {
+            SSHConnectionPool.LOG.info("Closing SSH session pool: {}", nextStatistics);
+        }
+        this.reset();
+    }
+    
+    /**
+     * @return A snapshot of the statistics for each pool, sorted by the user, host, port and
+     *         fingerprint for the pool.
+     */
+    public Map<String, PoolStatistics> getStatistics()
+    {
+        final Map<String, PoolStatistics> result = new TreeMap<String, PoolStatistics>();
+        for(final Pool nextPool : this.pools.values())
+        {
+            result.put(nextPool.statistics.getPoolName(), nextPool.statistics);
+        }
+        return result;
+    }
+    
+    /**
+     * Closes and discards the pool for the given user, host, port and fingerprint if no data
+     * repository aliases use it.
+     */
+    private synchronized void removeIfUnused(final String target)
+    {
+        if(!this.aliasTargets.containsValue(target))
+        {
+            final Pool pool = this.pools.remove(target);
+            if(pool != null)
+            {
+                pool.close();
+            }
+        }
+    }
+    
+    /**
+     * Schedules the idle session evictor if it is not already running. It runs at half of the idle
+     * timeout, so idle sessions are closed within one and a half times the idle timeout.
+     */
+    private synchronized void startEvictor()
+    {
+        if(this.evictorTask == null)
+        {
+            final long interval =
+                    Math.max(SSHConnectionPool.MIN_EVICTION_INTERVAL_MILLIS, this.idleTimeoutMillis / 2);
+            this.evictorTask = this.evictor.scheduleWithFixedDelay(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            SSHConnectionPool.this.evictIdle();
+                            if(SSHConnectionPool.LOG.isDebugEnabled())
+                            {
+                                for(final PoolStatistics nextStatistics : SSHConnectionPool.this.getStatistics()
+                                        .values())
+                                {
+                                    SSHConnectionPool.LOG.debug("SSH session pool: {}", nextStatistics);
+                                }
+                            }
+                        }
+                        catch(final RuntimeException e)
+                        {
+                            SSHConnectionPool.LOG.error("Failed to evict idle SSH sessions", e);
+                        }
+                    }
+                }, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * Sets the maximum number of sessions for each pool. Only applies to pools that are created
+     * after it is set.
+     *
+     * @param maxConnections
+     *            The maximum number of sessions in each pool.
+     */
+    public void setMaxConnections(final int maxConnections)
+    {
+        this.maxConnections = maxConnections;
+    }
+    
+    /**
+     * @param idleTimeoutMillis
+     *            The number of milliseconds after which idle sessions are closed.
+     */
+    public synchronized void setIdleTimeoutMillis(final long idleTimeoutMillis)
+    {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        // Reschedule the evictor for the new timeout when the next session is borrowed
+        if(this.evictorTask != null)
+        {
+            this.evictorTask.cancel(false);
+            this.evictorTask = null;
+        }
+    }
+    
+    /**
+     * @param borrowTimeoutMillis
+     *            The number of milliseconds to wait for a session when all sessions in a pool are
+     *            in use.
+     */
+    public void setBorrowTimeoutMillis(final long borrowTimeoutMillis)
+    {
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+    }
+}
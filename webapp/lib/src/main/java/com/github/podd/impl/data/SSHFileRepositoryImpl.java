@@ -16,12 +16,19 @@
  */
 package com.github.podd.impl.data;
 
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
-import net.schmizz.sshj.DefaultConfig;
-import net.schmizz.sshj.SSHClient;
 import net.schmizz.sshj.sftp.FileAttributes;
+import net.schmizz.sshj.sftp.RemoteFile;
 import net.schmizz.sshj.sftp.SFTPClient;
+import net.schmizz.sshj.sftp.SFTPException;
 
 import org.openrdf.model.Model;
 import org.openrdf.model.Resource;
@@ -32,6 +39,7 @@ import com.github.podd.api.data.PoddDataRepository;
 import com.github.podd.api.data.SSHFileReference;
 import com.github.podd.exception.DataReferenceNotSupportedException;
 import com.github.podd.exception.DataRepositoryIncompleteException;
+import com.github.podd.impl.data.SSHConnectionPool.PooledConnection;
 import com.github.podd.ontologies.PODDDATAREPOSITORY;
 import com.github.podd.utils.PODD;
 
@@ -41,8 +49,6 @@ import com.github.podd.utils.PODD;
  */
 public class SSHFileRepositoryImpl extends AbstractPoddDataRepositoryImpl<SSHFileReference>
 {
-    private static final DefaultConfig DEFAULT_CONFIG = new DefaultConfig();
-    
     protected final Logger log = LoggerFactory.getLogger(this.getClass());
     
     public SSHFileRepositoryImpl(final Resource nextDataRepository, final Model model)
@@ -100,15 +106,185 @@ public class SSHFileRepositoryImpl extends AbstractPoddDataRepositoryImpl<SSHFil
         return true;
     }
     
+    /**
+     * Finds the size of the referenced file using a session borrowed from the
+     * {@link SSHConnectionPool}.
+     */
+    @Override
+    public long getSize(final SSHFileReference dataReference) throws DataReferenceNotSupportedException, IOException
+    {
+        if(!this.canHandle(dataReference))
+        {
+            throw new DataReferenceNotSupportedException(dataReference, "cannot handle file reference for download");
+        }
+        
+        final String fileName = dataReference.getDataLocation();
+        while(true)
+        {
+            try (final PooledConnection connection = this.borrowConnection();)
+            {
+                try
+                {
+                    return connection.getSFTPClient().lstat(fileName).getSize();
+                }
+                catch(final SFTPException e)
+                {
+                    throw this.fileNotFound(fileName, e);
+                }
+                catch(final IOException e)
+                {
+                    // A pooled session may have been dropped by the remote host while it was idle
+                    connection.invalidate();
+                    if(!connection.isReused())
+                    {
+                        throw e;
+                    }
+                    this.log.debug("Pooled SSH session failed, retrying with a new session", e);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Opens the referenced file using a session borrowed from the {@link SSHConnectionPool}. The
+     * session is returned to the pool when the stream is closed.
+     */
+    @Override
+    public InputStream openStream(final SSHFileReference dataReference, final long offset)
+        throws DataReferenceNotSupportedException, IOException
+    {
+        if(!this.canHandle(dataReference))
+        {
+            throw new DataReferenceNotSupportedException(dataReference, "cannot handle file reference for download");
+        }
+        
+        final String fileName = dataReference.getDataLocation();
+        while(true)
+        {
+            final PooledConnection connection = this.borrowConnection();
+            try
+            {
+                final RemoteFile remoteFile = connection.getSFTPClient().open(fileName);
+                return new PooledRemoteFileInputStream(connection, remoteFile, offset);
+            }
+            catch(final SFTPException e)
+            {
+                connection.close();
+                throw this.fileNotFound(fileName, e);
+            }
+            catch(final IOException e)
+            {
+                // A pooled session may have been dropped by the remote host while it was idle
+                connection.invalidate();
+                connection.close();
+                if(!connection.isReused())
+                {
+                    throw e;
+                }
+                this.log.debug("Pooled SSH session failed, retrying with a new session", e);
+            }
+            catch(final RuntimeException e)
+            {
+                connection.invalidate();
+                connection.close();
+                throw e;
+            }
+        }
+    }
+    
     @Override
     public boolean validate(final SSHFileReference dataReference) throws DataReferenceNotSupportedException,
         IOException
     {
-        if(!this.canHandle(dataReference))
+        return this.validateAll(Collections.singleton(dataReference)).get(dataReference);
+    }
+    
+    /**
+     * Validates all of the given references using a single SSH session and SFTP channel borrowed
+     * from the {@link SSHConnectionPool}.
+     */
+    @Override
+    public Map<SSHFileReference, Boolean> validateAll(final Collection<SSHFileReference> dataReferences)
+        throws DataReferenceNotSupportedException, IOException
+    {
+        for(final SSHFileReference dataReference : dataReferences)
+        {
+            if(!this.canHandle(dataReference))
+            {
+                throw new DataReferenceNotSupportedException(dataReference,
+                        "cannot handle file reference for validation");
+            }
+        }
+        
+        final Map<SSHFileReference, Boolean> results = new LinkedHashMap<SSHFileReference, Boolean>();
+        if(dataReferences.isEmpty())
         {
-            throw new DataReferenceNotSupportedException(dataReference, "cannot handle file reference for validation");
+            return results;
         }
         
+        this.log.info("Validating {} file references: {}", dataReferences.size(), this.alias);
+        
+        // A pooled session may have been dropped by the remote host while it was idle, so retry once
+        // with a new session if a reused session fails before it has validated anything
+        boolean retry = true;
+        while(retry)
+        {
+            retry = false;
+            try (final PooledConnection connection = this.borrowConnection();)
+            {
+                final SFTPClient sftp = connection.getSFTPClient();
+                try
+                {
+                    for(final SSHFileReference dataReference : dataReferences)
+                    {
+                        final String fileName = dataReference.getDataLocation();
+                        
+                        this.log.debug("Validating file reference: {}", fileName);
+                        
+                        try
+                        {
+                            // check details of a remote file
+                            final FileAttributes attribs = sftp.lstat(fileName);
+                            results.put(dataReference, attribs != null && attribs.getSize() > 0);
+                        }
+                        catch(final SFTPException e)
+                        {
+                            // lstat() throws an SFTPException if the file does not exist
+                            results.put(dataReference, false);
+                        }
+                    }
+                }
+                catch(final IOException e)
+                {
+                    // the SFTP channel was lost part way through, so do not return this session to
+                    // the pool
+                    connection.invalidate();
+                    if(connection.isReused() && results.isEmpty())
+                    {
+                        this.log.debug("Pooled SSH session failed, retrying with a new session", e);
+                        retry = true;
+                    }
+                    else
+                    {
+                        for(final SSHFileReference dataReference : dataReferences)
+                        {
+                            if(!results.containsKey(dataReference))
+                            {
+                                results.put(dataReference, false);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Borrows a session for this repository from the {@link SSHConnectionPool}.
+     */
+    private PooledConnection borrowConnection() throws IOException
+    {
         final String host = this.model.filter(this.aliasUri, PODD.PODD_DATA_REPOSITORY_HOST, null).objectString();
         final String port = this.model.filter(this.aliasUri, PODD.PODD_DATA_REPOSITORY_PORT, null).objectString();
         final String fingerprint =
@@ -127,38 +303,100 @@ public class SSHFileRepositoryImpl extends AbstractPoddDataRepositoryImpl<SSHFil
             throw new IOException("Port number could not be parsed correctly: " + port);
         }
         
-        String fileName = dataReference.getFilename();
-        final String path = dataReference.getPath();
-        if(path != null && path.trim().length() > 0)
+        return SSHConnectionPool.getInstance().borrow(this.alias, host, portNo, fingerprint, username, secret);
+    }
+    
+    private FileNotFoundException fileNotFound(final String fileName, final SFTPException cause)
+    {
+        final FileNotFoundException result = new FileNotFoundException("Could not access remote file: " + fileName);
+        result.initCause(cause);
+        return result;
+    }
+    
+    /**
+     * Reads a remote file over a pooled session, returning the session to the pool when it is
+     * closed, or disconnecting it if the session failed while reading.
+     */
+    private static final class PooledRemoteFileInputStream extends FilterInputStream
+    {
+        private final PooledConnection connection;
+        
+        private final RemoteFile remoteFile;
+        
+        private boolean failed;
+        
+        private boolean closed;
+        
+        private PooledRemoteFileInputStream(final PooledConnection connection, final RemoteFile remoteFile,
+                final long offset)
+        {
+            super(remoteFile.new RemoteFileInputStream(offset));
+            this.connection = connection;
+            this.remoteFile = remoteFile;
+        }
+        
+        @Override
+        public int read() throws IOException
         {
-            fileName = path + "/" + fileName;
+            try
+            {
+                return super.read();
+            }
+            catch(final SFTPException e)
+            {
+                throw e;
+            }
+            catch(final IOException e)
+            {
+                this.failed = true;
+                throw e;
+            }
         }
         
-        this.log.info("Validating file reference: " + host + ":" + port + " " + fileName);
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException
+        {
+            try
+            {
+                return super.read(buffer, offset, length);
+            }
+            catch(final SFTPException e)
+            {
+                throw e;
+            }
+            catch(final IOException e)
+            {
+                this.failed = true;
+                throw e;
+            }
+        }
         
-        try (SSHClient sshClient = new SSHClient(SSHFileRepositoryImpl.DEFAULT_CONFIG);)
+        @Override
+        public void close() throws IOException
         {
-            sshClient.addHostKeyVerifier(fingerprint);
-            sshClient.connect(host, portNo);
-            
-            sshClient.authPassword(username, secret);
-            
-            try (SFTPClient sftp = sshClient.newSFTPClient();)
+            if(this.closed)
             {
-                // check details of a remote file
-                final FileAttributes attribs = sftp.lstat(fileName);
-                if(attribs == null || attribs.getSize() <= 0)
-                {
-                    return false;
-                }
+                return;
+            }
+            this.closed = true;
+            try
+            {
+                this.remoteFile.close();
             }
             catch(final IOException e)
             {
-                // lstat() throws an IOException if the file does not exist
-                return false;
+                this.failed = true;
+                throw e;
+            }
+            finally
+            {
+                if(this.failed)
+                {
+                    this.connection.invalidate();
+                }
+                this.connection.close();
             }
         }
-        return true;
     }
     
 }
@@ -0,0 +1,281 @@
+/**
+ * PODD is an OWL ontology database used for scientific project management
+ *
+ * Copyright (C) 2009-2013 The University Of Queensland
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.podd.resources;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openrdf.OpenRDFException;
+import org.openrdf.model.URI;
+import org.restlet.data.MediaType;
+import org.restlet.data.Range;
+import org.restlet.data.Status;
+import org.restlet.representation.OutputRepresentation;
+import org.restlet.representation.Representation;
+import org.restlet.resource.Get;
+import org.restlet.resource.ResourceException;
+import org.semanticweb.owlapi.model.IRI;
+
+import com.github.podd.api.data.DataReference;
+import com.github.podd.api.data.PoddDataRepositoryManager;
+import com.github.podd.api.data.SSHFileReference;
+import com.github.podd.exception.DataReferenceNotSupportedException;
+import com.github.podd.exception.DataRepositoryBusyException;
+import com.github.podd.exception.DataRepositoryMappingNotFoundException;
+import com.github.podd.exception.PoddException;
+import com.github.podd.exception.UnmanagedArtifactIRIException;
+import com.github.podd.exception.UnmanagedArtifactVersionException;
+import com.github.podd.restlet.PoddAction;
+import com.github.podd.utils.InferredOWLOntologyID;
+import com.github.podd.utils.PODD;
+import com.github.podd.utils.PoddWebConstants;
+
+/**
+ * Download the data referenced by a data reference in a PODD artifact, streaming it directly from
+ * the remote data repository. A single HTTP byte range may be requested to resume an interrupted
+ * download.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class DataReferenceDownloadResourceImpl extends AbstractPoddResourceImpl
+{
+    private static final int BUFFER_SIZE = 32 * 1024;
+    
+    /**
+     * The number of seconds that clients are asked to wait before retrying a download when the
+     * data repository is busy.
+     */
+    private static final long RETRY_AFTER_SECONDS = 5;
+    
+    @Get
+    public Representation downloadDataReference() throws ResourceException
+    {
+        final String artifactUriString = this.getQuery().getFirstValue(PoddWebConstants.KEY_ARTIFACT_IDENTIFIER, true);
+        if(artifactUriString == null)
+        {
+            this.log.error("Artifact ID not submitted");
+            throw new ResourceException(Status.CLIENT_ERROR_BAD_REQUEST, "Artifact IRI not submitted");
+        }
+        
+        final String objectUriString = this.getQuery().getFirstValue(PoddWebConstants.KEY_OBJECT_IDENTIFIER, true);
+        if(objectUriString == null)
+        {
+            this.log.error("Object IRI not submitted");
+            throw new ResourceException(Status.CLIENT_ERROR_BAD_REQUEST, "Object IRI not submitted");
+        }
+        
+        final String versionUriString =
+                this.getQuery().getFirstValue(PoddWebConstants.KEY_ARTIFACT_VERSION_IDENTIFIER, true);
+        
+        final URI artifactUri = PODD.VF.createURI(artifactUriString);
+        final URI objectUri = PODD.VF.createURI(objectUriString);
+        
+        final DataReference dataReference;
+        try
+        {
+            final InferredOWLOntologyID artifact;
+            if(versionUriString == null)
+            {
+                artifact = this.getPoddArtifactManager().getArtifact(IRI.create(artifactUri));
+            }
+            else
+            {
+                artifact =
+                        this.getPoddArtifactManager().getArtifact(IRI.create(artifactUri),
+                                IRI.create(versionUriString));
+            }
+            
+            if(this.getPoddArtifactManager().isPublished(artifact))
+            {
+                this.checkAuthentication(PoddAction.PUBLISHED_ARTIFACT_READ, artifactUri);
+            }
+            else
+            {
+                this.checkAuthentication(PoddAction.UNPUBLISHED_ARTIFACT_READ, artifactUri);
+            }
+            
+            final Set<DataReference> dataReferences =
+                    this.getPoddArtifactManager().getFileReferences(artifact, objectUri);
+            if(dataReferences.isEmpty())
+            {
+                throw new ResourceException(Status.CLIENT_ERROR_NOT_FOUND,
+                        "Could not find a data reference for the given object");
+            }
+            dataReference = dataReferences.iterator().next();
+        }
+        catch(final UnmanagedArtifactIRIException | UnmanagedArtifactVersionException e)
+        {
+            throw new ResourceException(Status.CLIENT_ERROR_NOT_FOUND, "Could not find the given artifact", e);
+        }
+        catch(final OpenRDFException | PoddException | IOException e)
+        {
+            throw new ResourceException(Status.SERVER_ERROR_INTERNAL, "Could not find data references", e);
+        }
+        
+        final PoddDataRepositoryManager dataRepositoryManager =
+                this.getPoddApplication().getPoddDataRepositoryManager();
+        
+        final long totalSize;
+        final long offset;
+        final long length;
+        final InputStream inputStream;
+        try
+        {
+            totalSize = dataRepositoryManager.getFileReferenceSize(dataReference);
+            
+            final List<Range> ranges = this.getRequest().getRanges();
+            if(ranges.size() == 1)
+            {
+                final Range range = ranges.get(0);
+                if(range.getIndex() == Range.INDEX_LAST)
+                {
+                    // A suffix range containing the last bytes of the data
+                    length = Math.min(range.getSize(), totalSize);
+                    offset = totalSize - length;
+                }
+                else
+                {
+                    offset = range.getIndex();
+                    length =
+                            range.getSize() == Range.SIZE_MAX ? totalSize - offset : Math.min(range.getSize(),
+                                    totalSize - offset);
+                }
+                
+                if(offset >= totalSize || length <= 0)
+                {
+                    throw new ResourceException(Status.CLIENT_ERROR_REQUESTED_RANGE_NOT_SATISFIABLE,
+                            "Requested range is outside of the data: index=" + range.getIndex() + " length="
+                                    + range.getSize() + " size=" + totalSize);
+                }
+            }
+            else
+            {
+                // Multiple ranges are not supported, so the entire data is returned
+                offset = 0;
+                length = totalSize;
+            }
+            
+            inputStream = dataRepositoryManager.openFileReference(dataReference, offset);
+        }
+        catch(final DataRepositoryBusyException e)
+        {
+            this.getResponse().setRetryAfter(
+                    new Date(System.currentTimeMillis()
+                            + TimeUnit.SECONDS.toMillis(DataReferenceDownloadResourceImpl.RETRY_AFTER_SECONDS)));
+            throw new ResourceException(Status.SERVER_ERROR_SERVICE_UNAVAILABLE,
+                    "Data repository is busy, please retry the download later", e);
+        }
+        catch(final DataRepositoryMappingNotFoundException | DataReferenceNotSupportedException e)
+        {
+            throw new ResourceException(Status.CLIENT_ERROR_BAD_REQUEST,
+                    "Data reference cannot be downloaded from its data repository", e);
+        }
+        catch(final FileNotFoundException e)
+        {
+            throw new ResourceException(Status.CLIENT_ERROR_NOT_FOUND,
+                    "Could not find the referenced data in its data repository", e);
+        }
+        catch(final OpenRDFException | PoddException | IOException e)
+        {
+            throw new ResourceException(Status.SERVER_ERROR_BAD_GATEWAY,
+                    "Could not access the referenced data in its data repository", e);
+        }
+        
+        final Representation result = new OutputRepresentation(this.getMediaType(dataReference), totalSize)
+            {
+                @Override
+                public void write(final OutputStream outputStream) throws IOException
+                {
+                    try
+                    {
+                        // Copy the data from the remote repository as it is sent, without
+                        // buffering more than a single block in memory
+                        final byte[] buffer = new byte[DataReferenceDownloadResourceImpl.BUFFER_SIZE];
+                        long remaining = length;
+                        while(remaining > 0)
+                        {
+                            final int read = inputStream.read(buffer, 0, (int)Math.min(buffer.length, remaining));
+                            if(read < 0)
+                            {
+                                throw new IOException("Data ended before the requested length: " + length);
+                            }
+                            outputStream.write(buffer, 0, read);
+                            remaining -= read;
+                        }
+                    }
+                    finally
+                    {
+                        inputStream.close();
+                    }
+                }
+                
+                @Override
+                public void release()
+                {
+                    // The stream may not have been written, for example for HEAD requests or if
+                    // the client disconnected, so it must be closed here to release its session
+                    try
+                    {
+                        inputStream.close();
+                    }
+                    catch(final IOException e)
+                    {
+                        DataReferenceDownloadResourceImpl.this.log.warn("Failed to close data reference stream", e);
+                    }
+                    super.release();
+                }
+            };
+        
+        this.getResponse().getServerInfo().setAcceptingRanges(true);
+        if(length < totalSize)
+        {
+            result.setRange(new Range(offset, length));
+            this.getResponse().setStatus(Status.SUCCESS_PARTIAL_CONTENT);
+        }
+        return result;
+    }
+    
+    /**
+     * @return The media type matching the file name extension of the given reference, or
+     *         application/octet-stream if it is not known.
+     */
+    private MediaType getMediaType(final DataReference dataReference)
+    {
+        if(dataReference instanceof SSHFileReference)
+        {
+            final String filename = ((SSHFileReference)dataReference).getFilename();
+            final int extensionIndex = filename == null ? -1 : filename.lastIndexOf('.');
+            if(extensionIndex >= 0)
+            {
+                final MediaType mediaType =
+                        this.getApplication().getMetadataService()
+                                .getMediaType(filename.substring(extensionIndex + 1));
+                if(mediaType != null)
+                {
+                    return mediaType;
+                }
+            }
+        }
+        return MediaType.APPLICATION_OCTET_STREAM;
+    }
+}
@@ -16,20 +16,23 @@
  */
 package com.github.podd.resources;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 import org.openrdf.OpenRDFException;
 import org.openrdf.model.Model;
 import org.openrdf.model.URI;
 import org.openrdf.rio.RDFFormat;
 import org.openrdf.rio.UnsupportedRDFormatException;
+import org.restlet.data.Encoding;
 import org.restlet.data.MediaType;
+import org.restlet.data.Preference;
 import org.restlet.data.Status;
-import org.restlet.representation.ByteArrayRepresentation;
+import org.restlet.representation.OutputRepresentation;
 import org.restlet.representation.Representation;
 import org.restlet.representation.Variant;
 import org.restlet.resource.Get;
@@ -189,8 +192,8 @@ public class GetArtifactResourceImpl extends AbstractPoddResourceImpl
         
         this.log.debug("getArtifactRdf");
         
-        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
-        
+        final InferredOWLOntologyID ontologyID;
+        final boolean includeInferred;
         try
         {
             final String artifactString = this.getQuery().getFirstValue(PoddWebConstants.KEY_ARTIFACT_IDENTIFIER, true);
@@ -213,7 +216,6 @@ public class GetArtifactResourceImpl extends AbstractPoddResourceImpl
             final User user = this.getRequest().getClientInfo().getUser();
             this.log.debug("authenticated user: {}", user);
             
-            InferredOWLOntologyID ontologyID = null;
             if(versionString == null)
             {
                 ontologyID = this.getPoddArtifactManager().getArtifact(IRI.create(artifactString));
@@ -228,23 +230,64 @@ public class GetArtifactResourceImpl extends AbstractPoddResourceImpl
             final String includeInferredString =
                     this.getRequest().getResourceRef().getQueryAsForm()
                             .getFirstValue(PoddWebConstants.KEY_INCLUDE_INFERRED, true);
-            final boolean includeInferred = Boolean.valueOf(includeInferredString);
-            
-            this.getPoddApplication()
-                    .getPoddArtifactManager()
-                    .exportArtifact(ontologyID, stream,
-                            RDFFormat.forMIMEType(variant.getMediaType().getName(), RDFFormat.RDFJSON), includeInferred);
+            includeInferred = Boolean.valueOf(includeInferredString);
         }
         catch(final UnmanagedArtifactIRIException e)
         {
             throw new ResourceException(Status.CLIENT_ERROR_NOT_FOUND, "Could not find the given artifact", e);
         }
-        catch(OpenRDFException | PoddException | IOException e)
+        catch(final PoddException e)
         {
             throw new ResourceException(Status.SERVER_ERROR_INTERNAL, "Failed to export artifact", e);
         }
         
-        return new ByteArrayRepresentation(stream.toByteArray());
+        final RDFFormat format = RDFFormat.forMIMEType(variant.getMediaType().getName(), RDFFormat.RDFJSON);
+        final boolean gzip = this.isGzipAccepted();
+        
+        // The statements are written directly from the repository to the response as it is sent,
+        // using chunked transfer encoding as the size is not known in advance
+        final Representation result = new OutputRepresentation(MediaType.valueOf(format.getDefaultMIMEType()))
+            {
+                @Override
+                public void write(final OutputStream outputStream) throws IOException
+                {
+                    final OutputStream exportStream = gzip ? new GZIPOutputStream(outputStream) : outputStream;
+                    try
+                    {
+                        GetArtifactResourceImpl.this.getPoddArtifactManager().exportArtifact(ontologyID,
+                                exportStream, format, includeInferred);
+                    }
+                    catch(final OpenRDFException | PoddException e)
+                    {
+                        GetArtifactResourceImpl.this.log.error("Failed to export artifact: " + ontologyID, e);
+                        throw new IOException("Failed to export artifact", e);
+                    }
+                    if(gzip)
+                    {
+                        ((GZIPOutputStream)exportStream).finish();
+                    }
+                }
+            };
+        if(gzip)
+        {
+            result.getEncodings().add(Encoding.GZIP);
+        }
+        return result;
+    }
+    
+    /**
+     * @return True if the client accepts gzip content encoding.
+     */
+    private boolean isGzipAccepted()
+    {
+        for(final Preference<Encoding> nextEncoding : this.getRequest().getClientInfo().getAcceptedEncodings())
+        {
+            if(Encoding.GZIP.equals(nextEncoding.getMetadata()) && nextEncoding.getQuality() > 0)
+            {
+                return true;
+            }
+        }
+        return false;
     }
     
     /**
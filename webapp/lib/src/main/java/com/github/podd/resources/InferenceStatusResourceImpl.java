@@ -0,0 +1,130 @@
+/**
+ * PODD is an OWL ontology database used for scientific project management
+ *
+ * Copyright (C) 2009-2013 The University Of Queensland
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.podd.resources;
+
+import java.io.ByteArrayOutputStream;
+
+import org.openrdf.OpenRDFException;
+import org.openrdf.model.Model;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.Rio;
+import org.openrdf.rio.UnsupportedRDFormatException;
+import org.restlet.data.MediaType;
+import org.restlet.data.Status;
+import org.restlet.representation.ByteArrayRepresentation;
+import org.restlet.representation.Representation;
+import org.restlet.representation.Variant;
+import org.restlet.resource.Get;
+import org.restlet.resource.ResourceException;
+import org.semanticweb.owlapi.model.IRI;
+
+import com.github.podd.api.InferenceStatus;
+import com.github.podd.exception.UnmanagedSchemaException;
+import com.github.podd.restlet.PoddAction;
+import com.github.podd.utils.InferredOWLOntologyID;
+import com.github.podd.utils.OntologyUtils;
+import com.github.podd.utils.PODD;
+import com.github.podd.utils.PoddWebConstants;
+
+/**
+ * Service that reports whether the inferred statements for an artifact version have been
+ * computed, for artifacts that were loaded or updated with background inferencing.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class InferenceStatusResourceImpl extends AbstractPoddResourceImpl
+{
+    /**
+     * Get the identifiers for the artifact along with its {@link InferenceStatus}.
+     */
+    @Get(":rdf|rj|json|ttl")
+    public Representation getInferenceStatusRdf(final Representation entity, final Variant variant)
+        throws ResourceException
+    {
+        this.log.debug("getInferenceStatusRdf");
+        
+        final String artifactString = this.getQuery().getFirstValue(PoddWebConstants.KEY_ARTIFACT_IDENTIFIER, true);
+        
+        if(artifactString == null)
+        {
+            this.log.error("Artifact ID not submitted");
+            throw new ResourceException(Status.CLIENT_ERROR_BAD_REQUEST, "Artifact ID not submitted");
+        }
+        
+        final String versionString =
+                this.getQuery().getFirstValue(PoddWebConstants.KEY_ARTIFACT_VERSION_IDENTIFIER, true);
+        
+        final Model resultModel = new LinkedHashModel();
+        try
+        {
+            InferredOWLOntologyID ontologyID = null;
+            if(versionString == null)
+            {
+                ontologyID = this.getPoddArtifactManager().getArtifact(IRI.create(artifactString));
+            }
+            else
+            {
+                ontologyID =
+                        this.getPoddArtifactManager()
+                                .getArtifact(IRI.create(artifactString), IRI.create(versionString));
+            }
+            
+            if(this.getPoddArtifactManager().isPublished(ontologyID))
+            {
+                this.checkAuthentication(PoddAction.PUBLISHED_ARTIFACT_READ, ontologyID.getOntologyIRI().toOpenRDFURI());
+            }
+            else
+            {
+                this.checkAuthentication(PoddAction.UNPUBLISHED_ARTIFACT_READ, ontologyID.getOntologyIRI()
+                        .toOpenRDFURI());
+            }
+            
+            final InferenceStatus status = this.getPoddArtifactManager().getInferenceStatus(ontologyID);
+            
+            OntologyUtils.ontologyIDToRDF(ontologyID, resultModel, true);
+            resultModel.add(ontologyID.getVersionIRI().toOpenRDFURI(), PODD.PODD_BASE_INFERENCE_STATUS,
+                    PODD.VF.createLiteral(status.name()));
+        }
+        catch(final UnmanagedSchemaException e)
+        {
+            throw new ResourceException(Status.CLIENT_ERROR_NOT_FOUND, "Could not find the given artifact", e);
+        }
+        catch(final OpenRDFException e)
+        {
+            throw new ResourceException(Status.SERVER_ERROR_INTERNAL, "Could not find the inference status", e);
+        }
+        
+        final ByteArrayOutputStream output = new ByteArrayOutputStream(8096);
+        final RDFFormat outputFormat =
+                Rio.getWriterFormatForMIMEType(variant.getMediaType().getName(), RDFFormat.RDFXML);
+        try
+        {
+            Rio.write(resultModel, output, outputFormat);
+        }
+        catch(final OpenRDFException e)
+        {
+            throw new ResourceException(Status.SERVER_ERROR_INTERNAL, "Could not create response", e);
+        }
+        catch(final UnsupportedRDFormatException e)
+        {
+            throw new ResourceException(Status.SERVER_ERROR_INTERNAL, "Could not parse input format", e);
+        }
+        
+        return new ByteArrayRepresentation(output.toByteArray(), MediaType.valueOf(outputFormat.getDefaultMIMEType()));
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * PODD is an OWL ontology database used for scientific project management
+ *
+ * Copyright (C) 2009-2013 The University Of Queensland
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.podd.resources;
+
+import java.io.ByteArrayOutputStream;
+
+import org.openrdf.OpenRDFException;
+import org.openrdf.model.Model;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.Rio;
+import org.openrdf.rio.UnsupportedRDFormatException;
+import org.restlet.data.MediaType;
+import org.restlet.data.Status;
+import org.restlet.representation.ByteArrayRepresentation;
+import org.restlet.representation.Representation;
+import org.restlet.representation.Variant;
+import org.restlet.resource.Get;
+import org.restlet.resource.ResourceException;
+
+import com.github.podd.restlet.PoddAction;
+import com.github.podd.utils.PODD;
+import com.github.podd.utils.QueryMetrics;
+
+/**
+ * Administration service that provides the timing statistics for the queries run by PODD.
+ *
+ * Queries are recorded if they are run through the helper methods in
+ * {@link com.github.podd.utils.RdfUtility}. The user supplied queries in {@link SparqlResourceImpl}
+ * are also recorded, under the name "sparqlResource". The temporary URI queries in
+ * {@link com.github.podd.impl.purl.PoddPurlManagerImpl} stream their results and are not recorded.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class QueryMetricsResourceImpl extends AbstractPoddResourceImpl
+{
+    /**
+     * Get the statistics for each named query, as recorded by {@link QueryMetrics}.
+     */
+    @Get(":rdf|rj|json|ttl")
+    public Representation getQueryMetricsRdf(final Representation entity, final Variant variant)
+        throws ResourceException
+    {
+        this.log.debug("getQueryMetricsRdf");
+        
+        this.checkAuthentication(PoddAction.QUERY_METRICS_READ);
+        
+        final Model resultModel = QueryMetrics.getInstance().toModel(new LinkedHashModel());
+        resultModel.setNamespace("metrics", PODD.METRICS);
+        
+        final ByteArrayOutputStream output = new ByteArrayOutputStream(8096);
+        final RDFFormat outputFormat =
+                Rio.getWriterFormatForMIMEType(variant.getMediaType().getName(), RDFFormat.RDFXML);
+        try
+        {
+            Rio.write(resultModel, output, outputFormat);
+        }
+        catch(final OpenRDFException e)
+        {
+            throw new ResourceException(Status.SERVER_ERROR_INTERNAL, "Could not create response", e);
+        }
+        catch(final UnsupportedRDFormatException e)
+        {
+            throw new ResourceException(Status.SERVER_ERROR_INTERNAL, "Could not parse input format", e);
+        }
+        
+        return new ByteArrayRepresentation(output.toByteArray(), MediaType.valueOf(outputFormat.getDefaultMIMEType()));
+    }
+}
@@ -97,6 +97,10 @@ public class SearchOntologyResourceImpl extends AbstractPoddResourceImpl
             }
         }
         
+        // include subtypes - optional parameter
+        final boolean includeSubTypes =
+                Boolean.valueOf(this.getQuery().getFirstValue(PoddWebConstants.KEY_SEARCH_INCLUDE_SUBTYPES, true));
+        
         this.log.debug("requesting search ({}): {}, {}, {}", variant.getMediaType().getName(), searchTerm, artifactUri,
                 searchTypes);
         
@@ -118,7 +122,7 @@ public class SearchOntologyResourceImpl extends AbstractPoddResourceImpl
         {
             results =
                     this.getPoddArtifactManager().searchForOntologyLabels(ontologyID, searchTerm,
-                            set.toArray(new URI[0]));
+                            set.toArray(new URI[0]), includeSubTypes);
         }
         catch(final OpenRDFException | UnmanagedSchemaIRIException | SchemaManifestException
                 | UnsupportedRDFormatException | IOException | UnmanagedArtifactIRIException
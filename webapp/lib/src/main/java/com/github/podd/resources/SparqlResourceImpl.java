@@ -16,33 +16,58 @@
  */
 package com.github.podd.resources;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.openrdf.OpenRDFException;
-import org.openrdf.model.Model;
+import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
-import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.BooleanQuery;
 import org.openrdf.query.GraphQuery;
+import org.openrdf.query.GraphQueryResult;
+import org.openrdf.query.MalformedQueryException;
+import org.openrdf.query.Query;
+import org.openrdf.query.QueryInterruptedException;
 import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQuery;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.query.algebra.Distinct;
+import org.openrdf.query.algebra.Group;
+import org.openrdf.query.algebra.Order;
+import org.openrdf.query.algebra.Slice;
+import org.openrdf.query.algebra.helpers.QueryModelVisitorBase;
 import org.openrdf.query.impl.DatasetImpl;
+import org.openrdf.query.parser.ParsedBooleanQuery;
+import org.openrdf.query.parser.ParsedGraphQuery;
+import org.openrdf.query.parser.ParsedQuery;
+import org.openrdf.query.parser.ParsedTupleQuery;
+import org.openrdf.query.parser.QueryParserUtil;
+import org.openrdf.query.resultio.BooleanQueryResultFormat;
+import org.openrdf.query.resultio.QueryResultIO;
+import org.openrdf.query.resultio.TupleQueryResultFormat;
+import org.openrdf.query.resultio.TupleQueryResultWriter;
 import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryException;
 import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFWriter;
 import org.openrdf.rio.Rio;
 import org.openrdf.rio.UnsupportedRDFormatException;
-import org.openrdf.rio.helpers.StatementCollector;
 import org.restlet.data.MediaType;
 import org.restlet.data.Status;
 import org.restlet.ext.html.FormDataSet;
-import org.restlet.representation.ByteArrayRepresentation;
+import org.restlet.representation.OutputRepresentation;
 import org.restlet.representation.Representation;
 import org.restlet.representation.Variant;
 import org.restlet.resource.Get;
@@ -60,17 +85,26 @@ import com.github.podd.exception.UnmanagedSchemaIRIException;
 import com.github.podd.restlet.PoddAction;
 import com.github.podd.utils.InferredOWLOntologyID;
 import com.github.podd.utils.PoddWebConstants;
+import com.github.podd.utils.QueryMetrics;
 
 /**
  * Service for executing SPARQL queries over specified artifacts (and their Schema ontologies) that
  * users have access to.
+ * <p>
+ * Artifacts that import the same schema ontologies are stored in the same repository, and are
+ * queried together over the union of their contexts, so query patterns may match across those
+ * artifacts. Artifacts in different repositories are queried separately and the results are
+ * merged, removing duplicate statements from CONSTRUCT and DESCRIBE queries, and duplicate
+ * solutions from SELECT DISTINCT queries. Aggregates, GROUP BY, ORDER BY, LIMIT and OFFSET cannot be
+ * merged correctly, so queries using them are rejected unless all of the artifacts are stored in
+ * the same repository.
  *
  * @author Peter Ansell p_ansell@yahoo.com
  *
  */
 public class SparqlResourceImpl extends AbstractPoddResourceImpl
 {
-    @Get(":rdf|rj|json|ttl")
+    @Get(":rdf|rj|json|ttl|srx|srj")
     public Representation getSparqlRdf(final Variant variant) throws ResourceException
     {
         // TODO: Support an interactive HTML page that users can enter queries
@@ -130,7 +164,7 @@ public class SparqlResourceImpl extends AbstractPoddResourceImpl
         }
     }
     
-    @Post(":rdf|rj|json|ttl")
+    @Post(":rdf|rj|json|ttl|srx|srj")
     public Representation postSparqlRdf(final Representation entity, final Variant variant) throws ResourceException
     {
         this.log.debug("postSparqlRdf");
@@ -309,93 +343,167 @@ public class SparqlResourceImpl extends AbstractPoddResourceImpl
                     "You do not have permission to view one or more of those artifacts, so the SPARQL query was not able to be performed right now.");
         }
         
-        final Model results = new LinkedHashModel();
-        
-        RepositoryConnection managementConnection = null;
+        final ParsedQuery parsedQuery;
         try
         {
-            final ConcurrentMap<Set<? extends OWLOntologyID>, RepositoryConnection> cache =
-                    new ConcurrentHashMap<Set<? extends OWLOntologyID>, RepositoryConnection>();
-            
-            managementConnection = this.getPoddRepositoryManager().getManagementRepositoryConnection();
-            try
+            parsedQuery = QueryParserUtil.parseQuery(QueryLanguage.SPARQL, sparqlQuery, null);
+        }
+        catch(final MalformedQueryException e)
+        {
+            this.log.error("SPARQL query error: {}", e.getMessage());
+            this.log.error("SPARQL query error from: {}", sparqlQuery);
+            throw new ResourceException(Status.CLIENT_ERROR_BAD_REQUEST, "Could not parse SPARQL query", e);
+        }
+        
+        final Map<Set<? extends OWLOntologyID>, Set<URI>> queryPlan =
+                this.planQuery(artifactIds, includeConcrete, includeInferred, includeSchema);
+        
+        if(queryPlan.size() > 1 && SparqlResourceImpl.hasUnmergeableModifiers(parsedQuery))
+        {
+            this.log.error("SPARQL query with aggregates or solution modifiers over multiple repositories: {}",
+                    sparqlQuery);
+            throw new ResourceException(Status.CLIENT_ERROR_BAD_REQUEST,
+                    "SPARQL queries using aggregates, GROUP BY, ORDER BY, LIMIT or OFFSET can only be run over "
+                            + "artifacts that import the same schema ontologies");
+        }
+        
+        final int timeoutSeconds =
+                Integer.parseInt(this.getPoddApplication().getPropertyUtil().get(PoddWebConstants.PROPERTY_SPARQL_QUERY_TIMEOUT,
+                        PoddWebConstants.DEFAULT_SPARQL_QUERY_TIMEOUT));
+        final long resultLimit =
+                Long.parseLong(this.getPoddApplication().getPropertyUtil().get(PoddWebConstants.PROPERTY_SPARQL_RESULT_LIMIT,
+                        PoddWebConstants.DEFAULT_SPARQL_RESULT_LIMIT));
+        
+        final String mimeType = variant.getMediaType().getName();
+        final MediaType resultMediaType;
+        if(parsedQuery instanceof ParsedTupleQuery)
+        {
+            resultMediaType =
+                    MediaType.valueOf(QueryResultIO.getWriterFormatForMIMEType(mimeType,
+                            this.getDefaultTupleFormat(variant)).getDefaultMIMEType());
+        }
+        else if(parsedQuery instanceof ParsedBooleanQuery)
+        {
+            resultMediaType =
+                    MediaType.valueOf(QueryResultIO.getBooleanWriterFormatForMIMEType(mimeType,
+                            this.getDefaultBooleanFormat(variant)).getDefaultMIMEType());
+        }
+        else
+        {
+            resultMediaType =
+                    MediaType.valueOf(Rio.getWriterFormatForMIMEType(mimeType, RDFFormat.RDFXML).getDefaultMIMEType());
+        }
+        
+        // The queries are evaluated as the response is written, so that results are streamed to
+        // the client instead of being collected in memory
+        return new OutputRepresentation(resultMediaType)
             {
-                for(final InferredOWLOntologyID ontologyID : artifactIds)
+                @Override
+                public void write(final OutputStream outputStream) throws IOException
                 {
-                    final Set<? extends OWLOntologyID> schemaImports =
-                            this.getPoddArtifactManager().getSchemaImports(ontologyID);
-                    RepositoryConnection permanentConnection = cache.get(schemaImports);
-                    if(permanentConnection == null)
-                    {
-                        RepositoryConnection nextConnection =
-                                this.getPoddRepositoryManager().getPermanentRepositoryConnection(schemaImports);
-                        final RepositoryConnection putIfAbsent = cache.putIfAbsent(schemaImports, nextConnection);
-                        if(putIfAbsent != null)
-                        {
-                            nextConnection = putIfAbsent;
-                        }
-                        permanentConnection = nextConnection;
-                    }
-                    final Set<URI> contextSet = new HashSet<>();
-                    if(includeConcrete)
-                    {
-                        contextSet.addAll(Arrays.asList(this.getPoddSesameManager().versionContexts(ontologyID)));
-                    }
-                    if(includeInferred)
-                    {
-                        contextSet.addAll(Arrays.asList(this.getPoddSesameManager().inferredContexts(ontologyID)));
-                    }
-                    if(includeSchema)
-                    {
-                        contextSet.addAll(Arrays.asList(this.getPoddSesameManager().schemaContexts(ontologyID,
-                                managementConnection, this.getPoddRepositoryManager().getSchemaManagementGraph(),
-                                this.getPoddRepositoryManager().getArtifactManagementGraph())));
-                    }
-                    // TODO: Support cross-artifact queries if they all import the
-                    // same schemas
-                    final URI[] contexts = contextSet.toArray(new URI[0]);
-                    // MUST not perform queries on all contexts
-                    if(this.getPoddRepositoryManager().safeContexts(contexts))
+                    try
                     {
-                        final GraphQuery query =
-                                permanentConnection.prepareGraphQuery(QueryLanguage.SPARQL, sparqlQuery);
-                        
-                        final DatasetImpl dataset = new DatasetImpl();
-                        
-                        for(final URI nextUri : contexts)
-                        {
-                            dataset.addDefaultGraph(nextUri);
-                            dataset.addNamedGraph(nextUri);
-                        }
-                        
-                        query.setDataset(dataset);
-                        
-                        query.evaluate(new StatementCollector(results));
+                        SparqlResourceImpl.this.evaluateQuery(sparqlQuery, parsedQuery, queryPlan, resultMediaType,
+                                timeoutSeconds, resultLimit, outputStream);
                     }
-                    else
+                    catch(final OpenRDFException | RepositoryNotFoundException e)
                     {
-                        this.log.error(
-                                "Could not determine contexts for artifact, or included an unsafe context: ontology=<{}> contexts=<{}>",
-                                ontologyID, contextSet);
+                        SparqlResourceImpl.this.log.error("SPARQL query error from: " + sparqlQuery, e);
+                        throw new IOException("Failed to evaluate SPARQL query", e);
                     }
                 }
-            }
-            finally
+            };
+    }
+    
+    /**
+     * Checks whether the query uses aggregates, GROUP BY, ORDER BY, LIMIT or OFFSET anywhere, as
+     * the results of these cannot be computed by merging the results from separate repositories.
+     */
+    private static boolean hasUnmergeableModifiers(final ParsedQuery parsedQuery)
+    {
+        final AtomicBoolean found = new AtomicBoolean(false);
+        parsedQuery.getTupleExpr().visit(new QueryModelVisitorBase<RuntimeException>()
             {
-                for(final RepositoryConnection nextPermanentConnection : cache.values())
+                @Override
+                public void meet(final Group node)
                 {
-                    try
-                    {
-                        if(nextPermanentConnection != null)
-                        {
-                            nextPermanentConnection.close();
-                        }
-                    }
-                    catch(final Throwable e)
+                    found.set(true);
+                }
+                
+                @Override
+                public void meet(final Order node)
+                {
+                    found.set(true);
+                }
+                
+                @Override
+                public void meet(final Slice node)
+                {
+                    found.set(true);
+                }
+            });
+        return found.get();
+    }
+    
+    /**
+     * Groups the contexts for the given artifacts by their schema imports, which determine the
+     * permanent repository that the artifacts are stored in, so that a single query can be run
+     * over the union of the contexts in each repository.
+     */
+    private Map<Set<? extends OWLOntologyID>, Set<URI>> planQuery(final Set<InferredOWLOntologyID> artifactIds,
+            final boolean includeConcrete, final boolean includeInferred, final boolean includeSchema)
+        throws ResourceException
+    {
+        final Map<Set<? extends OWLOntologyID>, Set<URI>> queryPlan =
+                new LinkedHashMap<Set<? extends OWLOntologyID>, Set<URI>>();
+        
+        RepositoryConnection managementConnection = null;
+        try
+        {
+            managementConnection = this.getPoddRepositoryManager().getManagementRepositoryConnection();
+            for(final InferredOWLOntologyID ontologyID : artifactIds)
+            {
+                final Set<? extends OWLOntologyID> schemaImports =
+                        this.getPoddArtifactManager().getSchemaImports(ontologyID);
+                Set<URI> contextSet = queryPlan.get(schemaImports);
+                final boolean newGroup = contextSet == null;
+                if(newGroup)
+                {
+                    contextSet = new LinkedHashSet<URI>();
+                }
+                
+                final Set<URI> artifactContexts = new LinkedHashSet<URI>();
+                if(includeConcrete)
+                {
+                    artifactContexts.addAll(Arrays.asList(this.getPoddSesameManager().versionContexts(ontologyID)));
+                }
+                if(includeInferred)
+                {
+                    artifactContexts.addAll(Arrays.asList(this.getPoddSesameManager().inferredContexts(ontologyID)));
+                }
+                // Artifacts with the same schema imports share the same schema contexts
+                if(includeSchema && newGroup)
+                {
+                    artifactContexts.addAll(Arrays.asList(this.getPoddSesameManager().schemaContexts(ontologyID,
+                            managementConnection, this.getPoddRepositoryManager().getSchemaManagementGraph(),
+                            this.getPoddRepositoryManager().getArtifactManagementGraph())));
+                }
+                
+                // MUST not perform queries on all contexts
+                if(this.getPoddRepositoryManager().safeContexts(artifactContexts.toArray(new URI[0])))
+                {
+                    contextSet.addAll(artifactContexts);
+                    if(newGroup)
                     {
-                        this.log.error("Found exception closing connection", e);
+                        queryPlan.put(schemaImports, contextSet);
                     }
                 }
+                else
+                {
+                    this.log.error(
+                            "Could not determine contexts for artifact, or included an unsafe context: ontology=<{}> contexts=<{}>",
+                            ontologyID, artifactContexts);
+                }
             }
         }
         catch(final UnmanagedSchemaIRIException e)
@@ -416,8 +524,7 @@ public class SparqlResourceImpl extends AbstractPoddResourceImpl
         }
         catch(final OpenRDFException e)
         {
-            this.log.error("SPARQL query error: {}", e.getMessage());
-            this.log.error("SPARQL query error from: {}", sparqlQuery);
+            this.log.error("Repository exception occurred: {}", e.getMessage());
             throw new ResourceException(Status.CLIENT_ERROR_BAD_REQUEST, "Repository exception occurred", e);
         }
         catch(final SchemaManifestException e)
@@ -435,11 +542,6 @@ public class SparqlResourceImpl extends AbstractPoddResourceImpl
             this.log.error("IO exception: {}", e.getMessage());
             throw new ResourceException(Status.CLIENT_ERROR_BAD_REQUEST, "Could not find a requested artifact", e);
         }
-        catch(final RepositoryNotFoundException e)
-        {
-            this.log.error("IO exception: {}", e.getMessage());
-            throw new ResourceException(Status.CLIENT_ERROR_BAD_REQUEST, "Could not find a requested artifact", e);
-        }
         finally
         {
             if(managementConnection != null)
@@ -455,22 +557,173 @@ public class SparqlResourceImpl extends AbstractPoddResourceImpl
             }
         }
         
-        // container for results
-        final ByteArrayOutputStream output = new ByteArrayOutputStream(8096);
+        return queryPlan;
+    }
+    
+    /**
+     * Evaluates the query once for each group of contexts in the query plan, writing the combined
+     * results to the given output stream. Duplicate statements are never written, and duplicate
+     * solutions are not written for SELECT DISTINCT queries over multiple groups. Evaluation stops
+     * when the result limit is reached, and fails if the total time taken exceeds the timeout.
+     */
+    private void evaluateQuery(final String sparqlQuery, final ParsedQuery parsedQuery,
+            final Map<Set<? extends OWLOntologyID>, Set<URI>> queryPlan, final MediaType resultMediaType,
+            final int timeoutSeconds, final long resultLimit, final OutputStream outputStream)
+        throws OpenRDFException, RepositoryNotFoundException, IOException
+    {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
         
-        final RDFFormat resultFormat =
-                Rio.getWriterFormatForMIMEType(variant.getMediaType().getName(), RDFFormat.RDFXML);
-        // - prepare response
-        try
+        RDFWriter rdfWriter = null;
+        TupleQueryResultWriter tupleWriter = null;
+        boolean booleanResult = false;
+        long resultCount = 0;
+        
+        // Both sets are limited in size by the result limit
+        final Set<Statement> writtenStatements = new HashSet<Statement>();
+        final Set<BindingSet> distinctSolutions =
+                queryPlan.size() > 1 && parsedQuery.getTupleExpr() instanceof Distinct ? new HashSet<BindingSet>()
+                        : null;
+        
+        if(parsedQuery instanceof ParsedTupleQuery)
         {
-            Rio.write(results, output, resultFormat);
+            tupleWriter =
+                    QueryResultIO.createWriter(QueryResultIO.getWriterFormatForMIMEType(resultMediaType.getName()),
+                            outputStream);
+            tupleWriter.startQueryResult(new ArrayList<String>(parsedQuery.getTupleExpr().getBindingNames()));
         }
-        catch(final OpenRDFException e)
+        else if(parsedQuery instanceof ParsedGraphQuery)
         {
-            this.log.error("Error while preparing response: {}", e.getMessage());
-            throw new ResourceException(Status.SERVER_ERROR_INTERNAL, "Error while preparing response", e);
+            rdfWriter = Rio.createWriter(Rio.getWriterFormatForMIMEType(resultMediaType.getName()), outputStream);
+            rdfWriter.startRDF();
         }
         
-        return new ByteArrayRepresentation(output.toByteArray(), MediaType.valueOf(resultFormat.getDefaultMIMEType()));
+        for(final Entry<Set<? extends OWLOntologyID>, Set<URI>> nextGroup : queryPlan.entrySet())
+        {
+            if(resultCount >= resultLimit || booleanResult)
+            {
+                break;
+            }
+            
+            final long remainingSeconds = TimeUnit.NANOSECONDS.toSeconds(deadline - System.nanoTime());
+            if(remainingSeconds <= 0)
+            {
+                throw new QueryInterruptedException("SPARQL query exceeded the timeout of " + timeoutSeconds
+                        + " seconds");
+            }
+            
+            final URI[] contexts = nextGroup.getValue().toArray(new URI[0]);
+            final DatasetImpl dataset = new DatasetImpl();
+            for(final URI nextUri : contexts)
+            {
+                dataset.addDefaultGraph(nextUri);
+                dataset.addNamedGraph(nextUri);
+            }
+            
+            final RepositoryConnection permanentConnection =
+                    this.getPoddRepositoryManager().getPermanentRepositoryConnection(nextGroup.getKey());
+            try
+            {
+                final Query query = permanentConnection.prepareQuery(QueryLanguage.SPARQL, sparqlQuery);
+                query.setDataset(dataset);
+                query.setMaxQueryTime((int)remainingSeconds);
+                
+                final long before = System.nanoTime();
+                long groupResults = 0;
+                if(tupleWriter != null)
+                {
+                    final TupleQueryResult result = ((TupleQuery)query).evaluate();
+                    try
+                    {
+                        while(resultCount < resultLimit && result.hasNext())
+                        {
+                            final BindingSet nextSolution = result.next();
+                            if(distinctSolutions == null || distinctSolutions.add(nextSolution))
+                            {
+                                tupleWriter.handleSolution(nextSolution);
+                                resultCount++;
+                                groupResults++;
+                            }
+                        }
+                    }
+                    finally
+                    {
+                        result.close();
+                    }
+                }
+                else if(rdfWriter != null)
+                {
+                    final GraphQueryResult result = ((GraphQuery)query).evaluate();
+                    try
+                    {
+                        for(final Entry<String, String> nextNamespace : result.getNamespaces().entrySet())
+                        {
+                            rdfWriter.handleNamespace(nextNamespace.getKey(), nextNamespace.getValue());
+                        }
+                        while(resultCount < resultLimit && result.hasNext())
+                        {
+                            final Statement nextStatement = result.next();
+                            if(writtenStatements.add(nextStatement))
+                            {
+                                rdfWriter.handleStatement(nextStatement);
+                                resultCount++;
+                                groupResults++;
+                            }
+                        }
+                    }
+                    finally
+                    {
+                        result.close();
+                    }
+                }
+                else
+                {
+                    booleanResult = ((BooleanQuery)query).evaluate();
+                    groupResults = booleanResult ? 1 : 0;
+                }
+                QueryMetrics.getInstance().record("sparqlResource", query, contexts,
+                        System.nanoTime() - before, groupResults);
+            }
+            finally
+            {
+                permanentConnection.close();
+            }
+        }
+        
+        if(resultCount >= resultLimit)
+        {
+            this.log.warn("SPARQL query results were truncated at the limit of {} results", resultLimit);
+        }
+        
+        if(tupleWriter != null)
+        {
+            tupleWriter.endQueryResult();
+        }
+        else if(rdfWriter != null)
+        {
+            rdfWriter.endRDF();
+        }
+        else
+        {
+            QueryResultIO.writeBoolean(booleanResult,
+                    QueryResultIO.getBooleanWriterFormatForMIMEType(resultMediaType.getName()), outputStream);
+        }
+    }
+    
+    private TupleQueryResultFormat getDefaultTupleFormat(final Variant variant)
+    {
+        if(variant.getMediaType().getSubType().contains("json"))
+        {
+            return TupleQueryResultFormat.JSON;
+        }
+        return TupleQueryResultFormat.SPARQL;
+    }
+    
+    private BooleanQueryResultFormat getDefaultBooleanFormat(final Variant variant)
+    {
+        if(variant.getMediaType().getSubType().contains("json"))
+        {
+            return BooleanQueryResultFormat.JSON;
+        }
+        return BooleanQueryResultFormat.SPARQL;
     }
 }
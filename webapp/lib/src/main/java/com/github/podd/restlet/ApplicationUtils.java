@@ -27,13 +27,20 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.openrdf.OpenRDFException;
 import org.openrdf.model.Model;
 import org.openrdf.model.Resource;
 import org.openrdf.model.URI;
+import org.openrdf.model.Value;
 import org.openrdf.model.util.GraphUtil;
 import org.openrdf.repository.Repository;
 import org.openrdf.repository.RepositoryConnection;
@@ -52,6 +59,7 @@ import org.restlet.ext.freemarker.ContextTemplateLoader;
 import org.restlet.security.ChallengeAuthenticator;
 import org.restlet.security.Realm;
 import org.restlet.security.Role;
+import org.semanticweb.owlapi.model.IRI;
 import org.semanticweb.owlapi.model.OWLException;
 import org.semanticweb.owlapi.model.OWLOntologyID;
 import org.semanticweb.owlapi.model.OWLOntologyManagerFactory;
@@ -64,11 +72,9 @@ import org.slf4j.LoggerFactory;
 import com.github.ansell.propertyutil.PropertyUtil;
 import com.github.ansell.restletutils.FixedRedirectCookieAuthenticator;
 import com.github.podd.api.PoddArtifactManager;
-import com.github.podd.api.PoddOWLManager;
+import com.github.podd.api.InferredAxiomGeneratorType;
 import com.github.podd.api.PoddSchemaManager;
-import com.github.podd.api.PoddSesameManager;
 import com.github.podd.api.data.DataReferenceManager;
-import com.github.podd.api.data.PoddDataRepositoryManager;
 import com.github.podd.api.purl.PoddPurlManager;
 import com.github.podd.api.purl.PoddPurlProcessorFactory;
 import com.github.podd.api.purl.PoddPurlProcessorFactoryRegistry;
@@ -80,6 +86,7 @@ import com.github.podd.impl.PoddSchemaManagerImpl;
 import com.github.podd.impl.PoddSesameManagerImpl;
 import com.github.podd.impl.data.DataReferenceManagerImpl;
 import com.github.podd.impl.data.PoddDataRepositoryManagerImpl;
+import com.github.podd.impl.data.SSHConnectionPool;
 import com.github.podd.impl.purl.PoddPurlManagerImpl;
 import com.github.podd.impl.purl.UUIDPurlProcessorFactoryImpl;
 import com.github.podd.utils.DebugUtils;
@@ -89,6 +96,7 @@ import com.github.podd.utils.PoddRoles;
 import com.github.podd.utils.PoddUser;
 import com.github.podd.utils.PoddUserStatus;
 import com.github.podd.utils.PoddWebConstants;
+import com.github.podd.utils.QueryMetrics;
 
 import freemarker.ext.beans.BeansWrapper;
 import freemarker.template.Configuration;
@@ -276,9 +284,12 @@ public class ApplicationUtils
         final String poddHome = props.get(PoddWebConstants.PROPERTY_PODD_HOME, "");
         final Path poddHomePath = Paths.get(poddHome);
         
-        application.setPoddRepositoryManager(new PoddRepositoryManagerImpl(nextManagementRepository,
-                repositoryImplConfig, props.get(PoddWebConstants.PROPERTY_PERMANENT_SESAME_REPOSITORY_SERVER,
-                        PoddWebConstants.DEFAULT_PERMANENT_SESAME_REPOSITORY_SERVER), poddHomePath, props));
+        final PoddRepositoryManagerImpl nextRepositoryManager =
+                new PoddRepositoryManagerImpl(nextManagementRepository, repositoryImplConfig, props.get(
+                        PoddWebConstants.PROPERTY_PERMANENT_SESAME_REPOSITORY_SERVER,
+                        PoddWebConstants.DEFAULT_PERMANENT_SESAME_REPOSITORY_SERVER), poddHomePath, props);
+        nextRepositoryManager.init();
+        application.setPoddRepositoryManager(nextRepositoryManager);
         
         // File Reference Manager
         final DataReferenceManager nextDataReferenceManager = new DataReferenceManagerImpl();
@@ -313,13 +324,80 @@ public class ApplicationUtils
             ApplicationUtils.log.error("OWLReasonerFactory was null");
         }
         
-        final PoddOWLManager nextOWLManager =
-                new PoddOWLManagerImpl(ontologyManagers.iterator().next(), reasonerFactory);
+        final PoddOWLManagerImpl nextOWLManager =
+                new PoddOWLManagerImpl(ontologyManagers.iterator().next(), reasonerFactory, Integer.parseInt(props.get(
+                        PoddWebConstants.PROPERTY_OWL_INFERENCE_MANAGER_POOL_SIZE,
+                        Integer.toString(Runtime.getRuntime().availableProcessors()))));
+        nextOWLManager.setDefaultInferredAxiomGenerators(InferredAxiomGeneratorType.parse(props.get(
+                PoddWebConstants.PROPERTY_OWL_INFERENCE_GENERATORS, "")));
+        if(Boolean.valueOf(props.get(PoddWebConstants.PROPERTY_OWL_INFERENCE_GENERATORS_PARALLEL,
+                PoddWebConstants.DEFAULT_OWL_INFERENCE_GENERATORS_PARALLEL)))
+        {
+            final int generatorThreads =
+                    Integer.parseInt(props.get(PoddWebConstants.PROPERTY_OWL_INFERENCE_GENERATORS_THREADS,
+                            PoddWebConstants.DEFAULT_OWL_INFERENCE_GENERATORS_THREADS));
+            final ThreadPoolExecutor generatorExecutor =
+                    new ThreadPoolExecutor(generatorThreads, generatorThreads, 60, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+                            {
+                                private final AtomicInteger threadCount = new AtomicInteger();
+                                
+                                @Override
+                                public Thread newThread(final Runnable runnable)
+                                {
+                                    final Thread result =
+                                            new Thread(runnable, "podd-inference-generator-"
+                                                    + this.threadCount.incrementAndGet());
+                                    result.setDaemon(true);
+                                    return result;
+                                }
+                            });
+            generatorExecutor.allowCoreThreadTimeOut(true);
+            nextOWLManager.setInferredAxiomGeneratorExecutor(generatorExecutor);
+        }
         
         // File Repository Manager
-        final PoddDataRepositoryManager nextDataRepositoryManager = new PoddDataRepositoryManagerImpl();
+        final int sshMaxConnections =
+                Integer.parseInt(props.get(PoddWebConstants.PROPERTY_SSH_POOL_MAX_CONNECTIONS,
+                        PoddWebConstants.DEFAULT_SSH_POOL_MAX_CONNECTIONS));
+        SSHConnectionPool.getInstance().setMaxConnections(sshMaxConnections);
+        SSHConnectionPool.getInstance().setIdleTimeoutMillis(TimeUnit.SECONDS.toMillis(Long.parseLong(props.get(
+                PoddWebConstants.PROPERTY_SSH_POOL_IDLE_TIMEOUT, PoddWebConstants.DEFAULT_SSH_POOL_IDLE_TIMEOUT))));
+        final PoddDataRepositoryManagerImpl nextDataRepositoryManager = new PoddDataRepositoryManagerImpl();
         nextDataRepositoryManager.setRepositoryManager(application.getPoddRepositoryManager());
         nextDataRepositoryManager.setOWLManager(nextOWLManager);
+        nextDataRepositoryManager.setVerificationCacheTtl(TimeUnit.SECONDS.toMillis(Long.parseLong(props.get(
+                PoddWebConstants.PROPERTY_DATA_REFERENCE_VERIFY_CACHE_TTL,
+                PoddWebConstants.DEFAULT_DATA_REFERENCE_VERIFY_CACHE_TTL))));
+        nextDataRepositoryManager.setMaxConcurrentDownloads(Integer.parseInt(props.get(
+                PoddWebConstants.PROPERTY_DATA_REFERENCE_DOWNLOAD_MAX_CONCURRENT,
+                PoddWebConstants.DEFAULT_DATA_REFERENCE_DOWNLOAD_MAX_CONCURRENT)));
+        final int verifyThreads =
+                Integer.parseInt(props.get(PoddWebConstants.PROPERTY_DATA_REFERENCE_VERIFY_THREADS,
+                        PoddWebConstants.DEFAULT_DATA_REFERENCE_VERIFY_THREADS));
+        if(verifyThreads > 1)
+        {
+            final ThreadPoolExecutor verifyExecutor =
+                    new ThreadPoolExecutor(verifyThreads, verifyThreads, 60, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+                            {
+                                private final AtomicInteger threadCount = new AtomicInteger();
+                                
+                                @Override
+                                public Thread newThread(final Runnable runnable)
+                                {
+                                    final Thread result =
+                                            new Thread(runnable, "podd-datareference-verify-"
+                                                    + this.threadCount.incrementAndGet());
+                                    result.setDaemon(true);
+                                    return result;
+                                }
+                            });
+            verifyExecutor.allowCoreThreadTimeOut(true);
+            nextDataRepositoryManager.setVerificationExecutor(verifyExecutor);
+            nextDataRepositoryManager.setMaxVerificationTasksPerAlias(Math.max(1,
+                    Math.min(verifyThreads, sshMaxConnections)));
+        }
         try
         {
             // TODO: Configure data repositories in a cleaner manner than this
@@ -333,14 +411,55 @@ public class ApplicationUtils
         
         application.setPoddDataRepositoryManager(nextDataRepositoryManager);
         
-        final PoddSesameManager poddSesameManager = new PoddSesameManagerImpl();
+        QueryMetrics.getInstance().setSlowQueryThresholdMillis(
+                Long.parseLong(props.get(PoddWebConstants.PROPERTY_QUERY_SLOW_THRESHOLD,
+                        PoddWebConstants.DEFAULT_QUERY_SLOW_THRESHOLD)));
+        
+        final PoddSesameManagerImpl poddSesameManager = new PoddSesameManagerImpl();
+        poddSesameManager.setLabelIndexEnabled(Boolean.valueOf(props.get(
+                PoddWebConstants.PROPERTY_SEARCH_LABEL_INDEX, PoddWebConstants.DEFAULT_SEARCH_LABEL_INDEX)));
         
         application.setPoddSchemaManager(new PoddSchemaManagerImpl());
         application.getPoddSchemaManager().setOwlManager(nextOWLManager);
         application.getPoddSchemaManager().setRepositoryManager(application.getPoddRepositoryManager());
         application.getPoddSchemaManager().setSesameManager(poddSesameManager);
         
-        application.setPoddArtifactManager(new PoddArtifactManagerImpl());
+        final PoddArtifactManagerImpl nextArtifactManager = new PoddArtifactManagerImpl();
+        nextArtifactManager.setStreamingUploads(Boolean.valueOf(props.get(PoddWebConstants.PROPERTY_UPLOAD_STREAMING,
+                PoddWebConstants.DEFAULT_UPLOAD_STREAMING)));
+        nextArtifactManager.setStagingSpillThreshold(Long.parseLong(props.get(
+                PoddWebConstants.PROPERTY_UPLOAD_STAGING_SPILL_THRESHOLD,
+                PoddWebConstants.DEFAULT_UPLOAD_STAGING_SPILL_THRESHOLD)));
+        nextArtifactManager.setIncrementalUpdates(Boolean.valueOf(props.get(
+                PoddWebConstants.PROPERTY_UPDATE_INCREMENTAL, PoddWebConstants.DEFAULT_UPDATE_INCREMENTAL)));
+        if(Boolean.valueOf(props.get(PoddWebConstants.PROPERTY_INFERENCE_ASYNCHRONOUS,
+                PoddWebConstants.DEFAULT_INFERENCE_ASYNCHRONOUS)))
+        {
+            final int inferenceThreads =
+                    Integer.parseInt(props.get(PoddWebConstants.PROPERTY_INFERENCE_THREADS,
+                            PoddWebConstants.DEFAULT_INFERENCE_THREADS));
+            final int inferenceQueueSize =
+                    Integer.parseInt(props.get(PoddWebConstants.PROPERTY_INFERENCE_QUEUE_SIZE,
+                            PoddWebConstants.DEFAULT_INFERENCE_QUEUE_SIZE));
+            final ThreadPoolExecutor inferenceExecutor =
+                    new ThreadPoolExecutor(inferenceThreads, inferenceThreads, 60, TimeUnit.SECONDS,
+                            new ArrayBlockingQueue<Runnable>(inferenceQueueSize), new ThreadFactory()
+                            {
+                                private final AtomicInteger threadCount = new AtomicInteger();
+                                
+                                @Override
+                                public Thread newThread(final Runnable runnable)
+                                {
+                                    final Thread result =
+                                            new Thread(runnable, "podd-inference-"
+                                                    + this.threadCount.incrementAndGet());
+                                    result.setDaemon(true);
+                                    return result;
+                                }
+                            });
+            nextArtifactManager.setInferenceExecutor(inferenceExecutor);
+        }
+        application.setPoddArtifactManager(nextArtifactManager);
         application.getPoddArtifactManager().setRepositoryManager(application.getPoddRepositoryManager());
         application.getPoddArtifactManager().setDataReferenceManager(nextDataReferenceManager);
         application.getPoddArtifactManager().setDataRepositoryManager(nextDataRepositoryManager);
@@ -351,6 +470,9 @@ public class ApplicationUtils
         
         ApplicationUtils.setupSchemas(application);
         
+        // Compute any inferences that were still pending when the application was last stopped
+        nextArtifactManager.resumePendingInferences();
+        
         final List<Role> roles = application.getRoles();
         // FIXME: Why does the list need to be cleared here?
         roles.clear();
@@ -362,6 +484,11 @@ public class ApplicationUtils
         
         // FIXME: Make this configurable
         nextRealm.setName("PODDRealm");
+        nextRealm.setAuthenticationCacheTtl(Long.parseLong(props.get(
+                PoddWebConstants.PROPERTY_AUTHENTICATION_CACHE_TTL, PoddWebConstants.DEFAULT_AUTHENTICATION_CACHE_TTL)));
+        nextRealm.setAuthenticationCacheMaxSize(Integer.parseInt(props.get(
+                PoddWebConstants.PROPERTY_AUTHENTICATION_CACHE_MAX_SIZE,
+                PoddWebConstants.DEFAULT_AUTHENTICATION_CACHE_MAX_SIZE)));
         
         // Check if there is a current admin, and only add our test admin user if there is no admin
         // in the system
@@ -451,6 +578,21 @@ public class ApplicationUtils
                 ApplicationUtils.log.debug("Schema manifest contents");
                 DebugUtils.printContents(model);
             }
+            
+            for(final Resource nextSchemaOntology : model.filter(null, PODD.PODD_SCHEMA_INFERENCE_GENERATOR, null)
+                    .subjects())
+            {
+                final StringBuilder generatorNames = new StringBuilder();
+                for(final Value nextGenerator : model.filter(nextSchemaOntology,
+                        PODD.PODD_SCHEMA_INFERENCE_GENERATOR, null).objects())
+                {
+                    generatorNames.append(nextGenerator.stringValue()).append(",");
+                }
+                poddArtifactManager.getOWLManager().setInferredAxiomGenerators(
+                        IRI.create(nextSchemaOntology.stringValue()),
+                        InferredAxiomGeneratorType.parse(generatorNames.toString()));
+            }
+            
             ApplicationUtils.log.debug("About to upload schema ontologies");
             
             // Returns an ordered list of the schema ontologies that were uploaded
@@ -53,11 +53,14 @@ import com.github.podd.api.PoddRepositoryManager;
 import com.github.podd.api.PoddSchemaManager;
 import com.github.podd.api.data.PoddDataRepositoryManager;
 import com.github.podd.exception.PoddRuntimeException;
+import com.github.podd.impl.PoddArtifactManagerImpl;
+import com.github.podd.impl.data.SSHConnectionPool;
 import com.github.podd.resources.AboutResourceImpl;
 import com.github.podd.resources.AddObjectResourceImpl;
 import com.github.podd.resources.ArtifactRolesResourceImpl;
 import com.github.podd.resources.CookieLoginResourceImpl;
 import com.github.podd.resources.DataReferenceAttachResourceImpl;
+import com.github.podd.resources.DataReferenceDownloadResourceImpl;
 import com.github.podd.resources.DeleteArtifactResourceImpl;
 import com.github.podd.resources.DeleteObjectResourceImpl;
 import com.github.podd.resources.EditArtifactResourceImpl;
@@ -67,8 +70,10 @@ import com.github.podd.resources.GetMetadataResourceImpl;
 import com.github.podd.resources.GetSchemaResourceImpl;
 import com.github.podd.resources.HelpResourceImpl;
 import com.github.podd.resources.IndexResourceImpl;
+import com.github.podd.resources.InferenceStatusResourceImpl;
 import com.github.podd.resources.ListArtifactsResourceImpl;
 import com.github.podd.resources.ListDataRepositoriesResourceImpl;
+import com.github.podd.resources.QueryMetricsResourceImpl;
 import com.github.podd.resources.SearchOntologyResourceImpl;
 import com.github.podd.resources.SparqlResourceImpl;
 import com.github.podd.resources.UploadArtifactResourceImpl;
@@ -148,6 +153,8 @@ public class PoddWebServiceApplicationImpl extends PoddWebServiceApplication
         this.getMetadataService().addExtension("ttl", MediaType.APPLICATION_RDF_TURTLE, true);
         this.getMetadataService().addExtension("n3", MediaType.TEXT_RDF_N3, true);
         this.getMetadataService().addExtension("nt", MediaType.TEXT_RDF_NTRIPLES, true);
+        this.getMetadataService().addExtension("srx", MediaType.APPLICATION_SPARQL_RESULTS_XML, true);
+        this.getMetadataService().addExtension("srj", MediaType.APPLICATION_SPARQL_RESULTS_JSON, true);
         this.getMetadataService().addExtension("nq",
                 MediaType.register("text/nquads", "The NQuads extension to the NTriples RDF serialisation"), true);
         
@@ -252,12 +259,18 @@ public class PoddWebServiceApplicationImpl extends PoddWebServiceApplication
     }
     
     /**
-     * Call this method to clean up resources used by PODD. At present it shuts down the Repository.
+     * Call this method to clean up resources used by PODD. At present it waits for background
+     * inferences and shuts down the Repository.
      */
     public void cleanUpResources()
     {
         try
         {
+            if(this.getPoddArtifactManager() instanceof PoddArtifactManagerImpl)
+            {
+                ((PoddArtifactManagerImpl)this.getPoddArtifactManager()).awaitInferences();
+            }
+            
             // Avoid NPE if setup failed and we want to shutdown immediately
             if(this.getPoddRepositoryManager() != null)
             {
@@ -269,6 +282,10 @@ public class PoddWebServiceApplicationImpl extends PoddWebServiceApplication
         {
             this.log.error("Repository Manager could not be shutdown", e);
         }
+        finally
+        {
+            SSHConnectionPool.getInstance().close();
+        }
     }
     
     /**
@@ -389,6 +406,11 @@ public class PoddWebServiceApplicationImpl extends PoddWebServiceApplication
         this.log.debug("attaching File Reference Attach service to path={}", attachFileReference);
         router.attach(attachFileReference, DataReferenceAttachResourceImpl.class);
         
+        // Add a route for the Download File Reference service.
+        final String downloadFileReference = PoddWebConstants.PATH_DATA_REFERENCE_DOWNLOAD;
+        this.log.debug("attaching File Reference Download service to path={}", downloadFileReference);
+        router.attach(downloadFileReference, DataReferenceDownloadResourceImpl.class);
+        
         // Add a route for the Event page.
         final String eventReference = PoddWebConstants.PATH_EVENT_REF;
         this.log.debug("attaching Event service to path={}", eventReference);
@@ -432,6 +454,16 @@ public class PoddWebServiceApplicationImpl extends PoddWebServiceApplication
         this.log.debug("attaching SPARQL service to path={}", sparqlService);
         router.attach(sparqlService, SparqlResourceImpl.class);
         
+        // Add a route for the inference status service.
+        final String inferenceStatusService = PoddWebConstants.PATH_ARTIFACT_INFERENCE_STATUS;
+        this.log.debug("attaching Inference Status service to path={}", inferenceStatusService);
+        router.attach(inferenceStatusService, InferenceStatusResourceImpl.class);
+        
+        // Add a route for the query metrics service.
+        final String queryMetricsService = PoddWebConstants.PATH_ADMIN_QUERY_METRICS;
+        this.log.debug("attaching Query Metrics service to path={}", queryMetricsService);
+        router.attach(queryMetricsService, QueryMetricsResourceImpl.class);
+        
         // Add a route for Logout service
         // final String logout = "logout";
         // PropertyUtils.getProperty(PropertyUtils.PROPERTY_LOGOUT_FORM_PATH,
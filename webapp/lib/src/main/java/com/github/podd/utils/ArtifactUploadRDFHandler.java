@@ -0,0 +1,140 @@
+/**
+ * PODD is an OWL ontology database used for scientific project management
+ *
+ * Copyright (C) 2009-2013 The University Of Queensland
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.podd.utils;
+
+import org.openrdf.model.Literal;
+import org.openrdf.model.Model;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.ContextStatementImpl;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.vocabulary.OWL;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.helpers.RDFHandlerWrapper;
+
+/**
+ * An RDFHandler that applies the per-statement parts of the artifact upload process while the
+ * statements are streamed from the parser to the staging repository, so that the artifact does not
+ * need to be held in memory before it is staged.
+ *
+ * <ul>
+ * <li>Assertions about publication status are removed, as they must only be made using the
+ * designated API method.</li>
+ * <li>Creation and modification timestamps with the default year 1970 are replaced with the given
+ * timestamp.</li>
+ * <li>Statements describing the ontology, its version and its imports are collected so that the
+ * ontology ID can be determined without scanning the staging repository.</li>
+ * </ul>
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class ArtifactUploadRDFHandler extends RDFHandlerWrapper
+{
+    private final Value newTimestamp;
+    
+    private final Model ontologyHeaders = new LinkedHashModel();
+    
+    private long privilegedAssertionCount = 0;
+    
+    private long timestampCount = 0;
+    
+    /**
+     *
+     * @param newTimestamp
+     *            The timestamp to substitute for default creation and modification timestamps.
+     * @param handlers
+     *            The handlers to send the cleaned statements to.
+     */
+    public ArtifactUploadRDFHandler(final Value newTimestamp, final RDFHandler... handlers)
+    {
+        super(handlers);
+        this.newTimestamp = newTimestamp;
+    }
+    
+    @Override
+    public void startRDF() throws RDFHandlerException
+    {
+        this.ontologyHeaders.clear();
+        this.privilegedAssertionCount = 0;
+        this.timestampCount = 0;
+        super.startRDF();
+    }
+    
+    @Override
+    public void handleStatement(final Statement st) throws RDFHandlerException
+    {
+        final URI predicate = st.getPredicate();
+        
+        if(predicate.equals(PODD.PODD_BASE_HAS_PUBLICATION_STATUS))
+        {
+            this.privilegedAssertionCount++;
+            return;
+        }
+        
+        if(predicate.equals(OWL.VERSIONIRI) || predicate.equals(OWL.IMPORTS)
+                || (predicate.equals(RDF.TYPE) && st.getObject().equals(OWL.ONTOLOGY)))
+        {
+            this.ontologyHeaders.add(st);
+        }
+        
+        if((predicate.equals(PODD.PODD_BASE_CREATED_AT) || predicate.equals(PODD.PODD_BASE_LAST_MODIFIED))
+                && st.getObject() instanceof Literal && ((Literal)st.getObject()).calendarValue().getYear() == 1970)
+        {
+            this.timestampCount++;
+            if(st.getContext() == null)
+            {
+                super.handleStatement(new StatementImpl(st.getSubject(), predicate, this.newTimestamp));
+            }
+            else
+            {
+                super.handleStatement(new ContextStatementImpl(st.getSubject(), predicate, this.newTimestamp, st
+                        .getContext()));
+            }
+            return;
+        }
+        
+        super.handleStatement(st);
+    }
+    
+    /**
+     * @return The statements that describe the ontology, its version and its imports.
+     */
+    public Model getOntologyHeaders()
+    {
+        return this.ontologyHeaders;
+    }
+    
+    /**
+     * @return The number of publication status assertions that were removed.
+     */
+    public long getPrivilegedAssertionCount()
+    {
+        return this.privilegedAssertionCount;
+    }
+    
+    /**
+     * @return The number of default timestamps that were replaced.
+     */
+    public long getTimestampCount()
+    {
+        return this.timestampCount;
+    }
+}
@@ -16,27 +16,46 @@
  */
 package com.github.podd.utils;
 
-import info.aduna.iteration.Iterations;
-
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.openrdf.model.BNode;
 import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
 import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
 import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.RepositoryResult;
 import org.openrdf.repository.util.RDFInserter;
 import org.openrdf.rio.RDFHandlerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * An RDFInserter sub-class which only inserts statements that are not already present in another
  * given RDF graph.
  *
+ * The graph to compare with is read from the repository once, when the first statement is
+ * handled, into an in-memory set, instead of querying the repository for each statement. When
+ * contexts are enforced, the statements that are not duplicates are added to the repository in
+ * batches.
+ *
  * @author kutila
  */
 public class DeduplicatingRDFInserter extends RDFInserter
 {
+    /**
+     * The default number of statements added to the repository in each batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 10000;
+    
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
     
     private URI contextToCompareWith = null;
     
@@ -44,11 +63,41 @@ public class DeduplicatingRDFInserter extends RDFInserter
     // parent class
     private RepositoryConnection conn = null;
     
+    private final int batchSize;
+    
+    /**
+     * The statements from the context to compare with. Statement equality does not include the
+     * context, so these match statements from any context.
+     */
+    private Set<Statement> existingStatements = null;
+    
+    private final List<Statement> batch;
+    
+    private final Map<String, BNode> bNodesMap = new HashMap<String, BNode>();
+    
+    private long deduplicatedCount = 0;
+    
+    private long insertedCount = 0;
+    
+    private long elapsedNanos = 0;
+    
     public DeduplicatingRDFInserter(final URI contextToCompareWith, final RepositoryConnection conn)
+    {
+        this(contextToCompareWith, conn, DeduplicatingRDFInserter.DEFAULT_BATCH_SIZE);
+    }
+    
+    public DeduplicatingRDFInserter(final URI contextToCompareWith, final RepositoryConnection conn,
+            final int batchSize)
     {
         super(conn);
+        if(batchSize < 1)
+        {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
         this.contextToCompareWith = contextToCompareWith;
         this.conn = conn;
+        this.batchSize = batchSize;
+        this.batch = new ArrayList<Statement>(Math.min(batchSize, 1024));
     }
     
     @Override
@@ -60,28 +109,157 @@ public class DeduplicatingRDFInserter extends RDFInserter
             return;
         }
         
-        // check if statement exists in other context and ignore if so
-        final Resource subj = st.getSubject();
-        final URI pred = st.getPredicate();
-        final Value obj = st.getObject();
-        
+        final long start = System.nanoTime();
         try
         {
-            final List<Statement> duplicateStatements =
-                    Iterations.asList(this.conn.getStatements(subj, pred, obj, false, this.contextToCompareWith));
-            if(duplicateStatements == null || duplicateStatements.isEmpty())
+            if(this.existingStatements == null)
+            {
+                this.existingStatements = this.loadExistingStatements();
+            }
+            
+            // check if statement exists in other context and ignore if so
+            if(this.existingStatements.contains(st))
+            {
+                this.deduplicatedCount++;
+            }
+            else if(this.enforcesContext())
             {
+                this.batch.add(st);
+                if(this.batch.size() >= this.batchSize)
+                {
+                    this.flushBatch();
+                }
+            }
+            else
+            {
+                this.insertedCount++;
                 super.handleStatement(st);
             }
-            // else
-            // {
-            // System.out.println(" DUPLICATE statement. Skip. " +
-            // contextToCompareWith.toString());
-            // }
         }
         catch(final RepositoryException e)
         {
             throw new RDFHandlerException(e);
         }
+        finally
+        {
+            this.elapsedNanos += System.nanoTime() - start;
+        }
+    }
+    
+    @Override
+    public void endRDF() throws RDFHandlerException
+    {
+        final long start = System.nanoTime();
+        try
+        {
+            this.flushBatch();
+        }
+        catch(final RepositoryException e)
+        {
+            throw new RDFHandlerException(e);
+        }
+        finally
+        {
+            this.elapsedNanos += System.nanoTime() - start;
+            this.existingStatements = null;
+            this.bNodesMap.clear();
+        }
+        
+        if(this.contextToCompareWith != null)
+        {
+            this.log.debug("Deduplicated {} and inserted {} statements against {} in {} ms",
+                    this.deduplicatedCount, this.insertedCount, this.contextToCompareWith, this.elapsedNanos / 1000000);
+        }
+        
+        super.endRDF();
+    }
+    
+    /**
+     * @return The number of statements that were not inserted because they were present in the
+     *         context to compare with.
+     */
+    public long getDeduplicatedCount()
+    {
+        return this.deduplicatedCount;
+    }
+    
+    /**
+     * @return The number of statements that were inserted.
+     */
+    public long getInsertedCount()
+    {
+        return this.insertedCount;
+    }
+    
+    /**
+     * @return The time, in nanoseconds, spent deduplicating and inserting statements.
+     */
+    public long getElapsedNanos()
+    {
+        return this.elapsedNanos;
+    }
+    
+    private Set<Statement> loadExistingStatements() throws RepositoryException
+    {
+        final Set<Statement> result = new HashSet<Statement>();
+        final RepositoryResult<Statement> statements =
+                this.conn.getStatements(null, null, null, false, this.contextToCompareWith);
+        try
+        {
+            while(statements.hasNext())
+            {
+                result.add(statements.next());
+            }
+        }
+        finally
+        {
+            statements.close();
+        }
+        return result;
+    }
+    
+    private void flushBatch() throws RepositoryException
+    {
+        if(this.batch.isEmpty())
+        {
+            return;
+        }
+        
+        final List<Statement> toAdd = new ArrayList<Statement>(this.batch.size());
+        final ValueFactory vf = this.conn.getValueFactory();
+        for(final Statement nextStatement : this.batch)
+        {
+            Resource subject = nextStatement.getSubject();
+            Value object = nextStatement.getObject();
+            
+            // Blank nodes are mapped to new blank nodes, in the same way as RDFInserter
+            if(!this.preservesBNodeIDs())
+            {
+                if(subject instanceof BNode)
+                {
+                    subject = this.mapBNode((BNode)subject, vf);
+                }
+                if(object instanceof BNode)
+                {
+                    object = this.mapBNode((BNode)object, vf);
+                }
+            }
+            toAdd.add(vf.createStatement(subject, nextStatement.getPredicate(), object));
+        }
+        
+        this.conn.add(toAdd, this.getContexts());
+        this.insertedCount += toAdd.size();
+        this.batch.clear();
+    }
+    
+    private BNode mapBNode(final BNode bNode, final ValueFactory vf)
+    {
+        BNode result = this.bNodesMap.get(bNode.getID());
+        if(result == null)
+        {
+            result = vf.createBNode();
+            this.bNodesMap.put(bNode.getID(), result);
+        }
+        return result;
     }
 }
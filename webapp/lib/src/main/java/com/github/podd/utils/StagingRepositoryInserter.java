@@ -0,0 +1,298 @@
+/**
+ * PODD is an OWL ontology database used for scientific project management
+ *
+ * Copyright (C) 2009-2013 The University Of Queensland
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.podd.utils;
+
+import info.aduna.iteration.Iterations;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.commons.io.FileUtils;
+import org.openrdf.model.Namespace;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+import org.openrdf.sail.nativerdf.NativeStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An RDFHandler that stages statements in a temporary repository. Statements are initially added
+ * to the given in-memory repository, and are moved to a disk-backed {@link NativeStore} if the
+ * number of statements passes the spill threshold, so that very large uploads do not need to fit
+ * in memory.
+ *
+ * The approximate peak heap usage is sampled while statements are staged so that the memory cost
+ * of each upload can be reported.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class StagingRepositoryInserter extends RDFHandlerBase
+{
+    /**
+     * The number of statements to add to the staging repository in each transaction.
+     */
+    private static final int BATCH_SIZE = 10000;
+    
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+    
+    private final long spillThreshold;
+    
+    private final Resource[] contexts;
+    
+    private Repository repository;
+    
+    private RepositoryConnection connection;
+    
+    private Path spillDirectory;
+    
+    private long statementCount = 0;
+    
+    private long peakMemoryUsage = 0;
+    
+    /**
+     *
+     * @param initialRepository
+     *            An initialised in-memory repository to stage statements in until the spill
+     *            threshold is reached.
+     * @param spillThreshold
+     *            The number of statements after which the statements are moved to a disk-backed
+     *            repository. Negative numbers disable spilling to disk.
+     * @param contexts
+     *            The contexts to add the statements to.
+     */
+    public StagingRepositoryInserter(final Repository initialRepository, final long spillThreshold,
+            final Resource... contexts)
+    {
+        this.repository = initialRepository;
+        this.spillThreshold = spillThreshold;
+        this.contexts = contexts;
+    }
+    
+    @Override
+    public void startRDF() throws RDFHandlerException
+    {
+        try
+        {
+            this.connection = this.repository.getConnection();
+            this.connection.begin();
+        }
+        catch(final RepositoryException e)
+        {
+            throw new RDFHandlerException(e);
+        }
+        this.sampleMemoryUsage();
+    }
+    
+    @Override
+    public void handleNamespace(final String prefix, final String uri) throws RDFHandlerException
+    {
+        try
+        {
+            if(this.connection.getNamespace(prefix) == null)
+            {
+                this.connection.setNamespace(prefix, uri);
+            }
+        }
+        catch(final RepositoryException e)
+        {
+            throw new RDFHandlerException(e);
+        }
+    }
+    
+    @Override
+    public void handleStatement(final Statement st) throws RDFHandlerException
+    {
+        try
+        {
+            this.connection.add(st.getSubject(), st.getPredicate(), st.getObject(), this.contexts);
+            this.statementCount++;
+            
+            if(this.spillDirectory == null && this.spillThreshold >= 0 && this.statementCount > this.spillThreshold)
+            {
+                this.connection.commit();
+                this.sampleMemoryUsage();
+                this.spillToDisk();
+                this.connection.begin();
+            }
+            else if(this.statementCount % StagingRepositoryInserter.BATCH_SIZE == 0)
+            {
+                this.connection.commit();
+                this.sampleMemoryUsage();
+                this.connection.begin();
+            }
+        }
+        catch(final RepositoryException | IOException e)
+        {
+            throw new RDFHandlerException(e);
+        }
+    }
+    
+    @Override
+    public void endRDF() throws RDFHandlerException
+    {
+        try
+        {
+            this.connection.commit();
+        }
+        catch(final RepositoryException e)
+        {
+            throw new RDFHandlerException(e);
+        }
+        finally
+        {
+            try
+            {
+                this.connection.close();
+            }
+            catch(final RepositoryException e)
+            {
+                this.log.error("Found exception closing staging repository connection", e);
+            }
+            this.connection = null;
+        }
+        this.sampleMemoryUsage();
+    }
+    
+    /**
+     * Moves all of the statements staged so far into a new disk-backed repository, and shuts down
+     * the in-memory repository.
+     */
+    private void spillToDisk() throws RepositoryException, IOException
+    {
+        this.spillDirectory = Files.createTempDirectory("podd-staging-");
+        this.log.info("Staging upload on disk after {} statements: {}", this.statementCount, this.spillDirectory);
+        
+        final Repository diskRepository = new SailRepository(new NativeStore(this.spillDirectory.toFile()));
+        diskRepository.initialize();
+        
+        final RepositoryConnection diskConnection = diskRepository.getConnection();
+        try
+        {
+            diskConnection.begin();
+            diskConnection.add(this.connection.getStatements(null, null, null, false));
+            diskConnection.commit();
+            
+            for(final Namespace nextNamespace : Iterations.asList(this.connection.getNamespaces()))
+            {
+                diskConnection.setNamespace(nextNamespace.getPrefix(), nextNamespace.getName());
+            }
+        }
+        catch(final Throwable e)
+        {
+            diskConnection.close();
+            diskRepository.shutDown();
+            throw e;
+        }
+        
+        this.connection.close();
+        this.repository.shutDown();
+        
+        this.repository = diskRepository;
+        this.connection = diskConnection;
+    }
+    
+    /**
+     * Samples the current heap usage, and records it if it is higher than the previous peak.
+     */
+    public void sampleMemoryUsage()
+    {
+        final Runtime runtime = Runtime.getRuntime();
+        final long usedMemory = runtime.totalMemory() - runtime.freeMemory();
+        if(usedMemory > this.peakMemoryUsage)
+        {
+            this.peakMemoryUsage = usedMemory;
+        }
+    }
+    
+    /**
+     * @return The peak heap usage, in bytes, that was sampled while statements were staged.
+     */
+    public long getPeakMemoryUsage()
+    {
+        return this.peakMemoryUsage;
+    }
+    
+    /**
+     * @return The repository that currently contains the staged statements.
+     */
+    public Repository getRepository()
+    {
+        return this.repository;
+    }
+    
+    /**
+     * @return The number of statements that have been staged.
+     */
+    public long getStatementCount()
+    {
+        return this.statementCount;
+    }
+    
+    /**
+     * @return True if the statements were moved to a disk-backed repository.
+     */
+    public boolean isSpilledToDisk()
+    {
+        return this.spillDirectory != null;
+    }
+    
+    /**
+     * Shuts down the staging repository and removes any files that were used to stage statements
+     * on disk.
+     *
+     * @throws RepositoryException
+     */
+    public void shutDown() throws RepositoryException
+    {
+        try
+        {
+            if(this.connection != null)
+            {
+                this.connection.close();
+                this.connection = null;
+            }
+        }
+        finally
+        {
+            try
+            {
+                this.repository.shutDown();
+            }
+            finally
+            {
+                if(this.spillDirectory != null)
+                {
+                    try
+                    {
+                        FileUtils.deleteDirectory(this.spillDirectory.toFile());
+                    }
+                    catch(final IOException e)
+                    {
+                        this.log.error("Could not delete staging directory: " + this.spillDirectory, e);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -16,15 +16,26 @@
  */
 package com.github.podd.impl.data.test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.apache.commons.io.IOUtils;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
+import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.junit.rules.Timeout;
 import org.openrdf.model.Model;
@@ -42,6 +53,7 @@ import org.openrdf.repository.sail.SailRepository;
 import org.openrdf.rio.RDFFormat;
 import org.openrdf.rio.Rio;
 import org.openrdf.sail.memory.MemoryStore;
+import org.semanticweb.owlapi.model.IRI;
 import org.semanticweb.owlapi.model.OWLOntologyManagerFactory;
 import org.semanticweb.owlapi.model.OWLOntologyManagerFactoryRegistry;
 import org.semanticweb.owlapi.reasoner.OWLReasonerFactory;
@@ -52,11 +64,17 @@ import com.github.podd.api.PoddOWLManager;
 import com.github.podd.api.data.DataReference;
 import com.github.podd.api.data.PoddDataRepository;
 import com.github.podd.api.data.PoddDataRepositoryManager;
+import com.github.podd.api.data.SSHFileReference;
 import com.github.podd.api.data.test.AbstractPoddDataRepositoryManagerTest;
+import com.github.podd.api.test.TestConstants;
+import com.github.podd.exception.DataReferenceInvalidException;
 import com.github.podd.exception.DataReferenceNotSupportedException;
+import com.github.podd.exception.DataReferenceVerificationException;
+import com.github.podd.exception.DataRepositoryBusyException;
 import com.github.podd.impl.PoddOWLManagerImpl;
 import com.github.podd.impl.PoddRepositoryManagerImpl;
 import com.github.podd.impl.data.PoddDataRepositoryManagerImpl;
+import com.github.podd.impl.data.SSHFileReferenceImpl;
 import com.github.podd.utils.PODD;
 import com.github.podd.utils.PoddWebConstants;
 
@@ -105,18 +123,43 @@ public class PoddDataRepositoryManagerImplTest extends AbstractPoddDataRepositor
                     return model;
                 }
                 
+                @Override
+                public long getSize(final DataReference reference) throws DataReferenceNotSupportedException
+                {
+                    throw new DataReferenceNotSupportedException(reference, "Mock repository");
+                }
+                
                 @Override
                 public Set<URI> getTypes()
                 {
                     return null;
                 }
                 
+                @Override
+                public InputStream openStream(final DataReference reference, final long offset)
+                    throws DataReferenceNotSupportedException
+                {
+                    throw new DataReferenceNotSupportedException(reference, "Mock repository");
+                }
+                
                 @Override
                 public boolean validate(final DataReference reference) throws DataReferenceNotSupportedException,
                     IOException
                 {
                     return false;
                 }
+                
+                @Override
+                public Map<DataReference, Boolean> validateAll(final Collection<DataReference> references)
+                    throws DataReferenceNotSupportedException, IOException
+                {
+                    final Map<DataReference, Boolean> results = new HashMap<DataReference, Boolean>();
+                    for(final DataReference nextReference : references)
+                    {
+                        results.put(nextReference, false);
+                    }
+                    return results;
+                }
             };
     }
     
@@ -173,6 +216,7 @@ public class PoddDataRepositoryManagerImplTest extends AbstractPoddDataRepositor
         final PoddRepositoryManagerImpl repositoryManagerImpl =
                 new PoddRepositoryManagerImpl(managementRepository, repositoryImplConfig, "", this.tempDir.newFolder(
                         "test-podd-repository-manager").toPath(), new PropertyUtil("podd"));
+        repositoryManagerImpl.init();
         
         final PoddOWLManager owlManager =
                 new PoddOWLManagerImpl(this.getNewOWLOntologyManagerFactory(), this.getNewReasonerFactory());
@@ -211,6 +255,256 @@ public class PoddDataRepositoryManagerImplTest extends AbstractPoddDataRepositor
                                 .toPath());
     }
     
+    /**
+     * Verifies that repositories are resolved from an alias index that is rebuilt when a mapping is
+     * removed.
+     */
+    @Test
+    public void testGetRepositoryCachedUntilMappingChanges() throws Exception
+    {
+        final PoddDataRepository<?> repository =
+                this.testDataRepositoryManager.getRepository(AbstractPoddDataRepositoryManagerTest.TEST_ALIAS_1A);
+        Assert.assertNotNull(repository);
+        Assert.assertSame(repository,
+                this.testDataRepositoryManager.getRepository(AbstractPoddDataRepositoryManagerTest.TEST_ALIAS_1A
+                        .toUpperCase()));
+        Assert.assertNotNull(this.testDataRepositoryManager
+                .getRepository(AbstractPoddDataRepositoryManagerTest.TEST_ALIAS_2B));
+        
+        this.testDataRepositoryManager.removeRepositoryMapping(AbstractPoddDataRepositoryManagerTest.TEST_ALIAS_2B);
+        
+        Assert.assertNull(this.testDataRepositoryManager
+                .getRepository(AbstractPoddDataRepositoryManagerTest.TEST_ALIAS_2B));
+        Assert.assertNotNull(this.testDataRepositoryManager
+                .getRepository(AbstractPoddDataRepositoryManagerTest.TEST_ALIAS_2A));
+        final PoddDataRepository<?> rebuiltRepository =
+                this.testDataRepositoryManager.getRepository(AbstractPoddDataRepositoryManagerTest.TEST_ALIAS_1A);
+        Assert.assertNotNull(rebuiltRepository);
+        Assert.assertNotSame(repository, rebuiltRepository);
+    }
+    
+    /**
+     * Verifies that referenced data can be streamed from the remote repository, both in full and
+     * starting from an offset.
+     */
+    @Test
+    public void testOpenFileReferenceFromOffset() throws Exception
+    {
+        final DataReference fileReference = this.getNewValidDataReference();
+        fileReference.setRepositoryAlias(AbstractPoddDataRepositoryManagerTest.TEST_ALIAS_1A);
+        
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        try (final InputStream testFile = this.getClass().getResourceAsStream(TestConstants.TEST_FILE_REFERENCE_PATH);)
+        {
+            IOUtils.copy(testFile, expected);
+        }
+        final byte[] expectedBytes = expected.toByteArray();
+        
+        Assert.assertEquals(expectedBytes.length, this.testDataRepositoryManager.getFileReferenceSize(fileReference));
+        
+        final ByteArrayOutputStream downloaded = new ByteArrayOutputStream();
+        this.testDataRepositoryManager.downloadFileReference(fileReference, downloaded);
+        Assert.assertArrayEquals(expectedBytes, downloaded.toByteArray());
+        
+        final int offset = expectedBytes.length / 2;
+        try (final InputStream partial = this.testDataRepositoryManager.openFileReference(fileReference, offset);)
+        {
+            Assert.assertArrayEquals(Arrays.copyOfRange(expectedBytes, offset, expectedBytes.length),
+                    IOUtils.toByteArray(partial));
+        }
+    }
+    
+    /**
+     * Verifies that downloads beyond the per repository limit are rejected until an open download
+     * is closed.
+     */
+    @Test
+    public void testOpenFileReferenceBusy() throws Exception
+    {
+        final DataReference fileReference = this.getNewValidDataReference();
+        fileReference.setRepositoryAlias(AbstractPoddDataRepositoryManagerTest.TEST_ALIAS_1A);
+        
+        final PoddDataRepositoryManagerImpl managerImpl = (PoddDataRepositoryManagerImpl)this.testDataRepositoryManager;
+        managerImpl.setMaxConcurrentDownloads(1);
+        
+        final InputStream firstDownload = managerImpl.openFileReference(fileReference, 0);
+        try
+        {
+            managerImpl.openFileReference(fileReference, 0);
+            Assert.fail("Should have thrown a DataRepositoryBusyException");
+        }
+        catch(final DataRepositoryBusyException e)
+        {
+            Assert.assertEquals(AbstractPoddDataRepositoryManagerTest.TEST_ALIAS_1A.toLowerCase(), e.getAlias());
+        }
+        finally
+        {
+            firstDownload.close();
+        }
+        
+        managerImpl.openFileReference(fileReference, 0).close();
+    }
+    
+    /**
+     * Verifies that a data reference that was successfully verified is not checked again against
+     * the remote repository until the verification cache TTL has expired.
+     */
+    @Test
+    public void testVerifyFileReferencesCached() throws Exception
+    {
+        final Set<DataReference> dataReferences = new HashSet<DataReference>();
+        final DataReference fileRefWithAlias1A = this.getNewValidDataReference();
+        fileRefWithAlias1A.setRepositoryAlias(AbstractPoddDataRepositoryManagerTest.TEST_ALIAS_1A);
+        dataReferences.add(fileRefWithAlias1A);
+        
+        final PoddDataRepositoryManagerImpl managerImpl = (PoddDataRepositoryManagerImpl)this.testDataRepositoryManager;
+        managerImpl.verifyDataReferences(dataReferences);
+        Assert.assertEquals(0, managerImpl.getVerificationCacheHits());
+        
+        // the remote repository is no longer needed to verify the reference
+        this.stopRepositorySource();
+        managerImpl.verifyDataReferences(dataReferences);
+        Assert.assertEquals(1, managerImpl.getVerificationCacheHits());
+        
+        // once the cache is disabled the reference must be verified again
+        managerImpl.setVerificationCacheTtl(0);
+        try
+        {
+            managerImpl.verifyDataReferences(dataReferences);
+            Assert.fail("Verify should have thrown an Exception containing errors");
+        }
+        catch(final DataReferenceVerificationException e)
+        {
+            Assert.assertEquals(1, e.getValidationFailures().size());
+            Assert.assertTrue(e.getValidationFailures().containsKey(fileRefWithAlias1A));
+        }
+    }
+    
+    /**
+     * Verifies data references for several aliases concurrently using a verification executor.
+     */
+    @Test
+    public void testVerifyFileReferencesWithExecutor() throws Exception
+    {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            final PoddDataRepositoryManagerImpl managerImpl =
+                    (PoddDataRepositoryManagerImpl)this.testDataRepositoryManager;
+            managerImpl.setVerificationExecutor(executor);
+            
+            final Set<DataReference> dataReferences = new HashSet<DataReference>();
+            for(final String nextAlias : Arrays.asList(AbstractPoddDataRepositoryManagerTest.TEST_ALIAS_1A,
+                    AbstractPoddDataRepositoryManagerTest.TEST_ALIAS_2A))
+            {
+                for(int i = 0; i < 3; i++)
+                {
+                    final DataReference nextReference = this.getNewValidDataReference();
+                    nextReference.setRepositoryAlias(nextAlias);
+                    dataReferences.add(nextReference);
+                }
+            }
+            final DataReference fileRefWithNoSuchFile = this.getNewInvalidDataReference();
+            fileRefWithNoSuchFile.setRepositoryAlias(AbstractPoddDataRepositoryManagerTest.TEST_ALIAS_2A);
+            dataReferences.add(fileRefWithNoSuchFile);
+            
+            try
+            {
+                managerImpl.verifyDataReferences(dataReferences);
+                Assert.fail("Verify should have thrown an Exception containing errors");
+            }
+            catch(final DataReferenceVerificationException e)
+            {
+                Assert.assertEquals(1, e.getValidationFailures().size());
+                Assert.assertTrue(e.getValidationFailures().get(fileRefWithNoSuchFile)
+                        instanceof DataReferenceInvalidException);
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Verifies that a successful verification is shared by references to the same file from other
+     * objects and artifacts.
+     */
+    @Test
+    public void testVerifyFileReferencesCachedForSameFile() throws Exception
+    {
+        final SSHFileReference fileReference = (SSHFileReference)this.getNewValidDataReference();
+        fileReference.setRepositoryAlias(AbstractPoddDataRepositoryManagerTest.TEST_ALIAS_1A);
+        fileReference.setLabel("First reference");
+        fileReference.setObjectIri(IRI.create("urn:test:datareference:1"));
+        
+        final SSHFileReference sameFileReference = new SSHFileReferenceImpl();
+        sameFileReference.setRepositoryAlias(AbstractPoddDataRepositoryManagerTest.TEST_ALIAS_1A);
+        sameFileReference.setPath(fileReference.getPath());
+        sameFileReference.setFilename(fileReference.getFilename());
+        sameFileReference.setLabel("Second reference");
+        sameFileReference.setObjectIri(IRI.create("urn:test:datareference:2"));
+        
+        final PoddDataRepositoryManagerImpl managerImpl = (PoddDataRepositoryManagerImpl)this.testDataRepositoryManager;
+        managerImpl.verifyDataReferences(Collections.<DataReference> singleton(fileReference));
+        Assert.assertEquals(0, managerImpl.getVerificationCacheHits());
+        
+        // the remote repository is not needed to verify another reference to the same file
+        this.stopRepositorySource();
+        managerImpl.verifyDataReferences(Collections.<DataReference> singleton(sameFileReference));
+        Assert.assertEquals(1, managerImpl.getVerificationCacheHits());
+    }
+    
+    /**
+     * Verifies that many data references for a single alias are split across several verification
+     * tasks.
+     */
+    @Test
+    public void testVerifyFileReferencesSplitForAlias() throws Exception
+    {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            final PoddDataRepositoryManagerImpl managerImpl =
+                    (PoddDataRepositoryManagerImpl)this.testDataRepositoryManager;
+            managerImpl.setVerificationExecutor(executor);
+            managerImpl.setMaxVerificationTasksPerAlias(4);
+            
+            final Set<DataReference> dataReferences = new HashSet<DataReference>();
+            for(int i = 0; i < 40; i++)
+            {
+                final DataReference nextReference = this.getNewValidDataReference();
+                nextReference.setRepositoryAlias(AbstractPoddDataRepositoryManagerTest.TEST_ALIAS_1A);
+                dataReferences.add(nextReference);
+            }
+            final DataReference fileRefWithNoSuchFile = this.getNewInvalidDataReference();
+            fileRefWithNoSuchFile.setRepositoryAlias(AbstractPoddDataRepositoryManagerTest.TEST_ALIAS_1A);
+            dataReferences.add(fileRefWithNoSuchFile);
+            
+            try
+            {
+                managerImpl.verifyDataReferences(dataReferences);
+                Assert.fail("Verify should have thrown an Exception containing errors");
+            }
+            catch(final DataReferenceVerificationException e)
+            {
+                Assert.assertEquals(1, e.getValidationFailures().size());
+                Assert.assertTrue(e.getValidationFailures().get(fileRefWithNoSuchFile)
+                        instanceof DataReferenceInvalidException);
+            }
+            
+            // all of the valid references were remembered, whichever task verified them
+            dataReferences.remove(fileRefWithNoSuchFile);
+            this.stopRepositorySource();
+            managerImpl.verifyDataReferences(dataReferences);
+            Assert.assertEquals(40, managerImpl.getVerificationCacheHits());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+    
     @Before
     @Override
     public void setUp() throws Exception
@@ -23,12 +23,15 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
+import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.openrdf.model.BNode;
 import org.openrdf.model.Model;
 import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
 import org.openrdf.model.ValueFactory;
 import org.openrdf.model.impl.LinkedHashModel;
@@ -37,6 +40,8 @@ import org.openrdf.model.vocabulary.RDF;
 import com.github.podd.api.data.PoddDataRepository;
 import com.github.podd.api.data.SSHFileReference;
 import com.github.podd.api.data.test.AbstractPoddDataRepositoryTest;
+import com.github.podd.impl.data.SSHConnectionPool;
+import com.github.podd.impl.data.SSHConnectionPool.PoolStatistics;
 import com.github.podd.impl.data.SSHFileRepositoryImpl;
 import com.github.podd.utils.PODD;
 
@@ -178,6 +183,117 @@ public class SSHFileRepositoryImplTest extends AbstractPoddDataRepositoryTest<SS
                         .toPath());
     }
     
+    /**
+     * Verifies that consecutive validations reuse a single pooled SSH session.
+     */
+    @Test
+    public void testValidateReusesPooledSession() throws Exception
+    {
+        try
+        {
+            SSHConnectionPool.getInstance().reset();
+            
+            final SSHFileReference dataReference = this.getNewValidatingDataReference();
+            dataReference.setRepositoryAlias(this.getAliasGood());
+            final SSHFileReference invalidReference = this.getNewNonValidatingDataReference();
+            invalidReference.setRepositoryAlias(this.getAliasGood());
+            
+            Assert.assertTrue(this.testDataRepository.validate(dataReference));
+            Assert.assertFalse(this.testDataRepository.validate(invalidReference));
+            Assert.assertTrue(this.testDataRepository.validate(dataReference));
+            
+            final Map<String, PoolStatistics> statistics = SSHConnectionPool.getInstance().getStatistics();
+            Assert.assertEquals(1, statistics.size());
+            final PoolStatistics poolStatistics = statistics.values().iterator().next();
+            Assert.assertEquals(1, poolStatistics.getCreatedCount());
+            Assert.assertEquals(2, poolStatistics.getReusedCount());
+            Assert.assertEquals(0, poolStatistics.getActiveCount());
+            Assert.assertEquals(1, poolStatistics.getIdleCount());
+            Assert.assertEquals(this.getExpectedPoolName(), poolStatistics.getPoolName());
+            
+            // Removing the alias closes its idle sessions and discards its pool
+            SSHConnectionPool.getInstance().remove(this.getAliasGood());
+            Assert.assertTrue(SSHConnectionPool.getInstance().getStatistics().isEmpty());
+            Assert.assertEquals(0, poolStatistics.getIdleCount());
+        }
+        finally
+        {
+            SSHConnectionPool.getInstance().reset();
+            this.stopRepositorySource();
+        }
+    }
+    
+    /**
+     * Verifies that aliases for the same user, host, port and fingerprint share a pool, which is
+     * only discarded when none of the aliases use it.
+     */
+    @Test
+    public void testEquivalentAliasesSharePool() throws Exception
+    {
+        try
+        {
+            SSHConnectionPool.getInstance().reset();
+            
+            final String otherAlias = this.getAliasGood() + "-other";
+            final Model otherModel = new LinkedHashModel();
+            for(final Statement nextStatement : this.testDataRepository.getAsModel())
+            {
+                if(nextStatement.getPredicate().equals(PODD.PODD_DATA_REPOSITORY_ALIAS))
+                {
+                    otherModel.add(nextStatement.getSubject(), nextStatement.getPredicate(),
+                            PODD.VF.createLiteral(otherAlias));
+                }
+                else
+                {
+                    otherModel.add(nextStatement);
+                }
+            }
+            final Resource otherRepository =
+                    otherModel.filter(null, PODD.PODD_DATA_REPOSITORY_ALIAS, null).subjects().iterator().next();
+            final PoddDataRepository<SSHFileReference> otherDataRepository =
+                    this.getNewPoddDataRepository(otherRepository, otherModel);
+            
+            final SSHFileReference dataReference = this.getNewValidatingDataReference();
+            dataReference.setRepositoryAlias(this.getAliasGood());
+            final SSHFileReference otherReference = this.getNewValidatingDataReference();
+            otherReference.setRepositoryAlias(otherAlias);
+            
+            Assert.assertTrue(this.testDataRepository.validate(dataReference));
+            Assert.assertTrue(otherDataRepository.validate(otherReference));
+            
+            final Map<String, PoolStatistics> statistics = SSHConnectionPool.getInstance().getStatistics();
+            Assert.assertEquals(1, statistics.size());
+            final PoolStatistics poolStatistics = statistics.get(this.getExpectedPoolName());
+            Assert.assertNotNull(poolStatistics);
+            Assert.assertEquals(1, poolStatistics.getCreatedCount());
+            Assert.assertEquals(1, poolStatistics.getReusedCount());
+            
+            // The pool is kept while another alias still uses it
+            SSHConnectionPool.getInstance().remove(this.getAliasGood());
+            Assert.assertEquals(1, SSHConnectionPool.getInstance().getStatistics().size());
+            Assert.assertEquals(1, poolStatistics.getIdleCount());
+            
+            SSHConnectionPool.getInstance().remove(otherAlias);
+            Assert.assertTrue(SSHConnectionPool.getInstance().getStatistics().isEmpty());
+            Assert.assertEquals(0, poolStatistics.getIdleCount());
+        }
+        finally
+        {
+            SSHConnectionPool.getInstance().reset();
+            this.stopRepositorySource();
+        }
+    }
+    
+    /**
+     * @return The name of the pool for the sessions to the test SSH server, which does not include
+     *         the secret.
+     */
+    private String getExpectedPoolName()
+    {
+        return SSHService.TEST_SSH_USERNAME + "@" + SSHService.TEST_SSH_HOST + ":" + this.sshd.TEST_SSH_SERVICE_PORT
+                + " " + SSHService.TEST_SSH_FINGERPRINT;
+    }
+    
     @Before
     @Override
     public void setUp() throws Exception
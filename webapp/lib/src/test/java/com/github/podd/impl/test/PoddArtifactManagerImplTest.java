@@ -16,36 +16,59 @@
  */
 package com.github.podd.impl.test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
 import java.nio.file.Path;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.junit.Assert;
 import org.junit.Test;
 import org.openrdf.model.Model;
 import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.LinkedHashModel;
 import org.openrdf.model.util.GraphUtil;
+import org.openrdf.model.vocabulary.OWL;
+import org.openrdf.model.vocabulary.RDFS;
 import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.config.RepositoryConfigSchema;
 import org.openrdf.repository.config.RepositoryImplConfig;
 import org.openrdf.repository.config.RepositoryImplConfigBase;
 import org.openrdf.rio.RDFFormat;
 import org.openrdf.rio.Rio;
+import org.semanticweb.owlapi.model.OWLOntologyID;
 import org.semanticweb.owlapi.model.OWLOntologyManagerFactory;
 import org.semanticweb.owlapi.model.OWLOntologyManagerFactoryRegistry;
 import org.semanticweb.owlapi.reasoner.OWLReasonerFactory;
 import org.semanticweb.owlapi.reasoner.OWLReasonerFactoryRegistry;
 
 import com.github.ansell.propertyutil.PropertyUtil;
+import com.github.podd.api.DanglingObjectPolicy;
+import com.github.podd.api.DataReferenceVerificationPolicy;
+import com.github.podd.api.InferenceStatus;
 import com.github.podd.api.PoddOWLManager;
 import com.github.podd.api.PoddRepositoryManager;
 import com.github.podd.api.PoddSchemaManager;
 import com.github.podd.api.PoddSesameManager;
+import com.github.podd.api.UpdatePolicy;
 import com.github.podd.api.data.DataReferenceManager;
 import com.github.podd.api.data.DataReferenceProcessorFactory;
 import com.github.podd.api.purl.PoddPurlManager;
 import com.github.podd.api.purl.PoddPurlProcessorFactory;
+import com.github.podd.api.purl.PoddPurlProcessorPrefixes;
 import com.github.podd.api.test.AbstractPoddArtifactManagerTest;
+import com.github.podd.api.test.TestConstants;
 import com.github.podd.impl.PoddArtifactManagerImpl;
 import com.github.podd.impl.PoddOWLManagerImpl;
 import com.github.podd.impl.PoddRepositoryManagerImpl;
@@ -56,6 +79,8 @@ import com.github.podd.impl.data.SSHFileReferenceProcessorFactoryImpl;
 import com.github.podd.impl.purl.PoddPurlManagerImpl;
 import com.github.podd.impl.purl.UUIDPurlProcessorFactoryImpl;
 import com.github.podd.utils.InferredOWLOntologyID;
+import com.github.podd.utils.OntologyUtils;
+import com.github.podd.utils.PODD;
 import com.github.podd.utils.PoddWebConstants;
 
 /**
@@ -127,8 +152,11 @@ public class PoddArtifactManagerImplTest extends AbstractPoddArtifactManagerTest
         final RepositoryImplConfig repositoryImplConfig = RepositoryImplConfigBase.create(graph, repositoryNode);
         Assert.assertNotNull(repositoryImplConfig);
         Assert.assertNotNull(repositoryImplConfig.getType());
-        return new PoddRepositoryManagerImpl(managementRepository, repositoryImplConfig, "", testPath,
-                new PropertyUtil("podd"));
+        final PoddRepositoryManagerImpl repositoryManager =
+                new PoddRepositoryManagerImpl(managementRepository, repositoryImplConfig, "", testPath,
+                        new PropertyUtil("podd"));
+        repositoryManager.init();
+        return repositoryManager;
     }
     
     @Override
@@ -195,6 +223,305 @@ public class PoddArtifactManagerImplTest extends AbstractPoddArtifactManagerTest
         Assert.assertEquals("Version not incremented as expected", artifactURI + ":v51", newAppendedVersion);
     }
     
+    @Test
+    public void testLoadArtifactBackgroundInferences() throws Exception
+    {
+        this.loadVersion1SchemaOntologies();
+        
+        final PoddArtifactManagerImpl testArtifactManager = (PoddArtifactManagerImpl)this.testArtifactManager;
+        final ExecutorService inferenceExecutor = Executors.newSingleThreadExecutor();
+        testArtifactManager.setInferenceExecutor(inferenceExecutor);
+        
+        // Occupy the inference thread so that the artifact stays pending until the latch is
+        // released
+        final CountDownLatch blockInferences = new CountDownLatch(1);
+        inferenceExecutor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        blockInferences.await();
+                    }
+                    catch(final InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        
+        try
+        {
+            final InferredOWLOntologyID artifactId;
+            try (final InputStream inputStream =
+                    this.getClass().getResourceAsStream(TestConstants.TEST_ARTIFACT_20130206);)
+            {
+                artifactId = testArtifactManager.loadArtifact(inputStream, RDFFormat.TURTLE);
+            }
+            
+            Assert.assertTrue(artifactId.isInferencePending());
+            Assert.assertEquals(InferenceStatus.PENDING, testArtifactManager.getInferenceStatus(artifactId));
+            Assert.assertTrue(testArtifactManager.getArtifact(artifactId.getOntologyIRI()).isInferencePending());
+            // The status is stored so that the inferences can be resumed after a restart
+            Assert.assertTrue(this.hasStoredInferenceStatus(artifactId));
+            
+            // The concrete statements are available before the inferences
+            final Model concreteModel = testArtifactManager.exportArtifact(artifactId, false);
+            Assert.assertFalse(concreteModel.isEmpty());
+            Assert.assertEquals(concreteModel.size(), testArtifactManager.exportArtifact(artifactId, true).size());
+            
+            blockInferences.countDown();
+            testArtifactManager.awaitInferences();
+            
+            Assert.assertEquals(InferenceStatus.COMPLETE, testArtifactManager.getInferenceStatus(artifactId));
+            Assert.assertFalse(this.hasStoredInferenceStatus(artifactId));
+            Assert.assertFalse(testArtifactManager.getArtifact(artifactId.getOntologyIRI()).isInferencePending());
+            Assert.assertTrue(testArtifactManager.exportArtifact(artifactId, true).size() > concreteModel.size());
+        }
+        finally
+        {
+            blockInferences.countDown();
+            inferenceExecutor.shutdown();
+        }
+    }
+    
+    /**
+     * Checks that inferences which are rejected by the inference executor are left pending instead
+     * of being computed on the calling thread, and are computed when they are resumed.
+     */
+    @Test
+    public void testLoadArtifactBackgroundInferencesRejected() throws Exception
+    {
+        this.loadVersion1SchemaOntologies();
+        
+        final PoddArtifactManagerImpl testArtifactManager = (PoddArtifactManagerImpl)this.testArtifactManager;
+        testArtifactManager.setInferenceExecutor(new Executor()
+            {
+                @Override
+                public void execute(final Runnable command)
+                {
+                    throw new RejectedExecutionException("Inference queue is full");
+                }
+            });
+        
+        final InferredOWLOntologyID artifactId;
+        try (final InputStream inputStream = this.getClass().getResourceAsStream(TestConstants.TEST_ARTIFACT_20130206);)
+        {
+            artifactId = testArtifactManager.loadArtifact(inputStream, RDFFormat.TURTLE);
+        }
+        
+        Assert.assertTrue(artifactId.isInferencePending());
+        testArtifactManager.awaitInferences();
+        Assert.assertEquals(InferenceStatus.PENDING, testArtifactManager.getInferenceStatus(artifactId));
+        Assert.assertTrue(this.hasStoredInferenceStatus(artifactId));
+        final int concreteSize = testArtifactManager.exportArtifact(artifactId, false).size();
+        Assert.assertEquals(concreteSize, testArtifactManager.exportArtifact(artifactId, true).size());
+        
+        testArtifactManager.setInferenceExecutor(null);
+        testArtifactManager.resumePendingInferences();
+        testArtifactManager.awaitInferences();
+        
+        Assert.assertEquals(InferenceStatus.COMPLETE, testArtifactManager.getInferenceStatus(artifactId));
+        Assert.assertFalse(this.hasStoredInferenceStatus(artifactId));
+        Assert.assertTrue(testArtifactManager.exportArtifact(artifactId, true).size() > concreteSize);
+    }
+    
+    /**
+     * Simulates a restart while inferences were pending, by clearing the inferred statements and
+     * storing a pending status, and checks that the inferences are computed again when they are
+     * resumed.
+     */
+    @Test
+    public void testResumePendingInferences() throws Exception
+    {
+        this.loadVersion1SchemaOntologies();
+        
+        final PoddArtifactManagerImpl testArtifactManager = (PoddArtifactManagerImpl)this.testArtifactManager;
+        final InferredOWLOntologyID artifactId;
+        try (final InputStream inputStream = this.getClass().getResourceAsStream(TestConstants.TEST_ARTIFACT_20130206);)
+        {
+            artifactId = testArtifactManager.loadArtifact(inputStream, RDFFormat.TURTLE);
+        }
+        final int inferredSize = testArtifactManager.exportArtifact(artifactId, true).size();
+        final int concreteSize = testArtifactManager.exportArtifact(artifactId, false).size();
+        Assert.assertTrue(inferredSize > concreteSize);
+        
+        final PoddRepositoryManager repositoryManager = testArtifactManager.getRepositoryManager();
+        final RepositoryConnection permanentConnection =
+                repositoryManager.getPermanentRepositoryConnection(testArtifactManager.getSchemaImports(artifactId));
+        try
+        {
+            permanentConnection.clear(artifactId.getInferredOntologyIRI().toOpenRDFURI());
+        }
+        finally
+        {
+            permanentConnection.close();
+        }
+        final RepositoryConnection managementConnection = repositoryManager.getManagementRepositoryConnection();
+        try
+        {
+            managementConnection.add(artifactId.getVersionIRI().toOpenRDFURI(), PODD.PODD_BASE_INFERENCE_STATUS,
+                    PODD.VF.createLiteral(InferenceStatus.PENDING.name()),
+                    repositoryManager.getArtifactManagementGraph());
+        }
+        finally
+        {
+            managementConnection.close();
+        }
+        testArtifactManager.invalidateArtifactCache();
+        
+        Assert.assertEquals(InferenceStatus.PENDING, testArtifactManager.getInferenceStatus(artifactId));
+        Assert.assertEquals(concreteSize, testArtifactManager.exportArtifact(artifactId, true).size());
+        
+        testArtifactManager.resumePendingInferences();
+        testArtifactManager.awaitInferences();
+        
+        Assert.assertEquals(InferenceStatus.COMPLETE, testArtifactManager.getInferenceStatus(artifactId));
+        Assert.assertFalse(this.hasStoredInferenceStatus(artifactId));
+        Assert.assertEquals(inferredSize, testArtifactManager.exportArtifact(artifactId, true).size());
+    }
+    
+    /**
+     * @return True if an inference status is stored for the given artifact version in the artifact
+     *         management graph.
+     */
+    private boolean hasStoredInferenceStatus(final InferredOWLOntologyID artifactId) throws Exception
+    {
+        final PoddRepositoryManager repositoryManager = this.testArtifactManager.getRepositoryManager();
+        final RepositoryConnection managementConnection = repositoryManager.getManagementRepositoryConnection();
+        try
+        {
+            return managementConnection.hasStatement(artifactId.getVersionIRI().toOpenRDFURI(),
+                    PODD.PODD_BASE_INFERENCE_STATUS, null, false, repositoryManager.getArtifactManagementGraph());
+        }
+        finally
+        {
+            managementConnection.close();
+        }
+    }
+    
+    @Test
+    public void testGetArtifactCached() throws Exception
+    {
+        this.loadVersion1SchemaOntologies();
+        
+        final PoddArtifactManagerImpl testArtifactManager = (PoddArtifactManagerImpl)this.testArtifactManager;
+        
+        final InferredOWLOntologyID artifactId;
+        try (final InputStream inputStream = this.getClass().getResourceAsStream(TestConstants.TEST_ARTIFACT_20130206);)
+        {
+            artifactId = testArtifactManager.loadArtifact(inputStream, RDFFormat.TURTLE);
+        }
+        
+        final InferredOWLOntologyID firstResult = testArtifactManager.getArtifact(artifactId.getOntologyIRI());
+        final Set<? extends OWLOntologyID> firstImports = testArtifactManager.getSchemaImports(artifactId);
+        final long hits = testArtifactManager.getArtifactCacheHits();
+        final long misses = testArtifactManager.getArtifactCacheMisses();
+        
+        // verify: the second resolution does not query the management graph
+        Assert.assertEquals(firstResult, testArtifactManager.getArtifact(artifactId.getOntologyIRI()));
+        Assert.assertEquals(firstImports, testArtifactManager.getSchemaImports(artifactId));
+        Assert.assertEquals(misses, testArtifactManager.getArtifactCacheMisses());
+        Assert.assertTrue(testArtifactManager.getArtifactCacheHits() > hits);
+        
+        // verify: changes to the artifact are visible immediately
+        final InferredOWLOntologyID publishedId = testArtifactManager.publishArtifact(artifactId);
+        Assert.assertEquals(publishedId, testArtifactManager.getArtifact(artifactId.getOntologyIRI()));
+        Assert.assertTrue(testArtifactManager.getArtifactCacheMisses() > misses);
+    }
+    
+    @Test
+    public void testLoadArtifactStreamingStagedOnDisk() throws Exception
+    {
+        this.loadVersion1SchemaOntologies();
+        
+        final PoddArtifactManagerImpl testArtifactManager = (PoddArtifactManagerImpl)this.testArtifactManager;
+        testArtifactManager.setStreamingUploads(true);
+        // Force the upload to be moved to disk after the first statement
+        testArtifactManager.setStagingSpillThreshold(1);
+        
+        try (final InputStream inputStream =
+                this.getClass().getResourceAsStream(TestConstants.TEST_ARTIFACT_BASIC_1_INTERNAL_OBJECT);)
+        {
+            final InferredOWLOntologyID resultArtifactId =
+                    testArtifactManager.loadArtifact(inputStream, RDFFormat.RDFXML);
+            
+            Assert.assertNotNull(resultArtifactId);
+            Assert.assertNotNull(resultArtifactId.getVersionIRI());
+            Assert.assertNotNull(resultArtifactId.getInferredOntologyIRI());
+            
+            final Model concreteModel = testArtifactManager.exportArtifact(resultArtifactId, false);
+            Assert.assertEquals(TestConstants.TEST_ARTIFACT_BASIC_1_INTERNAL_OBJECT_CONCRETE_TRIPLES,
+                    concreteModel.size());
+            
+            // All of the temporary URIs must have been replaced with PURLs while streaming
+            final String temporaryPrefix = PoddPurlProcessorPrefixes.UUID.getTemporaryPrefix();
+            for(final Statement nextStatement : concreteModel)
+            {
+                Assert.assertFalse(nextStatement.getSubject().stringValue().startsWith(temporaryPrefix));
+                Assert.assertFalse(nextStatement.getObject().stringValue().startsWith(temporaryPrefix));
+            }
+        }
+    }
+    
+    @Test
+    public void testUpdateArtifactIncrementalLabel() throws Exception
+    {
+        this.loadVersion1SchemaOntologies();
+        
+        final PoddArtifactManagerImpl testArtifactManager = (PoddArtifactManagerImpl)this.testArtifactManager;
+        testArtifactManager.setIncrementalUpdates(true);
+        
+        final InferredOWLOntologyID artifactId;
+        try (final InputStream inputStream = this.getClass().getResourceAsStream(TestConstants.TEST_ARTIFACT_20130206);)
+        {
+            artifactId = testArtifactManager.loadArtifact(inputStream, RDFFormat.TURTLE);
+        }
+        
+        final Model originalConcrete = testArtifactManager.exportArtifact(artifactId, false);
+        final Model originalAll = testArtifactManager.exportArtifact(artifactId, true);
+        
+        // Add a second label to an existing object, which does not affect the inferences
+        Resource editedObject = null;
+        for(final Resource nextSubject : originalConcrete.filter(null, RDFS.LABEL, null).subjects())
+        {
+            if(!nextSubject.equals(artifactId.getOntologyIRI().toOpenRDFURI()))
+            {
+                editedObject = nextSubject;
+                break;
+            }
+        }
+        Assert.assertNotNull(editedObject);
+        
+        final Model edit = new LinkedHashModel();
+        edit.add(editedObject, RDFS.LABEL, PODD.VF.createLiteral("Incrementally updated label"));
+        final ByteArrayOutputStream editOutput = new ByteArrayOutputStream();
+        Rio.write(edit, editOutput, RDFFormat.TURTLE);
+        
+        final Model result =
+                testArtifactManager.updateArtifact(artifactId.getOntologyIRI().toOpenRDFURI(), artifactId
+                        .getVersionIRI().toOpenRDFURI(), Collections.<URI> emptyList(), new ByteArrayInputStream(
+                        editOutput.toByteArray()), RDFFormat.TURTLE, UpdatePolicy.MERGE_WITH_EXISTING,
+                        DanglingObjectPolicy.REPORT, DataReferenceVerificationPolicy.DO_NOT_VERIFY);
+        final InferredOWLOntologyID updatedId = OntologyUtils.modelToOntologyIDs(result).get(0);
+        
+        Assert.assertNotEquals(artifactId.getVersionIRI(), updatedId.getVersionIRI());
+        Assert.assertEquals(PODD.INFERRED_PREFIX + updatedId.getVersionIRI(), updatedId.getInferredOntologyIRI()
+                .toString());
+        
+        final Model updatedConcrete = testArtifactManager.exportArtifact(updatedId, false);
+        Assert.assertEquals(originalConcrete.size() + 1, updatedConcrete.size());
+        Assert.assertTrue(updatedConcrete.contains(editedObject, RDFS.LABEL,
+                PODD.VF.createLiteral("Incrementally updated label")));
+        Assert.assertTrue(updatedConcrete.contains(artifactId.getOntologyIRI().toOpenRDFURI(), OWL.VERSIONIRI,
+                updatedId.getVersionIRI().toOpenRDFURI()));
+        
+        // The existing inferences must have been carried over to the new version
+        final Model updatedAll = testArtifactManager.exportArtifact(updatedId, true);
+        Assert.assertEquals(originalAll.size() + 1, updatedAll.size());
+    }
+    
     @Override
     protected OWLOntologyManagerFactory getNewOWLOntologyManagerFactory()
     {
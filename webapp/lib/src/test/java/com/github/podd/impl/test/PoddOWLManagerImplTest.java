@@ -19,9 +19,16 @@ package com.github.podd.impl.test;
 import java.io.InputStream;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -59,6 +66,7 @@ import org.semanticweb.owlapi.reasoner.OWLReasonerFactory;
 import org.semanticweb.owlapi.reasoner.OWLReasonerFactoryRegistry;
 
 import com.github.ansell.propertyutil.PropertyUtil;
+import com.github.podd.api.InferredAxiomGeneratorType;
 import com.github.podd.api.PoddRepositoryManager;
 import com.github.podd.api.PoddSchemaManager;
 import com.github.podd.api.PoddSesameManager;
@@ -69,6 +77,7 @@ import com.github.podd.impl.PoddOWLManagerImpl;
 import com.github.podd.impl.PoddRepositoryManagerImpl;
 import com.github.podd.impl.PoddSchemaManagerImpl;
 import com.github.podd.impl.PoddSesameManagerImpl;
+import com.github.podd.test.TestUtils;
 import com.github.podd.utils.InferredOWLOntologyID;
 import com.github.podd.utils.PODD;
 import com.github.podd.utils.PoddWebConstants;
@@ -94,8 +103,11 @@ public class PoddOWLManagerImplTest extends AbstractPoddOWLManagerTest
         final RepositoryImplConfig repositoryImplConfig = RepositoryImplConfigBase.create(graph, repositoryNode);
         Assert.assertNotNull(repositoryImplConfig);
         Assert.assertNotNull(repositoryImplConfig.getType());
-        return new PoddRepositoryManagerImpl(managementRepository, repositoryImplConfig, "", this.tempDir.newFolder(
-                "test-podd-repository-manager").toPath(), new PropertyUtil("podd"));
+        final PoddRepositoryManagerImpl repositoryManager =
+                new PoddRepositoryManagerImpl(managementRepository, repositoryImplConfig, "", this.tempDir.newFolder(
+                        "test-podd-repository-manager").toPath(), new PropertyUtil("podd"));
+        repositoryManager.init();
+        return repositoryManager;
     }
     
     @Override
@@ -1071,4 +1083,152 @@ public class PoddOWLManagerImplTest extends AbstractPoddOWLManagerTest
         }
     }
     
+    /**
+     * Test that artifacts sharing the same schema ontologies can be loaded and inferred
+     * concurrently, and that the borrowed managers do not leave them in the shared cache.
+     */
+    @Test
+    public void testLoadAndInferConcurrent() throws Exception
+    {
+        final List<InferredOWLOntologyID> schemaOntologies = this.loadDcFoafAndPoddUserSchemaOntologies();
+        final Set<InferredOWLOntologyID> schemaSet = new LinkedHashSet<>(schemaOntologies);
+        
+        final int threadCount = 4;
+        final CountDownLatch openLatch = new CountDownLatch(1);
+        final CountDownLatch closeLatch = new CountDownLatch(threadCount);
+        final AtomicInteger successCount = new AtomicInteger(0);
+        final Set<InferredOWLOntologyID> results =
+                Collections.newSetFromMap(new ConcurrentHashMap<InferredOWLOntologyID, Boolean>());
+        
+        for(int i = 0; i < threadCount; i++)
+        {
+            final Runnable runner = new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            openLatch.await(55000, TimeUnit.MILLISECONDS);
+                            final RepositoryConnection nextConnection =
+                                    PoddOWLManagerImplTest.this.testRepositoryManager
+                                            .getManagementRepositoryConnection();
+                            try
+                            {
+                                nextConnection.begin();
+                                final OWLOntologyDocumentSource owlSource =
+                                        new StreamDocumentSource(this.getClass().getResourceAsStream(
+                                                PODD.PATH_PODD_BASE_V1), OWLOntologyFormatFactoryRegistry
+                                                .getInstance().getByMIMEType(RDFFormat.RDFXML.getDefaultMIMEType()));
+                                final InferredOWLOntologyID ontologyID =
+                                        PoddOWLManagerImplTest.this.testOwlManager.loadAndInfer(owlSource,
+                                                nextConnection, null, schemaSet, nextConnection,
+                                                PoddOWLManagerImplTest.this.schemaGraph);
+                                nextConnection.commit();
+                                results.add(ontologyID);
+                                successCount.incrementAndGet();
+                            }
+                            finally
+                            {
+                                nextConnection.close();
+                            }
+                        }
+                        catch(final Throwable e)
+                        {
+                            PoddOWLManagerImplTest.this.log.error("Failed to load and infer concurrently", e);
+                        }
+                        finally
+                        {
+                            closeLatch.countDown();
+                        }
+                    }
+                };
+            new Thread(runner, "PoddOWLManagerImplTest-" + i).start();
+        }
+        
+        openLatch.countDown();
+        Assert.assertTrue("Timed out waiting for threads", closeLatch.await(5, TimeUnit.MINUTES));
+        Assert.assertEquals(threadCount, successCount.get());
+        Assert.assertEquals(1, results.size());
+        
+        final InferredOWLOntologyID result = results.iterator().next();
+        Assert.assertFalse("Ontology should not be left in the shared cache",
+                this.testOwlManager.isCached(result, schemaSet));
+        
+        final RepositoryConnection managementConnection =
+                this.testRepositoryManager.getManagementRepositoryConnection();
+        try
+        {
+            Assert.assertEquals("Wrong inferred statement count",
+                    TestConstants.EXPECTED_TRIPLE_COUNT_PODD_BASE_INFERRED,
+                    managementConnection.size(result.getInferredOntologyIRI().toOpenRDFURI()));
+            
+            // Reuse one of the pooled managers, which must not have kept the reasoners or
+            // ontologies from the concurrent loads
+            managementConnection.clear(result.getVersionIRI().toOpenRDFURI(), result.getInferredOntologyIRI()
+                    .toOpenRDFURI());
+            this.loadInferStoreOntology(PODD.PATH_PODD_BASE_V1, RDFFormat.RDFXML,
+                    TestConstants.EXPECTED_TRIPLE_COUNT_PODD_BASE_CONCRETE,
+                    TestConstants.EXPECTED_TRIPLE_COUNT_PODD_BASE_INFERRED, schemaSet, managementConnection);
+        }
+        finally
+        {
+            managementConnection.close();
+        }
+    }
+    
+    @Test
+    public void testLoadAndInferWithConfiguredGenerators() throws Exception
+    {
+        final PoddOWLManagerImpl manager = (PoddOWLManagerImpl)this.testOwlManager;
+        
+        final long sequentialSize = this.loadAndInferSize();
+        Assert.assertTrue(sequentialSize > 0);
+        
+        final ExecutorService generatorExecutor = Executors.newFixedThreadPool(2);
+        try
+        {
+            manager.setInferredAxiomGeneratorExecutor(generatorExecutor);
+            Assert.assertEquals(sequentialSize, this.loadAndInferSize());
+        }
+        finally
+        {
+            manager.setInferredAxiomGeneratorExecutor(null);
+            generatorExecutor.shutdownNow();
+        }
+        
+        manager.setDefaultInferredAxiomGenerators(EnumSet.of(InferredAxiomGeneratorType.SUB_CLASS));
+        Assert.assertTrue(this.loadAndInferSize() <= sequentialSize);
+        
+        // Generators configured for an ontology in the imports closure are used in preference to
+        // the defaults
+        manager.setInferredAxiomGenerators(IRI.create("http://example.org/podd/ns/poddA"),
+                EnumSet.allOf(InferredAxiomGeneratorType.class));
+        Assert.assertEquals(sequentialSize, this.loadAndInferSize());
+    }
+    
+    /**
+     * Loads a1.owl, returning the number of inferred statements, and removes it again.
+     */
+    private long loadAndInferSize() throws Exception
+    {
+        final RepositoryConnection managementConnection =
+                this.testRepositoryManager.getManagementRepositoryConnection();
+        try
+        {
+            final InferredOWLOntologyID ontologyID =
+                    this.testOwlManager.loadAndInfer(TestUtils.getRioTripleSource("/test/ontologies/version/1/a1.owl"),
+                            managementConnection, null, Collections.<InferredOWLOntologyID> emptySet(),
+                            managementConnection, this.schemaGraph);
+            final URI inferredContext = ontologyID.getInferredOntologyIRI().toOpenRDFURI();
+            final long result = managementConnection.size(inferredContext);
+            managementConnection.clear(inferredContext, ontologyID.getVersionIRI().toOpenRDFURI());
+            return result;
+        }
+        finally
+        {
+            managementConnection.close();
+        }
+    }
+    
 }
@@ -17,22 +17,35 @@
 package com.github.podd.impl.test;
 
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 import org.junit.Assert;
+import org.junit.Test;
 import org.openrdf.model.Model;
 import org.openrdf.model.Resource;
+import org.openrdf.model.URI;
 import org.openrdf.model.util.GraphUtil;
+import org.openrdf.model.vocabulary.OWL;
+import org.openrdf.model.vocabulary.RDF;
 import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.config.RepositoryConfigSchema;
 import org.openrdf.repository.config.RepositoryImplConfig;
 import org.openrdf.repository.config.RepositoryImplConfigBase;
 import org.openrdf.rio.RDFFormat;
 import org.openrdf.rio.Rio;
+import org.semanticweb.owlapi.model.OWLOntologyID;
 
 import com.github.ansell.propertyutil.PropertyUtil;
 import com.github.podd.api.PoddRepositoryManager;
 import com.github.podd.api.test.AbstractPoddRepositoryManagerTest;
+import com.github.podd.exception.RepositoryNotFoundException;
 import com.github.podd.impl.PoddRepositoryManagerImpl;
+import com.github.podd.utils.InferredOWLOntologyID;
+import com.github.podd.utils.PODD;
 
 /**
  * @author kutila
@@ -51,7 +64,142 @@ public class PoddRepositoryManagerImplTest extends AbstractPoddRepositoryManager
         final RepositoryImplConfig repositoryImplConfig = RepositoryImplConfigBase.create(graph, repositoryNode);
         Assert.assertNotNull(repositoryImplConfig);
         Assert.assertNotNull(repositoryImplConfig.getType());
-        return new PoddRepositoryManagerImpl(managementRepository, repositoryImplConfig, "", tempDirPath,
-                new PropertyUtil("podd"));
+        final PoddRepositoryManagerImpl repositoryManager =
+                new PoddRepositoryManagerImpl(managementRepository, repositoryImplConfig, "", tempDirPath,
+                        new PropertyUtil("podd"));
+        repositoryManager.init();
+        return repositoryManager;
+    }
+    
+    private InferredOWLOntologyID addSchemaOntology(final String name) throws Exception
+    {
+        final URI ontologyUri = PODD.VF.createURI("urn:test:schema-set-index:" + name);
+        final URI versionUri = PODD.VF.createURI("urn:test:schema-set-index:" + name + ":version:1");
+        
+        final RepositoryConnection managementConnection =
+                this.testRepositoryManager.getManagementRepositoryConnection();
+        try
+        {
+            managementConnection.add(ontologyUri, RDF.TYPE, OWL.ONTOLOGY, versionUri);
+            managementConnection.add(ontologyUri, OWL.VERSIONIRI, versionUri, versionUri);
+        }
+        finally
+        {
+            managementConnection.close();
+        }
+        
+        return new InferredOWLOntologyID(ontologyUri, versionUri, null);
+    }
+    
+    private void assertPermanentRepositoryExists(final Set<? extends OWLOntologyID> schemaOntologies)
+        throws Exception
+    {
+        final RepositoryConnection permanentConnection =
+                this.testRepositoryManager.getPermanentRepositoryConnection(schemaOntologies, false);
+        try
+        {
+            Assert.assertNotNull("Permanent repository was null", permanentConnection);
+        }
+        finally
+        {
+            permanentConnection.close();
+        }
+    }
+    
+    private void assertPermanentRepositoryNotFound(final Set<? extends OWLOntologyID> schemaOntologies)
+        throws Exception
+    {
+        try
+        {
+            this.testRepositoryManager.getPermanentRepositoryConnection(schemaOntologies, false).close();
+            Assert.fail("Did not receive expected exception");
+        }
+        catch(final RepositoryNotFoundException e)
+        {
+            // Expected
+        }
+    }
+    
+    private void createPermanentRepository(final Set<? extends OWLOntologyID> schemaOntologies) throws Exception
+    {
+        this.testRepositoryManager.getPermanentRepositoryConnection(schemaOntologies, true).close();
+    }
+    
+    /**
+     * Shuts down the current repository manager and creates a new one on the same management
+     * repository, so that the schema set index must be loaded from the management graph.
+     */
+    private void reloadRepositoryManager() throws Exception
+    {
+        this.testRepositoryManager.shutDown();
+        this.managementRepository.initialize();
+        
+        this.testRepositoryManager =
+                this.getNewPoddRepositoryManagerInstance(this.managementRepository, this.testTempRepositoryManagerPath);
+        this.testRepositoryManager.setSchemaManagementGraph(this.schemaGraph);
+        this.testRepositoryManager.setArtifactManagementGraph(this.artifactGraph);
+    }
+    
+    /**
+     * Test that a repository is found in the index loaded from the management graph, regardless of
+     * the order of the schema ontologies in the request.
+     */
+    @Test
+    public final void testSchemaSetIndexLookup() throws Exception
+    {
+        final InferredOWLOntologyID schemaA = this.addSchemaOntology("a");
+        final InferredOWLOntologyID schemaB = this.addSchemaOntology("b");
+        
+        this.createPermanentRepository(new LinkedHashSet<>(Arrays.asList(schemaA, schemaB)));
+        
+        this.reloadRepositoryManager();
+        
+        this.assertPermanentRepositoryExists(new LinkedHashSet<>(Arrays.asList(schemaB, schemaA)));
+        this.assertPermanentRepositoryExists(new LinkedHashSet<>(Arrays.asList(schemaA, schemaB)));
+    }
+    
+    /**
+     * Test that subsets and supersets of an indexed set of schema ontologies do not match it.
+     */
+    @Test
+    public final void testSchemaSetIndexMiss() throws Exception
+    {
+        final InferredOWLOntologyID schemaA = this.addSchemaOntology("a");
+        final InferredOWLOntologyID schemaB = this.addSchemaOntology("b");
+        final InferredOWLOntologyID schemaC = this.addSchemaOntology("c");
+        
+        this.createPermanentRepository(new LinkedHashSet<>(Arrays.asList(schemaA, schemaB)));
+        
+        this.reloadRepositoryManager();
+        
+        this.assertPermanentRepositoryNotFound(Collections.singleton(schemaA));
+        this.assertPermanentRepositoryNotFound(Collections.singleton(schemaC));
+        this.assertPermanentRepositoryNotFound(new LinkedHashSet<>(Arrays.asList(schemaA, schemaB, schemaC)));
+    }
+    
+    /**
+     * Test that a repository added after the index was loaded is indexed, and is still found after
+     * the index is loaded again.
+     */
+    @Test
+    public final void testSchemaSetIndexReloadAfterNewRepository() throws Exception
+    {
+        final InferredOWLOntologyID schemaA = this.addSchemaOntology("a");
+        final InferredOWLOntologyID schemaB = this.addSchemaOntology("b");
+        
+        this.createPermanentRepository(Collections.singleton(schemaA));
+        
+        this.reloadRepositoryManager();
+        
+        this.assertPermanentRepositoryExists(Collections.singleton(schemaA));
+        this.assertPermanentRepositoryNotFound(Collections.singleton(schemaB));
+        
+        this.createPermanentRepository(Collections.singleton(schemaB));
+        this.assertPermanentRepositoryExists(Collections.singleton(schemaB));
+        
+        this.reloadRepositoryManager();
+        
+        this.assertPermanentRepositoryExists(Collections.singleton(schemaA));
+        this.assertPermanentRepositoryExists(Collections.singleton(schemaB));
     }
 }
@@ -92,8 +92,11 @@ public class PoddSchemaManagerImplTest extends AbstractPoddSchemaManagerTest
         Assert.assertNotNull(repositoryImplConfig.getType());
         final LocalRepositoryManager repositoryManager = new LocalRepositoryManager(repositoryManagerDirectory);
         repositoryManager.initialize();
-        return new PoddRepositoryManagerImpl(managementRepository, repositoryImplConfig, "",
-                repositoryManagerDirectory.toPath(), new PropertyUtil("podd"));
+        final PoddRepositoryManagerImpl poddRepositoryManager =
+                new PoddRepositoryManagerImpl(managementRepository, repositoryImplConfig, "",
+                        repositoryManagerDirectory.toPath(), new PropertyUtil("podd"));
+        poddRepositoryManager.init();
+        return poddRepositoryManager;
     }
     
     @Override
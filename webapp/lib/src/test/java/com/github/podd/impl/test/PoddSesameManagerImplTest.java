@@ -19,8 +19,12 @@ package com.github.podd.impl.test;
 import java.util.Collection;
 import java.util.List;
 
+import org.junit.Assert;
+import org.junit.Test;
 import org.openrdf.model.Model;
 import org.openrdf.model.URI;
+import org.openrdf.model.impl.LinkedHashModel;
+import org.openrdf.model.vocabulary.OWL;
 import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.rio.RDFFormat;
 import org.openrdf.rio.Rio;
@@ -29,9 +33,11 @@ import org.semanticweb.owlapi.model.OWLOntologyManagerFactoryRegistry;
 
 import com.github.podd.api.PoddSesameManager;
 import com.github.podd.api.test.AbstractPoddSesameManagerTest;
+import com.github.podd.api.test.TestConstants;
 import com.github.podd.impl.PoddSesameManagerImpl;
 import com.github.podd.utils.InferredOWLOntologyID;
 import com.github.podd.utils.OntologyUtils;
+import com.github.podd.utils.PODD;
 import com.github.podd.utils.PoddWebConstants;
 
 /**
@@ -93,4 +99,108 @@ public class PoddSesameManagerImplTest extends AbstractPoddSesameManagerTest
         return ontologyIDs;
     }
     
+    @Test
+    public void testSchemaContextsCached() throws Exception
+    {
+        final PoddSesameManagerImpl manager = (PoddSesameManagerImpl)this.testPoddSesameManager;
+        
+        this.loadSchemaOntologies();
+        final InferredOWLOntologyID ontologyID =
+                this.loadOntologyFromResource(TestConstants.TEST_ARTIFACT_20130206,
+                        TestConstants.TEST_ARTIFACT_20130206_INFERRED, RDFFormat.TURTLE);
+        
+        // Contexts resolved inside a transaction may include uncommitted changes, so they are not
+        // cached
+        final long activeMisses = manager.getContextsCacheMisses();
+        final URI[] expected =
+                manager.schemaContexts(ontologyID, this.testRepositoryConnection, this.schemaGraph,
+                        this.artifactGraph);
+        Assert.assertTrue(expected.length > 0);
+        Assert.assertArrayEquals(expected, manager.schemaContexts(ontologyID, this.testRepositoryConnection,
+                this.schemaGraph, this.artifactGraph));
+        Assert.assertEquals(activeMisses + 2, manager.getContextsCacheMisses());
+        
+        this.testRepositoryConnection.commit();
+        try
+        {
+            final long hits = manager.getContextsCacheHits();
+            final long misses = manager.getContextsCacheMisses();
+            
+            final URI[] contexts =
+                    manager.schemaContexts(ontologyID, this.testRepositoryConnection, this.schemaGraph,
+                            this.artifactGraph);
+            Assert.assertArrayEquals(expected, contexts);
+            Assert.assertEquals(hits, manager.getContextsCacheHits());
+            Assert.assertEquals(misses + 1, manager.getContextsCacheMisses());
+            
+            // Modifying the result must not modify any cached results
+            contexts[0] = null;
+            
+            Assert.assertArrayEquals(expected, manager.schemaContexts(ontologyID, this.testRepositoryConnection,
+                    this.schemaGraph, this.artifactGraph));
+            Assert.assertEquals(hits + 1, manager.getContextsCacheHits());
+            Assert.assertEquals(misses + 1, manager.getContextsCacheMisses());
+            
+            manager.invalidateContextsCache();
+            
+            Assert.assertArrayEquals(expected, manager.schemaContexts(ontologyID, this.testRepositoryConnection,
+                    this.schemaGraph, this.artifactGraph));
+            Assert.assertEquals(hits + 1, manager.getContextsCacheHits());
+            Assert.assertEquals(misses + 2, manager.getContextsCacheMisses());
+        }
+        finally
+        {
+            // The connection is rolled back after each test
+            this.testRepositoryConnection.begin();
+        }
+    }
+    
+    /**
+     * Searches for the given term one result at a time, and checks that the pages do not overlap
+     * and together contain exactly the results from a single search.
+     */
+    private void assertSearchPages(final String searchTerm, final URI[] searchTypes, final URI[] contexts)
+        throws Exception
+    {
+        final Model expected =
+                this.testPoddSesameManager.searchOntologyLabels(searchTerm, searchTypes, 1000, 0,
+                        this.testRepositoryConnection, contexts);
+        Assert.assertFalse("No results for " + searchTerm, expected.isEmpty());
+        
+        final Model pages = new LinkedHashModel();
+        for(int offset = 0; offset < expected.size(); offset++)
+        {
+            final Model page =
+                    this.testPoddSesameManager.searchOntologyLabels(searchTerm, searchTypes, 1, offset,
+                            this.testRepositoryConnection, contexts);
+            Assert.assertEquals("Wrong page size for offset " + offset, 1, page.size());
+            Assert.assertTrue("Page overlapped a previous page for offset " + offset, pages.addAll(page));
+        }
+        Assert.assertEquals(expected, pages);
+        
+        Assert.assertTrue("Found results after the last page", this.testPoddSesameManager.searchOntologyLabels(
+                searchTerm, searchTypes, 1, expected.size(), this.testRepositoryConnection, contexts).isEmpty());
+    }
+    
+    @Test
+    public void testSearchOntologyLabelsPaging() throws Exception
+    {
+        this.loadSchemaOntologies();
+        final InferredOWLOntologyID ontologyID =
+                this.loadOntologyFromResource(TestConstants.TEST_ARTIFACT_20130206,
+                        TestConstants.TEST_ARTIFACT_20130206_INFERRED, RDFFormat.TURTLE);
+        
+        final URI[] searchTypes =
+                { PODD.VF.createURI(PODD.PODD_SCIENCE, "Platform"),
+                        PODD.VF.createURI(OWL.NAMESPACE, "NamedIndividual") };
+        final URI[] contexts =
+                this.testPoddSesameManager.versionAndSchemaContexts(ontologyID, this.testRepositoryConnection,
+                        this.schemaGraph, this.artifactGraph);
+        
+        // Substring matches
+        this.assertSearchPages("ME", searchTypes, contexts);
+        
+        // No label contains this term, so only the fuzzy matches are returned
+        this.assertSearchPages("Pyromter", searchTypes, contexts);
+    }
 }
@@ -0,0 +1,293 @@
+/**
+ * PODD is an OWL ontology database used for scientific project management
+ *
+ * Copyright (C) 2009-2013 The University Of Queensland
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.podd.resources.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.model.Model;
+import org.openrdf.model.Resource;
+import org.openrdf.model.URI;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFParseException;
+import org.openrdf.rio.Rio;
+import org.openrdf.rio.UnsupportedRDFormatException;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Range;
+import org.restlet.data.Status;
+import org.restlet.representation.Representation;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.resource.ClientResource;
+import org.restlet.resource.ResourceException;
+
+import com.github.podd.api.test.TestConstants;
+import com.github.podd.impl.data.PoddDataRepositoryManagerImpl;
+import com.github.podd.impl.data.test.SSHService;
+import com.github.podd.utils.InferredOWLOntologyID;
+import com.github.podd.utils.PODD;
+import com.github.podd.utils.PoddWebConstants;
+
+/**
+ * Tests downloading the data for a data reference that is attached to an artifact, using a test SSH
+ * server as the data repository.
+ *
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class DataReferenceDownloadResourceImplTest extends AbstractResourceImplTest
+{
+    /** SSH File Repository server for tests */
+    protected SSHService sshd;
+    
+    private Path sshDir = null;
+    
+    private InferredOWLOntologyID artifactID;
+    
+    private URI dataReferenceUri;
+    
+    private byte[] expectedData;
+    
+    /**
+     * Attaches a verifiable SSH file reference to a new copy of the test artifact, returning the
+     * URI of the data reference.
+     */
+    private URI attachDataReference() throws Exception
+    {
+        final Path completePath = this.sshDir.resolve(TestConstants.TEST_REMOTE_FILE_NAME);
+        Files.copy(
+                this.getClass().getResourceAsStream(
+                        TestConstants.TEST_REMOTE_FILE_PATH + "/" + TestConstants.TEST_REMOTE_FILE_NAME), completePath,
+                StandardCopyOption.REPLACE_EXISTING);
+        
+        final InputStream inputStream =
+                this.getClass().getResourceAsStream(TestConstants.TEST_ARTIFACT_FRAGMENT_NEW_FILE_REF_VERIFIABLE_TTL);
+        final Model model = Rio.parse(inputStream, "", RDFFormat.TURTLE);
+        final Resource aliasUri = model.filter(null, PODD.PODD_BASE_HAS_ALIAS, null).subjects().iterator().next();
+        model.add(aliasUri, PODD.PODD_BASE_HAS_FILE_PATH, PODD.VF.createLiteral(this.sshDir.toAbsolutePath()
+                .toString()));
+        model.add(aliasUri, PODD.PODD_BASE_HAS_FILENAME, PODD.VF.createLiteral(TestConstants.TEST_REMOTE_FILE_NAME));
+        final StringWriter out = new StringWriter();
+        Rio.write(model, out, RDFFormat.TURTLE);
+        
+        final ClientResource fileRefAttachClientResource =
+                new ClientResource(this.getUrl(PoddWebConstants.PATH_ATTACH_DATA_REF));
+        try
+        {
+            fileRefAttachClientResource.addQueryParameter(PoddWebConstants.KEY_ARTIFACT_IDENTIFIER, this.artifactID
+                    .getOntologyIRI().toString());
+            fileRefAttachClientResource.addQueryParameter(PoddWebConstants.KEY_ARTIFACT_VERSION_IDENTIFIER,
+                    this.artifactID.getVersionIRI().toString());
+            fileRefAttachClientResource.addQueryParameter(PoddWebConstants.KEY_VERIFICATION_POLICY,
+                    Boolean.toString(true));
+            
+            this.doTestAuthenticatedRequest(fileRefAttachClientResource, Method.POST, new StringRepresentation(
+                    out.toString(), MediaType.APPLICATION_RDF_TURTLE), MediaType.APPLICATION_RDF_TURTLE,
+                    Status.SUCCESS_OK, AbstractResourceImplTest.WITH_ADMIN);
+        }
+        finally
+        {
+            this.releaseClient(fileRefAttachClientResource);
+        }
+        
+        final Model artifactModel = this.getArtifactAsModel(this.artifactID.getOntologyIRI().toString());
+        final Model dataReferences = artifactModel.filter(null, RDF.TYPE, PODD.PODD_BASE_FILE_REFERENCE_TYPE_SSH);
+        Assert.assertEquals(1, dataReferences.subjects().size());
+        return (URI)dataReferences.subjects().iterator().next();
+    }
+    
+    /**
+     * Downloads the data for the test data reference, returning the bytes that were received.
+     *
+     * @param range
+     *            The range to request, or null to request all of the data.
+     */
+    private byte[] download(final Range range, final Status expectedStatus) throws Exception
+    {
+        final ClientResource downloadClientResource =
+                new ClientResource(this.getUrl(PoddWebConstants.PATH_DATA_REFERENCE_DOWNLOAD));
+        try
+        {
+            downloadClientResource.addQueryParameter(PoddWebConstants.KEY_ARTIFACT_IDENTIFIER, this.artifactID
+                    .getOntologyIRI().toString());
+            downloadClientResource.addQueryParameter(PoddWebConstants.KEY_OBJECT_IDENTIFIER,
+                    this.dataReferenceUri.stringValue());
+            if(range != null)
+            {
+                downloadClientResource.getRanges().add(range);
+            }
+            
+            final Representation results =
+                    this.doTestAuthenticatedRequest(downloadClientResource, Method.GET, null, MediaType.ALL,
+                            expectedStatus, AbstractResourceImplTest.WITH_ADMIN);
+            
+            Assert.assertEquals(MediaType.TEXT_PLAIN, results.getMediaType());
+            Assert.assertTrue(downloadClientResource.getResponse().getServerInfo().isAcceptingRanges());
+            if(Status.SUCCESS_PARTIAL_CONTENT.equals(expectedStatus))
+            {
+                Assert.assertNotNull(results.getRange());
+            }
+            
+            return IOUtils.toByteArray(results.getStream());
+        }
+        finally
+        {
+            this.releaseClient(downloadClientResource);
+        }
+    }
+    
+    /**
+     * Requests the given range, which is expected to fail with the given status.
+     *
+     * @return The response to the failed request.
+     */
+    private ClientResource downloadError(final Range range, final Status expectedStatus) throws Exception
+    {
+        final ClientResource downloadClientResource =
+                new ClientResource(this.getUrl(PoddWebConstants.PATH_DATA_REFERENCE_DOWNLOAD));
+        try
+        {
+            downloadClientResource.addQueryParameter(PoddWebConstants.KEY_ARTIFACT_IDENTIFIER, this.artifactID
+                    .getOntologyIRI().toString());
+            downloadClientResource.addQueryParameter(PoddWebConstants.KEY_OBJECT_IDENTIFIER,
+                    this.dataReferenceUri.stringValue());
+            if(range != null)
+            {
+                downloadClientResource.getRanges().add(range);
+            }
+            
+            this.doTestAuthenticatedRequest(downloadClientResource, Method.GET, null, MediaType.ALL, expectedStatus,
+                    AbstractResourceImplTest.WITH_ADMIN);
+            Assert.fail("Should have thrown a ResourceException");
+        }
+        catch(final ResourceException e)
+        {
+            Assert.assertEquals(expectedStatus, e.getStatus());
+        }
+        finally
+        {
+            this.releaseClient(downloadClientResource);
+        }
+        return downloadClientResource;
+    }
+    
+    @Override
+    protected Model getTestAliases() throws RDFParseException, UnsupportedRDFormatException, IOException
+    {
+        String configuration =
+                IOUtils.toString(this.getClass().getResourceAsStream("/test/test-alias.ttl"), StandardCharsets.UTF_8);
+        
+        configuration = configuration.replace("9856", Integer.toString(this.sshd.TEST_SSH_SERVICE_PORT));
+        
+        return Rio.parse(new StringReader(configuration), "", RDFFormat.TURTLE);
+    }
+    
+    @Before
+    @Override
+    public void setUp() throws Exception
+    {
+        this.sshDir = this.tempDirectory.newFolder("podd-datareference-download-test").toPath();
+        this.sshd = new SSHService();
+        this.sshd.startTestSSHServer(this.sshDir);
+        super.setUp();
+        
+        this.expectedData =
+                IOUtils.toByteArray(this.getClass().getResourceAsStream(
+                        TestConstants.TEST_REMOTE_FILE_PATH + "/" + TestConstants.TEST_REMOTE_FILE_NAME));
+        Assert.assertTrue(this.expectedData.length > 20);
+        
+        this.artifactID = this.loadTestArtifact(TestConstants.TEST_ARTIFACT_20130206, MediaType.APPLICATION_RDF_TURTLE);
+        this.dataReferenceUri = this.attachDataReference();
+    }
+    
+    @After
+    @Override
+    public void tearDown() throws Exception
+    {
+        try
+        {
+            super.tearDown();
+        }
+        finally
+        {
+            if(this.sshd != null)
+            {
+                this.sshd.stopTestSSHServer(this.sshDir);
+            }
+        }
+    }
+    
+    @Test
+    public void testDownloadFull() throws Exception
+    {
+        Assert.assertArrayEquals(this.expectedData, this.download(null, Status.SUCCESS_OK));
+    }
+    
+    @Test
+    public void testDownloadOpenEndedRange() throws Exception
+    {
+        final int offset = 10;
+        Assert.assertArrayEquals(Arrays.copyOfRange(this.expectedData, offset, this.expectedData.length),
+                this.download(new Range(offset), Status.SUCCESS_PARTIAL_CONTENT));
+    }
+    
+    @Test
+    public void testDownloadBoundedRange() throws Exception
+    {
+        Assert.assertArrayEquals(Arrays.copyOfRange(this.expectedData, 5, 15),
+                this.download(new Range(5, 10), Status.SUCCESS_PARTIAL_CONTENT));
+    }
+    
+    @Test
+    public void testDownloadSuffixRange() throws Exception
+    {
+        final int suffixLength = 7;
+        Assert.assertArrayEquals(
+                Arrays.copyOfRange(this.expectedData, this.expectedData.length - suffixLength,
+                        this.expectedData.length),
+                this.download(new Range(Range.INDEX_LAST, suffixLength), Status.SUCCESS_PARTIAL_CONTENT));
+    }
+    
+    @Test
+    public void testErrorDownloadUnsatisfiableRange() throws Exception
+    {
+        this.downloadError(new Range(this.expectedData.length + 10, 5),
+                Status.CLIENT_ERROR_REQUESTED_RANGE_NOT_SATISFIABLE);
+    }
+    
+    @Test
+    public void testErrorDownloadBusy() throws Exception
+    {
+        ((PoddDataRepositoryManagerImpl)this.getPoddApplication().getPoddDataRepositoryManager())
+                .setMaxConcurrentDownloads(0);
+        
+        final ClientResource response = this.downloadError(null, Status.SERVER_ERROR_SERVICE_UNAVAILABLE);
+        Assert.assertNotNull(response.getResponse().getRetryAfter());
+    }
+}
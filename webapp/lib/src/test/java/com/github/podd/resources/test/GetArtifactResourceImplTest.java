@@ -17,14 +17,17 @@
 package com.github.podd.resources.test;
 
 import java.io.StringReader;
+import java.util.zip.GZIPInputStream;
 
 import org.junit.Assert;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.openrdf.model.Model;
 import org.openrdf.rio.RDFFormat;
+import org.restlet.data.Encoding;
 import org.restlet.data.MediaType;
 import org.restlet.data.Method;
+import org.restlet.data.Preference;
 import org.restlet.data.Status;
 import org.restlet.representation.Representation;
 import org.restlet.resource.ClientResource;
@@ -372,6 +375,36 @@ public class GetArtifactResourceImplTest extends AbstractResourceImplTest
     /**
      * Test authenticated access to get Artifact in RDF/Turtle
      */
+    @Test
+    public void testGetArtifactBasicRdfGzip() throws Exception
+    {
+        // prepare: add an artifact
+        final String artifactUri = this.loadTestArtifact(TestConstants.TEST_ARTIFACT_BASIC_1_INTERNAL_OBJECT);
+        
+        final ClientResource getArtifactClientResource =
+                new ClientResource(this.getUrl(PoddWebConstants.PATH_ARTIFACT_GET_BASE));
+        
+        try
+        {
+            getArtifactClientResource.addQueryParameter(PoddWebConstants.KEY_ARTIFACT_IDENTIFIER, artifactUri);
+            getArtifactClientResource.getClientInfo().getAcceptedEncodings()
+                    .add(new Preference<Encoding>(Encoding.GZIP));
+            
+            final Representation results =
+                    this.doTestAuthenticatedRequest(getArtifactClientResource, Method.GET, null,
+                            MediaType.APPLICATION_RDF_XML, Status.SUCCESS_OK, AbstractResourceImplTest.WITH_ADMIN);
+            
+            // verify: the streamed response was compressed
+            Assert.assertTrue("Result was not compressed", results.getEncodings().contains(Encoding.GZIP));
+            
+            this.assertRdf(new GZIPInputStream(results.getStream()), RDFFormat.RDFXML, 29);
+        }
+        finally
+        {
+            this.releaseClient(getArtifactClientResource);
+        }
+    }
+    
     @Test
     public void testGetArtifactBasicTurtle() throws Exception
     {
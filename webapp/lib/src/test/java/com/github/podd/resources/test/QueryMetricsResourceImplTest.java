@@ -0,0 +1,88 @@
+/**
+ * PODD is an OWL ontology database used for scientific project management
+ *
+ * Copyright (C) 2009-2013 The University Of Queensland
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.podd.resources.test;
+
+import java.io.StringReader;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Model;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.Rio;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.representation.Representation;
+import org.restlet.resource.ClientResource;
+import org.restlet.resource.ResourceException;
+
+import com.github.ansell.restletutils.RestletUtilMediaType;
+import com.github.podd.utils.PODD;
+import com.github.podd.utils.PoddWebConstants;
+
+/**
+ * @author Peter Ansell p_ansell@yahoo.com
+ */
+public class QueryMetricsResourceImplTest extends AbstractResourceImplTest
+{
+    @Test
+    public void testRdfJsonAuthenticatedAdmin() throws Exception
+    {
+        final ClientResource queryMetricsClientResource =
+                new ClientResource(this.getUrl(PoddWebConstants.PATH_ADMIN_QUERY_METRICS));
+        
+        try
+        {
+            final Representation results =
+                    this.doTestAuthenticatedRequest(queryMetricsClientResource, Method.GET, null,
+                            RestletUtilMediaType.APPLICATION_RDF_JSON, Status.SUCCESS_OK,
+                            AbstractResourceImplTest.WITH_ADMIN);
+            
+            final Model model = Rio.parse(new StringReader(this.getText(results)), "", RDFFormat.RDFJSON);
+            
+            // The user management queries run while logging in must have been recorded
+            Assert.assertFalse(model.filter(null, RDF.TYPE, PODD.METRICS_TYPE_QUERY_METRICS).isEmpty());
+            Assert.assertFalse(model.filter(null, PODD.METRICS_EXECUTION_COUNT, null).isEmpty());
+        }
+        finally
+        {
+            this.releaseClient(queryMetricsClientResource);
+        }
+    }
+    
+    @Test
+    public void testErrorRdfJsonAuthenticatedNonAdmin() throws Exception
+    {
+        final ClientResource queryMetricsClientResource =
+                new ClientResource(this.getUrl(PoddWebConstants.PATH_ADMIN_QUERY_METRICS));
+        
+        try
+        {
+            this.doTestAuthenticatedRequest(queryMetricsClientResource, Method.GET, null,
+                    RestletUtilMediaType.APPLICATION_RDF_JSON, Status.SUCCESS_OK, AbstractResourceImplTest.NO_ADMIN);
+            Assert.fail("Should've failed due to lack of authorization");
+        }
+        catch(final ResourceException e)
+        {
+            Assert.assertEquals(Status.CLIENT_ERROR_UNAUTHORIZED, e.getStatus());
+        }
+        finally
+        {
+            this.releaseClient(queryMetricsClientResource);
+        }
+    }
+}
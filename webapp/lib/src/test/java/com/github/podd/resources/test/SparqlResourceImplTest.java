@@ -16,10 +16,20 @@
  */
 package com.github.podd.resources.test;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import org.junit.Assert;
 import org.junit.Test;
 import org.openrdf.model.Model;
 import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.QueryResults;
+import org.openrdf.query.resultio.QueryResultIO;
+import org.openrdf.query.resultio.TupleQueryResultFormat;
 import org.openrdf.rio.RDFFormat;
 import org.restlet.data.MediaType;
 import org.restlet.data.Method;
@@ -320,4 +330,216 @@ public class SparqlResourceImplTest extends AbstractResourceImplTest
         }
     }
     
+    @Test
+    public void testErrorMalformedSparqlQuery() throws Exception
+    {
+        // prepare: add an artifact
+        final InferredOWLOntologyID testArtifact =
+                this.loadTestArtifact(TestConstants.TEST_ARTIFACT_20130206, MediaType.APPLICATION_RDF_TURTLE);
+        
+        final ClientResource searchClientResource = new ClientResource(this.getUrl(PoddWebConstants.PATH_SPARQL));
+        
+        try
+        {
+            searchClientResource.addQueryParameter(PoddWebConstants.KEY_SPARQLQUERY, "CONSTRUCT { ?s a ?o } WHERE {");
+            searchClientResource.addQueryParameter(PoddWebConstants.KEY_ARTIFACT_IDENTIFIER, testArtifact
+                    .getOntologyIRI().toString());
+            
+            this.doTestAuthenticatedRequest(searchClientResource, Method.GET, null, MediaType.APPLICATION_RDF_XML,
+                    Status.CLIENT_ERROR_BAD_REQUEST, AbstractResourceImplTest.WITH_ADMIN);
+        }
+        finally
+        {
+            this.releaseClient(searchClientResource);
+        }
+    }
+    
+    @Test
+    public void testSparqlSelectAllContexts() throws Exception
+    {
+        // prepare: add an artifact
+        final InferredOWLOntologyID testArtifact =
+                this.loadTestArtifact(TestConstants.TEST_ARTIFACT_20130206, MediaType.APPLICATION_RDF_TURTLE);
+        
+        final ClientResource searchClientResource = new ClientResource(this.getUrl(PoddWebConstants.PATH_SPARQL));
+        
+        try
+        {
+            searchClientResource.addQueryParameter(PoddWebConstants.KEY_SPARQLQUERY,
+                    "SELECT DISTINCT ?s WHERE { ?s a ?o }");
+            searchClientResource.addQueryParameter(PoddWebConstants.KEY_ARTIFACT_IDENTIFIER, testArtifact
+                    .getOntologyIRI().toString());
+            
+            // invoke service
+            final Representation results =
+                    this.doTestAuthenticatedRequest(searchClientResource, Method.GET, null,
+                            MediaType.APPLICATION_SPARQL_RESULTS_JSON, Status.SUCCESS_OK,
+                            AbstractResourceImplTest.WITH_ADMIN);
+            
+            // verify: response
+            final List<BindingSet> bindings =
+                    QueryResults.asList(QueryResultIO.parse(new ByteArrayInputStream(this.getText(results)
+                            .getBytes(StandardCharsets.UTF_8)), TupleQueryResultFormat.JSON));
+            Assert.assertEquals(575, bindings.size());
+            Assert.assertTrue(bindings.get(0).hasBinding("s"));
+        }
+        finally
+        {
+            this.releaseClient(searchClientResource);
+        }
+    }
+    
+    @Test
+    public void testSparqlAskAllContexts() throws Exception
+    {
+        // prepare: add an artifact
+        final InferredOWLOntologyID testArtifact =
+                this.loadTestArtifact(TestConstants.TEST_ARTIFACT_20130206, MediaType.APPLICATION_RDF_TURTLE);
+        
+        final ClientResource searchClientResource = new ClientResource(this.getUrl(PoddWebConstants.PATH_SPARQL));
+        
+        try
+        {
+            searchClientResource.addQueryParameter(PoddWebConstants.KEY_SPARQLQUERY, "ASK { ?s a ?o }");
+            searchClientResource.addQueryParameter(PoddWebConstants.KEY_ARTIFACT_IDENTIFIER, testArtifact
+                    .getOntologyIRI().toString());
+            
+            // invoke service
+            final Representation results =
+                    this.doTestAuthenticatedRequest(searchClientResource, Method.GET, null,
+                            MediaType.APPLICATION_SPARQL_RESULTS_XML, Status.SUCCESS_OK,
+                            AbstractResourceImplTest.WITH_ADMIN);
+            
+            // verify: response
+            final String body = this.getText(results);
+            Assert.assertTrue(body, body.contains("<boolean>true</boolean>"));
+        }
+        finally
+        {
+            this.releaseClient(searchClientResource);
+        }
+    }
+    
+    /**
+     * Loads two artifacts that import different schema ontologies, so they are stored in separate
+     * repositories and queried separately.
+     */
+    private InferredOWLOntologyID[] loadArtifactsWithDifferentSchemas() throws Exception
+    {
+        return new InferredOWLOntologyID[] {
+                this.loadTestArtifact(TestConstants.TEST_ARTIFACT_20130206, MediaType.APPLICATION_RDF_TURTLE),
+                this.loadTestArtifact(TestConstants.TEST_ARTIFACT_BASIC_PROJECT_1, MediaType.APPLICATION_RDF_XML) };
+    }
+    
+    private List<BindingSet> doSelect(final String sparqlQuery, final InferredOWLOntologyID... artifacts)
+        throws Exception
+    {
+        final ClientResource searchClientResource = new ClientResource(this.getUrl(PoddWebConstants.PATH_SPARQL));
+        
+        try
+        {
+            searchClientResource.addQueryParameter(PoddWebConstants.KEY_SPARQLQUERY, sparqlQuery);
+            for(final InferredOWLOntologyID nextArtifact : artifacts)
+            {
+                searchClientResource.addQueryParameter(PoddWebConstants.KEY_ARTIFACT_IDENTIFIER, nextArtifact
+                        .getOntologyIRI().toString());
+            }
+            
+            final Representation results =
+                    this.doTestAuthenticatedRequest(searchClientResource, Method.GET, null,
+                            MediaType.APPLICATION_SPARQL_RESULTS_JSON, Status.SUCCESS_OK,
+                            AbstractResourceImplTest.WITH_ADMIN);
+            
+            return QueryResults.asList(QueryResultIO.parse(
+                    new ByteArrayInputStream(this.getText(results).getBytes(StandardCharsets.UTF_8)),
+                    TupleQueryResultFormat.JSON));
+        }
+        finally
+        {
+            this.releaseClient(searchClientResource);
+        }
+    }
+    
+    private void doSelectRejected(final String sparqlQuery, final InferredOWLOntologyID... artifacts)
+        throws Exception
+    {
+        final ClientResource searchClientResource = new ClientResource(this.getUrl(PoddWebConstants.PATH_SPARQL));
+        
+        try
+        {
+            searchClientResource.addQueryParameter(PoddWebConstants.KEY_SPARQLQUERY, sparqlQuery);
+            for(final InferredOWLOntologyID nextArtifact : artifacts)
+            {
+                searchClientResource.addQueryParameter(PoddWebConstants.KEY_ARTIFACT_IDENTIFIER, nextArtifact
+                        .getOntologyIRI().toString());
+            }
+            
+            this.doTestAuthenticatedRequest(searchClientResource, Method.GET, null,
+                    MediaType.APPLICATION_SPARQL_RESULTS_JSON, Status.CLIENT_ERROR_BAD_REQUEST,
+                    AbstractResourceImplTest.WITH_ADMIN);
+        }
+        finally
+        {
+            this.releaseClient(searchClientResource);
+        }
+    }
+    
+    @Test
+    public void testSparqlSelectAcrossSchemaSets() throws Exception
+    {
+        final InferredOWLOntologyID[] artifacts = this.loadArtifactsWithDifferentSchemas();
+        final String query = "SELECT ?s ?o WHERE { ?s a ?o }";
+        
+        final int firstSize = this.doSelect(query, artifacts[0]).size();
+        final int secondSize = this.doSelect(query, artifacts[1]).size();
+        Assert.assertTrue(firstSize > 0);
+        Assert.assertTrue(secondSize > 0);
+        
+        Assert.assertEquals(firstSize + secondSize, this.doSelect(query, artifacts).size());
+    }
+    
+    @Test
+    public void testSparqlSelectDistinctAcrossSchemaSets() throws Exception
+    {
+        final InferredOWLOntologyID[] artifacts = this.loadArtifactsWithDifferentSchemas();
+        
+        // Both artifacts use classes from the poddBase schema
+        final List<BindingSet> bindings = this.doSelect("SELECT DISTINCT ?o WHERE { ?s a ?o }", artifacts);
+        final Set<BindingSet> distinctBindings = new HashSet<BindingSet>(bindings);
+        Assert.assertEquals(distinctBindings.size(), bindings.size());
+    }
+    
+    @Test
+    public void testSparqlCountSingleSchemaSet() throws Exception
+    {
+        final InferredOWLOntologyID[] artifacts = this.loadArtifactsWithDifferentSchemas();
+        
+        final int expected = this.doSelect("SELECT ?s ?o WHERE { ?s a ?o }", artifacts[0]).size();
+        final List<BindingSet> bindings =
+                this.doSelect("SELECT (COUNT(*) AS ?count) WHERE { ?s a ?o }", artifacts[0]);
+        Assert.assertEquals(1, bindings.size());
+        Assert.assertEquals(expected, Integer.parseInt(bindings.get(0).getValue("count").stringValue()));
+    }
+    
+    @Test
+    public void testErrorSparqlCountAcrossSchemaSets() throws Exception
+    {
+        this.doSelectRejected("SELECT (COUNT(*) AS ?count) WHERE { ?s a ?o }",
+                this.loadArtifactsWithDifferentSchemas());
+    }
+    
+    @Test
+    public void testErrorSparqlLimitAcrossSchemaSets() throws Exception
+    {
+        this.doSelectRejected("SELECT ?s WHERE { ?s a ?o } LIMIT 5", this.loadArtifactsWithDifferentSchemas());
+    }
+    
+    @Test
+    public void testSparqlLimitSingleSchemaSet() throws Exception
+    {
+        final InferredOWLOntologyID[] artifacts = this.loadArtifactsWithDifferentSchemas();
+        
+        Assert.assertEquals(5, this.doSelect("SELECT ?s WHERE { ?s a ?o } LIMIT 5", artifacts[1]).size());
+    }
+    
 }
@@ -20,6 +20,7 @@ import info.aduna.iteration.Iterations;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
@@ -35,7 +36,9 @@ import org.openrdf.repository.Repository;
 import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.sail.SailRepository;
 import org.openrdf.sail.memory.MemoryStore;
+import org.restlet.security.LocalVerifier;
 import org.restlet.security.Role;
+import org.restlet.security.Verifier;
 
 import com.github.ansell.restletutils.SesameRealmConstants;
 import com.github.podd.exception.PoddRuntimeException;
@@ -311,6 +314,55 @@ public class PoddSesameRealmTest
         Assert.assertTrue("Project_Member role missing", rolesForObject1.contains(PoddRoles.PROJECT_MEMBER.getRole()));
     }
     
+    /**
+     * Test that the object roles index stays consistent with the repository after it is loaded.
+     */
+    @Test
+    public void testGetRolesForObjectAlternateAfterMapAndUnmap() throws Exception
+    {
+        final PoddUser user1 = this.addTestUser("john@example.com");
+        final PoddUser user2 = this.addTestUser("bob@hope.com");
+        final URI object1URI = PODD.VF.createURI("urn:podd:artifact:1");
+        
+        this.testRealm.map(user1, PoddRoles.PROJECT_MEMBER.getRole(), object1URI);
+        
+        // -load the index before the remaining mappings are made
+        final Map<String, Collection<Role>> initialRoles =
+                this.testRealm.getRolesForObjectAlternate(null, object1URI);
+        Assert.assertEquals(1, initialRoles.size());
+        Assert.assertTrue(initialRoles.get(user1.getIdentifier()).contains(PoddRoles.PROJECT_MEMBER.getRole()));
+        
+        this.testRealm.map(user2, PoddRoles.PROJECT_OBSERVER.getRole(), object1URI);
+        this.testRealm.map(user1, PoddRoles.PROJECT_ADMIN.getRole(), object1URI);
+        
+        final Map<String, Collection<Role>> mappedRoles = this.testRealm.getRolesForObjectAlternate(null, object1URI);
+        Assert.assertEquals(2, mappedRoles.size());
+        Assert.assertEquals(2, mappedRoles.get(user1.getIdentifier()).size());
+        Assert.assertTrue(mappedRoles.get(user2.getIdentifier()).contains(PoddRoles.PROJECT_OBSERVER.getRole()));
+        
+        final Map<String, Collection<Role>> user2Roles =
+                this.testRealm.getRolesForObjectAlternate(user2.getIdentifier(), object1URI);
+        Assert.assertEquals(1, user2Roles.size());
+        
+        this.testRealm.unmap(user1, PoddRoles.PROJECT_MEMBER.getRole(), object1URI);
+        
+        final Collection<Role> rolesForUser1 = this.testRealm.getRolesForObject(user1, object1URI);
+        Assert.assertEquals(1, rolesForUser1.size());
+        Assert.assertTrue(rolesForUser1.contains(PoddRoles.PROJECT_ADMIN.getRole()));
+        
+        // -the index must agree with the repository
+        final RepositoryConnection conn = this.testRepository.getConnection();
+        try
+        {
+            Assert.assertEquals(this.testRealm.getRolesForObjectAlternate(null, object1URI),
+                    this.testRealm.getRolesForObjectAlternate(null, object1URI, conn));
+        }
+        finally
+        {
+            conn.close();
+        }
+    }
+    
     @Test
     public void testGetRolesWithObjectMappings() throws Exception
     {
@@ -652,4 +704,35 @@ public class PoddSesameRealmTest
         Assert.assertEquals("Status was not overwritten", PoddUserStatus.INACTIVE, userFromRealm.getUserStatus());
     }
     
+    /**
+     * Test that verified credentials are cached, and that the cache is evicted when the user is
+     * updated with a new secret.
+     */
+    @Test
+    public void testVerifyCachedUntilUserUpdated() throws Exception
+    {
+        final PoddUser testUser = this.addTestUser("cacheUser");
+        final LocalVerifier verifier = (LocalVerifier)this.testRealm.getVerifier();
+        
+        Assert.assertEquals(Verifier.RESULT_VALID, verifier.verify("cacheUser", "secret".toCharArray()));
+        Assert.assertEquals(0, this.testRealm.getCredentialCacheHits());
+        Assert.assertEquals(Verifier.RESULT_VALID, verifier.verify("cacheUser", "secret".toCharArray()));
+        Assert.assertEquals(1, this.testRealm.getCredentialCacheHits());
+        
+        // An incorrect secret must not be verified using the cached credentials
+        Assert.assertEquals(Verifier.RESULT_INVALID, verifier.verify("cacheUser", "notsecret".toCharArray()));
+        Assert.assertEquals(1, this.testRealm.getCredentialCacheHits());
+        
+        final PoddUser updatedUser =
+                new PoddUser(testUser.getIdentifier(), "newsecret".toCharArray(), testUser.getFirstName(),
+                        testUser.getLastName(), testUser.getEmail(), testUser.getUserStatus(), testUser.getHomePage(),
+                        testUser.getOrganization(), testUser.getOrcid());
+        this.testRealm.updateUser(updatedUser);
+        
+        Assert.assertEquals(0, this.testRealm.getAuthenticationCacheSize());
+        Assert.assertEquals(Verifier.RESULT_INVALID, verifier.verify("cacheUser", "secret".toCharArray()));
+        Assert.assertEquals(Verifier.RESULT_VALID, verifier.verify("cacheUser", "newsecret".toCharArray()));
+        Assert.assertEquals(1, this.testRealm.getAuthenticationCacheSize());
+    }
+    
 }
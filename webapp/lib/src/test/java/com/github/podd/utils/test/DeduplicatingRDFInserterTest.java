@@ -0,0 +1,118 @@
+/**
+ * PODD is an OWL ontology database used for scientific project management
+ *
+ * Copyright (C) 2009-2013 The University Of Queensland
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.podd.utils.test;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.model.URI;
+import org.openrdf.model.vocabulary.OWL;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.model.vocabulary.RDFS;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.sail.memory.MemoryStore;
+
+import com.github.podd.utils.DeduplicatingRDFInserter;
+import com.github.podd.utils.PODD;
+
+/**
+ * @author Peter Ansell p_ansell@yahoo.com
+ *
+ */
+public class DeduplicatingRDFInserterTest
+{
+    private final URI concreteContext = PODD.VF.createURI("urn:test:concrete");
+    
+    private final URI inferredContext = PODD.VF.createURI("urn:test:inferred");
+    
+    private Repository testRepository;
+    
+    private RepositoryConnection testConnection;
+    
+    @Before
+    public void setUp() throws Exception
+    {
+        this.testRepository = new SailRepository(new MemoryStore());
+        this.testRepository.initialize();
+        this.testConnection = this.testRepository.getConnection();
+        this.testConnection.begin();
+        
+        for(int i = 0; i < 10; i++)
+        {
+            this.testConnection.add(PODD.VF.createURI("urn:test:object:" + i), RDF.TYPE, OWL.THING,
+                    this.concreteContext);
+        }
+    }
+    
+    @After
+    public void tearDown() throws Exception
+    {
+        this.testConnection.rollback();
+        this.testConnection.close();
+        this.testRepository.shutDown();
+    }
+    
+    @Test
+    public final void testDeduplicateInBatches() throws Exception
+    {
+        final DeduplicatingRDFInserter inserter =
+                new DeduplicatingRDFInserter(this.concreteContext, this.testConnection, 3);
+        inserter.enforceContext(this.inferredContext);
+        
+        inserter.startRDF();
+        for(int i = 0; i < 20; i++)
+        {
+            // Objects 0-9 are duplicates of the concrete statements, and 10-19 are new
+            inserter.handleStatement(PODD.VF.createStatement(PODD.VF.createURI("urn:test:object:" + i), RDF.TYPE,
+                    OWL.THING));
+        }
+        inserter.handleStatement(PODD.VF.createStatement(PODD.VF.createBNode("a"), RDFS.LABEL,
+                PODD.VF.createLiteral("Blank node")));
+        inserter.endRDF();
+        
+        Assert.assertEquals(10, inserter.getDeduplicatedCount());
+        Assert.assertEquals(11, inserter.getInsertedCount());
+        Assert.assertTrue(inserter.getElapsedNanos() > 0);
+        
+        Assert.assertEquals(10, this.testConnection.size(this.concreteContext));
+        Assert.assertEquals(11, this.testConnection.size(this.inferredContext));
+        Assert.assertFalse(this.testConnection.hasStatement(PODD.VF.createURI("urn:test:object:0"), RDF.TYPE,
+                OWL.THING, false, this.inferredContext));
+        Assert.assertTrue(this.testConnection.hasStatement(PODD.VF.createURI("urn:test:object:19"), RDF.TYPE,
+                OWL.THING, false, this.inferredContext));
+        // Blank nodes are not added with their original identifiers
+        Assert.assertFalse(this.testConnection.hasStatement(PODD.VF.createBNode("a"), RDFS.LABEL, null, false,
+                this.inferredContext));
+    }
+    
+    @Test
+    public final void testWithoutComparisonContext() throws Exception
+    {
+        final DeduplicatingRDFInserter inserter = new DeduplicatingRDFInserter(null, this.testConnection);
+        inserter.enforceContext(this.inferredContext);
+        
+        inserter.startRDF();
+        inserter.handleStatement(PODD.VF.createStatement(PODD.VF.createURI("urn:test:object:0"), RDF.TYPE,
+                OWL.THING));
+        inserter.endRDF();
+        
+        Assert.assertEquals(1, this.testConnection.size(this.inferredContext));
+    }
+}